@@ -29,6 +29,7 @@ import core.World;
  * @author teemuk
  */
 public class PingApplication extends Application {
+	private static final long serialVersionUID = 4475927332552682320L;
 	/** Run in passive mode - don't generate pings but respond */
 	public static final String PING_PASSIVE = "passive";
 	/** Ping generation interval */
@@ -0,0 +1,196 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import movement.MovementModel;
+
+/**
+ * Snapshot of the state of a simulation: the world with its hosts,
+ * routers, connections and event queues, and the simulation time and
+ * other global state. A checkpoint is written to a file at a chosen
+ * simulation time (see {@link SimScenario#CHECKPOINT_TIME_S}) and later
+ * runs can continue from it (see {@link SimScenario#RESTORE_FILE_S})
+ * instead of simulating the same beginning again.
+ * <P>Serializable listeners (e.g., reports) are saved with the world and
+ * the restoring run can take them into use again (see
+ * {@link SimScenario#getRestoredListener(String)}). All the listeners of
+ * the restoring run are attached to the restored hosts.
+ * Checkpoints are written using Java serialization so they can be read
+ * only by the same version of the simulator.</P>
+ */
+public class Checkpoint implements Serializable {
+	private static final long serialVersionUID = -6377721543910250883L;
+	private World world;
+	private double time;
+	private int nextMessageId;
+	private Random movementRng;
+	private List<Serializable> listeners;
+
+	/**
+	 * Creates a checkpoint of the current state of a world
+	 * @param world The world
+	 * @param listeners The listeners of the simulation. The serializable
+	 * ones are saved in the checkpoint.
+	 */
+	public Checkpoint(World world, Collection<?> listeners) {
+		this.world = world;
+		this.time = SimClock.getTime();
+		this.nextMessageId = Message.getNextUniqueId();
+		this.movementRng = MovementModel.getRng();
+		this.listeners = new ArrayList<Serializable>();
+
+		/* same listener can be in many lists; save it only once */
+		Map<Object, Object> saved = new IdentityHashMap<Object, Object>();
+		for (Object l : listeners) {
+			if (l instanceof Serializable && !saved.containsKey(l)) {
+				saved.put(l, l);
+				this.listeners.add((Serializable)l);
+			}
+		}
+	}
+
+	/**
+	 * Writes the checkpoint to a file
+	 * @param file The file to write to
+	 * @throws SimError if writing the checkpoint fails (e.g., some part of
+	 * the simulation state is not serializable)
+	 */
+	public void write(File file) {
+		ObjectOutputStream out = null;
+		try {
+			out = new ObjectOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+			out.writeObject(this);
+		} catch (IOException e) {
+			throw new SimError("Can't write checkpoint to " + file + ": " +
+					e, e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					/* nothing more to do */
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a checkpoint from a file
+	 * @param file The file to read from
+	 * @return The checkpoint
+	 * @throws SimError if reading the checkpoint fails
+	 */
+	public static Checkpoint read(File file) {
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			return (Checkpoint)in.readObject();
+		} catch (IOException e) {
+			throw new SimError("Can't read checkpoint from " + file + ": " +
+					e, e);
+		} catch (ClassNotFoundException e) {
+			throw new SimError("Can't read checkpoint from " + file + ": " +
+					e, e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					/* nothing more to do */
+				}
+			}
+		}
+	}
+
+	/**
+	 * Restores the global state (simulation time etc.) of the checkpoint
+	 * and attaches the given listeners to the world and its hosts.
+	 * @param msgLs Message listeners
+	 * @param movLs Movement listeners
+	 * @param conLs Connection listeners
+	 * @param appLs Application listeners
+	 * @param updateLs Update listeners
+	 * @return The restored world
+	 */
+	public World restore(List<MessageListener> msgLs,
+			List<MovementListener> movLs, List<ConnectionListener> conLs,
+			List<ApplicationListener> appLs, List<UpdateListener> updateLs) {
+		SimClock.getInstance().setTime(this.time);
+		Message.setNextUniqueId(this.nextMessageId);
+		MovementModel.setRng(this.movementRng);
+
+		for (DTNHost host : world.getHosts()) {
+			host.setListeners(msgLs, movLs, conLs, appLs);
+		}
+		world.setUpdateListeners(updateLs);
+
+		return this.world;
+	}
+
+	/**
+	 * Returns the listeners saved in the checkpoint
+	 * @return the listeners saved in the checkpoint
+	 */
+	public List<Serializable> getListeners() {
+		return this.listeners;
+	}
+
+	/**
+	 * Returns the simulation time of the checkpoint
+	 * @return the simulation time of the checkpoint
+	 */
+	public double getTime() {
+		return this.time;
+	}
+
+	/**
+	 * Update listener that writes a checkpoint of the world after the
+	 * first update that ends at or after the checkpoint time.
+	 */
+	public static class Writer implements UpdateListener {
+		private double time;
+		private File file;
+		private boolean written;
+
+		/**
+		 * Creates a new checkpoint writer
+		 * @param time The simulation time of the checkpoint
+		 * @param file The file where the checkpoint is written to
+		 */
+		public Writer(double time, File file) {
+			this.time = time;
+			this.file = file;
+			this.written = false;
+		}
+
+		public void updated(List<DTNHost> hosts) {
+			if (written || SimClock.getTime() < this.time) {
+				return;
+			}
+			SimScenario scen = SimScenario.getInstance();
+			new Checkpoint(scen.getWorld(), scen.getListeners()).write(
+					this.file);
+			this.written = true;
+		}
+	}
+}
@@ -4,9 +4,13 @@
  */
 package core;
 
+import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
 
 import movement.MovementModel;
 import movement.Path;
@@ -16,7 +20,8 @@ import routing.RoutingInfo;
 /**
  * A DTN capable host.
  */
-public class DTNHost implements Comparable<DTNHost> {
+public class DTNHost implements Comparable<DTNHost>, Serializable {
+    private static final long serialVersionUID = 8348372707319313970L;
 
     private static int nextAddress = 0;
     private int address;
@@ -26,13 +31,23 @@ public class DTNHost implements Comparable<DTNHost> {
 
     private MessageRouter router;
     private MovementModel movement;
+    /** random stream of the movement model (null if a common one is used) */
+    private Random movementRng;
     private Path path;
     private double speed;
     private double nextTimeToMove;
+    /** incremented every time the linear movement of the host changes */
+    private int movementVersion;
+    /** position arrays where the location is written to (or null) */
+    private HostPositions positions;
+    /** index of this host in the position arrays */
+    private int positionIndex;
     private String name;
-    private List<MessageListener> msgListeners;
-    private List<MovementListener> movListeners;
+    private transient List<MessageListener> msgListeners;
+    private transient List<MovementListener> movListeners;
     private List<NetworkInterface> net;
+    /** view of the connections of all the interfaces (created lazily) */
+    private transient List<Connection> connections;
     private ModuleCommunicationBus comBus;
         
     static {
@@ -74,6 +89,8 @@ public class DTNHost implements Comparable<DTNHost> {
         this.movListeners = movLs;
 
         // create instances by replicating the prototypes
+        this.movementRng = MovementModel.createHostRng(this.address);
+        MovementModel.useHostRng(this.movementRng);
         this.movement = mmProto.replicate();
         this.movement.setComBus(comBus);
         setRouter(mRouterProto.replicate());
@@ -81,6 +98,7 @@ public class DTNHost implements Comparable<DTNHost> {
         this.location = movement.getInitialLocation();
 
         this.nextTimeToMove = movement.nextPathAvailable();
+        MovementModel.useHostRng(null);
         this.path = null;
 
         if (movLs != null) { // inform movement listeners about the location
@@ -126,6 +144,27 @@ public class DTNHost implements Comparable<DTNHost> {
         this.router = router;
     }
 
+    /**
+     * Sets the listeners of this host, its router and network interfaces,
+     * e.g., when the host is restored from a checkpoint.
+     *
+     * @param msgLs Message listeners
+     * @param movLs Movement listeners
+     * @param conLs Connection listeners
+     * @param appLs Application listeners
+     * @see Checkpoint
+     */
+    public void setListeners(List<MessageListener> msgLs,
+            List<MovementListener> movLs, List<ConnectionListener> conLs,
+            List<ApplicationListener> appLs) {
+        this.msgListeners = msgLs;
+        this.movListeners = movLs;
+        this.router.setListeners(msgLs, appLs);
+        for (NetworkInterface ni : net) {
+            ni.setClisteners(conLs);
+        }
+    }
+
     /**
      * Returns the router of this host
      *
@@ -135,6 +174,15 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.router;
     }
 
+    /**
+     * Returns the movement model of this host
+     *
+     * @return the movement model of this host
+     */
+    public MovementModel getMovement() {
+        return this.movement;
+    }
+
     /**
      * Returns the network-layer address of this host.
      */
@@ -170,18 +218,18 @@ public class DTNHost implements Comparable<DTNHost> {
     }
 
     /**
-     * Returns a copy of the list of connections this host has with other hosts
+     * Returns the connections this host has with other hosts. The list is a
+     * read-only view of the connections of the host's network interfaces, so
+     * it reflects later changes in the connections and must not be modified
+     * while it is being iterated.
      *
-     * @return a copy of the list of connections this host has with other hosts
+     * @return the connections this host has with other hosts
      */
     public List<Connection> getConnections() {
-        List<Connection> lc = new ArrayList<Connection>();
-
-        for (NetworkInterface i : net) {
-            lc.addAll(i.getConnections());
+        if (this.connections == null) {
+            this.connections = new ConnectionList();
         }
-
-        return lc;
+        return this.connections;
     }
 
     /**
@@ -193,6 +241,38 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.location;
     }
 
+    /**
+     * Sets the position arrays where this host writes its location to
+     * @param positions The position arrays
+     * @param index Index of this host in the arrays
+     */
+    void setPositions(HostPositions positions, int index) {
+        this.positions = positions;
+        this.positionIndex = index;
+        positions.setLocation(index, this.location);
+        for (NetworkInterface ni : net) {
+            ni.setPositions(positions, index);
+        }
+    }
+
+    /**
+     * Returns the position arrays where this host's location is kept
+     * up to date
+     * @return The position arrays or null if they are not used
+     * @see World#POSITION_ARRAYS_S
+     */
+    public HostPositions getPositions() {
+        return this.positions;
+    }
+
+    /**
+     * Returns the index of this host in the position arrays
+     * @return The index (valid only if {@link #getPositions()} is not null)
+     */
+    public int getPositionIndex() {
+        return this.positionIndex;
+    }
+
     /**
      * Returns the Path this node is currently traveling or null if no path is
      * in use at the moment.
@@ -203,6 +283,48 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.path;
     }
 
+    /**
+     * Returns the waypoint this host is currently moving towards, or null
+     * if the host is waiting for its next path.
+     *
+     * @return The destination or null
+     */
+    public Coord getDestination() {
+        return this.path == null ? null : this.destination;
+    }
+
+    /**
+     * Returns the speed this host moves towards its destination at
+     *
+     * @return The current speed
+     * @see #getDestination()
+     */
+    public double getSpeed() {
+        return this.speed;
+    }
+
+    /**
+     * Returns the simulation time when a waiting host gets its next path
+     *
+     * @return The time when the host can move again
+     */
+    public double getNextTimeToMove() {
+        return this.nextTimeToMove;
+    }
+
+    /**
+     * Returns a number that changes every time this host gets a new
+     * destination or speed, starts to wait for its next path, or is moved
+     * by other means than {@link #move(double)}. As long as the number stays
+     * the same, the host moves linearly towards its destination at a
+     * constant speed (or stays still if it is waiting).
+     *
+     * @return The version of the host's movement
+     */
+    public int getMovementVersion() {
+        return this.movementVersion;
+    }
+
     /**
      * Sets the Node's location overriding any location set by movement model
      *
@@ -210,6 +332,10 @@ public class DTNHost implements Comparable<DTNHost> {
      */
     public void setLocation(Coord location) {
         this.location = location.clone();
+        this.movementVersion++;
+        if (this.positions != null) {
+            this.positions.setLocation(this.positionIndex, this.location);
+        }
     }
 
     /**
@@ -343,12 +469,114 @@ public class DTNHost implements Comparable<DTNHost> {
             return;
         }
 
+        Profiler profiler = Profiler.getInstance();
         if (simulateConnections) {
-            for (NetworkInterface i : net) {
-                i.update();
+            if (profiler != null) {
+                profiler.enter(Profiler.CONNECTIVITY);
+            }
+            for (int i = 0, n = net.size(); i < n; i++) {
+                net.get(i).update();
+            }
+            if (profiler != null) {
+                profiler.exit();
             }
         }
+        if (profiler != null) {
+            profiler.enter(Profiler.ROUTER, this.router.getClass());
+        }
         this.router.update();
+        if (profiler != null) {
+            profiler.exit();
+        }
+    }
+
+    /**
+     * Prepares the next update of this host's network interfaces (see
+     * {@link NetworkInterface#prepareUpdate()}). Can be called concurrently
+     * for different hosts.
+     */
+    public void prepareUpdate() {
+        for (NetworkInterface i : net) {
+            i.prepareUpdate();
+        }
+    }
+
+    /**
+     * Returns true if the host's activeness can change depending on the time
+     * @return true if active times are defined for the host
+     */
+    public boolean hasActiveTimes() {
+        return this.movement.hasActiveTimes();
+    }
+
+    /**
+     * Returns true if this host can be moved concurrently with the other
+     * hosts for which this method returns true. This requires that the host
+     * has its own random stream for movement, that it has no active times or
+     * movement listeners, and that the movement model supports it.
+     * @return true if the host can be moved concurrently with other hosts
+     * @see MovementModel#canMoveConcurrently()
+     */
+    public boolean canMoveConcurrently() {
+        return this.movementRng != null && !hasActiveTimes() &&
+            (this.movListeners == null || this.movListeners.isEmpty()) &&
+            this.movement.canMoveConcurrently();
+    }
+
+    /**
+     * Returns true if the movement state of this host can be saved to and
+     * loaded from the warmup cache. This requires that the movement model
+     * doesn't share state with other hosts' models and that there are no
+     * movement listeners that would miss the warmup movement.
+     * @return true if the movement state of this host can be cached
+     * @see WarmupCache
+     */
+    boolean canCacheMovement() {
+        return (this.movListeners == null || this.movListeners.isEmpty()) &&
+            this.movement.canMoveConcurrently();
+    }
+
+    /**
+     * Returns the movement state (location, destination, path, movement model
+     * and its random stream) of this host
+     * @return The movement state
+     */
+    MovementState getMovementState() {
+        return new MovementState(this);
+    }
+
+    /**
+     * Sets the movement state of this host
+     * @param state The state returned by {@link #getMovementState()} of a
+     * host with the same settings
+     */
+    void setMovementState(MovementState state) {
+        /* location object is shared with e.g. interfaces; only copy values */
+        this.location.setLocation(state.location);
+        if (this.positions != null) {
+            this.positions.setLocation(this.positionIndex, this.location);
+        }
+        this.destination = state.destination;
+        this.path = state.path;
+        this.speed = state.speed;
+        this.nextTimeToMove = state.nextTimeToMove;
+        this.movement = state.movement;
+        this.movement.setComBus(this.comBus);
+        this.movementRng = state.movementRng;
+        this.movementVersion++;
+    }
+
+    /**
+     * Returns the simulation time when this host needs to be updated next even
+     * if no events happen before that (e.g., when an ongoing transfer is
+     * ready). Used by the {@link World} for skipping idle update intervals.
+     *
+     * @return The time of the next requested update or Double.MAX_VALUE if
+     * the host doesn't need any updates
+     * @see MessageRouter#getNextWakeupTime()
+     */
+    public double getNextWakeupTime() {
+        return this.router.getNextWakeupTime();
     }
 
     /**
@@ -358,13 +586,26 @@ public class DTNHost implements Comparable<DTNHost> {
      * @param timeIncrement How long time the node moves
      */
     public void move(double timeIncrement) {
+        if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
+            return;
+        }
+        moveTowardsDestination(timeIncrement);
+        if (this.positions != null) {
+            this.positions.setLocation(this.positionIndex, this.location);
+        }
+    }
+
+    /**
+     * Moves the node towards the next waypoint (and the ones after it if
+     * it reaches the waypoint)
+     *
+     * @param timeIncrement How long time the node moves
+     */
+    private void moveTowardsDestination(double timeIncrement) {
         double possibleMovement;
         double distance;
         double dx, dy;
 
-        if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
-            return;
-        }
         if (this.destination == null) {
             if (!setNextWaypoint()) {
                 return;
@@ -401,17 +642,23 @@ public class DTNHost implements Comparable<DTNHost> {
      */
     private boolean setNextWaypoint() {
         if (path == null) {
+            MovementModel.useHostRng(this.movementRng);
             path = movement.getPath();
+            MovementModel.useHostRng(null);
         }
 
         if (path == null || !path.hasNext()) {
+            MovementModel.useHostRng(this.movementRng);
             this.nextTimeToMove = movement.nextPathAvailable();
+            MovementModel.useHostRng(null);
             this.path = null;
+            this.movementVersion++;
             return false;
         }
 
         this.destination = path.getNextWaypoint();
         this.speed = path.getSpeed();
+        this.movementVersion++;
 
         if (this.movListeners != null) {
             for (MovementListener l : this.movListeners) {
@@ -534,4 +781,60 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.getAddress() - h.getAddress();
     }
 
+    /**
+     * Movement related state of a host (see {@link WarmupCache})
+     */
+    static class MovementState implements Serializable {
+        private static final long serialVersionUID = 4779951352346934872L;
+        private Coord location;
+        private Coord destination;
+        private Path path;
+        private double speed;
+        private double nextTimeToMove;
+        private MovementModel movement;
+        private Random movementRng;
+
+        private MovementState(DTNHost host) {
+            this.location = host.location;
+            this.destination = host.destination;
+            this.path = host.path;
+            this.speed = host.speed;
+            this.nextTimeToMove = host.nextTimeToMove;
+            this.movement = host.movement;
+            this.movementRng = host.movementRng;
+        }
+    }
+
+    /**
+     * Read-only list of the connections of all the network interfaces of
+     * the host, in the order of the interfaces. Backed by the interfaces'
+     * connection lists so no copies are made when the connections are
+     * queried.
+     */
+    private class ConnectionList extends AbstractList<Connection>
+            implements RandomAccess {
+
+        @Override
+        public Connection get(int index) {
+            int offset = index;
+            for (int i = 0, n = net.size(); i < n; i++) {
+                List<Connection> cons = net.get(i).getConnections();
+                if (offset < cons.size()) {
+                    return cons.get(offset);
+                }
+                offset -= cons.size();
+            }
+            throw new IndexOutOfBoundsException("Index: " + index +
+                    ", Size: " + size());
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int i = 0, n = net.size(); i < n; i++) {
+                size += net.get(i).getConnections().size();
+            }
+            return size;
+        }
+    }
 }
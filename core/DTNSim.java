@@ -8,6 +8,10 @@ import gui.DTNSimGUI;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ui.DTNSimTextUI;
 
@@ -20,6 +24,9 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the batch mode's number of runs, 
+	 * the next argument tells how many runs are executed concurrently */
+	public static final String BATCH_THREADS_FLAG = "-t";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -34,7 +41,9 @@ public class DTNSim {
 	 * or a with a combination of starting run and the number of runs, 
 	 * delimited with a {@value #RANGE_DELIMETER}. Different settings from run
 	 * arrays are used for different runs (see 
-	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
+	 * {@link Settings#setRunIndex(int)}). The number of runs can be followed
+	 * by {@value #BATCH_THREADS_FLAG} and the number of runs to execute 
+	 * concurrently (see {@link SimContext}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
 	 * @param args Command line arguments
@@ -42,6 +51,7 @@ public class DTNSim {
 	public static void main(String[] args) {
 		boolean batchMode = false;
 		int nrofRuns[] = {0,1};
+		int batchThreads = 1;
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
@@ -58,6 +68,15 @@ public class DTNSim {
                 else {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
+                }
+                if (args.length > 2 && args[2].equals(BATCH_THREADS_FLAG)) {
+                    if (args.length == 3) {
+                        System.err.println("Missing number of concurrent " +
+                                "runs after " + BATCH_THREADS_FLAG);
+                        System.exit(-1);
+                    }
+                    batchThreads = parseBatchThreads(args[3]);
+                    firstConfIndex = 4;
                 }
 			}
 			else { /* GUI mode */				
@@ -78,11 +97,17 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			if (batchThreads > 1) {
+				runConcurrently(nrofRuns, batchThreads, confFiles, 
+						firstConfIndex);
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new DTNSimTextUI().start();
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,12 +118,54 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Executes batch runs concurrently, each in a {@link SimContext} of its
+	 * own. Exits if any of the runs fails.
+	 * @param nrofRuns The first and (last_run_index - 1) in an array
+	 * @param nrofThreads How many runs are executed at the same time
+	 * @param confFiles File name paths where to read the settings from
+	 * @param firstIndex Index of the first config file name
+	 */
+	private static void runConcurrently(int[] nrofRuns, int nrofThreads, 
+			String[] confFiles, int firstIndex) {
+		ExecutorService executor = Executors.newFixedThreadPool(nrofThreads);
+		List<Future<?>> runs = new ArrayList<Future<?>>();
+		
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			final int runIndex = i;
+			final SimContext context = new SimContext(confFiles, firstIndex,
+					runIndex);
+			runs.add(executor.submit(new Runnable() {
+				public void run() {
+					print("Run " + (runIndex+1) + "/" + nrofRuns[1]);
+					context.run();
+				}
+			}));
+		}
+		executor.shutdown();
+		
+		for (int i=0; i<runs.size(); i++) {
+			try {
+				runs.get(i).get();
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				System.err.println("Run " + (nrofRuns[0] + i + 1) + 
+						" failed");
+				e.getCause().printStackTrace();
+				System.exit(-1);
+			}
+		}
+	}
+	
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
 	 * @param firstIndex Index of the first config file name
 	 */
-	private static void initSettings(String[] confFiles, int firstIndex) {
+	static void initSettings(String[] confFiles, int firstIndex) {
 		int i = firstIndex;
 
         if (i >= confFiles.length) {
@@ -216,6 +283,29 @@ public class DTNSim {
 		return val;
 	}
 	
+	/**
+	 * Parses the number of concurrently executed batch runs from a command 
+	 * line argument
+	 * @param arg The argument to parse
+	 * @return The number of concurrent runs
+	 */
+	private static int parseBatchThreads(String arg) {
+		int val = 0;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			/* handled below */
+		}
+		
+		if (val < 1) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of concurrent runs");
+			System.exit(-1);
+		}
+		
+		return val;
+	}
+	
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
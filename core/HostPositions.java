@@ -0,0 +1,78 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Locations of all the hosts of a world in two primitive arrays, indexed by
+ * the hosts' indexes in the world (see {@link DTNHost#getPositionIndex()}).
+ * The hosts write their location here whenever it changes, so the distance
+ * checks of the connectivity simulation can read the coordinates from the
+ * arrays instead of following the references to every host's
+ * {@link Coord}.
+ * @see World#POSITION_ARRAYS_S
+ */
+public class HostPositions implements Serializable {
+	private static final long serialVersionUID = -5864647277622252841L;
+	private double[] x;
+	private double[] y;
+
+	/**
+	 * Creates the arrays for the hosts and makes the hosts write their
+	 * locations to them
+	 * @param hosts The hosts of the world
+	 */
+	public HostPositions(List<DTNHost> hosts) {
+		this.x = new double[hosts.size()];
+		this.y = new double[hosts.size()];
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			hosts.get(i).setPositions(this, i);
+		}
+	}
+
+	/**
+	 * Sets the location of a host
+	 * @param index Index of the host
+	 * @param c The host's new location
+	 */
+	void setLocation(int index, Coord c) {
+		this.x[index] = c.getX();
+		this.y[index] = c.getY();
+	}
+
+	/**
+	 * Returns the x coordinate of a host
+	 * @param index Index of the host
+	 * @return The x coordinate
+	 */
+	public double getX(int index) {
+		return this.x[index];
+	}
+
+	/**
+	 * Returns the y coordinate of a host
+	 * @param index Index of the host
+	 * @return The y coordinate
+	 */
+	public double getY(int index) {
+		return this.y[index];
+	}
+
+	/**
+	 * Returns the distance between two hosts. The result is the same as
+	 * the one of {@link Coord#distance(Coord)}.
+	 * @param i Index of the first host
+	 * @param j Index of the other host
+	 * @return The distance
+	 */
+	public double distance(int i, int j) {
+		double dx = this.x[i] - this.x[j];
+		double dy = this.y[i] - this.y[j];
+
+		return Math.sqrt(dx*dx + dy*dy);
+	}
+}
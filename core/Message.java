@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -13,7 +14,8 @@ import java.util.Set;
 /**
  * A message that is created at a node or passed between nodes.
  */
-public class Message implements Comparable<Message> {
+public class Message implements Comparable<Message>, Serializable {
+	private static final long serialVersionUID = -1557882567474926057L;
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
 	private DTNHost from;
@@ -345,6 +347,24 @@ public class Message implements Comparable<Message> {
 	public static void reset() {
 		nextUniqueId = 0;
 	}
+	
+	/**
+	 * Returns the unique ID the next created message gets
+	 * @return the next unique ID
+	 * @see Checkpoint
+	 */
+	static int getNextUniqueId() {
+		return nextUniqueId;
+	}
+	
+	/**
+	 * Sets the unique ID the next created message gets
+	 * @param id the next unique ID
+	 * @see Checkpoint
+	 */
+	static void setNextUniqueId(int id) {
+		nextUniqueId = id;
+	}
 
 	/**
 	 * @return the appID
@@ -7,6 +7,7 @@ package core;
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -14,7 +15,9 @@ import java.util.Random;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener,
+	Serializable {
+	private static final long serialVersionUID = 3740681538831404831L;
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -39,8 +42,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected DTNHost host = null;
 
 	protected String interfacetype;
-	protected List<Connection> connections; // connected hosts
-	private List<ConnectionListener> cListeners = null; // list of listeners
+	protected PeerConnectionList connections; // connected hosts
+	private transient List<ConnectionListener> cListeners = null; // listeners
 	private int address; // network interface address
 	protected double transmitRange;
 	protected int transmitSpeed;
@@ -48,6 +51,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
+	/** the host position arrays (or null if they are not used) */
+	private HostPositions positions;
+	/** index of the host in the position arrays */
+	private int positionIndex;
+	/** number of the current round of prepared updates */
+	private static int preparedRound;
+	/** are the updates prepared in the current round still valid */
+	private static boolean isPreparedRoundValid;
 
 
 	static {
@@ -61,6 +72,60 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public static void reset() {
 		nextAddress = 0;
 		rng = new Random(0);
+		preparedRound = 0;
+		isPreparedRoundValid = false;
+	}
+	
+	/**
+	 * Starts a new round of prepared updates. Takes a snapshot of the 
+	 * locations in the connectivity optimizers of all the given hosts' 
+	 * interfaces. After this, {@link #prepareUpdate()} can be called
+	 * concurrently for the interfaces as long as the hosts don't move.
+	 * @param hosts The hosts whose interfaces are going to be prepared
+	 * @see #endPreparedRound()
+	 */
+	public static void beginPreparedRound(List<DTNHost> hosts) {
+		List<ConnectivityOptimizer> optimizers = 
+			new ArrayList<ConnectivityOptimizer>();
+		
+		for (DTNHost h : hosts) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				if (ni.optimizer != null && 
+						!optimizers.contains(ni.optimizer)) {
+					ni.optimizer.takeSnapshot();
+					optimizers.add(ni.optimizer);
+				}
+			}
+		}
+		
+		preparedRound++;
+		isPreparedRoundValid = true;
+	}
+	
+	/**
+	 * Ends the current round of prepared updates. Updates after this
+	 * don't use the prepared results.
+	 */
+	public static void endPreparedRound() {
+		isPreparedRoundValid = false;
+	}
+	
+	/**
+	 * Returns the number of the current round of prepared updates
+	 * @return the number of the current round
+	 */
+	protected static int getPreparedRound() {
+		return preparedRound;
+	}
+	
+	/**
+	 * Returns true if the results prepared in the given round can be used
+	 * @param round The round when the results were prepared
+	 * @return True if the round is the current one and nothing has 
+	 * invalidated it (e.g., a radio range change)
+	 */
+	protected static boolean isPreparedRound(int round) {
+		return isPreparedRoundValid && round == preparedRound;
 	}
 	
 	/**
@@ -68,7 +133,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface(Settings s) {
 		this.interfacetype = s.getNameSpace();
-		this.connections = new ArrayList<Connection>();
+		this.connections = new PeerConnectionList(this);
 		this.address = getNextNetAddress();
 
 		this.transmitRange = s.getDouble(TRANSMIT_RANGE_S);
@@ -87,7 +152,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface() {
 		this.interfacetype = "Default";
-		this.connections = new ArrayList<Connection>();
+		this.connections = new PeerConnectionList(this);
 		this.address = getNextNetAddress();
 	}
 	
@@ -95,13 +160,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * copy constructor
 	 */
 	public NetworkInterface(NetworkInterface ni) {
-		this.connections = new ArrayList<Connection>();
+		this.connections = new PeerConnectionList(this);
 		this.address = getNextNetAddress();
 		this.host = ni.host;
 		this.cListeners = ni.cListeners;
 		this.interfacetype = ni.interfacetype;
 		this.transmitRange = ni.transmitRange;
 		this.transmitSpeed = ni.transmitSpeed;
+		this.scanInterval = ni.scanInterval;
 		
 		/* draw lastScanTime of [0 -- scanInterval] */
 		this.lastScanTime = rng.nextDouble() * scanInterval;
@@ -271,6 +337,10 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			smallerRange = myRange;
 		}
 
+		if (this.positions != null) { /* no need to touch the hosts */
+			return positions.distance(this.positionIndex, 
+				anotherInterface.positionIndex) <= smallerRange;
+		}
 		return this.host.getLocation().distance(
 				anotherInterface.getHost().getLocation()) <= smallerRange;
 	}
@@ -281,13 +351,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @return True if the two hosts are connected
 	 */
 	protected boolean isConnected(NetworkInterface netinterface) {
-		for (int i = 0; i < this.connections.size(); i++) {
-			if (this.connections.get(i).getOtherInterface(this) == 
-				netinterface) {
-				return true;
-			}
-		}
-		return false;
+		return this.connections.getConnection(netinterface) != null;
 	}
 	
 	/**
@@ -309,6 +373,40 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	abstract public void update();
 
+	/**
+	 * Prepares the next {@link #update()} by doing the work that depends
+	 * only on the hosts' locations and radio ranges. Called for all 
+	 * interfaces concurrently (see {@link #beginPreparedRound(List)}) so the 
+	 * method must not change the state of any other object than this 
+	 * interface. The prepared results must not change the outcome of the
+	 * update. This implementation does nothing.
+	 */
+	public void prepareUpdate() { }
+
+	/**
+	 * Called when a connection is added to the connections of this
+	 * interface. This implementation does nothing.
+	 * @param con The added connection
+	 */
+	protected void connectionAdded(Connection con) { }
+
+	/**
+	 * Called when a connection is removed from the connections of this
+	 * interface. This implementation does nothing.
+	 * @param con The removed connection
+	 */
+	protected void connectionRemoved(Connection con) { }
+
+	/**
+	 * Called by a connection of this interface when a message transfer
+	 * starts or ends over it (i.e., when {@link Connection#getMessage()}
+	 * changes between null and a message). Only connections whose speed
+	 * depends on the interfaces' state (see {@link VBRConnection}) call
+	 * this. This implementation does nothing.
+	 * @param con The connection
+	 */
+	protected void transferChanged(Connection con) { }
+
 	/**
 	 * Notifies all the connection listeners about a change in connections.
 	 * @param type Type of the change (e.g. {@link #CON_DOWN} )
@@ -347,6 +445,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 		else if (key.equals(RANGE_ID)) {
 			this.transmitRange = (Double)newValue;	
+			isPreparedRoundValid = false; /* prepared range checks are stale */
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
@@ -368,6 +467,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public void destroyConnection(NetworkInterface anotherInterface) {
 		DTNHost anotherHost = anotherInterface.getHost();
+		if (anotherHost.getInterfaces().size() == 1) {
+			/* all connections to the host are to this interface */
+			int index = this.connections.indexOfPeer(anotherInterface);
+			if (index >= 0) {
+				removeConnectionByIndex(index, anotherInterface);
+			}
+			return;
+		}
 		for (int i=0; i < this.connections.size(); i++) {
 			if (this.connections.get(i).getOtherNode(this.host) == anotherHost){
 				removeConnectionByIndex(i, anotherInterface);
@@ -390,10 +497,12 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		notifyConnectionListeners(CON_DOWN, anotherNode);
 
 		// tear down bidirectional connection
-		if (!anotherInterface.getConnections().remove(con)) {
+		int peerIndex = anotherInterface.connections.indexOf(con);
+		if (peerIndex < 0) {
 			throw new SimError("No connection " + con + " found in " +
 					anotherNode);   
 		}
+		anotherInterface.connections.remove(peerIndex);
 
 		this.host.connectionDown(con);
 		anotherNode.connectionDown(con);
@@ -408,6 +517,35 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return host;
 	}
 
+	/**
+	 * Sets the position arrays where the host of this interface keeps its
+	 * location
+	 * @param positions The position arrays
+	 * @param index Index of the host in the arrays
+	 */
+	void setPositions(HostPositions positions, int index) {
+		this.positions = positions;
+		this.positionIndex = index;
+	}
+
+	/**
+	 * Returns the position arrays where the host of this interface keeps
+	 * its location
+	 * @return The position arrays or null if they are not used
+	 */
+	public HostPositions getPositions() {
+		return this.positions;
+	}
+
+	/**
+	 * Returns the index of the host of this interface in the position
+	 * arrays
+	 * @return The index (valid only if {@link #getPositions()} is not null)
+	 */
+	public int getPositionIndex() {
+		return this.positionIndex;
+	}
+
 	/**
 	 * Returns the current location of the host of this interface. 
 	 * @return The location
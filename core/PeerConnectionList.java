@@ -0,0 +1,304 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The connections of a network interface in the order they were created,
+ * with an index from the address of the interface in the other end of a
+ * connection to the connection and its position in the list. New
+ * connections can only be appended, but otherwise the list can be modified
+ * like any list; the index is kept up to date on every change, so
+ * {@link #getConnection(NetworkInterface)}, {@link #indexOf(Object)} and
+ * {@link #remove(Object)} don't need to go through the list. The owner
+ * interface is told about every added and removed connection.
+ */
+public class PeerConnectionList extends AbstractList<Connection>
+		implements RandomAccess, Serializable {
+	private static final long serialVersionUID = -9103207398190540785L;
+	private static final int INITIAL_CAPACITY = 8;
+	/** the interface whose connections these are */
+	private NetworkInterface owner;
+	private ArrayList<Connection> list;
+	/** open addressing hash table of peer addresses, connections and
+	 * their positions in the list */
+	private int[] keys;
+	private Connection[] values;
+	private int[] positions;
+	private int nrofKeys;
+	/** number of connections that are not indexed because an earlier
+	 * connection to the same peer is */
+	private int nrofDuplicates;
+
+	/**
+	 * Creates an empty list
+	 * @param owner The interface whose connections the list has
+	 */
+	public PeerConnectionList(NetworkInterface owner) {
+		this.owner = owner;
+		this.list = new ArrayList<Connection>();
+		this.keys = new int[INITIAL_CAPACITY];
+		this.values = new Connection[INITIAL_CAPACITY];
+		this.positions = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns the connection to another interface
+	 * @param peer The other interface
+	 * @return The (first) connection to the interface or null if there is
+	 * no connection to it
+	 */
+	public Connection getConnection(NetworkInterface peer) {
+		int i = find(peer.getAddress());
+		return values[i];
+	}
+
+	/**
+	 * Returns the position of the connection to another interface
+	 * @param peer The other interface
+	 * @return The position of the (first) connection to the interface in
+	 * the list or -1 if there is no connection to it
+	 */
+	public int indexOfPeer(NetworkInterface peer) {
+		int i = find(peer.getAddress());
+		return values[i] != null ? positions[i] : -1;
+	}
+
+	@Override
+	public Connection get(int index) {
+		return list.get(index);
+	}
+
+	@Override
+	public int size() {
+		return list.size();
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		if (!(o instanceof Connection)) {
+			return -1;
+		}
+		int i = find(peerAddress((Connection)o));
+		if (values[i] == o) {
+			return positions[i];
+		}
+		if (nrofDuplicates == 0) {
+			return -1; /* the peer's only connection is another one */
+		}
+		return list.indexOf(o);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int index = indexOf(o);
+		if (index < 0) {
+			return false;
+		}
+		remove(index);
+		return true;
+	}
+
+	/**
+	 * Replaces a connection. The index is rebuilt because the new 
+	 * connection may come before the indexed connection to its peer.
+	 */
+	@Override
+	public Connection set(int index, Connection con) {
+		Connection old = list.set(index, con);
+		reindex();
+		owner.connectionRemoved(old);
+		owner.connectionAdded(con);
+		return old;
+	}
+
+	/**
+	 * Appends a connection to the list
+	 * @param index Position of the connection; must be the size of the list
+	 * @param con The connection
+	 * @throws UnsupportedOperationException if the position is not the end
+	 * of the list
+	 */
+	@Override
+	public void add(int index, Connection con) {
+		if (index != list.size()) {
+			throw new UnsupportedOperationException("Connections can only " +
+					"be appended (position " + index + ", size " +
+					list.size() + ")");
+		}
+		list.add(con);
+		modCount++;
+		index(con, index);
+		owner.connectionAdded(con);
+	}
+
+	/**
+	 * Removes the connection at the given position. The positions of the
+	 * later connections in the index are updated while going through them.
+	 */
+	@Override
+	public Connection remove(int index) {
+		Connection old = list.remove(index);
+		modCount++;
+		int key = peerAddress(old);
+		boolean indexed = unindex(key, old);
+		if (!indexed) {
+			nrofDuplicates--;
+		}
+
+		for (int n = index, size = list.size(); n < size; n++) {
+			Connection con = list.get(n);
+			int k = peerAddress(con);
+			int i = find(k);
+			if (values[i] == con) {
+				positions[i] = n;
+			}
+			else if (indexed && k == key) {
+				/* the next connection to the peer is indexed instead */
+				nrofDuplicates--;
+				index(con, n);
+				indexed = false;
+			}
+		}
+		owner.connectionRemoved(old);
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		ArrayList<Connection> removed = this.list;
+		this.list = new ArrayList<Connection>();
+		modCount++;
+		Arrays.fill(values, null);
+		nrofKeys = 0;
+		nrofDuplicates = 0;
+		for (int n = 0, size = removed.size(); n < size; n++) {
+			owner.connectionRemoved(removed.get(n));
+		}
+	}
+
+	/**
+	 * Returns the slot of a peer address in the hash table, or the empty
+	 * slot where the probe sequence of the address ends
+	 */
+	private int find(int key) {
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (values[i] != null && keys[i] != key) {
+			i = (i+1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Adds a connection to the index unless there already is one to the
+	 * same peer
+	 * @param con The connection
+	 * @param position Position of the connection in the list
+	 */
+	private void index(Connection con, int position) {
+		int key = peerAddress(con);
+		int i = find(key);
+		if (values[i] != null) {
+			nrofDuplicates++; /* the first connection stays indexed */
+			return;
+		}
+		keys[i] = key;
+		values[i] = con;
+		positions[i] = position;
+		nrofKeys++;
+		if (nrofKeys * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Removes a connection from the index
+	 * @param key The peer address of the connection
+	 * @param con The connection
+	 * @return True if the connection was indexed, false if it wasn't (i.e.,
+	 * another connection to the peer is)
+	 */
+	private boolean unindex(int key, Connection con) {
+		int i = find(key);
+		if (values[i] != con) {
+			return false;
+		}
+
+		/* remove and shift the following entries of the probe sequence
+		 * back so that no lookup stops at the emptied slot */
+		int mask = keys.length - 1;
+		values[i] = null;
+		nrofKeys--;
+		for (int j = (i+1) & mask; values[j] != null; j = (j+1) & mask) {
+			int k = slot(keys[j], mask);
+			if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+				continue; /* entry is still reachable from its slot */
+			}
+			keys[i] = keys[j];
+			values[i] = values[j];
+			positions[i] = positions[j];
+			values[j] = null;
+			i = j;
+		}
+		return true;
+	}
+
+	/**
+	 * Rebuilds the index from the list
+	 */
+	private void reindex() {
+		Arrays.fill(values, null);
+		nrofKeys = 0;
+		nrofDuplicates = 0;
+		for (int n = 0, size = list.size(); n < size; n++) {
+			index(list.get(n), n);
+		}
+	}
+
+	/**
+	 * Creates a new hash table of the given capacity for the entries
+	 */
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		Connection[] oldValues = this.values;
+		int[] oldPositions = this.positions;
+		this.keys = new int[capacity];
+		this.values = new Connection[capacity];
+		this.positions = new int[capacity];
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] == null) {
+				continue;
+			}
+			int j = slot(oldKeys[i], mask);
+			while (values[j] != null) {
+				j = (j+1) & mask;
+			}
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+			positions[j] = oldPositions[i];
+		}
+	}
+
+	private int peerAddress(Connection con) {
+		return con.getOtherInterface(this.owner).getAddress();
+	}
+
+	private static int slot(int key, int mask) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
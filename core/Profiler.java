@@ -0,0 +1,354 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profiler that measures where the wall clock time of a simulation run
+ * goes. The time is divided into phases (e.g., movement, connectivity,
+ * router updates per router class, and report callbacks per report
+ * class) and for every phase the number of calls and the cumulative time
+ * spent in it are recorded. Time of nested phases is not included in the
+ * enclosing phase, so the times of all phases sum up to the total time.
+ * <P>Profiling is off unless {@link #enable()} is called (e.g., by
+ * {@link report.PhaseProfileReport}). The profiler must be used only from
+ * the thread that runs the simulation; work done concurrently by the
+ * update threads is accounted to the phase that started it.</P>
+ */
+public class Profiler {
+	/** name of the phase for the time outside all other phases */
+	public static final String OTHER = "other";
+	/** name of the movement phase */
+	public static final String MOVEMENT = "movement";
+	/** name of the phase where interfaces' range checks are prepared */
+	public static final String CONNECTIVITY_PREPARE = "connectivity prepare";
+	/** name of the network interface update phase */
+	public static final String CONNECTIVITY = "connectivity";
+	/** category of router update phases */
+	public static final String ROUTER = "router";
+	/** category of external event processing phases */
+	public static final String EVENT = "event";
+	/** category of report (listener) callback phases */
+	public static final String REPORT = "report";
+
+	/** maximum depth of nested phases */
+	private static final int MAX_DEPTH = 64;
+
+	private static Profiler instance;
+
+	static {
+		DTNSim.registerForReset(Profiler.class.getCanonicalName());
+		reset();
+	}
+
+	/** all phases by name */
+	private Map<String, Phase> phases;
+	/** class specific phases by category and class */
+	private Map<String, Map<Class<?>, Phase>> classPhases;
+	/** currently running phase and the phases it interrupted */
+	private Phase[] stack;
+	private int depth;
+	/** time when the time of the current phase was last accounted for */
+	private long lastTime;
+	private long startTime;
+
+	private Profiler() {
+		this.phases = new HashMap<String, Phase>();
+		this.classPhases = new HashMap<String, Map<Class<?>, Phase>>();
+		this.stack = new Phase[MAX_DEPTH];
+		this.depth = 0;
+		this.stack[0] = getPhase(OTHER);
+		this.startTime = System.nanoTime();
+		this.lastTime = this.startTime;
+	}
+
+	/**
+	 * Turns profiling off
+	 */
+	public static void reset() {
+		instance = null;
+	}
+
+	/**
+	 * Turns profiling on (unless it is already on)
+	 * @return The profiler
+	 */
+	public static Profiler enable() {
+		if (instance == null) {
+			instance = new Profiler();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the profiler, or null if profiling is off. Callers should
+	 * check the return value before profiling so that there is no overhead
+	 * when profiling is off.
+	 * @return The profiler or null
+	 */
+	public static Profiler getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Starts a phase. The current phase is paused until the started phase
+	 * ends.
+	 * @param name Name of the phase
+	 */
+	public void enter(String name) {
+		enter(getPhase(name));
+	}
+
+	/**
+	 * Starts a phase that is specific to a class, e.g., the update of
+	 * routers of a certain class
+	 * @param category Category of the phase (e.g., {@link #ROUTER})
+	 * @param c The class
+	 */
+	public void enter(String category, Class<?> c) {
+		Map<Class<?>, Phase> byClass = this.classPhases.get(category);
+		if (byClass == null) {
+			byClass = new HashMap<Class<?>, Phase>();
+			this.classPhases.put(category, byClass);
+		}
+		Phase p = byClass.get(c);
+		if (p == null) {
+			String name = c.getSimpleName();
+			if (name.length() == 0) { /* anonymous class */
+				name = c.getName();
+			}
+			p = getPhase(category + ": " + name);
+			byClass.put(c, p);
+		}
+		enter(p);
+	}
+
+	/**
+	 * Ends the current phase and continues the phase that was interrupted
+	 * by it.
+	 * @throws SimError if there's no phase to end
+	 */
+	public void exit() {
+		if (this.depth == 0) {
+			throw new SimError("Profiler exit without a matching enter");
+		}
+		account();
+		this.depth--;
+	}
+
+	/**
+	 * Returns the phases in the order of decreasing time
+	 * @return The phases
+	 */
+	public List<Phase> getPhases() {
+		account();
+		List<Phase> list = new ArrayList<Phase>(this.phases.values());
+		Collections.sort(list, new Comparator<Phase>() {
+			public int compare(Phase p1, Phase p2) {
+				if (p1.nanos == p2.nanos) {
+					return p1.name.compareTo(p2.name);
+				}
+				return p1.nanos > p2.nanos ? -1 : 1;
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * Returns the time since profiling was enabled
+	 * @return The total time in nanoseconds
+	 */
+	public long getTotalNanos() {
+		account();
+		return this.lastTime - this.startTime;
+	}
+
+	/**
+	 * Returns a listener that forwards all the calls to the given listener
+	 * and profiles them as a phase of the listener's class
+	 * @param listener The listener (e.g., a report)
+	 * @return The profiling listener
+	 */
+	public Object wrap(Object listener) {
+		return new ProfiledListener(listener);
+	}
+
+	/**
+	 * Returns the listener that a profiling listener forwards its calls to
+	 * @param listener A listener that may be a profiling listener
+	 * @return The wrapped listener, or the listener itself if it is not a
+	 * profiling listener
+	 * @see #wrap(Object)
+	 */
+	public static Object unwrap(Object listener) {
+		if (listener instanceof ProfiledListener) {
+			return ((ProfiledListener)listener).listener;
+		}
+		return listener;
+	}
+
+	private Phase getPhase(String name) {
+		Phase p = this.phases.get(name);
+		if (p == null) {
+			p = new Phase(name);
+			this.phases.put(name, p);
+		}
+		return p;
+	}
+
+	private void enter(Phase p) {
+		if (this.depth + 1 == MAX_DEPTH) {
+			throw new SimError("Too deeply nested profiler phases");
+		}
+		account();
+		this.stack[++this.depth] = p;
+		p.calls++;
+	}
+
+	/**
+	 * Adds the time since the last call to the current phase
+	 */
+	private void account() {
+		long now = System.nanoTime();
+		this.stack[this.depth].nanos += now - this.lastTime;
+		this.lastTime = now;
+	}
+
+	/**
+	 * Cumulative time and number of calls of a phase
+	 */
+	public static class Phase {
+		private String name;
+		private long nanos;
+		private long calls;
+
+		private Phase(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Returns the name of the phase
+		 * @return the name of the phase
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Returns the time spent in the phase (excluding nested phases)
+		 * @return The time in nanoseconds
+		 */
+		public long getNanos() {
+			return this.nanos;
+		}
+
+		/**
+		 * Returns how many times the phase was entered
+		 * @return The number of calls
+		 */
+		public long getCalls() {
+			return this.calls;
+		}
+	}
+
+	/**
+	 * Listener that profiles the calls to another listener
+	 */
+	private class ProfiledListener implements MessageListener,
+			ConnectionListener, MovementListener, UpdateListener,
+			ApplicationListener {
+		private Object listener;
+		private Class<?> listenerClass;
+
+		private ProfiledListener(Object listener) {
+			this.listener = listener;
+			this.listenerClass = listener.getClass();
+		}
+
+		private void enter() {
+			Profiler.this.enter(REPORT, listenerClass);
+		}
+
+		public void newMessage(Message m) {
+			enter();
+			((MessageListener)listener).newMessage(m);
+			exit();
+		}
+
+		public void messageTransferStarted(Message m, DTNHost from,
+				DTNHost to) {
+			enter();
+			((MessageListener)listener).messageTransferStarted(m, from, to);
+			exit();
+		}
+
+		public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+			enter();
+			((MessageListener)listener).messageDeleted(m, where, dropped);
+			exit();
+		}
+
+		public void messageTransferAborted(Message m, DTNHost from,
+				DTNHost to) {
+			enter();
+			((MessageListener)listener).messageTransferAborted(m, from, to);
+			exit();
+		}
+
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			enter();
+			((MessageListener)listener).messageTransferred(m, from, to,
+					firstDelivery);
+			exit();
+		}
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			enter();
+			((ConnectionListener)listener).hostsConnected(host1, host2);
+			exit();
+		}
+
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			enter();
+			((ConnectionListener)listener).hostsDisconnected(host1, host2);
+			exit();
+		}
+
+		public void newDestination(DTNHost host, Coord destination,
+				double speed) {
+			enter();
+			((MovementListener)listener).newDestination(host, destination,
+					speed);
+			exit();
+		}
+
+		public void initialLocation(DTNHost host, Coord location) {
+			enter();
+			((MovementListener)listener).initialLocation(host, location);
+			exit();
+		}
+
+		public void updated(List<DTNHost> hosts) {
+			enter();
+			((UpdateListener)listener).updated(hosts);
+			exit();
+		}
+
+		public void gotEvent(String event, Object params, Application app,
+				DTNHost host) {
+			enter();
+			((ApplicationListener)listener).gotEvent(event, params, app,
+					host);
+			exit();
+		}
+	}
+}
@@ -16,7 +16,9 @@ import java.util.HashSet;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.Stack;
+import java.util.TreeSet;
 
 /**
  * Interface for simulation settings stored in setting file(s). Settings class
@@ -270,6 +272,19 @@ public class Settings {
         }
     }
 
+    /**
+     * Returns the full names of all the settings, including the default
+     * settings, in alphabetical order
+     *
+     * @return The names of the settings
+     */
+    public static SortedSet<String> getSettingNames() {
+        if (props == null) {
+            init(null);
+        }
+        return new TreeSet<String>(props.stringPropertyNames());
+    }
+
     /**
      * Writes the given setting string to the settings output (if any)
      *
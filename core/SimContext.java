@@ -0,0 +1,131 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import ui.DTNSimTextUI;
+
+/**
+ * Context of a single batch mode simulation run. Every context loads the
+ * simulator's classes using a class loader of its own, so all the static
+ * state of the classes (e.g., {@link SimClock}, {@link Settings},
+ * {@link SimScenario} and the address and ID counters) is private to the
+ * context. Thus runs of different contexts can be executed concurrently in
+ * separate threads without resetting the classes between the runs.
+ */
+public class SimContext implements Runnable {
+	/** Name of the method that is called inside the context */
+	private static final String RUN_METHOD_NAME = "runInContext";
+
+	private String[] confFiles;
+	private int firstConfIndex;
+	private int runIndex;
+
+	/**
+	 * Creates a new context for a run
+	 * @param confFiles Command line arguments containing the names of the
+	 * settings files
+	 * @param firstConfIndex Index of the first settings file's name
+	 * @param runIndex The run index to use for the run
+	 */
+	public SimContext(String[] confFiles, int firstConfIndex, int runIndex) {
+		this.confFiles = confFiles;
+		this.firstConfIndex = firstConfIndex;
+		this.runIndex = runIndex;
+	}
+
+	/**
+	 * Returns the run index of this context
+	 * @return the run index of this context
+	 */
+	public int getRunIndex() {
+		return this.runIndex;
+	}
+
+	/**
+	 * Runs the simulation in this context using the text UI. Returns when
+	 * the simulation is done.
+	 * @throws SimError if the classes can't be loaded for the context or
+	 * the simulation fails
+	 */
+	public void run() {
+		URLClassLoader loader = createClassLoader();
+		Thread thread = Thread.currentThread();
+		ClassLoader oldLoader = thread.getContextClassLoader();
+
+		thread.setContextClassLoader(loader);
+		try {
+			Class<?> c = loader.loadClass(SimContext.class.getName());
+			Method m = c.getDeclaredMethod(RUN_METHOD_NAME, String[].class,
+					int.class, int.class);
+			m.setAccessible(true);
+			m.invoke(null, confFiles, firstConfIndex, runIndex);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new SimError("Run " + (runIndex + 1) + " failed", e);
+		} catch (Exception e) {
+			throw new SimError("Can't start run " + (runIndex + 1), e);
+		} finally {
+			thread.setContextClassLoader(oldLoader);
+			try {
+				loader.close();
+			} catch (IOException e) {
+				/* nothing to do; the classes are not needed anymore */
+			}
+		}
+	}
+
+	/**
+	 * Runs the simulation. Called using the context's own class loader so
+	 * all the classes used here are private to the context.
+	 * @param confFiles Command line arguments containing the names of the
+	 * settings files
+	 * @param firstConfIndex Index of the first settings file's name
+	 * @param runIndex The run index to use for the run
+	 */
+	@SuppressWarnings("unused") /* called by reflection */
+	private static void runInContext(String[] confFiles, int firstConfIndex,
+			int runIndex) {
+		DTNSim.initSettings(confFiles, firstConfIndex);
+		Settings.setRunIndex(runIndex);
+		new DTNSimTextUI().start();
+	}
+
+	/**
+	 * Creates a class loader that loads the application's classes from the
+	 * class path without delegating them to the application class loader.
+	 * @return The new class loader
+	 */
+	private static URLClassLoader createClassLoader() {
+		String[] paths = System.getProperty("java.class.path").split(
+				File.pathSeparator);
+		URL[] urls = new URL[paths.length];
+
+		for (int i=0; i<paths.length; i++) {
+			try {
+				urls[i] = new File(paths[i]).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new SimError("Invalid class path entry " + paths[i], e);
+			}
+		}
+
+		/* the parent only knows the platform classes */
+		return new URLClassLoader(urls,
+				ClassLoader.getSystemClassLoader().getParent());
+	}
+}
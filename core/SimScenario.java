@@ -7,8 +7,10 @@ package core;
 import input.EventQueue;
 import input.EventQueueHandler;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import movement.MapBasedMovement;
@@ -39,6 +41,17 @@ public class SimScenario implements Serializable {
 	public static final String UP_INT_S = "updateInterval";
 	/** simulate connections -setting id ({@value})*/
 	public static final String SIM_CON_S = "simulateConnections";
+	/** checkpoint time -setting id ({@value}). Defines the simulation time
+	 * after which a checkpoint of the simulation is written to the
+	 * checkpoint file (see {@link Checkpoint}). */
+	public static final String CHECKPOINT_TIME_S = "checkpointTime";
+	/** checkpoint file -setting id ({@value}). Name of the file where the
+	 * checkpoint is written to. Required if checkpoint time is set. */
+	public static final String CHECKPOINT_FILE_S = "checkpointFile";
+	/** restore file -setting id ({@value}). If set, the simulation
+	 * continues from the checkpoint in the given file instead of creating
+	 * new hosts. */
+	public static final String RESTORE_FILE_S = "restoreFile";
 
 	/** namespace for interface type settings ({@value}) */
 	public static final String INTTYPE_NS = "Interface";
@@ -108,6 +121,10 @@ public class SimScenario implements Serializable {
 	private boolean simulateConnections;
 	/** Map used for host movement (if any) */
 	private SimMap simMap;
+	/** Was the world restored from a checkpoint */
+	private boolean restored;
+	/** Listeners restored from a checkpoint and not taken into use yet */
+	private List<Object> restoredListeners;
 
 	/** Global connection event listeners */
 	private List<ConnectionListener> connectionListeners;
@@ -161,11 +178,66 @@ public class SimScenario implements Serializable {
 		this.worldSizeX = worldSize[0];
 		this.worldSizeY = worldSize[1];
 		
-		createHosts();
-		
-		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval, 
-				updateListeners, simulateConnections, 
-				eqHandler.getEventQueues());
+		s.setNameSpace(SCENARIO_NS);
+		if (s.contains(RESTORE_FILE_S)) {
+			restoreWorld(new File(s.getSetting(RESTORE_FILE_S)));
+		}
+		else {
+			createHosts();
+			this.world = new World(hosts, worldSizeX, worldSizeY, 
+					updateInterval, updateListeners, simulateConnections, 
+					eqHandler.getEventQueues());
+		}
+
+		if (s.contains(CHECKPOINT_TIME_S)) {
+			double checkpointTime = s.getDouble(CHECKPOINT_TIME_S);
+			File checkpointFile = new File(s.getSetting(CHECKPOINT_FILE_S));
+			ensurePositiveValue(checkpointTime, CHECKPOINT_TIME_S);
+			this.updateListeners.add(new Checkpoint.Writer(checkpointTime, 
+					checkpointFile));
+		}
+	}
+	
+	/**
+	 * Restores the world and hosts from a checkpoint file and attaches the
+	 * scenario's listeners to them. Routers re-read their settings from
+	 * the group settings of the hosts (see 
+	 * {@link MessageRouter#restoreSettings(Settings)}).
+	 * @param file The checkpoint file
+	 * @throws SettingsError if the host groups don't match the checkpoint
+	 */
+	private void restoreWorld(File file) {
+		Checkpoint cp = Checkpoint.read(file);
+		this.world = cp.restore(messageListeners, movementListeners, 
+				connectionListeners, appListeners, updateListeners);
+		this.hosts = world.getHosts();
+		this.restored = true;
+		this.restoredListeners = new ArrayList<Object>(cp.getListeners());
+
+		int hostIndex = 0;
+		for (int i=1; i<=nrofGroups; i++) {
+			Settings s = new Settings(GROUP_NS+i);
+			s.setSecondaryNamespace(GROUP_NS);
+			int nrofHosts = s.getInt(NROF_HOSTS_S);
+			if (hostIndex + nrofHosts > hosts.size()) {
+				break;
+			}
+			for (int j=0; j<nrofHosts; j++) {
+				hosts.get(hostIndex++).getRouter().restoreSettings(s);
+			}
+		}
+		if (hostIndex != hosts.size()) {
+			throw new SettingsError("Host groups don't match the " + 
+					hosts.size() + " hosts of checkpoint " + file);
+		}
+
+		for (DTNHost host : hosts) {
+			MovementModel mm = host.getMovement();
+			if (mm instanceof MapBasedMovement) {
+				this.simMap = ((MapBasedMovement)mm).getMap();
+				break;
+			}
+		}
 	}
 	
 	/**
@@ -416,6 +488,55 @@ public class SimScenario implements Serializable {
 		return this.hosts;
 	}
 	
+	/**
+	 * Returns true if the world of this scenario was restored from a
+	 * checkpoint
+	 * @return true if the world was restored from a checkpoint
+	 */
+	public boolean isRestored() {
+		return this.restored;
+	}
+
+	/**
+	 * Returns a listener of the given class that was restored from a
+	 * checkpoint and removes it from the restored listeners. The caller
+	 * should add the listener to this scenario like a new listener.
+	 * @param className Fully qualified name of the listener's class
+	 * @return The restored listener or null if there is no such listener
+	 * (or the world was not restored)
+	 */
+	public Object getRestoredListener(String className) {
+		if (this.restoredListeners == null) {
+			return null;
+		}
+		for (Iterator<Object> i = restoredListeners.iterator(); i.hasNext();) {
+			Object l = i.next();
+			if (l.getClass().getName().equals(className)) {
+				i.remove();
+				return l;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns all the listeners added to this scenario
+	 * @return all the listeners (a listener may be in the list many times)
+	 */
+	List<Object> getListeners() {
+		List<Object> all = new ArrayList<Object>();
+		all.addAll(this.messageListeners);
+		all.addAll(this.movementListeners);
+		all.addAll(this.connectionListeners);
+		all.addAll(this.appListeners);
+		all.addAll(this.updateListeners);
+		/* the listeners themselves instead of their profilers */
+		for (int i=0, n=all.size(); i<n; i++) {
+			all.set(i, Profiler.unwrap(all.get(i)));
+		}
+		return all;
+	}
+
 	/**
 	 * Returns the World object of this scenario
 	 * @return the World object
@@ -8,9 +8,12 @@ import routing.MessageRouter;
 
 /**
  * A connection between two DTN nodes.  The transmission speed
- * is updated every round from the end point transmission speeds
+ * is updated every round from the end point transmission speeds. The end
+ * point interfaces are told when a transfer starts or ends (see
+ * {@link NetworkInterface#transferChanged(Connection)}).
  */
 public class VBRConnection extends Connection {
+	private static final long serialVersionUID = -6991422402336267731L;
 	private int msgsize;
 	private int msgsent;
 	private int currentspeed = 0;
@@ -54,6 +57,8 @@ public class VBRConnection extends Connection {
 			this.msgOnFly = newMessage;
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
+			this.fromInterface.transferChanged(this);
+			this.toInterface.transferChanged(this);
 		}
 
 		return retVal;
@@ -75,6 +80,20 @@ public class VBRConnection extends Connection {
 		msgsent = msgsent + currentspeed;
 	}
 	
+	/**
+	 * Clears the message that is currently being transferred and tells
+	 * the interfaces in both ends that the transfer ended.
+	 */
+	@Override
+	protected void clearMsgOnFly() {
+		boolean wasTransferring = (this.msgOnFly != null);
+		super.clearMsgOnFly();
+		if (wasTransferring) {
+			this.fromInterface.transferChanged(this);
+			this.toInterface.transferChanged(this);
+		}
+	}
+
 	/**
 	 * returns the current speed of the connection
 	 */
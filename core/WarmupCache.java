@@ -0,0 +1,357 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import movement.MovementModel;
+import routing.ActiveRouter;
+import routing.MessageRouter;
+
+/**
+ * Disk cache for the movement state of the hosts after the movement model
+ * warmup (see {@link World#warmupMovementModel(double)}). The state is
+ * stored in a file named by a digest of the settings that can affect the
+ * movement and of the contents of the files those settings refer to (e.g.,
+ * map files). Runs whose movement settings are identical (e.g., runs of a
+ * batch that differ only in their router settings) load the state from the
+ * cache instead of simulating the warmup again.
+ * <P>The settings of reports, event generators, routers, interfaces and
+ * applications, and the scenario's name and end time are not part of the
+ * digest. The cache is used only if no host has movement listeners and all
+ * the movement models can be moved concurrently (i.e., they don't share
+ * state with other models). Cache files can be read only by the same version
+ * of the simulator; files that can't be read are replaced.</P>
+ */
+public class WarmupCache {
+	/** warmup cache directory -setting id ({@value}) in the
+	 * {@link MovementModel#MOVEMENT_MODEL_NS} namespace. If set, the state
+	 * of the hosts after movement model warmup is cached in the directory. */
+	public static final String WARMUP_CACHE_S = "warmupCache";
+	/** suffix of the cache files */
+	public static final String CACHE_FILE_SUFFIX = ".warmup";
+
+	/** namespaces whose settings don't affect movement */
+	private static final Set<String> IGNORED_NS = new HashSet<String>(
+			Arrays.asList("Report", "Events", "Settings", "GUI"));
+	/** scenario settings that do affect movement */
+	private static final Set<String> SCENARIO_SETTINGS = new HashSet<String>(
+			Arrays.asList(SimScenario.NROF_GROUPS_S, SimScenario.UP_INT_S));
+	/** host group settings that don't affect movement */
+	private static final Set<String> IGNORED_GROUP_SETTINGS =
+		new HashSet<String>(Arrays.asList(SimScenario.ROUTER_S,
+			SimScenario.NROF_INTERF_S, SimScenario.APPCOUNT_S,
+			MessageRouter.B_SIZE_S, MessageRouter.MSG_TTL_S,
+			MessageRouter.SEND_QUEUE_MODE_S, ActiveRouter.DELETE_DELIVERED_S));
+
+	private File file;
+
+	/**
+	 * Creates a cache for the warmup state of the current settings
+	 * @param dir The cache directory
+	 * @param warmupTime The warmup time
+	 */
+	private WarmupCache(File dir, double warmupTime) {
+		this.file = new File(dir, digest(warmupTime) + CACHE_FILE_SUFFIX);
+	}
+
+	/**
+	 * Returns the warmup cache for the hosts, or null if caching is not
+	 * enabled or the hosts' movement state can't be cached
+	 * @param hosts The hosts
+	 * @param warmupTime The warmup time
+	 * @return The cache or null
+	 */
+	public static WarmupCache getCache(List<DTNHost> hosts,
+			double warmupTime) {
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		if (!s.contains(WARMUP_CACHE_S)) {
+			return null;
+		}
+		for (DTNHost host : hosts) {
+			if (!host.canCacheMovement()) {
+				return null;
+			}
+		}
+
+		File dir = new File(s.getSetting(WARMUP_CACHE_S));
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new SettingsError("Can't create warmup cache directory " +
+					dir);
+		}
+		return new WarmupCache(dir, warmupTime);
+	}
+
+	/**
+	 * Returns the file of this cache
+	 * @return the file of this cache
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Loads the movement state of the hosts from the cache
+	 * @param hosts The hosts whose state is loaded
+	 * @return true if the state was loaded, false if there was no (valid)
+	 * cached state and the hosts were not modified
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean load(List<DTNHost> hosts) {
+		if (!file.isFile()) {
+			return false;
+		}
+
+		List<DTNHost.MovementState> states;
+		Random rng;
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			states = (List<DTNHost.MovementState>)in.readObject();
+			rng = (Random)in.readObject();
+		} catch (Exception e) {
+			/* e.g., written by another version of the simulator */
+			System.err.println("Warning: ignoring warmup cache " + file +
+					": " + e);
+			return false;
+		} finally {
+			close(in);
+		}
+
+		if (states.size() != hosts.size()) {
+			return false;
+		}
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			hosts.get(i).setMovementState(states.get(i));
+		}
+		MovementModel.setRng(rng);
+		return true;
+	}
+
+	/**
+	 * Stores the movement state of the hosts to the cache
+	 * @param hosts The hosts whose state is stored
+	 * @throws SimError if storing fails
+	 */
+	public void store(List<DTNHost> hosts) {
+		/* concurrent runs (also of other processes) may store the same
+		 * state: every run writes a file of its own and moves it in place
+		 * atomically */
+		boolean existed = file.isFile();
+		File tmp = null;
+		ObjectOutputStream out = null;
+		try {
+			tmp = File.createTempFile(file.getName() + ".", ".tmp",
+					file.getAbsoluteFile().getParentFile());
+			out = new StateOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tmp)));
+			List<DTNHost.MovementState> states =
+				new ArrayList<DTNHost.MovementState>();
+			for (DTNHost host : hosts) {
+				states.add(host.getMovementState());
+			}
+			out.writeObject(states);
+			out.writeObject(MovementModel.getRng());
+			out.close();
+			out = null;
+			try {
+				Files.move(tmp.toPath(), file.toPath(),
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			if (out == null && !existed && file.isFile()) {
+				return; /* another run stored the same state meanwhile */
+			}
+			throw new SimError("Can't store warmup cache " + file + ": " + e,
+					e);
+		} finally {
+			close(out);
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Computes the digest of the settings that can affect movement
+	 * @param warmupTime The warmup time
+	 * @return The digest as a hex string
+	 */
+	private static String digest(double warmupTime) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+
+		Settings s = new Settings();
+		Set<String> ignoredNs = new HashSet<String>(IGNORED_NS);
+		for (String name : Settings.getSettingNames()) {
+			String ns = namespace(name);
+			if (isGroupNs(ns) && s.contains(name)) {
+				String setting = name.substring(ns.length() + 1);
+				if (setting.startsWith(SimScenario.INTERFACENAME_S) ||
+						setting.equals(SimScenario.ROUTER_S) ||
+						setting.startsWith(SimScenario.GAPPNAME_S)) {
+					/* interface, router and application settings */
+					ignoredNs.add(s.getSetting(name));
+				}
+			}
+		}
+
+		update(md, "warmup=" + warmupTime);
+		for (String name : Settings.getSettingNames()) {
+			if (!affectsMovement(name, ignoredNs) || !s.contains(name)) {
+				continue;
+			}
+			String value = s.getSetting(name);
+			update(md, name + "=" + value);
+
+			File f = new File(value);
+			if (f.isFile()) { /* e.g., a map file */
+				updateWithFile(md, f);
+			}
+		}
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : md.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Returns true if the setting may affect the movement of the hosts
+	 * @param name Full name of the setting
+	 * @param ignoredNs Namespaces whose settings don't affect movement
+	 * @return true if the setting may affect movement
+	 */
+	private static boolean affectsMovement(String name, Set<String> ignoredNs) {
+		String ns = namespace(name);
+		String setting = name.substring(Math.min(ns.length() + 1,
+				name.length()));
+
+		if (ignoredNs.contains(ns) || ignoredNs.contains(ns.replaceAll(
+				"\\d+$", ""))) {
+			return false;
+		}
+		if (ns.equals(SimScenario.SCENARIO_NS)) {
+			return SCENARIO_SETTINGS.contains(setting);
+		}
+		if (ns.equals(MovementModel.MOVEMENT_MODEL_NS)) {
+			return !setting.equals(WARMUP_CACHE_S);
+		}
+		if (isGroupNs(ns)) {
+			return !IGNORED_GROUP_SETTINGS.contains(setting) &&
+				!setting.startsWith(SimScenario.INTERFACENAME_S) &&
+				!setting.startsWith(SimScenario.GAPPNAME_S);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the namespace part of a setting's full name
+	 * @param name The full name
+	 * @return The namespace (or the whole name if there's no namespace)
+	 */
+	private static String namespace(String name) {
+		int i = name.indexOf('.');
+		return i < 0 ? name : name.substring(0, i);
+	}
+
+	/**
+	 * Returns true if the namespace is a host group namespace
+	 * @param ns The namespace
+	 * @return true for "Group" and "GroupN" namespaces
+	 */
+	private static boolean isGroupNs(String ns) {
+		return ns.matches(SimScenario.GROUP_NS + "\\d*");
+	}
+
+	private static void update(MessageDigest md, String text) {
+		try {
+			md.update(text.getBytes("UTF-8"));
+			md.update((byte)0);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	private static void updateWithFile(MessageDigest md, File f) {
+		InputStream in = null;
+		try {
+			in = new FileInputStream(f);
+			byte[] buffer = new byte[64 * 1024];
+			for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+				md.update(buffer, 0, n);
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read " + f + ": " + e, e);
+		} finally {
+			close(in);
+		}
+	}
+
+	private static void close(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				/* nothing more to do */
+			}
+		}
+	}
+
+	/**
+	 * Object stream that leaves out the communication buses the movement
+	 * models refer to (the hosts give their own buses to the loaded models)
+	 * and refuses to write hosts and interfaces.
+	 */
+	private static class StateOutputStream extends ObjectOutputStream {
+		public StateOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof ModuleCommunicationBus) {
+				return null;
+			}
+			if (obj instanceof DTNHost || obj instanceof NetworkInterface) {
+				throw new NotSerializableException(obj.getClass().getName() +
+						" referred from movement state");
+			}
+			return obj;
+		}
+	}
+}
@@ -5,20 +5,31 @@
 package core;
 
 import input.EventQueue;
+import input.EventQueueHeap;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
+import input.TimerEvent;
+import input.TimerListener;
 import interfaces.ConnectivityGrid;
+import interfaces.ContactSweeper;
+import interfaces.KineticContactPredictor;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * World contains all the nodes and is responsible for updating their
  * location and connections.
  */
-public class World {
+public class World implements Serializable {
+	private static final long serialVersionUID = -2403456070715597962L;
 	/** namespace of optimization settings ({@value})*/
 	public static final String SETTINGS_NS = "Optimization";
 	/**
@@ -37,17 +48,98 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should idle update intervals be skipped -setting id ({@value}). 
+	 * Boolean (true/false) variable. If true, the world jumps directly to 
+	 * the update interval of the next event, scheduled update, or router 
+	 * wake-up (see {@link DTNHost#getNextWakeupTime()}) instead of updating
+	 * all hosts on every interval. Can only be used with scenarios where
+	 * connections are not simulated (i.e., they come from external events).
+	 * Results are the same as without skipping only if the update order is
+	 * not randomized (see {@link #RANDOMIZE_UPDATES_S}) since the random 
+	 * order depends on the number of updates done.
+	 * Default is {@link #DEF_EVENT_DRIVEN}.
+	 */
+	public static final String EVENT_DRIVEN_S = "eventDriven";
+	/**
+	 * Should only the hosts that an external event touched be updated after
+	 * the event -setting id ({@value}). Boolean (true/false) variable. If 
+	 * false, all hosts are updated after every event. All hosts are still 
+	 * updated at the end of every update interval and after events that don't
+	 * tell which hosts they touched (see {@link #markDirty(DTNHost)}).
+	 * Default is {@link #DEF_DIRTY_UPDATES}.
+	 */
+	public static final String DIRTY_UPDATES_S = "updateOnlyDirtyHosts";
+	/**
+	 * Should constant bit-rate transfers be finalized by an event scheduled
+	 * at the exact transfer completion time -setting id ({@value}). Boolean
+	 * (true/false) variable. If false, routers check on every update whether
+	 * their transfers are ready so transfers are finalized only at the update
+	 * interval boundaries. Default is {@link #DEF_SCHEDULED_TRANSFERS}.
+	 * @see routing.ActiveRouter
+	 */
+	public static final String SCHEDULED_TRANSFERS_S = "scheduledTransfers";
+	/**
+	 * Should routers do their periodic work (e.g., TTL checks) when a timer
+	 * they scheduled expires -setting id ({@value}). Boolean (true/false) 
+	 * variable. If false, routers check on every update whether it's time 
+	 * to do the work. Default is {@link #DEF_ROUTER_TIMERS}.
+	 * @see #scheduleTimer(double, TimerListener)
+	 */
+	public static final String ROUTER_TIMERS_S = "routerTimers";
+	/**
+	 * Number of threads used for updating hosts -setting id ({@value}). 
+	 * Integer valued. If more than one, the range checks of the network 
+	 * interfaces are done concurrently for all hosts before the hosts are 
+	 * updated one at a time in the usual order. This has effect only if 
+	 * connections are simulated and no active times are defined for the 
+	 * hosts. Also the hosts that can be moved concurrently are moved using
+	 * the same threads (see {@link DTNHost#canMoveConcurrently()}). 
+	 * Results are the same as with one thread. 
+	 * Default is {@link #DEF_UPDATE_THREADS}.
+	 * @see NetworkInterface#prepareUpdate()
+	 * @see movement.MovementModel#HOST_RNG_S
+	 */
+	public static final String UPDATE_THREADS_S = "updateThreads";
+	/**
+	 * Should the locations of the hosts be kept also in primitive arrays
+	 * -setting id ({@value}). Boolean (true/false) variable. If true, the
+	 * hosts write their locations to arrays (see {@link HostPositions})
+	 * where the range checks of the network interfaces and the connectivity
+	 * grid read them from. Results are the same as without the arrays.
+	 * Default is {@link #DEF_POSITION_ARRAYS}.
+	 */
+	public static final String POSITION_ARRAYS_S = "positionArrays";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should idle update intervals be skipped -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_EVENT_DRIVEN = false;
+	/** should only touched hosts be updated after events -setting's default
+	 * value ({@value}) */
+	public static final boolean DEF_DIRTY_UPDATES = false;
+	/** should transfers be finalized by scheduled events -setting's default
+	 * value ({@value}) */
+	public static final boolean DEF_SCHEDULED_TRANSFERS = false;
+	/** should routers use timers for periodic work -setting's default 
+	 * value ({@value}) */
+	public static final boolean DEF_ROUTER_TIMERS = false;
+	/** number of threads for updating hosts -setting's default value 
+	 * ({@value}) */
+	public static final int DEF_UPDATE_THREADS = 1;
+	/** should the host locations be kept in arrays -setting's default 
+	 * value ({@value}) */
+	public static final boolean DEF_POSITION_ARRAYS = false;
 
 	private int sizeX;
 	private int sizeY;
-	private List<EventQueue> eventQueues;
+	/** all the event queues (except scheduled updates) merged into one */
+	private EventQueueHeap eventQueues;
 	private double updateInterval;
-	private SimClock simClock;
+	private transient SimClock simClock;
 	private double nextQueueEventTime;
 	private EventQueue nextEventQueue;
 	/** list of nodes; nodes are indexed by their network address */
@@ -56,11 +148,40 @@ public class World {
 	/** nodes in the order they should be updated (if the order should be 
 	 * randomized; null value means that the order should not be randomized) */
 	private ArrayList<DTNHost> updateOrder;
+	/** random generator for shuffling the update order; re-seeded before
+	 * every shuffle */
+	private Random updateOrderRng;
 	/** is cancellation of simulation requested from UI */
 	private boolean isCancelled;
-	private List<UpdateListener> updateListeners;
+	private transient List<UpdateListener> updateListeners;
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
+	/** are idle update intervals skipped */
+	private boolean eventDriven;
+	/** simulation end time; idle intervals are never skipped past this */
+	private double endTime;
+	/** are only the touched hosts updated after events */
+	private boolean dirtyUpdates;
+	/** hosts touched by the current event in the order they were marked */
+	private List<DTNHost> dirtyHosts;
+	/** is the host (indexed by address) in the dirty hosts list */
+	private boolean[] isDirty;
+	/** thread pool for preparing updates and moving hosts (or null) */
+	private transient ForkJoinPool updatePool;
+	/** number of threads in the update thread pool */
+	private int updateThreads;
+	/** are the host updates prepared concurrently */
+	private boolean prepareUpdates;
+	/** hosts that are moved concurrently (null if hosts aren't) */
+	private List<DTNHost> concurrentMovers;
+	/** hosts that are moved one at a time after the concurrent ones */
+	private List<DTNHost> sequentialMovers;
+	/** predictors of the interfaces that use kinetic contacts */
+	private List<KineticContactPredictor> contactPredictors;
+	/** sweepers of the interfaces that use grid sweeps */
+	private List<ContactSweeper> contactSweepers;
+	/** the locations of the hosts in arrays (or null if not used) */
+	private HostPositions positions;
 
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
@@ -77,7 +198,7 @@ public class World {
 		this.updateInterval = updateInterval;
 		this.updateListeners = updateListeners;
 		this.simulateConnections = simulateConnections;
-		this.eventQueues = eventQueues;
+		this.eventQueues = new EventQueueHeap(eventQueues);
 		
 		this.simClock = SimClock.getInstance();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
@@ -85,6 +206,8 @@ public class World {
 
 		setNextEventQueue();
 		initSettings();
+		this.contactPredictors = KineticContactPredictor.getPredictors(hosts);
+		this.contactSweepers = ContactSweeper.getSweepers(hosts);
 	}
 
 	/**
@@ -100,11 +223,61 @@ public class World {
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
+			this.updateOrderRng = new Random();
 		}
 		else { // null pointer means "don't randomize"
 			this.updateOrder = null;
 		}
 
+		if (s.contains(EVENT_DRIVEN_S)) {
+			this.eventDriven = s.getBoolean(EVENT_DRIVEN_S);
+		}
+		else {
+			this.eventDriven = DEF_EVENT_DRIVEN;
+		}
+		if (this.eventDriven && this.simulateConnections) {
+			throw new SettingsError(SETTINGS_NS + "." + EVENT_DRIVEN_S + 
+					" can't be used when " + SimScenario.SCENARIO_NS + "." + 
+					SimScenario.SIM_CON_S + " is true");
+		}
+		
+		if (s.contains(DIRTY_UPDATES_S)) {
+			this.dirtyUpdates = s.getBoolean(DIRTY_UPDATES_S);
+		}
+		else {
+			this.dirtyUpdates = DEF_DIRTY_UPDATES;
+		}
+		this.dirtyHosts = new ArrayList<DTNHost>();
+		this.isDirty = new boolean[this.hosts.size()];
+
+		this.updateThreads = DEF_UPDATE_THREADS;
+		if (s.contains(UPDATE_THREADS_S)) {
+			this.updateThreads = s.getInt(UPDATE_THREADS_S);
+		}
+		if (updateThreads < 1) {
+			throw new SettingsError("Too small value (" + updateThreads +
+					") for " + SETTINGS_NS + "." + UPDATE_THREADS_S);
+		}
+		this.updatePool = null;
+		this.prepareUpdates = false;
+		this.concurrentMovers = null;
+		this.sequentialMovers = null;
+		if (updateThreads > 1) {
+			this.prepareUpdates = this.simulateConnections && 
+				!hasActiveTimes();
+			initMovers();
+			if (this.prepareUpdates || this.concurrentMovers != null) {
+				this.updatePool = new ForkJoinPool(updateThreads);
+			}
+		}
+
+		readEndTime();
+
+		this.positions = null;
+		if (s.contains(POSITION_ARRAYS_S) && s.getBoolean(POSITION_ARRAYS_S)) {
+			this.positions = new HostPositions(this.hosts);
+		}
+
 		if (s.contains(CELL_SIZE_MULT_S)) {
 			conCellSizeMult = s.getInt(CELL_SIZE_MULT_S);
 		}
@@ -119,10 +292,76 @@ public class World {
 		}
 	}
 
+	/**
+	 * Reads the simulation end time from the scenario settings
+	 */
+	private void readEndTime() {
+		Settings scen = new Settings(SimScenario.SCENARIO_NS);
+		if (scen.contains(SimScenario.END_TIME_S)) {
+			this.endTime = scen.getDouble(SimScenario.END_TIME_S);
+		}
+		else {
+			this.endTime = Double.MAX_VALUE;
+		}
+	}
+	
+	/**
+	 * Restores a world from a checkpoint. The clock and the thread pool are
+	 * not part of the checkpoint and the end time is read from the settings
+	 * of the restoring run. The update listeners must be set using 
+	 * {@link #setUpdateListeners(List)}.
+	 * @param in The stream to read from
+	 * @see Checkpoint
+	 */
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.simClock = SimClock.getInstance();
+		this.updateListeners = new ArrayList<UpdateListener>();
+		if (this.prepareUpdates || this.concurrentMovers != null) {
+			this.updatePool = new ForkJoinPool(this.updateThreads);
+		}
+		readEndTime();
+	}
+	
+	/**
+	 * Sets the listeners that are informed after every update (e.g., when
+	 * the world is restored from a checkpoint)
+	 * @param updateListeners The update listeners
+	 */
+	public void setUpdateListeners(List<UpdateListener> updateListeners) {
+		this.updateListeners = updateListeners;
+	}
+
+	/**
+	 * Divides the hosts into the ones that can be moved concurrently and
+	 * the ones that must be moved one at a time. If none of the hosts can be
+	 * moved concurrently, all hosts are moved one at a time.
+	 */
+	private void initMovers() {
+		List<DTNHost> concurrent = new ArrayList<DTNHost>();
+		List<DTNHost> sequential = new ArrayList<DTNHost>();
+		for (DTNHost host : this.hosts) {
+			if (host.canMoveConcurrently()) {
+				concurrent.add(host);
+			}
+			else {
+				sequential.add(host);
+			}
+		}
+		
+		if (concurrent.size() > 1) {
+			this.concurrentMovers = concurrent;
+			this.sequentialMovers = sequential;
+		}
+	}
+
 	/**
 	 * Moves hosts in the world for the time given time initialize host 
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
-	 * calling this method.
+	 * calling this method. If a warmup cache is enabled (see 
+	 * {@link WarmupCache}), the host positions are loaded from it when 
+	 * possible.
 	 * @param time The total time (seconds) to move
 	 */
 	public void warmupMovementModel(double time) {
@@ -130,6 +369,12 @@ public class World {
 			return;
 		}
 
+		WarmupCache cache = WarmupCache.getCache(hosts, time);
+		if (cache != null && cache.load(hosts)) {
+			simClock.setTime(0);
+			return;
+		}
+
 		while(SimClock.getTime() < -updateInterval) {
 			moveHosts(updateInterval);
 			simClock.advance(updateInterval);
@@ -139,22 +384,24 @@ public class World {
 
 		moveHosts(finalStep);
 		simClock.setTime(0);	
+
+		if (cache != null) {
+			cache.store(hosts);
+		}
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Sets the event queue that has the next event. Scheduled updates go 
+	 * first if other queues have an event at the same time.
+	 * @see EventQueueHeap
 	 */
 	public void setNextEventQueue() {
 		EventQueue nextQueue = scheduledUpdates;
 		double earliest = nextQueue.nextEventsTime();
 
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
-			}
+		if (eventQueues.nextEventsTime() < earliest) {
+			nextQueue = eventQueues;
+			earliest = eventQueues.nextEventsTime();
 		}
 
 		this.nextEventQueue = nextQueue;
@@ -164,25 +411,41 @@ public class World {
 	/** 
 	 * Update (move, connect, disconnect etc.) all hosts in the world.
 	 * Runs all external events that are due between the time when
-	 * this method is called and after one update interval.
+	 * this method is called and after one update interval. If idle intervals
+	 * are skipped (see {@link #EVENT_DRIVEN_S}), the update covers also all
+	 * the intervals before the next one where something happens.
 	 */
 	public void update () {
 		double runUntil = SimClock.getTime() + this.updateInterval;
+		double timeIncrement = this.updateInterval;
 
 		setNextEventQueue();
+		if (this.eventDriven) {
+			double startTime = SimClock.getTime();
+			runUntil = getNextActiveTime(runUntil);
+			timeIncrement = runUntil - startTime;
+		}
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
 			ExternalEvent ee = this.nextEventQueue.nextEvent();
-			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			processEvent(ee);
+			if (this.dirtyHosts.size() > 0) {
+				updateDirtyHosts(); // update hosts the event touched
+			}
+			else if (!(ee instanceof TimerEvent)) {
+				updateHosts(); // update all hosts after every event
+			}
 			setNextEventQueue();
 		}
 
-		moveHosts(this.updateInterval);
+		moveHosts(timeIncrement);
 		simClock.setTime(runUntil);
 
+		if (this.simulateConnections && !this.contactPredictors.isEmpty()) {
+			predictContacts();
+		}
 		updateHosts();
 
 		/* inform all update listeners */
@@ -191,12 +454,97 @@ public class World {
 		}
 	}
 
+	/**
+	 * Predicts the contacts of the interfaces that use kinetic contacts 
+	 * after the hosts have moved
+	 * @see KineticContactPredictor#update(World)
+	 */
+	private void predictContacts() {
+		Profiler profiler = Profiler.getInstance();
+		if (profiler != null) {
+			profiler.enter(Profiler.CONNECTIVITY);
+		}
+		for (int i=0, n = this.contactPredictors.size(); i < n; i++) {
+			this.contactPredictors.get(i).update(this);
+		}
+		if (profiler != null) {
+			profiler.exit();
+		}
+	}
+
+	/**
+	 * Updates the connections of the interfaces that use grid sweeps
+	 * @see ContactSweeper#update()
+	 */
+	private void sweepContacts() {
+		Profiler profiler = Profiler.getInstance();
+		if (profiler != null) {
+			profiler.enter(Profiler.CONNECTIVITY);
+		}
+		for (int i=0, n = this.contactSweepers.size(); i < n; i++) {
+			this.contactSweepers.get(i).update();
+		}
+		if (profiler != null) {
+			profiler.exit();
+		}
+	}
+
+	/**
+	 * Processes an external event (and profiles it, if profiling is on)
+	 * @param ee The event to process
+	 */
+	private void processEvent(ExternalEvent ee) {
+		Profiler profiler = Profiler.getInstance();
+		if (profiler == null) {
+			ee.processEvent(this);
+			return;
+		}
+		profiler.enter(Profiler.EVENT, ee.getClass());
+		ee.processEvent(this);
+		profiler.exit();
+	}
+
+	/**
+	 * Returns the end time of the next update interval where something
+	 * happens, i.e., an event is due or some host has requested a wake-up. 
+	 * The returned time is on the same update interval grid that is used when
+	 * no intervals are skipped, so events and host updates happen at 
+	 * the same times in both modes.
+	 * @param runUntil End time of the current update interval
+	 * @return End time of the next non-idle update interval (never smaller
+	 * than <CODE>runUntil</CODE>)
+	 */
+	private double getNextActiveTime(double runUntil) {
+		double next = Math.min(this.nextQueueEventTime, this.endTime);
+
+		for (int i=0, n = hosts.size(); i < n && next > runUntil; i++) {
+			double wakeup = hosts.get(i).getNextWakeupTime();
+			if (wakeup < next) {
+				next = wakeup;
+			}
+		}
+
+		if (next <= runUntil || next == Double.MAX_VALUE) {
+			return runUntil; /* no idle intervals to skip */
+		}
+
+		double now = SimClock.getTime();
+		return now + Math.ceil((next - now) / updateInterval) * updateInterval;
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		if (this.simulateConnections && !this.contactSweepers.isEmpty()) {
+			sweepContacts();
+		}
+		if (this.prepareUpdates) {
+			prepareHostUpdates();
+		}
+		
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -208,8 +556,8 @@ public class World {
 		else { // update order randomizing is on
 			assert this.updateOrder.size() == this.hosts.size() : 
 				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
-			Collections.shuffle(this.updateOrder, rng); 
+			this.updateOrderRng.setSeed(SimClock.getIntTime());
+			Collections.shuffle(this.updateOrder, this.updateOrderRng); 
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
@@ -217,17 +565,89 @@ public class World {
 				this.updateOrder.get(i).update(simulateConnections);
 			}			
 		}
+		
+		if (this.prepareUpdates) {
+			NetworkInterface.endPreparedRound();
+		}
 	}
 
 	/**
-	 * Moves all hosts in the world for a given amount of time
+	 * Prepares the updates of all hosts concurrently using the update 
+	 * thread pool
+	 */
+	private void prepareHostUpdates() {
+		Profiler profiler = Profiler.getInstance();
+		if (profiler != null) {
+			profiler.enter(Profiler.CONNECTIVITY_PREPARE);
+		}
+		NetworkInterface.beginPreparedRound(this.hosts);
+		int chunk = Math.max(1, hosts.size() / 
+				(this.updatePool.getParallelism() * 4));
+		this.updatePool.invoke(new PrepareTask(0, hosts.size(), chunk));
+		if (profiler != null) {
+			profiler.exit();
+		}
+	}
+
+	/**
+	 * Returns true if any host has active times. The activeness checks of 
+	 * such hosts can change their state so all the checks must be done in 
+	 * the same order as without prepared updates.
+	 * @return true if any of the hosts has active times
+	 */
+	private boolean hasActiveTimes() {
+		for (DTNHost host : this.hosts) {
+			if (host.hasActiveTimes()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Updates the hosts that were marked dirty by the last event, in the
+	 * order they were marked, and clears the marks.
+	 */
+	private void updateDirtyHosts() {
+		for (int i=0, n = dirtyHosts.size(); i < n; i++) {
+			DTNHost host = dirtyHosts.get(i);
+			this.isDirty[host.getAddress()] = false;
+			if (!this.isCancelled) {
+				host.update(simulateConnections);
+			}
+		}
+		this.dirtyHosts.clear();
+	}
+
+	/**
+	 * Moves all hosts in the world for a given amount of time. If some hosts
+	 * can be moved concurrently, they are moved first using the update 
+	 * thread pool and the rest of the hosts one at a time after them. Since 
+	 * the concurrently moved hosts don't share any state with other hosts, 
+	 * the result is the same as when moving all hosts one at a time.
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
-		for (int i=0,n = hosts.size(); i<n; i++) {
-			DTNHost host = hosts.get(i);
+		Profiler profiler = Profiler.getInstance();
+		if (profiler != null) {
+			profiler.enter(Profiler.MOVEMENT);
+		}
+		List<DTNHost> movers = this.hosts;
+		if (this.concurrentMovers != null) {
+			int chunk = Math.max(1, concurrentMovers.size() / 
+					(this.updatePool.getParallelism() * 4));
+			this.updatePool.invoke(new MoveTask(0, concurrentMovers.size(), 
+					chunk, timeIncrement));
+			movers = this.sequentialMovers;
+		}
+		
+		for (int i=0,n = movers.size(); i<n; i++) {
+			DTNHost host = movers.get(i);
 			host.move(timeIncrement);			
 		}		
+		if (profiler != null) {
+			profiler.exit();
+		}
 	}
 
 	/**
@@ -279,6 +699,21 @@ public class World {
 		return node; 
 	}
 
+	/**
+	 * Marks a host as touched by the external event that is being processed.
+	 * If only the touched hosts are updated after events (see 
+	 * {@link #DIRTY_UPDATES_S}), the marked hosts are updated instead of all 
+	 * hosts once the event is processed. Otherwise this does nothing.
+	 * @param host The host the event touched
+	 */
+	public void markDirty(DTNHost host) {
+		if (!this.dirtyUpdates || this.isDirty[host.getAddress()]) {
+			return;
+		}
+		this.isDirty[host.getAddress()] = true;
+		this.dirtyHosts.add(host);
+	}
+
 	/**
 	 * Schedules an update request to all nodes to happen at the specified 
 	 * simulation time.
@@ -287,4 +722,118 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * Schedules an event to be processed at the event's time. Events with
+	 * the same time are processed in the order they were scheduled.
+	 * @param ee The event to schedule
+	 */
+	public void scheduleEvent(ExternalEvent ee) {
+		scheduledUpdates.addEvent(ee);
+	}
+
+	/**
+	 * Schedules a timer that notifies the listener at the given simulation
+	 * time. Expiring timers don't cause host updates by themselves.
+	 * @param simTime The time when the timer should expire
+	 * @param listener The listener to notify
+	 * @return The scheduled timer
+	 */
+	public TimerEvent scheduleTimer(double simTime, TimerListener listener) {
+		return scheduledUpdates.schedule(simTime, listener);
+	}
+
+	/**
+	 * Moves a scheduled event or timer to a new time. If the event is not
+	 * scheduled (e.g., the timer has already expired), it is scheduled again.
+	 * @param ee The event to reschedule
+	 * @param simTime The new time of the event
+	 */
+	public void rescheduleEvent(ExternalEvent ee, double simTime) {
+		scheduledUpdates.reschedule(ee, simTime);
+	}
+
+	/**
+	 * Cancels a scheduled event or timer
+	 * @param ee The event to cancel
+	 * @return True if the event was cancelled, false if it wasn't scheduled
+	 */
+	public boolean cancelEvent(ExternalEvent ee) {
+		return scheduledUpdates.cancel(ee);
+	}
+
+	/**
+	 * Task that prepares the updates of a range of hosts, splitting the
+	 * range to subtasks if it is larger than the chunk size.
+	 */
+	private class PrepareTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int from;
+		private int to;
+		private int chunk;
+
+		/**
+		 * Creates a new task
+		 * @param from Index of the first host to prepare
+		 * @param to Index after the last host to prepare
+		 * @param chunk Largest number of hosts prepared without splitting
+		 */
+		public PrepareTask(int from, int to, int chunk) {
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunk) {
+				for (int i=from; i<to; i++) {
+					hosts.get(i).prepareUpdate();
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new PrepareTask(from, mid, chunk), 
+					new PrepareTask(mid, to, chunk));
+		}
+	}
+
+	/**
+	 * Task that moves a range of the concurrently moved hosts, splitting 
+	 * the range if it is longer than the chunk size.
+	 */
+	private class MoveTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int from;
+		private int to;
+		private int chunk;
+		private double timeIncrement;
+
+		/**
+		 * Creates a new task
+		 * @param from Index of the first host to move
+		 * @param to Index after the last host to move
+		 * @param chunk Largest number of hosts moved without splitting
+		 * @param timeIncrement The time how long the hosts should move
+		 */
+		public MoveTask(int from, int to, int chunk, double timeIncrement) {
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+			this.timeIncrement = timeIncrement;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunk) {
+				for (int i=from; i<to; i++) {
+					concurrentMovers.get(i).move(timeIncrement);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new MoveTask(from, mid, chunk, timeIncrement), 
+					new MoveTask(mid, to, chunk, timeIncrement));
+		}
+	}
 }
@@ -4,61 +4,275 @@
  */
 package input;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
 import core.SimError;
 
 /**
- * Reads External Events from a binary file. Can also create binary files
- * from a list of external events.
+ * <P>Reads External Events from a binary file. Can also create binary files
+ * from a list of external events (see also {@link BinaryEventsWriter}).</P>
+ *
+ * <P>Format: the file starts with a header of the int {@link #MAGIC}, the
+ * int {@link #VERSION}, the number of events (long) and the offset of the
+ * string table (long). The header is followed by one fixed size
+ * ({@link #RECORD_SIZE}) record per event: time (double), event type
+ * (int, e.g. {@link #CONN_UP}), addresses of the two hosts (ints), index of
+ * the message ID in the string table (int), message size (int) and an extra
+ * int which is the response size for {@link #CREATE} events and the index of
+ * the interface ID for connection events. The string table has the number of
+ * strings (int) and then every string as the length (int) and the UTF-8
+ * bytes of the string. String index {@link #NO_STRING} means no string.
+ * All values are big-endian.</P>
+ *
+ * <P>The records are read straight from a memory mapped view of the file.
+ * Files that were created with Java serialization by older versions can
+ * still be read.</P>
  */
-public class BinaryEventsReader implements ExternalEventsReader {
+public class BinaryEventsReader implements SeekableEventsReader {
 	/** Extension of binary external events file */
 	public static final String BINARY_EXT = ".binee";
-	
+	/** Identifier in the beginning of binary events files */
+	public static final int MAGIC = 0x4F4E4545;
+	/** Version of the binary events format */
+	public static final int VERSION = 1;
+	/** Size of the header in bytes */
+	public static final int HEADER_SIZE = 24;
+	/** Size of an event record in bytes */
+	public static final int RECORD_SIZE = 32;
+	/** String index that means no string */
+	public static final int NO_STRING = -1;
+
+	/** Type of connection up events */
+	public static final int CONN_UP = 1;
+	/** Type of connection down events */
+	public static final int CONN_DOWN = 2;
+	/** Type of message create events */
+	public static final int CREATE = 3;
+	/** Type of message transfer start events */
+	public static final int SEND = 4;
+	/** Type of message delivered events */
+	public static final int DELIVERED = 5;
+	/** Type of message transfer aborted events */
+	public static final int ABORT = 6;
+	/** Type of message dropped events */
+	public static final int DROP = 7;
+	/** Type of message removed events */
+	public static final int REMOVE = 8;
+
+	/** how many records are mapped to memory at a time */
+	private static final int WINDOW_RECORDS = 1 << 22;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File eventsFile;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	/** the currently mapped records and the index of the first of them */
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long nextEvent;
+	private long nrofEvents;
+	private String[] strings;
+
+	/** true if the file was created using serialization */
+	private boolean serialized;
+	/** reader of files created using serialization (or null) */
 	private ObjectInputStream in;
 	private int eventsLeft;
-	
+	private int nrofSerialized;
+
 	/**
 	 * Constructor.
 	 * @param eventsFile The file where the events are read
 	 */
-	public BinaryEventsReader(File eventsFile) {	
+	public BinaryEventsReader(File eventsFile) {
+		this.eventsFile = eventsFile;
 		try {
-			FileInputStream fis = new FileInputStream(eventsFile);
-			in = new ObjectInputStream(fis);
-			// first object should tell the amount of events
-			eventsLeft = (Integer)in.readObject(); 
+			if (readMagic(eventsFile) == MAGIC) {
+				openMapped();
+			}
+			else {
+				this.serialized = true;
+				openSerialized();
+			}
 		} catch (IOException e) {
 			throw new SimError(e);
 		} catch (ClassNotFoundException e) {
 			throw new SimError("Invalid binary input file for external " +
 					"events:" + eventsFile.getAbsolutePath(), e);
 		}
-		
+
+	}
+
+	/**
+	 * Opens a file of the current format: reads the header and the string
+	 * table
+	 */
+	private void openMapped() throws IOException {
+		this.file = new RandomAccessFile(eventsFile, "r");
+		this.channel = file.getChannel();
+
+		if (file.length() < HEADER_SIZE) {
+			throw invalid("truncated header");
+		}
+		byte[] headerBytes = new byte[HEADER_SIZE];
+		file.readFully(headerBytes);
+		ByteBuffer header = ByteBuffer.wrap(headerBytes);
+		header.getInt(); /* magic */
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw invalid("unsupported version " + version);
+		}
+		this.nrofEvents = header.getLong();
+		long stringTableOffset = header.getLong();
+		if (nrofEvents < 0 || stringTableOffset != HEADER_SIZE +
+				nrofEvents * RECORD_SIZE ||
+				stringTableOffset + 4 > channel.size()) {
+			throw invalid("invalid header");
+		}
+
+		ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY,
+				stringTableOffset, channel.size() - stringTableOffset);
+		this.strings = new String[table.getInt()];
+		for (int i=0; i<strings.length; i++) {
+			byte[] bytes = new byte[table.getInt()];
+			table.get(bytes);
+			strings[i] = new String(bytes, UTF8);
+		}
+		this.nextEvent = 0;
+		if (nrofEvents == 0) {
+			close();
+		}
+	}
+
+	/**
+	 * Opens a file created using Java serialization
+	 */
+	private void openSerialized() throws IOException,
+			ClassNotFoundException {
+		FileInputStream fis = new FileInputStream(eventsFile);
+		in = new ObjectInputStream(fis);
+		// first object should tell the amount of events
+		eventsLeft = (Integer)in.readObject();
+		nrofSerialized = eventsLeft;
 	}
-	
+
 	/**
 	 * Read events from a binary file created with storeBinaryFile method
 	 * @param nrof Maximum number of events to read
 	 * @return Events in an ArrayList (empty list if didn't read any)
 	 * @see #storeToBinaryFile(String, List)
 	 */
-	@SuppressWarnings("unchecked") // suppress cast warnings
 	public List<ExternalEvent> readEvents(int nrof) {
+		if (in != null || eventsLeft > 0) {
+			return readSerializedEvents(nrof);
+		}
+
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(
+				(int)Math.min(nrof, nrofEvents - nextEvent));
+		try {
+			while (events.size() < nrof && nextEvent < nrofEvents) {
+				if (window == null ||
+						nextEvent >= windowStart + WINDOW_RECORDS) {
+					mapWindow(nextEvent);
+				}
+				int pos = (int)(nextEvent - windowStart) * RECORD_SIZE;
+				events.add(createEvent(pos));
+				nextEvent++;
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read binary events file " +
+					eventsFile + ": " + e, e);
+		}
+		if (nextEvent == nrofEvents) {
+			close();
+		}
+		return events;
+	}
+
+	/**
+	 * Maps the records starting from the given one to memory
+	 * @param first Index of the first record to map
+	 */
+	private void mapWindow(long first) throws IOException {
+		long nrof = Math.min(WINDOW_RECORDS, nrofEvents - first);
+		this.window = channel.map(FileChannel.MapMode.READ_ONLY,
+				HEADER_SIZE + first * RECORD_SIZE, nrof * RECORD_SIZE);
+		this.windowStart = first;
+	}
+
+	/**
+	 * Creates an event from a record of the mapped window
+	 * @param pos Position of the record in the window
+	 * @return The event
+	 */
+	private ExternalEvent createEvent(int pos) {
+		double time = window.getDouble(pos);
+		int type = window.getInt(pos + 8);
+		int host1 = window.getInt(pos + 12);
+		int host2 = window.getInt(pos + 16);
+		String msgId = getString(window.getInt(pos + 20));
+		int size = window.getInt(pos + 24);
+		int extra = window.getInt(pos + 28);
+
+		switch (type) {
+		case CONN_UP:
+		case CONN_DOWN:
+			return new ConnectionEvent(host1, host2, getString(extra),
+					type == CONN_UP, time);
+		case CREATE:
+			return new MessageCreateEvent(host1, host2, msgId, size, extra,
+					time);
+		case SEND:
+			return new MessageRelayEvent(host1, host2, msgId, time,
+					MessageRelayEvent.SENDING);
+		case DELIVERED:
+			return new MessageRelayEvent(host1, host2, msgId, time,
+					MessageRelayEvent.TRANSFERRED);
+		case ABORT:
+			return new MessageRelayEvent(host1, host2, msgId, time,
+					MessageRelayEvent.ABORTED);
+		case DROP:
+		case REMOVE:
+			return new MessageDeleteEvent(host1, msgId, time, type == DROP);
+		default:
+			throw new SimError("Invalid event type " + type + " in event " +
+					nextEvent + " of " + eventsFile);
+		}
+	}
+
+	private String getString(int index) {
+		if (index == NO_STRING) {
+			return null;
+		}
+		if (index < 0 || index >= strings.length) {
+			throw new SimError("Invalid string index " + index +
+					" in event " + nextEvent + " of " + eventsFile);
+		}
+		return strings[index];
+	}
+
+	/**
+	 * Reads events from a file created using Java serialization
+	 */
+	private List<ExternalEvent> readSerializedEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 
 		if (eventsLeft == 0) {
 			return events;
 		}
-		
+
 		try {
 			for (int i=0; i < nrof && eventsLeft > 0; i++) {
 				events.add((ExternalEvent)in.readObject());
@@ -70,11 +284,73 @@ public class BinaryEventsReader implements ExternalEventsReader {
 		} catch (Exception e) { // FIXME: quick 'n' dirty exception handling
 			throw new SimError(e);
 		}
-		return events;	
+		return events;
 	}
-	
+
 	/**
-	 * Checks if the given file is a binary external events file
+	 * Returns the index of the next event in the file
+	 * @return The index of the next event
+	 */
+	public long getPosition() {
+		if (serialized) {
+			return nrofSerialized - eventsLeft;
+		}
+		return nextEvent;
+	}
+
+	/**
+	 * Continues reading from an event
+	 * @param position Index of the event
+	 * @throws SimError if the file can't be read
+	 */
+	public void seek(long position) {
+		if (serialized) {
+			/* serialized events can only be skipped by reading them */
+			close();
+			try {
+				openSerialized();
+			} catch (Exception e) {
+				throw new SimError(e);
+			}
+			readSerializedEvents((int)position);
+			return;
+		}
+
+		if (file == null) {
+			try {
+				openMapped();
+			} catch (IOException e) {
+				throw new SimError(e);
+			}
+		}
+		this.nextEvent = position;
+		this.window = null;
+	}
+
+	/**
+	 * Reads the first int of a file
+	 * @return The int or -1 if the file is shorter than an int
+	 */
+	private static int readMagic(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			return in.readInt();
+		} catch (IOException e) {
+			return -1;
+		} finally {
+			in.close();
+		}
+	}
+
+	private SimError invalid(String reason) {
+		close();
+		return new SimError("Invalid binary input file for external " +
+				"events " + eventsFile.getAbsolutePath() + ": " + reason);
+	}
+
+	/**
+	 * Checks if the given file is a binary external events file. Only the
+	 * extension and the identifier in the beginning of the file are checked.
 	 * @param file The file to check
 	 * @return True if the file is a binary ee file, false if not
 	 */
@@ -82,56 +358,56 @@ public class BinaryEventsReader implements ExternalEventsReader {
 		if (!file.getName().endsWith(BINARY_EXT)) {
 			return false;
 		}
-		
-		// extension matches, try to read an event 
+
+		int magic;
 		try {
-			BinaryEventsReader r = new BinaryEventsReader(file);
-			r.readEvents(1);
-			r.close();
-		}
-		catch (SimError e) {
-			return false; // read failed -> not a valid file
+			magic = readMagic(file);
+		} catch (IOException e) {
+			return false;
 		}
-		
-		return true; // seems to be a valid binary ee file
+		return magic == MAGIC || (magic >>> 16) ==
+			(ObjectStreamConstants.STREAM_MAGIC & 0xFFFF);
 	}
-	
+
 	/**
 	 * Stores the events to a binary file
 	 * @param fileName Path to the file where the events are stored
 	 * @param events List of events to store
 	 * @throws IOException if something in storing went wrong
+	 * @see BinaryEventsWriter
 	 */
 	public static void storeToBinaryFile(String fileName,
 			List<ExternalEvent> events) throws IOException {
 
 		// make sure the file name ends with binary extension
 		if (!fileName.endsWith(BINARY_EXT)) {
-			fileName += "BINARY_EXT";
+			fileName += BINARY_EXT;
 		}
-		
-		ObjectOutputStream out;
-		FileOutputStream fos = new FileOutputStream(fileName);
-		out = new ObjectOutputStream(fos);
 
-		// store the number of events
-		out.writeObject(new Integer(events.size()));
-		
-		// store events
+		BinaryEventsWriter out = new BinaryEventsWriter(new File(fileName));
 		for (ExternalEvent ee : events) {
-			out.writeObject(ee);
+			out.write(ee);
 		}
-
 		out.close();
 	}
 
 	public void close() {
 		try {
-			this.in.close();
+			if (this.in != null) {
+				this.in.close();
+				this.in = null;
+				this.eventsLeft = 0;
+			}
+			if (this.file != null) {
+				this.file.close();
+				this.file = null;
+				this.channel = null;
+				this.window = null;
+			}
 		}
 		catch (IOException ioe) {
 			throw new SimError(ioe);
 		}
 	}
-		
+
 }
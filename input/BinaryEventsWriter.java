@@ -0,0 +1,242 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes external events to a binary events file that can be read using
+ * {@link BinaryEventsReader}. See the reader for the format. The events are
+ * streamed to the file, so files of any size can be written; only the
+ * message and interface IDs are kept in memory until the file is closed.
+ * The {@link #main(String[])} method converts a standard external events
+ * file (see {@link StandardEventsReader}) to a binary file.
+ */
+public class BinaryEventsWriter {
+	/** how many events are converted at a time by {@link #main(String[])} */
+	private static final int CONVERT_BATCH = 10000;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private long nrofEvents;
+	/** the strings of the string table and their indexes */
+	private List<String> strings;
+	private Map<String, Integer> stringIndexes;
+
+	/**
+	 * Creates a new binary events file
+	 * @param binaryFile The file to write the events to
+	 * @throws IOException if the file can't be created
+	 */
+	public BinaryEventsWriter(File binaryFile) throws IOException {
+		this.file = new RandomAccessFile(binaryFile, "rw");
+		this.file.setLength(0);
+		this.channel = file.getChannel();
+		this.buffer = ByteBuffer.allocate(BinaryEventsReader.RECORD_SIZE *
+				1024);
+		this.strings = new ArrayList<String>();
+		this.stringIndexes = new HashMap<String, Integer>();
+
+		/* the header is written again with the right values on close */
+		writeHeader(0);
+	}
+
+	/**
+	 * Writes an event to the file
+	 * @param ee The event
+	 * @throws IOException if writing fails
+	 * @throws IllegalArgumentException if the event is of a type that can't
+	 * be written to a binary events file
+	 */
+	public void write(ExternalEvent ee) throws IOException {
+		int type;
+		int host1;
+		int host2;
+		int msgId = BinaryEventsReader.NO_STRING;
+		int size = 0;
+		int extra = 0;
+
+		if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			type = (ce.isUp ? BinaryEventsReader.CONN_UP :
+				BinaryEventsReader.CONN_DOWN);
+			host1 = ce.fromAddr;
+			host2 = ce.toAddr;
+			extra = stringIndex(ce.interfaceId);
+		}
+		else if (ee instanceof MessageEvent) {
+			MessageEvent me = (MessageEvent)ee;
+			host1 = me.fromAddr;
+			host2 = me.toAddr;
+			msgId = stringIndex(me.id);
+
+			if (ee instanceof MessageCreateEvent) {
+				type = BinaryEventsReader.CREATE;
+				size = ((MessageCreateEvent)ee).getSize();
+				extra = ((MessageCreateEvent)ee).getResponseSize();
+			}
+			else if (ee instanceof MessageRelayEvent) {
+				type = relayType(((MessageRelayEvent)ee).getStage());
+			}
+			else if (ee instanceof MessageDeleteEvent) {
+				type = (((MessageDeleteEvent)ee).isDrop() ?
+						BinaryEventsReader.DROP : BinaryEventsReader.REMOVE);
+			}
+			else {
+				throw unsupported(ee);
+			}
+		}
+		else {
+			throw unsupported(ee);
+		}
+
+		if (buffer.remaining() < BinaryEventsReader.RECORD_SIZE) {
+			flush();
+		}
+		buffer.putDouble(ee.getTime());
+		buffer.putInt(type);
+		buffer.putInt(host1);
+		buffer.putInt(host2);
+		buffer.putInt(msgId);
+		buffer.putInt(size);
+		buffer.putInt(extra);
+		nrofEvents++;
+	}
+
+	/**
+	 * Writes the string table and the header and closes the file
+	 * @throws IOException if writing fails
+	 */
+	public void close() throws IOException {
+		flush();
+		long stringTableOffset = channel.position();
+		buffer.putInt(strings.size());
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(UTF8);
+			if (buffer.remaining() < 4 + bytes.length) {
+				flush();
+			}
+			if (buffer.remaining() < 4 + bytes.length) {
+				/* longer than the whole buffer */
+				buffer.putInt(bytes.length);
+				flush();
+				channel.write(ByteBuffer.wrap(bytes));
+				continue;
+			}
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+		flush();
+
+		channel.position(0);
+		writeHeader(stringTableOffset);
+		file.close();
+	}
+
+	/**
+	 * Writes the header of the file to the current position
+	 * @param stringTableOffset Where the string table starts
+	 */
+	private void writeHeader(long stringTableOffset) throws IOException {
+		buffer.putInt(BinaryEventsReader.MAGIC);
+		buffer.putInt(BinaryEventsReader.VERSION);
+		buffer.putLong(nrofEvents);
+		buffer.putLong(stringTableOffset);
+		flush();
+	}
+
+	/**
+	 * Writes the buffered data to the file
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Returns the index of a string in the string table. New strings are
+	 * added to the table.
+	 * @param s The string (or null)
+	 * @return The index or {@link BinaryEventsReader#NO_STRING} for null
+	 */
+	private int stringIndex(String s) {
+		if (s == null) {
+			return BinaryEventsReader.NO_STRING;
+		}
+		Integer index = stringIndexes.get(s);
+		if (index == null) {
+			index = strings.size();
+			strings.add(s);
+			stringIndexes.put(s, index);
+		}
+		return index;
+	}
+
+	private static int relayType(int stage) {
+		switch (stage) {
+		case MessageRelayEvent.SENDING:
+			return BinaryEventsReader.SEND;
+		case MessageRelayEvent.TRANSFERRED:
+			return BinaryEventsReader.DELIVERED;
+		case MessageRelayEvent.ABORTED:
+			return BinaryEventsReader.ABORT;
+		default:
+			throw new IllegalArgumentException("Invalid relay stage " + stage);
+		}
+	}
+
+	private static IllegalArgumentException unsupported(ExternalEvent ee) {
+		return new IllegalArgumentException("Can't store event " + ee +
+				" of type " + ee.getClass().getName() + " to a binary file");
+	}
+
+	/**
+	 * Converts a standard external events file to a binary events file.
+	 * Usage: <CODE>java input.BinaryEventsWriter &lt;events file&gt;
+	 * [&lt;binary file&gt;]</CODE>. The default binary file name is the
+	 * name of the events file with {@link BinaryEventsReader#BINARY_EXT}
+	 * appended.
+	 * @param args The command line arguments
+	 * @throws IOException if the binary file can't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: java input.BinaryEventsWriter " +
+					"<events file> [<binary file>]");
+			System.exit(1);
+		}
+		String binaryName = (args.length > 1 ? args[1] :
+			args[0] + BinaryEventsReader.BINARY_EXT);
+
+		StandardEventsReader reader = new StandardEventsReader(
+				new File(args[0]));
+		BinaryEventsWriter writer = new BinaryEventsWriter(
+				new File(binaryName));
+		List<ExternalEvent> events;
+		while (!(events = reader.readEvents(CONVERT_BATCH)).isEmpty()) {
+			for (ExternalEvent ee : events) {
+				writer.write(ee);
+			}
+		}
+		reader.close();
+		writer.close();
+		System.out.println("Wrote " + writer.nrofEvents + " events to " +
+				binaryName);
+	}
+}
@@ -0,0 +1,314 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import core.Coord;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * <P>Reader for binary external movement files. A binary file has the same
+ * data as an {@link ExternalMovementReader} file but the locations are
+ * grouped by node, so the locations of any node at any time can be read
+ * without reading the locations of the other nodes. Binary files are
+ * created from text files using {@link BinaryMovementWriter}.</P>
+ *
+ * <P>Format: the file starts with a header of the int {@link #MAGIC}, the
+ * int {@link #VERSION}, the offset header values of the text file (minTime,
+ * maxTime, minX, maxX, minY and maxY as doubles), the sampling interval
+ * (double), the number of nodes (int) and the offset of the node table
+ * (long). The header is followed by the samples: time, x and y of the node
+ * (doubles, {@link #SAMPLE_SIZE} bytes together). The samples of a node are
+ * consecutive and sorted by time. The node table has every node's ID as the
+ * length (int) and the UTF-8 bytes of the ID, the index of the node's first
+ * sample (long) and the number of its samples (int). The nodes are in the
+ * order they first appear in the text file. All values are big-endian.</P>
+ *
+ * <P>The samples are read straight from a memory mapped view of the file.
+ * </P>
+ */
+public class BinaryMovementReader {
+	/** Extension of binary external movement files */
+	public static final String BINARY_EXT = ".binmov";
+	/** Identifier in the beginning of binary movement files */
+	public static final int MAGIC = 0x4F4E4D56;
+	/** Version of the binary movement format */
+	public static final int VERSION = 1;
+	/** Size of the header in bytes */
+	public static final int HEADER_SIZE = 76;
+	/** Size of a sample in bytes */
+	public static final int SAMPLE_SIZE = 24;
+
+	/** how many samples are in one mapped window */
+	private static final int WINDOW_SAMPLES = 1 << 24;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+	private double samplingInterval;
+	private boolean normalize;
+
+	private String[] ids;
+	private long[] firstSamples;
+	private int[] nrofSamples;
+	/** the mapped samples, {@link #WINDOW_SAMPLES} per window */
+	private MappedByteBuffer[] windows;
+
+	/**
+	 * Constructor. Creates a new reader that reads the data from a file.
+	 * @param inFile The binary movement file
+	 * @throws SettingsError if the file wasn't found or it is not a valid
+	 * binary movement file
+	 */
+	public BinaryMovementReader(File inFile) {
+		this.normalize = true;
+		RandomAccessFile file;
+		try {
+			file = new RandomAccessFile(inFile, "r");
+		} catch (FileNotFoundException e) {
+			throw new SettingsError("Couldn't find external movement input " +
+					"file " + inFile);
+		}
+
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER_SIZE) {
+				throw invalid(inFile, "truncated header");
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					HEADER_SIZE);
+			if (header.getInt() != MAGIC) {
+				throw invalid(inFile, "not a binary movement file");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw invalid(inFile, "unsupported version " + version);
+			}
+			minTime = header.getDouble();
+			maxTime = header.getDouble();
+			minX = header.getDouble();
+			maxX = header.getDouble();
+			minY = header.getDouble();
+			maxY = header.getDouble();
+			samplingInterval = header.getDouble();
+			int nrofNodes = header.getInt();
+			long nodeTableOffset = header.getLong();
+			if (nrofNodes < 0 || nodeTableOffset < HEADER_SIZE ||
+					(nodeTableOffset - HEADER_SIZE) % SAMPLE_SIZE != 0 ||
+					nodeTableOffset > channel.size()) {
+				throw invalid(inFile, "invalid header");
+			}
+			long totalSamples = (nodeTableOffset - HEADER_SIZE) / SAMPLE_SIZE;
+
+			readNodeTable(inFile, channel.map(FileChannel.MapMode.READ_ONLY,
+					nodeTableOffset, channel.size() - nodeTableOffset),
+					nrofNodes, totalSamples);
+
+			/* mappings stay valid after the file is closed */
+			windows = new MappedByteBuffer[(int)((totalSamples +
+					WINDOW_SAMPLES - 1) / WINDOW_SAMPLES)];
+			for (int i=0; i<windows.length; i++) {
+				long first = (long)i * WINDOW_SAMPLES;
+				long nrof = Math.min(WINDOW_SAMPLES, totalSamples - first);
+				windows[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + first * SAMPLE_SIZE, nrof * SAMPLE_SIZE);
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read external movement file " +
+					inFile + ": " + e, e);
+		} finally {
+			try {
+				file.close();
+			} catch (IOException e) {
+				throw new SimError(e);
+			}
+		}
+	}
+
+	/**
+	 * Reads the node table
+	 * @param inFile The file (for error messages)
+	 * @param table The mapped table
+	 * @param nrofNodes Number of nodes in the table
+	 * @param totalSamples Number of samples in the file
+	 */
+	private void readNodeTable(File inFile, ByteBuffer table, int nrofNodes,
+			long totalSamples) {
+		ids = new String[nrofNodes];
+		firstSamples = new long[nrofNodes];
+		nrofSamples = new int[nrofNodes];
+		try {
+			for (int i=0; i<nrofNodes; i++) {
+				byte[] bytes = new byte[table.getInt()];
+				table.get(bytes);
+				ids[i] = new String(bytes, UTF8);
+				firstSamples[i] = table.getLong();
+				nrofSamples[i] = table.getInt();
+				if (firstSamples[i] < 0 || nrofSamples[i] < 1 ||
+						firstSamples[i] + nrofSamples[i] > totalSamples) {
+					throw invalid(inFile, "invalid samples of node " + ids[i]);
+				}
+			}
+		} catch (RuntimeException e) { /* e.g., truncated table */
+			throw invalid(inFile, "invalid node table (" + e + ")");
+		}
+	}
+
+	private static SettingsError invalid(File inFile, String reason) {
+		return new SettingsError("Invalid binary external movement file " +
+				inFile + ": " + reason);
+	}
+
+	/**
+	 * Checks if the given file is a binary external movement file. Only the
+	 * extension of the file is checked.
+	 * @param file The file to check
+	 * @return True if the file is a binary movement file, false if not
+	 */
+	public static boolean isBinaryMovementFile(File file) {
+		return file.getName().endsWith(BINARY_EXT);
+	}
+
+	/**
+	 * Sets normalizing of read values on/off. If on, the returned times and
+	 * locations are decremented by minimum values of the offsets. Default is
+	 * on (normalize).
+	 * @param normalize If true, normalizing is on (false -> off).
+	 */
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	/**
+	 * Returns the number of nodes in the file
+	 * @return The number of nodes
+	 */
+	public int getNrofNodes() {
+		return ids.length;
+	}
+
+	/**
+	 * Returns the ID of a node
+	 * @param node Index of the node
+	 * @return The ID
+	 */
+	public String getNodeId(int node) {
+		return ids[node];
+	}
+
+	/**
+	 * Returns the number of samples of a node
+	 * @param node Index of the node
+	 * @return The number of samples
+	 */
+	public int getNrofSamples(int node) {
+		return nrofSamples[node];
+	}
+
+	/**
+	 * Returns the time of a sample
+	 * @param node Index of the node
+	 * @param sample Index of the node's sample
+	 * @return The time
+	 */
+	public double getTime(int node, int sample) {
+		double time = getValue(node, sample, 0);
+		return (normalize ? time - minTime : time);
+	}
+
+	/**
+	 * Returns the location of a sample
+	 * @param node Index of the node
+	 * @param sample Index of the node's sample
+	 * @return The location
+	 */
+	public Coord getLocation(int node, int sample) {
+		double x = getValue(node, sample, 8);
+		double y = getValue(node, sample, 16);
+		if (normalize) {
+			x -= minX;
+			y -= minY;
+		}
+		return new Coord(x, y);
+	}
+
+	private double getValue(int node, int sample, int offset) {
+		assert sample >= 0 && sample < nrofSamples[node] : "Invalid sample " +
+			sample + " of node " + ids[node];
+		long index = firstSamples[node] + sample;
+		return windows[(int)(index / WINDOW_SAMPLES)].getDouble(
+				(int)(index % WINDOW_SAMPLES) * SAMPLE_SIZE + offset);
+	}
+
+	/**
+	 * Returns the time difference of the first two time instances of the
+	 * text file
+	 * @return The sampling interval
+	 */
+	public double getSamplingInterval() {
+		return samplingInterval;
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+}
@@ -0,0 +1,205 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.Tuple;
+
+/**
+ * Converts external movement files (see {@link ExternalMovementReader}) to
+ * binary movement files that can be read using {@link BinaryMovementReader}.
+ * The text file is read twice: first to count the samples of every node and
+ * then to write the samples to their places in the binary file. Only a small
+ * write buffer per node is kept in memory, so files of any size can be
+ * converted.
+ */
+public class BinaryMovementWriter {
+	/** how many samples of a node are buffered before writing them */
+	private static final int NODE_BUFFER_SAMPLES = 32;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Converts a text movement file to a binary movement file
+	 * @param textFile The text file
+	 * @param binaryFile The binary file to create
+	 * @return The number of samples written
+	 * @throws IOException if the binary file can't be written
+	 */
+	public static long convert(File textFile, File binaryFile)
+			throws IOException {
+		/* first pass: nodes in the order they appear and their samples */
+		List<String> ids = new ArrayList<String>();
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		List<Integer> counts = new ArrayList<Integer>();
+		double firstTime = 0;
+		double samplingInterval = 0;
+		int nrofInstances = 0;
+
+		ExternalMovementReader reader = openReader(textFile);
+		List<Tuple<String, Coord>> moves;
+		while (!(moves = reader.readNextMovements()).isEmpty()) {
+			if (nrofInstances == 0) {
+				firstTime = reader.getLastTimeStamp();
+			}
+			else if (nrofInstances == 1) {
+				samplingInterval = reader.getLastTimeStamp() - firstTime;
+			}
+			nrofInstances++;
+			for (Tuple<String, Coord> t : moves) {
+				Integer index = indexes.get(t.getKey());
+				if (index == null) {
+					index = ids.size();
+					ids.add(t.getKey());
+					indexes.put(t.getKey(), index);
+					counts.add(0);
+				}
+				counts.set(index, counts.get(index) + 1);
+			}
+		}
+
+		int nrofNodes = ids.size();
+		long[] firstSamples = new long[nrofNodes];
+		long[] nextPositions = new long[nrofNodes];
+		long totalSamples = 0;
+		for (int i=0; i<nrofNodes; i++) {
+			firstSamples[i] = totalSamples;
+			nextPositions[i] = BinaryMovementReader.HEADER_SIZE +
+				totalSamples * BinaryMovementReader.SAMPLE_SIZE;
+			totalSamples += counts.get(i);
+		}
+
+		RandomAccessFile file = new RandomAccessFile(binaryFile, "rw");
+		try {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+
+			/* second pass: the samples of every node to their places */
+			ByteBuffer[] buffers = new ByteBuffer[nrofNodes];
+			reader = openReader(textFile);
+			while (!(moves = reader.readNextMovements()).isEmpty()) {
+				double time = reader.getLastTimeStamp();
+				for (Tuple<String, Coord> t : moves) {
+					int index = indexes.get(t.getKey());
+					ByteBuffer buffer = buffers[index];
+					if (buffer == null) {
+						buffer = buffers[index] = ByteBuffer.allocate(
+								NODE_BUFFER_SAMPLES *
+								BinaryMovementReader.SAMPLE_SIZE);
+					}
+					if (!buffer.hasRemaining()) {
+						nextPositions[index] += write(channel, buffer,
+								nextPositions[index]);
+					}
+					buffer.putDouble(time);
+					buffer.putDouble(t.getValue().getX());
+					buffer.putDouble(t.getValue().getY());
+				}
+			}
+			for (int i=0; i<nrofNodes; i++) {
+				write(channel, buffers[i], nextPositions[i]);
+				buffers[i] = null;
+			}
+
+			/* node table and header */
+			long nodeTableOffset = BinaryMovementReader.HEADER_SIZE +
+				totalSamples * BinaryMovementReader.SAMPLE_SIZE;
+			long position = nodeTableOffset;
+			ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+			for (int i=0; i<nrofNodes; i++) {
+				byte[] id = ids.get(i).getBytes(UTF8);
+				if (buffer.remaining() < id.length + 16) {
+					position += write(channel, buffer, position);
+				}
+				if (buffer.remaining() < id.length + 16) {
+					/* longer than the whole buffer */
+					buffer = ByteBuffer.allocate(id.length + 16);
+				}
+				buffer.putInt(id.length);
+				buffer.put(id);
+				buffer.putLong(firstSamples[i]);
+				buffer.putInt(counts.get(i));
+			}
+			write(channel, buffer, position);
+
+			buffer = ByteBuffer.allocate(BinaryMovementReader.HEADER_SIZE);
+			buffer.putInt(BinaryMovementReader.MAGIC);
+			buffer.putInt(BinaryMovementReader.VERSION);
+			buffer.putDouble(reader.getMinTime());
+			buffer.putDouble(reader.getMaxTime());
+			buffer.putDouble(reader.getMinX());
+			buffer.putDouble(reader.getMaxX());
+			buffer.putDouble(reader.getMinY());
+			buffer.putDouble(reader.getMaxY());
+			buffer.putDouble(samplingInterval);
+			buffer.putInt(nrofNodes);
+			buffer.putLong(nodeTableOffset);
+			write(channel, buffer, 0);
+		} finally {
+			file.close();
+		}
+		return totalSamples;
+	}
+
+	/**
+	 * Writes the buffered data to a position of the file
+	 * @param channel The file's channel
+	 * @param buffer The buffer (or null for no data)
+	 * @param position Where to write
+	 * @return Number of bytes written
+	 */
+	private static int write(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		if (buffer == null) {
+			return 0;
+		}
+		buffer.flip();
+		int nrof = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		buffer.clear();
+		return nrof;
+	}
+
+	private static ExternalMovementReader openReader(File textFile) {
+		ExternalMovementReader reader = new ExternalMovementReader(
+				textFile.getPath());
+		reader.setNormalize(false);
+		return reader;
+	}
+
+	/**
+	 * Converts a text movement file to a binary movement file.
+	 * Usage: <CODE>java input.BinaryMovementWriter &lt;movement file&gt;
+	 * [&lt;binary file&gt;]</CODE>. The default binary file name is the
+	 * name of the movement file with {@link BinaryMovementReader#BINARY_EXT}
+	 * appended.
+	 * @param args The command line arguments
+	 * @throws IOException if the binary file can't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: java input.BinaryMovementWriter " +
+					"<movement file> [<binary file>]");
+			System.exit(1);
+		}
+		String binaryName = (args.length > 1 ? args[1] :
+			args[0] + BinaryMovementReader.BINARY_EXT);
+
+		long nrof = convert(new File(args[0]), new File(binaryName));
+		System.out.println("Wrote " + nrof + " samples to " + binaryName);
+	}
+}
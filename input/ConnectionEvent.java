@@ -11,6 +11,8 @@ import core.World;
  * A connection up/down event.
  */
 public class ConnectionEvent extends ExternalEvent {
+	/** Keeps binary event files written by older versions compatible */
+	private static final long serialVersionUID = -4866112066281988671L;
 	/** address of the node the (dis)connection is from */
 	protected int fromAddr;
 	/** address of the node the (dis)connection is to */
@@ -44,6 +46,8 @@ public class ConnectionEvent extends ExternalEvent {
 		DTNHost to = world.getNodeByAddress(this.toAddr);
 		
 		from.forceConnection(to, interfaceId, this.isUp);
+		world.markDirty(from);
+		world.markDirty(to);
 	}
 	
 	@Override
@@ -0,0 +1,170 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>Reads connection events from a binary contact trace written by
+ * {@link ContactTraceWriter} (e.g., by {@link report.ContactTraceReport}).
+ * Replaying a trace with the connectivity simulation turned off gives the
+ * same contacts as the run that recorded it.</P>
+ *
+ * <P>Format: the file starts with the int {@link #MAGIC} and the int
+ * {@link #VERSION}. Every record that follows starts with a type byte.
+ * {@link #INTERFACE} records define the next interface type (UTF string);
+ * the first defined type has index 1 and index 0 means no type.
+ * {@link #UP} and {@link #DOWN} records have the time (double), the
+ * addresses of the two hosts and the index of the interface type (all three
+ * as unsigned variable length ints, 7 bits per byte, least significant
+ * first).</P>
+ */
+public class ContactTraceReader implements ExternalEventsReader {
+	/** Extension of binary contact trace files */
+	public static final String TRACE_EXT = ".ctrace";
+	/** Identifier in the beginning of trace files */
+	public static final int MAGIC = 0x4F4E4354;
+	/** Version of the trace format */
+	public static final int VERSION = 1;
+	/** Type of interface type definition records */
+	public static final int INTERFACE = 0;
+	/** Type of connection up records */
+	public static final int UP = 1;
+	/** Type of connection down records */
+	public static final int DOWN = 2;
+
+	private File traceFile;
+	private DataInputStream in;
+	/** interface types by their index (null at index 0) */
+	private List<String> interfaceTypes;
+
+	/**
+	 * Constructor.
+	 * @param traceFile The file where the events are read
+	 * @throws SimError if the file is not a contact trace or can't be read
+	 */
+	public ContactTraceReader(File traceFile) {
+		this.traceFile = traceFile;
+		this.interfaceTypes = new ArrayList<String>();
+		this.interfaceTypes.add(null);
+		try {
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(traceFile)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				in.close();
+				throw new SimError("Invalid contact trace file " + traceFile);
+			}
+		} catch (IOException e) {
+			throw new SimError("Can't read contact trace " + traceFile +
+					": " + e, e);
+		}
+	}
+
+	/**
+	 * Checks if the given file is a contact trace file
+	 * @param file The file to check
+	 * @return True if the file is a contact trace, false if not
+	 */
+	public static boolean isContactTraceFile(File file) {
+		if (!file.getName().endsWith(TRACE_EXT)) {
+			return false;
+		}
+
+		try {
+			new ContactTraceReader(file).close();
+		} catch (SimError e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads connection events from the trace
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+		if (in == null) {
+			return events; /* all read */
+		}
+
+		try {
+			while (events.size() < nrof) {
+				int type = in.read();
+				if (type < 0) {
+					close();
+					break;
+				}
+				else if (type == INTERFACE) {
+					interfaceTypes.add(in.readUTF());
+					continue;
+				}
+				else if (type != UP && type != DOWN) {
+					throw new SimError("Invalid record type " + type +
+							" in contact trace " + traceFile);
+				}
+
+				double time = in.readDouble();
+				int from = readVarInt(in);
+				int to = readVarInt(in);
+				int interfaceIndex = readVarInt(in);
+				if (interfaceIndex >= interfaceTypes.size()) {
+					throw new SimError("Undefined interface type " +
+							interfaceIndex + " in contact trace " + traceFile);
+				}
+				events.add(new ConnectionEvent(from, to,
+						interfaceTypes.get(interfaceIndex), type == UP, time));
+			}
+		} catch (EOFException e) {
+			throw new SimError("Truncated contact trace " + traceFile, e);
+		} catch (IOException e) {
+			throw new SimError("Can't read contact trace " + traceFile +
+					": " + e, e);
+		}
+		return events;
+	}
+
+	/**
+	 * Reads an unsigned variable length int
+	 * @param in The input to read from
+	 * @return The value
+	 * @throws IOException if reading fails
+	 * @see ContactTraceWriter#writeVarInt(java.io.DataOutput, int)
+	 */
+	static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Too long variable length int");
+	}
+
+	public void close() {
+		if (in == null) {
+			return;
+		}
+		try {
+			in.close();
+			in = null;
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes connection events to a binary contact trace that can be replayed
+ * using {@link ContactTraceReader}. See the reader for the format.
+ */
+public class ContactTraceWriter {
+	private DataOutputStream out;
+	/** indexes of the interface types defined so far */
+	private Map<String, Integer> interfaceIndexes;
+
+	/**
+	 * Creates a new trace file
+	 * @param file The file to write the trace to
+	 * @throws IOException if the file can't be created
+	 */
+	public ContactTraceWriter(File file) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		this.interfaceIndexes = new HashMap<String, Integer>();
+		out.writeInt(ContactTraceReader.MAGIC);
+		out.writeInt(ContactTraceReader.VERSION);
+	}
+
+	/**
+	 * Writes a connection event to the trace
+	 * @param time Time of the event
+	 * @param from Address of the host that created or destroyed the
+	 * connection
+	 * @param to Address of the other host
+	 * @param interfaceType Type of the connected interfaces (or null)
+	 * @param up True for a connection up event, false for a down event
+	 * @throws IOException if writing fails
+	 */
+	public void writeConnection(double time, int from, int to,
+			String interfaceType, boolean up) throws IOException {
+		int interfaceIndex = 0;
+		if (interfaceType != null) {
+			Integer index = interfaceIndexes.get(interfaceType);
+			if (index == null) {
+				index = interfaceIndexes.size() + 1;
+				interfaceIndexes.put(interfaceType, index);
+				out.write(ContactTraceReader.INTERFACE);
+				out.writeUTF(interfaceType);
+			}
+			interfaceIndex = index;
+		}
+
+		out.write(up ? ContactTraceReader.UP : ContactTraceReader.DOWN);
+		out.writeDouble(time);
+		writeVarInt(out, from);
+		writeVarInt(out, to);
+		writeVarInt(out, interfaceIndex);
+	}
+
+	/**
+	 * Writes an unsigned variable length int
+	 * @param out The output to write to
+	 * @param value The (non-negative) value
+	 * @throws IOException if writing fails
+	 */
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Flushes and closes the trace file
+	 * @throws IOException if writing fails
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+}
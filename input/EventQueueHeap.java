@@ -0,0 +1,192 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event queue that merges other event queues. Queues whose next event's 
+ * time can change only when their {@link EventQueue#nextEvent()} is called
+ * (message event generators and external events queues) are kept in a 
+ * binary heap keyed by their next event's time, so after an event only the
+ * queue that provided it needs to be re-keyed. Times of other queues (e.g.,
+ * queues that receive events from outside the simulator) are checked every
+ * time the next event is requested. If several queues have an event at the
+ * same time, the queue that was first in the list of merged queues goes 
+ * first.
+ */
+public class EventQueueHeap implements EventQueue, Serializable {
+	private static final long serialVersionUID = 7287769819207585632L;
+	/** The heap of queues; queue with the earliest event at index 0 */
+	private EventQueue[] heap;
+	/** Next event's time of each queue in the heap */
+	private double[] keys;
+	/** Index of each queue in the heap in the original list of queues */
+	private int[] order;
+	/** Number of queues in the heap */
+	private int size;
+	/** Queues that are checked every time and their indexes in the list */
+	private List<EventQueue> polled;
+	private List<Integer> polledOrder;
+	
+	/**
+	 * Creates a new heap from the given queues.
+	 * @param queues The queues to merge
+	 */
+	public EventQueueHeap(List<EventQueue> queues) {
+		int n = queues.size();
+		this.heap = new EventQueue[n];
+		this.keys = new double[n];
+		this.order = new int[n];
+		this.size = 0;
+		this.polled = new ArrayList<EventQueue>();
+		this.polledOrder = new ArrayList<Integer>();
+		
+		for (int i=0; i<n; i++) {
+			EventQueue eq = queues.get(i);
+			if (isSelfContained(eq)) {
+				this.heap[size] = eq;
+				this.keys[size] = eq.nextEventsTime();
+				this.order[size] = i;
+				siftUp(size);
+				size++;
+			}
+			else {
+				this.polled.add(eq);
+				this.polledOrder.add(i);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the next event of the queue that has the earliest event, or
+	 * an ExternalEvent with time of Double.MAX_VALUE if no queue has events 
+	 * left.
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		int p = nextPolledIndex();
+		
+		if (p >= 0) { /* a polled queue has the next event */
+			return this.polled.get(p).nextEvent();
+		}
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		
+		ExternalEvent ee = this.heap[0].nextEvent();
+		this.keys[0] = this.heap[0].nextEventsTime(); // re-key only the top
+		siftDown(0);
+		return ee;
+	}
+	
+	/**
+	 * Returns the earliest next event's time of all the queues
+	 * @return the earliest next event's time or Double.MAX_VALUE if no queue
+	 * has events left
+	 */
+	public double nextEventsTime() {
+		int p = nextPolledIndex();
+		if (p >= 0) {
+			return this.polled.get(p).nextEventsTime();
+		}
+		return this.size > 0 ? this.keys[0] : Double.MAX_VALUE;
+	}
+	
+	/**
+	 * Returns the index of the polled queue whose event should be returned 
+	 * next or -1 if the next event should come from the heap
+	 * @return the index of the polled queue or -1
+	 */
+	private int nextPolledIndex() {
+		int next = -1;
+		double time = this.size > 0 ? this.keys[0] : Double.MAX_VALUE;
+		int nextOrder = this.size > 0 ? this.order[0] : Integer.MAX_VALUE;
+		
+		for (int i=0, n=this.polled.size(); i<n; i++) {
+			double t = this.polled.get(i).nextEventsTime();
+			int o = this.polledOrder.get(i);
+			if (t < time || (t == time && o < nextOrder)) {
+				next = i;
+				time = t;
+				nextOrder = o;
+			}
+		}
+		
+		return next;
+	}
+	
+	/**
+	 * Returns true if the queue's next event's time can change only
+	 * when its next event is requested
+	 * @param eq The queue to check
+	 * @return True if the queue can be kept in the heap
+	 */
+	private boolean isSelfContained(EventQueue eq) {
+		return eq instanceof MessageEventGenerator || 
+			eq instanceof ExternalEventsQueue;
+	}
+	
+	/**
+	 * Returns true if queue at index i should be before the queue at j
+	 */
+	private boolean isBefore(int i, int j) {
+		if (this.keys[i] != this.keys[j]) {
+			return this.keys[i] < this.keys[j];
+		}
+		return this.order[i] < this.order[j];
+	}
+	
+	/**
+	 * Swaps the queues at the given heap indexes
+	 */
+	private void swap(int i, int j) {
+		EventQueue eq = this.heap[i];
+		this.heap[i] = this.heap[j];
+		this.heap[j] = eq;
+		double key = this.keys[i];
+		this.keys[i] = this.keys[j];
+		this.keys[j] = key;
+		int o = this.order[i];
+		this.order[i] = this.order[j];
+		this.order[j] = o;
+	}
+	
+	/**
+	 * Moves the queue at the given index up until its parent is before it
+	 */
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!isBefore(i, parent)) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+	
+	/**
+	 * Moves the queue at the given index down until it's before its children
+	 */
+	private void siftDown(int i) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && isBefore(child + 1, child)) {
+				child++;
+			}
+			if (!isBefore(child, i)) {
+				break;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+}
@@ -0,0 +1,352 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SimError;
+
+/**
+ * <P>Sparse index from the times of an external events file to the
+ * positions of a {@link SeekableEventsReader} in the file. The index has an
+ * entry for every {@link #INTERVAL}th event: the time of the event, the
+ * reader's position before it and the connections that are up at that
+ * point. Reading can thus start from the entry before any time and the
+ * connections that are up at the time can be found by going through only
+ * the events after the entry.</P>
+ *
+ * <P>The index is built when it is needed the first time and stored to a
+ * file next to the events file (with {@link #INDEX_EXT} appended to the
+ * name). The stored index is used as long as the size and the modification
+ * time of the events file don't change. The events must be in time order.
+ * </P>
+ */
+public class EventsTimeIndex {
+	/** Extension of index files */
+	public static final String INDEX_EXT = ".tidx";
+	/** Identifier in the beginning of index files */
+	public static final int MAGIC = 0x4F4E5449;
+	/** Version of the index format */
+	public static final int VERSION = 1;
+	/** Number of events between index entries */
+	public static final int INTERVAL = 10000;
+
+	/** the index entries in time order */
+	private List<Entry> entries;
+
+	private EventsTimeIndex(List<Entry> entries) {
+		this.entries = entries;
+	}
+
+	/**
+	 * Returns the index of an events file. The stored index is loaded if it
+	 * is up to date. Otherwise the index is built and stored.
+	 * @param eventsFile The events file
+	 * @param reader Reader of the events file. Used for building the index;
+	 * the reader is at the beginning of the file again when the method
+	 * returns.
+	 * @return The index
+	 * @throws SimError if the events are not in time order
+	 */
+	public static EventsTimeIndex getIndex(File eventsFile,
+			SeekableEventsReader reader) {
+		File indexFile = new File(eventsFile.getPath() + INDEX_EXT);
+		if (indexFile.isFile()) {
+			try {
+				EventsTimeIndex index = load(indexFile, eventsFile);
+				if (index != null) {
+					return index;
+				}
+			} catch (IOException e) {
+				System.err.println("Warning: ignoring events index " +
+						indexFile + ": " + e);
+			}
+		}
+
+		EventsTimeIndex index = build(reader);
+		try {
+			index.store(indexFile, eventsFile);
+		} catch (IOException e) {
+			System.err.println("Warning: can't store events index " +
+					indexFile + ": " + e);
+		}
+		return index;
+	}
+
+	/**
+	 * Builds the index by reading all the events
+	 * @param reader Reader of the events
+	 * @return The index
+	 */
+	private static EventsTimeIndex build(SeekableEventsReader reader) {
+		List<Entry> entries = new ArrayList<Entry>();
+		OpenConnections open = new OpenConnections();
+		long start = reader.getPosition();
+		double lastTime = -Double.MAX_VALUE;
+		long nrofEvents = 0;
+
+		while (true) {
+			long position = reader.getPosition();
+			List<ExternalEvent> events = reader.readEvents(INTERVAL);
+			if (events.isEmpty()) {
+				break;
+			}
+			entries.add(new Entry(events.get(0).getTime(), position,
+					open.getOpen()));
+			for (ExternalEvent ee : events) {
+				nrofEvents++;
+				if (ee.getTime() < lastTime) {
+					throw new SimError("Can't index external events: event " +
+							nrofEvents + " (" + ee + ") is earlier than " +
+							"the previous event");
+				}
+				lastTime = ee.getTime();
+				open.apply(ee);
+			}
+		}
+
+		reader.seek(start);
+		return new EventsTimeIndex(entries);
+	}
+
+	/**
+	 * Loads the index from a file
+	 * @param indexFile The index file
+	 * @param eventsFile The events file of the index
+	 * @return The index or null if the index is not up to date
+	 * @throws IOException if the file can't be read
+	 */
+	private static EventsTimeIndex load(File indexFile, File eventsFile)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(indexFile)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION ||
+					in.readLong() != eventsFile.length() ||
+					in.readLong() != eventsFile.lastModified() ||
+					in.readInt() != INTERVAL) {
+				return null;
+			}
+
+			int nrofEntries = in.readInt();
+			List<Entry> entries = new ArrayList<Entry>(nrofEntries);
+			for (int i=0; i<nrofEntries; i++) {
+				double time = in.readDouble();
+				long position = in.readLong();
+				int nrofOpen = in.readInt();
+				List<ConnectionEvent> open =
+					new ArrayList<ConnectionEvent>(nrofOpen);
+				for (int j=0; j<nrofOpen; j++) {
+					int from = in.readInt();
+					int to = in.readInt();
+					String interfaceId = (in.readBoolean() ? in.readUTF() :
+						null);
+					open.add(new ConnectionEvent(from, to, interfaceId, true,
+							time));
+				}
+				entries.add(new Entry(time, position, open));
+			}
+			return new EventsTimeIndex(entries);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Stores the index to a file
+	 * @param indexFile The index file
+	 * @param eventsFile The events file of the index
+	 * @throws IOException if the file can't be written
+	 */
+	private void store(File indexFile, File eventsFile) throws IOException {
+		/* concurrent runs (also of other processes) may store the same
+		 * index: every run writes a file of its own and moves it in place
+		 * atomically */
+		File dir = indexFile.getAbsoluteFile().getParentFile();
+		File tmp = File.createTempFile(indexFile.getName() + ".", ".tmp",
+				dir);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(eventsFile.length());
+			out.writeLong(eventsFile.lastModified());
+			out.writeInt(INTERVAL);
+			out.writeInt(entries.size());
+			for (Entry e : entries) {
+				out.writeDouble(e.time);
+				out.writeLong(e.position);
+				out.writeInt(e.open.size());
+				for (ConnectionEvent ce : e.open) {
+					out.writeInt(ce.fromAddr);
+					out.writeInt(ce.toAddr);
+					out.writeBoolean(ce.interfaceId != null);
+					if (ce.interfaceId != null) {
+						out.writeUTF(ce.interfaceId);
+					}
+				}
+			}
+			out.close();
+			out = null;
+			try {
+				Files.move(tmp.toPath(), indexFile.toPath(),
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), indexFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Returns the entry to start reading from to find the first event at
+	 * or after the given time, i.e., the last entry whose time is earlier
+	 * than the given time (or the first entry if there's no such entry)
+	 * @param time The time
+	 * @return The entry or null if the index has no entries (the events
+	 * file has no events)
+	 */
+	public Entry getEntry(double time) {
+		if (entries.isEmpty()) {
+			return null;
+		}
+		int low = 0;
+		int high = entries.size() - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (entries.get(mid).time < time) {
+				low = mid;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		return entries.get(low);
+	}
+
+	/**
+	 * Returns the number of entries in the index
+	 * @return the number of entries in the index
+	 */
+	public int getNrofEntries() {
+		return entries.size();
+	}
+
+	/**
+	 * An entry of the index
+	 */
+	public static class Entry {
+		private double time;
+		private long position;
+		private List<ConnectionEvent> open;
+
+		private Entry(double time, long position,
+				List<ConnectionEvent> open) {
+			this.time = time;
+			this.position = position;
+			this.open = open;
+		}
+
+		/**
+		 * Returns the time of the first event after the entry's position
+		 * @return The time
+		 */
+		public double getTime() {
+			return this.time;
+		}
+
+		/**
+		 * Returns the position of the reader at the entry
+		 * @return The position
+		 */
+		public long getPosition() {
+			return this.position;
+		}
+
+		/**
+		 * Returns the connection up events of the connections that are up
+		 * at the entry's position (in the order they came up)
+		 * @return The events
+		 */
+		public List<ConnectionEvent> getOpenConnections() {
+			return this.open;
+		}
+	}
+
+	/**
+	 * Keeps track of the connections that are up after a sequence of
+	 * events. A connection is identified by its hosts (in any order) and
+	 * its interface ID.
+	 */
+	static class OpenConnections {
+		private Map<String, ConnectionEvent> open;
+
+		/**
+		 * Creates a new tracker with the given connections up
+		 * @param up The up events of the connections that are up
+		 */
+		public OpenConnections(List<ConnectionEvent> up) {
+			this.open = new LinkedHashMap<String, ConnectionEvent>();
+			for (ConnectionEvent ce : up) {
+				apply(ce);
+			}
+		}
+
+		/**
+		 * Creates a new tracker with no connections up
+		 */
+		public OpenConnections() {
+			this(new ArrayList<ConnectionEvent>(0));
+		}
+
+		/**
+		 * Updates the connections with an event. Other than connection
+		 * events are ignored.
+		 * @param ee The event
+		 */
+		public void apply(ExternalEvent ee) {
+			if (!(ee instanceof ConnectionEvent)) {
+				return;
+			}
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			String key = Math.min(ce.fromAddr, ce.toAddr) + " " +
+				Math.max(ce.fromAddr, ce.toAddr) + " " + ce.interfaceId;
+			if (!ce.isUp) {
+				open.remove(key);
+			}
+			else if (!open.containsKey(key)) {
+				open.put(key, ce);
+			}
+		}
+
+		/**
+		 * Returns the up events of the connections that are up
+		 * @return The events in the order the connections came up
+		 */
+		public List<ConnectionEvent> getOpen() {
+			return new ArrayList<ConnectionEvent>(open.values());
+		}
+	}
+}
@@ -14,15 +14,24 @@ import core.World;
  * an update request (and no further actions) to all hosts is needed.
  */
 public class ExternalEvent implements Comparable<ExternalEvent>, Serializable {
+	/** Keeps binary event files written before the queue fields compatible */
+	private static final long serialVersionUID = 4357172356999602782L;
 	/** Time of the event (simulated seconds) */
 	protected double time;
+	/** Index of the event in the scheduled updates queue's heap or -1 if
+	 * the event isn't in the queue */
+	int queueIndex = -1;
+	/** Sequence number given by the scheduled updates queue */
+	long queueSeq;
 	
 	public ExternalEvent(double time) {
 		this.time = time;
 	}
 	
 	/**
-	 * Processes the external event.
+	 * Processes the external event. Events that affect only some hosts 
+	 * should mark those hosts using {@link World#markDirty(core.DTNHost)}; 
+	 * if no hosts are marked, all hosts are updated after the event.
 	 * @param world World where the actors of the event are
 	 */
 	public void processEvent(World world) {
@@ -5,16 +5,27 @@
 package input;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+import core.DTNSim;
 import core.Settings;
+import core.SettingsError;
+import core.SimError;
 
 /**
  * Queue of external events. This class also takes care of buffering
- * the events and preloading only a proper amount of them.
+ * the events and preloading only a proper amount of them. Optionally the
+ * events are read ahead in a background thread (see 
+ * {@link #PREFETCH_SETTING}).
  */
-public class ExternalEventsQueue implements EventQueue {
+public class ExternalEventsQueue implements EventQueue, Serializable {
+	private static final long serialVersionUID = 2963403952003630582L;
 	/** ExternalEvents namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "ExternalEvents";
 	/** number of event to preload -setting id ({@value})*/
@@ -22,21 +33,47 @@ public class ExternalEventsQueue implements EventQueue {
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
 	
+	/** number of preloaded event batches to read ahead in a background 
+	 * thread -setting id ({@value}). Default is 0 (events are read when 
+	 * they're needed). */
+	public static final String PREFETCH_SETTING = "prefetch";
+	
+	/** time of the events file that is time 0 of the simulation -setting 
+	 * id ({@value}). Default is 0. Connections that are up at the start 
+	 * time come up at time 0 (see {@link StartTimeEventsReader}). */
+	public static final String START_TIME_SETTING = "startTime";
+	
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
 	
+	/** the prefetching threads that are running */
+	private static List<Prefetcher> prefetchers;
+	
+	static {
+		DTNSim.registerForReset(ExternalEventsQueue.class.getCanonicalName());
+		reset();
+	}
+	
 	private File eventsFile;
-	private ExternalEventsReader reader;
+	private transient ExternalEventsReader reader;
+	/** how many events have been read from the file */
+	private int nrofEventsRead;
 	private int nextEventIndex;
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	/** how many batches are read ahead (0 for no prefetching) */
+	private int nrofPrefetch;
+	private transient Prefetcher prefetcher;
+	/** time of the events file where reading starts */
+	private double startTime;
 	
 	/**
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * the file is assumed to be a binary file and if it ends with
+	 * {@link ContactTraceReader#TRACE_EXT}, a binary contact trace.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
@@ -47,8 +84,9 @@ public class ExternalEventsQueue implements EventQueue {
 	}
 	
 	/**
-	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING}
-	 * and {@link #PATH_SETTING}. The path setting supports value filling.
+	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING},
+	 * {@link #PATH_SETTING}, {@link #PREFETCH_SETTING} and 
+	 * {@link #START_TIME_SETTING}. The path setting supports value filling.
 	 * @param s The settings
 	 */
 	public ExternalEventsQueue(Settings s) {
@@ -58,6 +96,20 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		if (s.contains(PREFETCH_SETTING)) {
+			this.nrofPrefetch = s.getInt(PREFETCH_SETTING);
+			if (nrofPrefetch < 0) {
+				throw new SettingsError("Negative value (" + nrofPrefetch + 
+						") not accepted for setting " + PREFETCH_SETTING);
+			}
+		}
+		if (s.contains(START_TIME_SETTING)) {
+			this.startTime = s.getDouble(START_TIME_SETTING);
+			if (startTime < 0) {
+				throw new SettingsError("Negative value (" + startTime + 
+						") not accepted for setting " + START_TIME_SETTING);
+			}
+		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
@@ -65,7 +117,8 @@ public class ExternalEventsQueue implements EventQueue {
 	/**
 	 * Sets maximum number of events that are read when the next preload occurs
 	 * @param nrof Maximum number of events to read. If less than 1, default
-	 * value ( {@value DEFAULT_NROF_PRELOAD} ) is used.
+	 * value ( {@value DEFAULT_NROF_PRELOAD} ) is used. Has no effect on
+	 * the batches that are prefetched.
 	 */
 	public void setNrofPreload(int nrof) {
 		if (nrof < 1) {
@@ -76,13 +129,9 @@ public class ExternalEventsQueue implements EventQueue {
 	
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
-		
-		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
-			this.reader = new BinaryEventsReader(eventsFile);
-		}
-		else {
-			this.reader = new StandardEventsReader(eventsFile);
-		}
+		this.nrofEventsRead = 0;
+		openReader();
+		startPrefetching();
 		
 		this.queue = readEvents(nrofPreload);
 		this.nextEventIndex = 0;
@@ -137,7 +186,64 @@ public class ExternalEventsQueue implements EventQueue {
 			return this.queue.size() - this.nextEventIndex;
 		}
 	}
+	
+	/**
+	 * Opens a reader for the events file
+	 */
+	private void openReader() {
+		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+			this.reader = new BinaryEventsReader(eventsFile);
+		}
+		else if (ContactTraceReader.isContactTraceFile(eventsFile)) {
+			this.reader = new ContactTraceReader(eventsFile);
+		}
+		else {
+			this.reader = new StandardEventsReader(eventsFile);
+		}
+		if (startTime > 0) {
+			this.reader = new StartTimeEventsReader(reader, eventsFile, 
+					startTime);
+		}
+	}
+	
+	/**
+	 * Restores the queue from a checkpoint. The events file is opened again
+	 * and the events that were read before the checkpoint are skipped.
+	 * @param in The stream to read from
+	 * @see core.Checkpoint
+	 */
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (allEventsRead) {
+			return;
+		}
 		
+		openReader();
+		int skipped = 0;
+		while (skipped < nrofEventsRead) {
+			int nrof = reader.readEvents(Math.min(nrofPreload, 
+					nrofEventsRead - skipped)).size();
+			if (nrof == 0) {
+				throw new IOException("Events file " + eventsFile + 
+						" has less events than when the checkpoint was made");
+			}
+			skipped += nrof;
+		}
+		startPrefetching();
+	}
+	
+	/**
+	 * Starts reading the events ahead in a background thread if
+	 * prefetching is enabled
+	 */
+	private void startPrefetching() {
+		if (nrofPrefetch > 0) {
+			this.prefetcher = new Prefetcher(reader, nrofPreload, 
+					nrofPrefetch, eventsFile.getName());
+			prefetcher.start();
+		}
+	}
 	
 	/**
 	 * Read some events from the external events reader
@@ -150,14 +256,132 @@ public class ExternalEventsQueue implements EventQueue {
 			return new ArrayList<ExternalEvent>(0);
 		}
 		
-		List<ExternalEvent> events = reader.readEvents(nrof);
+		List<ExternalEvent> events;
+		if (prefetcher != null) {
+			events = prefetcher.nextBatch(); /* nrof is always nrofPreload */
+		}
+		else {
+			events = reader.readEvents(nrof);
+		}
+		this.nrofEventsRead += events.size();
 		
 		if (nrof > 0 && events.size() == 0) {
-			reader.close();
+			if (prefetcher == null) {
+				reader.close(); /* prefetcher closes the reader itself */
+			}
+			prefetcher = null;
 			allEventsRead = true;
 		}
 				
 		return events;
 	}
 	
+	/**
+	 * Stops all prefetching threads (e.g., of the queues of a simulation
+	 * that ended before all the events were read).
+	 */
+	public static void reset() {
+		if (prefetchers != null) {
+			synchronized (prefetchers) {
+				for (Prefetcher p : prefetchers) {
+					p.interrupt();
+				}
+			}
+		}
+		prefetchers = new ArrayList<Prefetcher>();
+	}
+	
+	/**
+	 * Thread that reads batches of events from a reader to a bounded buffer
+	 * ahead of the simulation. The batches are the same as the ones that
+	 * would be read when they are needed.
+	 */
+	private static class Prefetcher extends Thread {
+		private ExternalEventsReader reader;
+		private int batchSize;
+		private BlockingQueue<List<ExternalEvent>> batches;
+		private List<Prefetcher> registry;
+		/** error from the reader (or null) */
+		private volatile Throwable failure;
+		
+		/**
+		 * Creates a new prefetcher
+		 * @param reader The reader to read the events from
+		 * @param batchSize Maximum number of events in a batch
+		 * @param nrofBatches How many batches are read ahead
+		 * @param name Name of the events file
+		 */
+		public Prefetcher(ExternalEventsReader reader, int batchSize, 
+				int nrofBatches, String name) {
+			super("Prefetcher for " + name);
+			setDaemon(true);
+			this.reader = reader;
+			this.batchSize = batchSize;
+			this.batches = 
+				new ArrayBlockingQueue<List<ExternalEvent>>(nrofBatches);
+			this.registry = prefetchers;
+			synchronized (registry) {
+				registry.add(this);
+			}
+		}
+		
+		/**
+		 * Returns the next batch of events. Waits until the batch has been
+		 * read.
+		 * @return The batch or an empty list if all events have been read
+		 * @throws SimError if reading the events failed or the waiting was 
+		 * interrupted
+		 */
+		public List<ExternalEvent> nextBatch() {
+			List<ExternalEvent> batch;
+			try {
+				batch = batches.take();
+			} catch (InterruptedException e) {
+				throw new SimError("Interrupted while waiting for external " +
+						"events", e);
+			}
+			if (batch.isEmpty() && failure != null) {
+				batches.offer(batch); /* later calls fail too */
+				if (failure instanceof Error) {
+					throw (Error)failure;
+				}
+				throw (RuntimeException)failure;
+			}
+			return batch;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				List<ExternalEvent> batch;
+				do {
+					batch = reader.readEvents(batchSize);
+					batches.put(batch);
+				} while (!batch.isEmpty());
+			} catch (InterruptedException e) {
+				/* stopped by reset */
+			} catch (Throwable t) {
+				this.failure = t;
+				passFailure();
+			} finally {
+				reader.close();
+				synchronized (registry) {
+					registry.remove(this);
+				}
+			}
+		}
+		
+		/**
+		 * Passes an error of the reader to the simulation thread after the
+		 * batches that were read before the error
+		 */
+		private void passFailure() {
+			try {
+				batches.put(new ArrayList<ExternalEvent>(0));
+			} catch (InterruptedException e) {
+				/* stopped by reset */
+			}
+		}
+	}
+	
 }
@@ -48,6 +48,11 @@ public class ExternalMovementReader {
 	private double minY;
 	private double maxY;
 	private boolean normalize;
+	/** values of the last parsed line */
+	private double lineTime;
+	private String lineId;
+	private double lineX;
+	private double lineY;
 
 		
 	/**
@@ -105,11 +110,11 @@ public class ExternalMovementReader {
 			return moves;
 		}
 		
-		Scanner lineScan = new Scanner(lastLine);
-		double time = lineScan.nextDouble();
-		String id = lineScan.next();
-		double x = lineScan.nextDouble();
-		double y = lineScan.nextDouble();
+		parseLine(lastLine);
+		double time = lineTime;
+		String id = lineId;
+		double x = lineX;
+		double y = lineY;
 		
 		if (normalize) {
 			time -= minTime;
@@ -130,16 +135,11 @@ public class ExternalMovementReader {
 			// add previous line's tuple
 			moves.add(new Tuple<String, Coord>(id, new Coord(x,y)));		
 
-			lineScan = new Scanner(lastLine);
-			
-			try {
-				time = lineScan.nextDouble();
-				id = lineScan.next();
-				x = lineScan.nextDouble();
-				y = lineScan.nextDouble();
-			} catch (Exception e) {
-				throw new SettingsError("Invalid line '" + lastLine + "'");
-			}
+			parseLine(lastLine);
+			time = lineTime;
+			id = lineId;
+			x = lineX;
+			y = lineY;
 			
 			if (normalize) {
 				time -= minTime;
@@ -155,6 +155,60 @@ public class ExternalMovementReader {
 		return moves;
 	}
 	
+	/**
+	 * Parses the time, ID and coordinates of a line. The fields are
+	 * separated by spaces or tabs; extra fields are ignored. Lines that
+	 * can't be parsed that way are parsed using a Scanner.
+	 * @param line The line
+	 * @throws SettingsError if the line is invalid
+	 */
+	private void parseLine(String line) {
+		int end = 0;
+		try {
+			int start = skipSpace(line, end);
+			end = nextSpace(line, start);
+			lineTime = Double.parseDouble(line.substring(start, end));
+			start = skipSpace(line, end);
+			end = nextSpace(line, start);
+			lineId = line.substring(start, end);
+			start = skipSpace(line, end);
+			end = nextSpace(line, start);
+			lineX = Double.parseDouble(line.substring(start, end));
+			start = skipSpace(line, end);
+			end = nextSpace(line, start);
+			lineY = Double.parseDouble(line.substring(start, end));
+			return;
+		} catch (NumberFormatException e) {
+			/* e.g., locale specific number format */
+		}
+		
+		try {
+			Scanner lineScan = new Scanner(line);
+			lineTime = lineScan.nextDouble();
+			lineId = lineScan.next();
+			lineX = lineScan.nextDouble();
+			lineY = lineScan.nextDouble();
+		} catch (Exception e) {
+			throw new SettingsError("Invalid line '" + line + "'");
+		}
+	}
+	
+	private static int skipSpace(String line, int pos) {
+		while (pos < line.length() && Character.isWhitespace(
+				line.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+	
+	private static int nextSpace(String line, int pos) {
+		while (pos < line.length() && !Character.isWhitespace(
+				line.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+	
 	/**
 	 * Returns the time stamp where the last moves read with 
 	 * {@link #readNextMovements()} belong to.
@@ -12,6 +12,8 @@ import core.World;
  * External event for creating a message.
  */
 public class MessageCreateEvent extends MessageEvent {
+	/** Keeps binary event files written by older versions compatible */
+	private static final long serialVersionUID = -3610437139830884595L;
 	private int size;
 	private int responseSize;
 	
@@ -44,6 +46,23 @@ public class MessageCreateEvent extends MessageEvent {
 		Message m = new Message(from, to, this.id, this.size);
 		m.setResponseSize(this.responseSize);
 		from.createNewMessage(m);
+		world.markDirty(from);
+	}
+	
+	/**
+	 * Returns the size of the created message
+	 * @return The size
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the size of the response requested for the message
+	 * @return The response size (0 if no response is requested)
+	 */
+	public int getResponseSize() {
+		return this.responseSize;
 	}
 	
 	@Override
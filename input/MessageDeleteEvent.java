@@ -16,6 +16,8 @@ import core.World;
  */
 
 public class MessageDeleteEvent extends MessageEvent {
+	/** Keeps binary event files written by older versions compatible */
+	private static final long serialVersionUID = -6062159163084878341L;
 	/** is the delete caused by a drop (not "normal" removing) */
 	private boolean drop; 
 	
@@ -31,6 +33,14 @@ public class MessageDeleteEvent extends MessageEvent {
 		this.drop = drop;
 	}
 	
+	/**
+	 * Returns true if the delete is caused by a drop
+	 * @return True for a drop, false for a normal remove
+	 */
+	public boolean isDrop() {
+		return this.drop;
+	}
+	
 	/**
 	 * Deletes the message
 	 */
@@ -49,6 +59,7 @@ public class MessageDeleteEvent extends MessageEvent {
 		} else {
 			host.deleteMessage(id, drop);
 		}
+		world.markDirty(host);
 	}
 
 	@Override
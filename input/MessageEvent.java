@@ -8,6 +8,8 @@ package input;
  * A message related external event
  */
 public abstract class MessageEvent extends ExternalEvent {
+	/** Keeps binary event files written by older versions compatible */
+	private static final long serialVersionUID = 2456721507674483994L;
 	/** address of the node the message is from */
 	protected int fromAddr;
 	/** address of the node the message is to */
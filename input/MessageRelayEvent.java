@@ -12,6 +12,8 @@ import core.World;
  * hosts (start and possible abort or delivery).
  */
 public class MessageRelayEvent extends MessageEvent {
+	/** Keeps binary event files written by older versions compatible */
+	private static final long serialVersionUID = -4475218484685192512L;
 	private int stage;
 	
 	/** Message relay stage constant for start of sending */
@@ -38,6 +40,14 @@ public class MessageRelayEvent extends MessageEvent {
 		this.stage = stage;
 	}
 	
+	/**
+	 * Returns the stage of the event
+	 * @return {@link #SENDING}, {@link #TRANSFERRED}, or {@link #ABORTED}
+	 */
+	public int getStage() {
+		return this.stage;
+	}
+	
 	/**
 	 * Relays the message
 	 */
@@ -59,6 +69,8 @@ public class MessageRelayEvent extends MessageEvent {
 		default:
 			assert false : "Invalid stage (" + stage + ") for " + this;
 		}
+		world.markDirty(from);
+		world.markDirty(to);
 	}
 	
 	@Override
@@ -23,6 +23,7 @@ import core.SettingsError;
  * @see MessageEventGenerator
  */
 public class OneToEachMessageGenerator extends MessageEventGenerator {
+	private static final long serialVersionUID = -3478548199293226472L;
 	private List<Integer> toIds;
 	
 	public OneToEachMessageGenerator(Settings s) {
@@ -4,25 +4,41 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time 
- * are merged to a single update.
+ * are merged to a single update. Also other events, e.g., 
+ * {@link TimerEvent}s, can be scheduled; those are never merged and events 
+ * with the same time are returned in the order they were scheduled.
+ * Events are kept in an indexed binary heap so adding, removing and
+ * cancelling events all take logarithmic time.
  */
-public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+public class ScheduledUpdatesQueue implements EventQueue, Serializable {
+	private static final long serialVersionUID = 8797432867128112321L;
+	/** Initial capacity of the heap array */
+	private static final int INITIAL_CAPACITY = 16;
+	
+	/** The binary heap of events; smallest (time, sequence) at index 0 */
+	private ExternalEvent[] heap;
+	/** Number of events in the heap */
+	private int size;
+	/** Sequence number for the next event (for FIFO order of same times) */
+	private long nextSeq;
+	/** Plain update requests that are in the queue, mapped by their time */
+	private Map<Double, ExternalEvent> updates;
 	
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.heap = new ExternalEvent[INITIAL_CAPACITY];
+		this.size = 0;
+		this.nextSeq = 0;
+		this.updates = new HashMap<Double, ExternalEvent>();
 	}
 	
 	/**
@@ -31,15 +47,12 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-		
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		}
-		else {
-			this.nextEvent = this.updates.remove(0);
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
 		
+		ExternalEvent event = this.heap[0];
+		removeAt(0);
 		return event;
 	}
 	
@@ -49,7 +62,10 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		if (this.size == 0) {
+			return Double.MAX_VALUE;
+		}
+		return this.heap[0].getTime();
 	}
 
 	/**
@@ -57,47 +73,192 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
+		if (this.updates.containsKey(simTime)) {
+			return; // update with the given time exists -> no need for new
+		}
+		
 		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
+		this.updates.put(simTime, ee);
+		addEvent(ee);
+	}
+	
+	/**
+	 * Schedules an event to be returned by this queue at the event's time.
+	 * The event is put after all the events that have the same time.
+	 * @param ee The event to schedule
+	 * @throws IllegalStateException if the event is already in a queue
+	 */
+	public void addEvent(ExternalEvent ee) {
+		if (ee.queueIndex >= 0) {
+			throw new IllegalStateException("Event " + ee + 
+					" is already scheduled");
 		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
+		
+		if (this.size == this.heap.length) {
+			ExternalEvent[] newHeap = new ExternalEvent[this.size * 2];
+			System.arraycopy(this.heap, 0, newHeap, 0, this.size);
+			this.heap = newHeap;
 		}
-		else { // given event happens later..
-			putToQueue(ee);
+		
+		ee.queueSeq = this.nextSeq++;
+		this.heap[this.size] = ee;
+		ee.queueIndex = this.size;
+		this.size++;
+		siftUp(ee.queueIndex);
+	}
+	
+	/**
+	 * Creates a new timer and schedules it to expire at the given time
+	 * @param simTime The time when the timer should expire
+	 * @param listener The listener to notify when the timer expires
+	 * @return The scheduled timer (can be used for cancelling the timer)
+	 */
+	public TimerEvent schedule(double simTime, TimerListener listener) {
+		TimerEvent timer = new TimerEvent(simTime, listener);
+		addEvent(timer);
+		return timer;
+	}
+	
+	/**
+	 * Moves an event to a new time. If the event is not in the queue, it 
+	 * is added to it. The event is put after all the events that 
+	 * have the new time.
+	 * @param ee The event to reschedule
+	 * @param simTime The new time of the event
+	 */
+	public void reschedule(ExternalEvent ee, double simTime) {
+		cancel(ee);
+		ee.time = simTime;
+		addEvent(ee);
+	}
+	
+	/**
+	 * Removes an event from the queue
+	 * @param ee The event to remove
+	 * @return True if the event was in the queue, false if not (e.g., it was
+	 * already returned by {@link #nextEvent()})
+	 */
+	public boolean cancel(ExternalEvent ee) {
+		int i = ee.queueIndex;
+		if (i < 0 || i >= this.size || this.heap[i] != ee) {
+			return false; // not in this queue
 		}
+		removeAt(i);
+		return true;
 	}
 	
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Returns the number of events in the queue
+	 * @return the number of events in the queue
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * Removes the event at the given heap index
+	 * @param i Index of the event to remove
+	 */
+	private void removeAt(int i) {
+		ExternalEvent removed = this.heap[i];
+		this.size--;
 		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
-			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
+		if (i != this.size) {
+			ExternalEvent last = this.heap[this.size];
+			this.heap[i] = last;
+			last.queueIndex = i;
+			siftDown(i);
+			if (this.heap[i] == last) {
+				siftUp(i);
 			}
 		}
+		this.heap[this.size] = null;
 		
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);  
+		removed.queueIndex = -1;
+		if (isUpdate(removed) && 
+				this.updates.get(removed.getTime()) == removed) {
+			this.updates.remove(removed.getTime());
+		}
+	}
+	
+	/**
+	 * Moves the event at the given index up in the heap until its parent
+	 * is smaller than it
+	 * @param i Index of the event
+	 */
+	private void siftUp(int i) {
+		ExternalEvent ee = this.heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			ExternalEvent p = this.heap[parent];
+			if (!isBefore(ee, p)) {
+				break;
+			}
+			this.heap[i] = p;
+			p.queueIndex = i;
+			i = parent;
+		}
+		this.heap[i] = ee;
+		ee.queueIndex = i;
+	}
+	
+	/**
+	 * Moves the event at the given index down in the heap until its children
+	 * are larger than it
+	 * @param i Index of the event
+	 */
+	private void siftDown(int i) {
+		ExternalEvent ee = this.heap[i];
+		int half = this.size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			ExternalEvent c = this.heap[child];
+			int right = child + 1;
+			if (right < this.size && isBefore(this.heap[right], c)) {
+				child = right;
+				c = this.heap[child];
+			}
+			if (!isBefore(c, ee)) {
+				break;
+			}
+			this.heap[i] = c;
+			c.queueIndex = i;
+			i = child;
+		}
+		this.heap[i] = ee;
+		ee.queueIndex = i;
+	}
+	
+	/**
+	 * Returns true if event e1 should be returned before event e2
+	 * @param e1 The first event
+	 * @param e2 The second event
+	 * @return True if e1 has an earlier time, or the same time and it was 
+	 * scheduled before e2
+	 */
+	private boolean isBefore(ExternalEvent e1, ExternalEvent e2) {
+		int c = e1.compareTo(e2);
+		if (c != 0) {
+			return c < 0;
+		}
+		return e1.queueSeq < e2.queueSeq;
+	}
+	
+	/**
+	 * Returns true if the event is a plain update request (and not some 
+	 * other scheduled event)
+	 * @param ee The event to check
+	 * @return True if the event is an update request
+	 */
+	private boolean isUpdate(ExternalEvent ee) {
+		return ee.getClass() == ExternalEvent.class;
 	}
 	
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		String times = "updates @ " + nextEventsTime();
 		
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (int i=1; i<this.size; i++) {
+			times += ", " + this.heap[i].getTime();
 		}
 		
 		return times;
@@ -0,0 +1,27 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+/**
+ * External events reader that can continue reading from a position it has
+ * been at before (see {@link EventsTimeIndex}).
+ */
+public interface SeekableEventsReader extends ExternalEventsReader {
+
+	/**
+	 * Returns the position of the event that the next
+	 * {@link #readEvents(int)} call returns first
+	 * @return The position
+	 */
+	public long getPosition();
+
+	/**
+	 * Continues reading from a position. Also a closed reader can be moved
+	 * to a position.
+	 * @param position A position returned by {@link #getPosition()}
+	 */
+	public void seek(long position);
+
+}
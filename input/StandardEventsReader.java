@@ -5,11 +5,12 @@
 package input;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Pattern;
 
 import core.SimError;
 
@@ -38,8 +39,12 @@ import core.SimError;
  * message ID for referring to all messages the node has in message buffer 
  * (i.e., to delete all messages).
  * </P>
+ * <P> Fields are separated by whitespace. Empty lines and lines starting 
+ * with # are skipped. The file is parsed straight from a byte buffer: only
+ * the message and interface IDs become strings.
+ * </P>
  */
-public class StandardEventsReader implements ExternalEventsReader {
+public class StandardEventsReader implements SeekableEventsReader {
 	/** Identifier of message creation event ({@value}) */
 	public static final String CREATE = "C";
 	/** Identifier of message transfer start event ({@value}) */
@@ -61,154 +66,489 @@ public class StandardEventsReader implements ExternalEventsReader {
 	/** Message identifier to use to refer to all messages ({@value}) */ 
 	public static final String ALL_MESSAGES_ID = "*";
 	
-	private Scanner scanner;
+	/** size of the read buffer */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** maximum number of fields of a line that are looked at */
+	private static final int MAX_FIELDS = 8;
+	/** the largest mantissa that is exactly representable as a double */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** powers of ten that are exactly representable as doubles */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4,
+		1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+		1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private File eventsFile;
+	private FileInputStream in;
+	private Charset charset;
+	private byte[] buffer;
+	/** offset of the beginning of the read buffer in the file */
+	private long bufferOffset;
+	private int bufferPos;
+	private int bufferEnd;
+	/** true if the previous line ended with a carriage return */
+	private boolean skipLineFeed;
+
+	/** the current line and the number of bytes in it */
+	private byte[] line;
+	private int lineLength;
+	/** number of the current line (starting from 1) */
+	private int lineNr;
+	/** true if the line number is known (i.e., the reader hasn't seeked
+	 * to the middle of the file) */
+	private boolean lineNrKnown;
+	/** offset of the beginning of the current line in the file */
+	private long lineOffset;
+	/** start and end offsets of the fields of the current line */
+	private int[] fieldStart;
+	private int[] fieldEnd;
+	private int nrofFields;
 	
 	public StandardEventsReader(File eventsFile){
+		this.eventsFile = eventsFile;
 		try {
-			this.scanner = new Scanner(eventsFile);
+			this.in = new FileInputStream(eventsFile);
 		} catch (FileNotFoundException e) {
 			throw new SimError(e.getMessage(),e);
 		}
+		this.charset = Charset.defaultCharset();
+		this.buffer = new byte[BUFFER_SIZE];
+		this.line = new byte[256];
+		this.fieldStart = new int[MAX_FIELDS];
+		this.fieldEnd = new int[MAX_FIELDS];
+		this.lineNrKnown = true;
 	}
 	
 	
 	public List<ExternalEvent> readEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
-		int eventsRead = 0;
-		// skip empty and comment lines
-		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
-
-		while (eventsRead < nrof && scanner.hasNextLine()) {
-			String line = scanner.nextLine();
-			Scanner lineScan = new Scanner(line);
-			if (skipPattern.matcher(line).matches()) {
+
+		while (events.size() < nrof && readLine()) {
+			splitLine();
+			if (nrofFields == 0 || line[0] == '#') {
 				// skip empty and comment lines
 				continue;
 			}
-			
-			double time;
-			String action;
-			String msgId;
-			int hostAddr;
-			int host2Addr;
-					
+
 			try {
-				time = lineScan.nextDouble();
-				action = lineScan.next();		
+				events.add(parseEvent());
+			} catch (IllegalArgumentException e) {
+				throw new SimError("Can't parse external event from " + 
+						(lineNrKnown ? "line " + lineNr : "byte offset " + 
+								lineOffset) + " of " + eventsFile + ": '" + 
+						new String(line, 0, lineLength, charset) + "' (" + 
+						e.getMessage() + ")", e);
+			}
+		}
+		
+		return events;
+	}
+
+	/**
+	 * Creates an event from the fields of the current line
+	 * @return The event
+	 * @throws IllegalArgumentException if the line isn't a valid event
+	 * (e.g., {@link NumberFormatException} if a number field is invalid)
+	 */
+	private ExternalEvent parseEvent() {
+		double time = parseDouble(0);
+		int action = 1; /* index of the action field */
+		String msgId;
+		int hostAddr;
+		int host2Addr;
+
+		if (fieldEquals(action, DROP)) {
+			msgId = getString(2);
+			hostAddr = getHostAddress(3);
+			return new MessageDeleteEvent(hostAddr, msgId, time, true);
+		}
+		else if (fieldEquals(action, REMOVE)) {
+			msgId = getString(2);
+			hostAddr = getHostAddress(3);
+			return new MessageDeleteEvent(hostAddr, msgId, time, false);
+		}
+		else if (fieldEquals(action, CONNECTION)) {
+			boolean isUp;
+			hostAddr = getHostAddress(2);
+			host2Addr = getHostAddress(3);
 			
-				if (action.equals(DROP)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, true));
-				}
-				else if (action.equals(REMOVE)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, false));
+			String interfaceId = null;
+			if (nrofFields > 5) {
+				interfaceId = getString(5);
+			}	
+			
+			if (fieldEqualsIgnoreCase(4, CONNECTION_UP)) {
+				isUp = true;
+			}
+			else if (fieldEqualsIgnoreCase(4, CONNECTION_DOWN)) {
+				isUp = false;
+			}
+			else {
+				throw new IllegalArgumentException("Unknown up/down value '" + 
+						getString(4) + "'");
+			}
+			
+			return new ConnectionEvent(hostAddr, host2Addr, interfaceId, 
+					isUp, time);
+		}
+
+		msgId = getString(2);
+		hostAddr = getHostAddress(3);
+		host2Addr = getHostAddress(4);
+	
+		if (fieldEquals(action, CREATE)){
+			int size = parseInt(5);
+			int respSize = 0;
+			if (nrofFields > 6 && isInt(6)) {
+				respSize = parseInt(6);
+			}
+			return new MessageCreateEvent(hostAddr, host2Addr, msgId, size,
+					respSize, time);
+		}
+
+		int stage = -1;
+		if (fieldEquals(action, SEND)) {
+			stage = MessageRelayEvent.SENDING;
+		}
+		else if (fieldEquals(action, DELIVERED)) {
+			stage = MessageRelayEvent.TRANSFERRED;
+		}
+		else if (fieldEquals(action, ABORT)) {
+			stage = MessageRelayEvent.ABORTED;
+		}
+		else {
+			throw new IllegalArgumentException("Unknown action '" + 
+					getString(action) + "' in external events");
+		}
+		return new MessageRelayEvent(hostAddr, host2Addr, msgId, time, stage);
+	}
+
+	/**
+	 * Reads the next line (without the line terminator) to the line buffer
+	 * @return True if a line was read, false if the file ended
+	 * @throws SimError if the file can't be read
+	 */
+	private boolean readLine() {
+		lineLength = 0;
+		lineOffset = getPosition();
+		boolean readAny = false;
+
+		while (true) {
+			if (bufferPos == bufferEnd && !fillBuffer()) {
+				if (readAny) {
+					lineNr++; /* the last line had no terminator */
 				}
-				else if (action.equals(CONNECTION)) {
-					String connEventType;
-					boolean isUp;
-					hostAddr = getHostAddress(lineScan.next());
-					host2Addr = getHostAddress(lineScan.next());
-					connEventType = lineScan.next();
-					
-					String interfaceId = null;
-					if (lineScan.hasNext()) {
-						interfaceId = lineScan.next();
-					}	
-					
-					if (connEventType.equalsIgnoreCase(CONNECTION_UP)) {
-						isUp = true;
-					}
-					else if (connEventType.equalsIgnoreCase(CONNECTION_DOWN)) {
-						isUp = false;
-					}
-					else {
-						throw new SimError("Unknown up/down value '" + 
-								connEventType + "'");
-					}
-					
-					ConnectionEvent ce = new ConnectionEvent(hostAddr, 
-							host2Addr, interfaceId, isUp, time);
-					
-					events.add(ce);
+				return readAny;
+			}
+			byte b = buffer[bufferPos++];
+			if (skipLineFeed) {
+				skipLineFeed = false;
+				if (b == '\n') {
+					continue; /* second half of a \r\n terminator */
 				}
-				else {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-				
-					host2Addr = getHostAddress(lineScan.next());
-				
-					if (action.equals(CREATE)){
-						int size = lineScan.nextInt();
-						int respSize = 0;
-						if (lineScan.hasNextInt()) {
-							respSize = lineScan.nextInt();
-						}
-						events.add(new MessageCreateEvent(hostAddr, host2Addr,
-								msgId, size, respSize, time));
-					}
-					else {
-						int stage = -1;
-						if (action.equals(SEND)) {
-							stage = MessageRelayEvent.SENDING;
-						}
-						else if (action.equals(DELIVERED)) {
-							stage = MessageRelayEvent.TRANSFERRED;
-						}
-						else if (action.equals(ABORT)) {
-							stage = MessageRelayEvent.ABORTED;
-						}
-						else {
-							throw new SimError("Unknown action '" + action + 
-								"' in external events");
-						}
-						events.add(new MessageRelayEvent(hostAddr, host2Addr,
-								msgId, time, stage));
-					}						
+			}
+			readAny = true;
+			if (b == '\n' || b == '\r') {
+				skipLineFeed = (b == '\r');
+				lineNr++;
+				return true;
+			}
+			if (lineLength == line.length) {
+				byte[] longer = new byte[line.length * 2];
+				System.arraycopy(line, 0, longer, 0, lineLength);
+				line = longer;
+			}
+			line[lineLength++] = b;
+		}
+	}
+
+	/**
+	 * Fills the read buffer from the file
+	 * @return True if something was read, false if the file ended
+	 */
+	private boolean fillBuffer() {
+		if (in == null) {
+			return false;
+		}
+		try {
+			bufferOffset += bufferEnd;
+			bufferPos = 0;
+			bufferEnd = 0;
+			int n = in.read(buffer, 0, buffer.length);
+			while (n == 0) {
+				n = in.read(buffer, 0, buffer.length);
+			}
+			if (n < 0) {
+				close();
+				return false;
+			}
+			bufferEnd = n;
+			return true;
+		} catch (IOException e) {
+			throw new SimError("Can't read external events file " + 
+					eventsFile + ": " + e, e);
+		}
+	}
+
+	/**
+	 * Finds the whitespace separated fields of the current line
+	 */
+	private void splitLine() {
+		nrofFields = 0;
+		int i = 0;
+		while (nrofFields < MAX_FIELDS) {
+			while (i < lineLength && isWhitespace(line[i])) {
+				i++;
+			}
+			if (i == lineLength) {
+				break;
+			}
+			fieldStart[nrofFields] = i;
+			while (i < lineLength && !isWhitespace(line[i])) {
+				i++;
+			}
+			fieldEnd[nrofFields++] = i;
+		}
+	}
+
+	/**
+	 * Returns true for the (ASCII) bytes that separate fields
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+	}
+
+	/**
+	 * Makes sure that the current line has the field
+	 * @throws IllegalArgumentException if the line has less fields
+	 */
+	private void checkField(int field) {
+		if (field >= nrofFields) {
+			throw new IllegalArgumentException("Expected at least " + (field + 1) + 
+					" fields but found only " + nrofFields);
+		}
+	}
+
+	/**
+	 * Returns true if a field is equal to the given (ASCII) string
+	 */
+	private boolean fieldEquals(int field, String value) {
+		checkField(field);
+		int start = fieldStart[field];
+		if (fieldEnd[field] - start != value.length()) {
+			return false;
+		}
+		for (int i=0; i<value.length(); i++) {
+			if (line[start + i] != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if a field is equal to the given (ASCII) string when the
+	 * case of the letters is ignored
+	 */
+	private boolean fieldEqualsIgnoreCase(int field, String value) {
+		checkField(field);
+		int start = fieldStart[field];
+		if (fieldEnd[field] - start != value.length()) {
+			return false;
+		}
+		for (int i=0; i<value.length(); i++) {
+			if (Character.toLowerCase((char)line[start + i]) != 
+				Character.toLowerCase(value.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a field as a string
+	 */
+	private String getString(int field) {
+		checkField(field);
+		return new String(line, fieldStart[field], 
+				fieldEnd[field] - fieldStart[field], charset);
+	}
+
+	/**
+	 * Parses a double value from a field. Plain decimal numbers whose
+	 * digits fit to a double are parsed directly from the bytes (the result
+	 * is exact, like the one of {@link Double#parseDouble(String)}), other
+	 * forms are parsed by {@link Double#parseDouble(String)}.
+	 * @throws NumberFormatException if the field is not a number
+	 */
+	private double parseDouble(int field) {
+		checkField(field);
+		int i = fieldStart[field];
+		int end = fieldEnd[field];
+		boolean negative = false;
+		if (line[i] == '-' || line[i] == '+') {
+			negative = (line[i] == '-');
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1; /* no decimal point seen */
+		for (; i < end; i++) {
+			byte b = line[i];
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (decimals >= 0) {
+					decimals++;
 				}
-				// discard the newline in the end
-				if (lineScan.hasNextLine()) {
-					lineScan.nextLine(); // TODO: test
+				if (mantissa > MAX_EXACT_MANTISSA) {
+					break;
 				}
-				eventsRead++;
-			} catch (Exception e) {
-				throw new SimError("Can't parse external event " + 
-						(eventsRead+1) + " from '" + line + "'", e);
+			}
+			else if (b == '.' && decimals < 0) {
+				decimals = 0;
+			}
+			else {
+				break;
 			}
 		}
-		
-		return events;
+
+		if (i < end || digits == 0 || decimals >= POWERS_OF_TEN.length) {
+			return Double.parseDouble(getString(field)); /* not simple */
+		}
+		double value = mantissa;
+		if (decimals > 0) {
+			value /= POWERS_OF_TEN[decimals];
+		}
+		return (negative ? -value : value);
+	}
+
+	/**
+	 * Returns true if a field is a (non-negative) decimal integer that fits
+	 * to an int
+	 */
+	private boolean isInt(int field) {
+		checkField(field);
+		return parseDigits(fieldStart[field], fieldEnd[field]) >= 0;
 	}
 
 	/**
-	 * Parses a host address from a hostId string (the numeric part after
+	 * Parses an int value from a field
+	 * @throws NumberFormatException if the field is not an int
+	 */
+	private int parseInt(int field) {
+		checkField(field);
+		int value = parseDigits(fieldStart[field], fieldEnd[field]);
+		if (value < 0) {
+			return Integer.parseInt(getString(field)); /* e.g. negative */
+		}
+		return value;
+	}
+
+	/**
+	 * Parses the value of a run of decimal digits of the line
+	 * @param start Offset of the first digit
+	 * @param end Offset after the last digit
+	 * @return The value or -1 if the range is empty, has other characters 
+	 * than digits or the value doesn't fit to an int
+	 */
+	private int parseDigits(int start, int end) {
+		if (start == end) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			byte b = line[i];
+			if (b < '0' || b > '9') {
+				return -1;
+			}
+			value = value * 10 + (b - '0');
+			if (value > Integer.MAX_VALUE) {
+				return -1;
+			}
+		}
+		return (int)value;
+	}
+
+	/**
+	 * Parses a host address from a hostId field (the numeric part after
 	 * optional non-numeric part).
-	 * @param hostId The id to parse the address from
+	 * @param field Index of the field to parse the address from
 	 * @return The address
-	 * @throws SimError if no address could be parsed from the id
+	 * @throws IllegalArgumentException if no address could be parsed from
+	 * the id
 	 */
-	private int getHostAddress(String hostId) {
-		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
-			addressPart = hostId; // host id is only the address
+	private int getHostAddress(int field) {
+		checkField(field);
+		int start = fieldStart[field];
+		int end = fieldEnd[field];
+		int digitsStart = end;
+		while (digitsStart > start && line[digitsStart-1] >= '0' && 
+				line[digitsStart-1] <= '9') {
+			digitsStart--;
 		}
-		else if (hostId.matches("^\\D+\\d+$")) {
-			String [] parts = hostId.split("\\D");
-			addressPart = parts[parts.length-1]; // last occurence is the addr
+		for (int i = start; i < digitsStart; i++) {
+			if (line[i] >= '0' && line[i] <= '9') {
+				digitsStart = end; /* digits in the middle of the id */
+			}
 		}
-		else {
-			throw new SimError("Invalid host ID '" + hostId + "'");
+
+		int address = parseDigits(digitsStart, end);
+		if (address < 0) {
+			if (digitsStart < end) {
+				/* too large number; report it like Integer.parseInt */
+				throw new NumberFormatException("For input string: \"" +
+						new String(line, digitsStart, end - digitsStart,
+								charset) + "\"");
+			}
+			throw new IllegalArgumentException("Invalid host ID '" + getString(field) + "'");
 		}
-		
-		return Integer.parseInt(addressPart);
+		return address;
+	}
+	
+	/**
+	 * Returns the byte offset of the line of the next event
+	 * @return The byte offset
+	 */
+	public long getPosition() {
+		return bufferOffset + bufferPos;
+	}
+
+	/**
+	 * Continues reading from a byte offset. The offset should be at the
+	 * beginning of a line.
+	 * @param position The byte offset
+	 * @throws SimError if the file can't be read
+	 */
+	public void seek(long position) {
+		try {
+			if (in == null) {
+				in = new FileInputStream(eventsFile);
+			}
+			in.getChannel().position(position);
+		} catch (IOException e) {
+			throw new SimError("Can't read external events file " + 
+					eventsFile + ": " + e, e);
+		}
+		bufferOffset = position;
+		bufferPos = 0;
+		bufferEnd = 0;
+		skipLineFeed = false;
+		lineNr = 0;
+		lineNrKnown = (position == 0);
 	}
 	
 	public void close() {
-		this.scanner.close();
+		if (in == null) {
+			return;
+		}
+		try {
+			in.close();
+		} catch (IOException e) {
+			throw new SimError("Can't close external events file " + 
+					eventsFile + ": " + e, e);
+		}
+		in = null;
 	}
 
 }
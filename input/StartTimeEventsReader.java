@@ -0,0 +1,106 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Reads the events of another reader starting from a given time of the
+ * events file. The given time is time 0 of the returned events: all event
+ * times are shifted by the start time. The first events are connection up
+ * events (at time 0) for the connections that are up at the start time.
+ * Only connections are restored; message events that refer to messages
+ * created before the start time are returned as they are.</P>
+ *
+ * <P>If the reader is a {@link SeekableEventsReader}, reading starts from
+ * the closest earlier entry of the file's {@link EventsTimeIndex}. Other
+ * readers are read from the beginning of the file.</P>
+ */
+public class StartTimeEventsReader implements ExternalEventsReader {
+	/** how many events are read at a time while finding the start */
+	private static final int SKIP_BATCH = 1000;
+
+	private ExternalEventsReader reader;
+	private double startTime;
+	/** the events to return before the reader's events */
+	private List<ExternalEvent> pending;
+	private int nextPending;
+
+	/**
+	 * Constructor.
+	 * @param reader The reader of the events (at the beginning of the file)
+	 * @param eventsFile The file the events are read from
+	 * @param startTime The time of the file to start from
+	 */
+	public StartTimeEventsReader(ExternalEventsReader reader, File eventsFile,
+			double startTime) {
+		this.reader = reader;
+		this.startTime = startTime;
+
+		EventsTimeIndex.OpenConnections open =
+			new EventsTimeIndex.OpenConnections();
+		if (reader instanceof SeekableEventsReader) {
+			SeekableEventsReader seekable = (SeekableEventsReader)reader;
+			EventsTimeIndex.Entry entry =
+				EventsTimeIndex.getIndex(eventsFile, seekable).getEntry(
+						startTime);
+			if (entry != null) {
+				seekable.seek(entry.getPosition());
+				open = new EventsTimeIndex.OpenConnections(
+						entry.getOpenConnections());
+			}
+		}
+
+		/* go through the events before the start time */
+		List<ExternalEvent> first = new ArrayList<ExternalEvent>(0);
+		skip: while (true) {
+			List<ExternalEvent> events = reader.readEvents(SKIP_BATCH);
+			if (events.isEmpty()) {
+				break;
+			}
+			for (int i=0, n=events.size(); i<n; i++) {
+				ExternalEvent ee = events.get(i);
+				if (ee.getTime() >= startTime) {
+					first = events.subList(i, n);
+					break skip;
+				}
+				open.apply(ee);
+			}
+		}
+
+		this.pending = new ArrayList<ExternalEvent>();
+		for (ConnectionEvent ce : open.getOpen()) {
+			pending.add(new ConnectionEvent(ce.fromAddr, ce.toAddr,
+					ce.interfaceId, true, startTime));
+		}
+		pending.addAll(first);
+		this.nextPending = 0;
+	}
+
+	public List<ExternalEvent> readEvents(int nrof) {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+		while (events.size() < nrof && nextPending < pending.size()) {
+			events.add(pending.get(nextPending++));
+		}
+		if (nextPending == pending.size()) {
+			pending.clear();
+			nextPending = 0;
+		}
+		if (events.size() < nrof) {
+			events.addAll(reader.readEvents(nrof - events.size()));
+		}
+
+		for (ExternalEvent ee : events) {
+			ee.time -= startTime;
+		}
+		return events;
+	}
+
+	public void close() {
+		reader.close();
+	}
+}
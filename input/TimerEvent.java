@@ -0,0 +1,48 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import core.World;
+
+/**
+ * Timer that notifies a {@link TimerListener} when the simulation time 
+ * reaches the timer's time. Unlike other events, an expiring timer doesn't
+ * cause all hosts to be updated; listeners that need a host to be updated
+ * right away can mark it with {@link World#markDirty(core.DTNHost)}. 
+ */
+public class TimerEvent extends ExternalEvent {
+	private static final long serialVersionUID = -8876690666175830690L;
+	/** The listener to notify when the timer expires */
+	private TimerListener listener;
+	
+	/**
+	 * Creates a new timer. The timer must be added to a queue to expire.
+	 * @param time Time when the timer expires
+	 * @param listener The listener to notify when the timer expires
+	 */
+	public TimerEvent(double time, TimerListener listener) {
+		super(time);
+		this.listener = listener;
+	}
+	
+	@Override
+	public void processEvent(World world) {
+		this.listener.timerExpired(this);
+	}
+	
+	/**
+	 * Returns true if the timer is waiting in a queue to expire
+	 * @return True if the timer is scheduled, false if it has expired or
+	 * was cancelled
+	 */
+	public boolean isScheduled() {
+		return this.queueIndex >= 0;
+	}
+	
+	@Override
+	public String toString() {
+		return "TIMER @" + this.time + " " + this.listener;
+	}
+}
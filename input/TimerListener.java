@@ -0,0 +1,24 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.io.Serializable;
+
+/**
+ * Interface for classes that want to be informed when a timer they 
+ * scheduled expires. Listeners are written to checkpoints together with 
+ * their timers, so they must be serializable.
+ * @see core.World#scheduleTimer(double, TimerListener)
+ */
+public interface TimerListener extends Serializable {
+
+	/**
+	 * Method is called when a timer expires. The simulation clock is set to 
+	 * the timer's time. The timer can be rescheduled from this method.
+	 * @param timer The timer that expired
+	 */
+	public void timerExpired(TimerEvent timer);
+	
+}
@@ -4,14 +4,21 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 import movement.MovementModel;
 
 import core.Coord;
 import core.DTNSim;
+import core.HostPositions;
 import core.NetworkInterface;
 import core.Settings;
 
@@ -38,8 +45,33 @@ import core.Settings;
  * from zero to conserve memory. 
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = -144713090016396507L;
 	private GridCell[][] cells;
-	private HashMap<NetworkInterface,GridCell> ginterfaces;
+	/** cells of the interfaces (in the order the interfaces were added) */
+	private LinkedHashMap<NetworkInterface,GridCell> ginterfaces;
+	/** interfaces whose cells are updated before the next query */
+	private LinkedHashSet<NetworkInterface> lazyInterfaces;
+	/** cells that had interfaces when the latest snapshot was taken */
+	private List<GridCell> snapshotCells;
+	/** how many candidates can be sorted to the near interfaces' order 
+	 * (also the bit mask for the candidate index in the sort keys) */
+	private static final int MAX_SORTED_CANDIDATES = 0xFFFF;
+	/** how many neighbor cells fit in the sort keys (the keys are sorted 
+	 * as signed values, so the cell index can't use the sign bit) */
+	private static final int MAX_SORTED_CELLS = 0x7FFF;
+	/** reused result list of the near interfaces queries (created lazily) */
+	private transient ArrayList<NetworkInterface> nearInterfaces;
+	/** reused sort keys of the candidate near interfaces queries */
+	private transient long[] sortKeys;
+	/** reused list of the occupied cells of the pair sweeps */
+	private transient ArrayList<GridCell> sweepCells;
+	/** number of the latest pair sweep (marks the cells it has found) */
+	private int sweepRound;
+	/** largest range of the interfaces in the latest pair sweep */
+	private double sweepRange;
+	/** per-thread result lists of the snapshot near interfaces queries 
+	 * (created when the first snapshot is taken) */
+	private transient ThreadLocal<ArrayList<NetworkInterface>> snapshotNear;
 	private int cellSize;
 	private int rows;
 	private int cols;
@@ -77,10 +109,12 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 
 		for (int i=0; i<rows+2; i++) {
 			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
+				this.cells[i][j] = new GridCell(i, j);
 			}
 		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		ginterfaces = new LinkedHashMap<NetworkInterface,GridCell>();
+		snapshotCells = new ArrayList<GridCell>();
+		lazyInterfaces = new LinkedHashSet<NetworkInterface>();
 	}
 
 	/**
@@ -107,7 +141,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
+		GridCell c = cellOf(ni);
 		c.addInterface(ni);
 		ginterfaces.put(ni,c);
 	}
@@ -122,6 +156,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 			c.removeInterface(ni);
 		}
 		ginterfaces.remove(ni);
+		lazyInterfaces.remove(ni);
 	}
 
 	/**
@@ -139,8 +174,45 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
+		if (!lazyInterfaces.isEmpty()) {
+			lazyInterfaces.remove(ni);
+		}
+		moveToCurrentCell(ni);
+	}
+
+	/**
+	 * Defers updating the interface's position in the grid until the next
+	 * near interfaces query. Interfaces that are not scanning don't query
+	 * the grid themselves, so their positions need to be updated only when
+	 * some other interface does.
+	 * @param ni The interface whose location may have changed
+	 */
+	@Override
+	public void updateLocationLazily(NetworkInterface ni) {
+		lazyInterfaces.add(ni);
+	}
+
+	/**
+	 * Updates the positions of the interfaces whose updates were deferred
+	 */
+	private void updateLazyLocations() {
+		if (lazyInterfaces.isEmpty()) {
+			return;
+		}
+		for (NetworkInterface ni : lazyInterfaces) {
+			moveToCurrentCell(ni);
+		}
+		lazyInterfaces.clear();
+	}
+
+	/**
+	 * Moves the interface to the cell of its current location (if it isn't
+	 * there already)
+	 * @param ni The interface to move
+	 */
+	private void moveToCurrentCell(NetworkInterface ni) {
 		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		GridCell newCell = cellOf(ni);
 
 		if (newCell != oldCell) {
 			oldCell.moveInterface(ni, newCell);
@@ -149,30 +221,60 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells 
+	 * Returns how many cells away from each other two interfaces can be if
+	 * they are within the given range
+	 * @param range The range
+	 * @return The number of cells (at least one)
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+	private int cellRadius(double range) {
+		if (range <= cellSize) {
+			return 1;
+		}
+		return (int)Math.ceil(range / cellSize);
 	}
 
 	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
+	 * Adds the interfaces of a cell and of its 
+	 * neighboring cells to a list. The cells are gone through row by row,
+	 * starting from the top left neighbor.
+	 * @param c The cell at the coordinates
+	 * @param radius How many cells away the neighbors can be
+	 * @param snapshot If true, the interfaces of the latest snapshot are 
+	 * added instead of the current ones
+	 * @param list The list where the interfaces are added to
+	 */
+	private void addNeighborInterfaces(GridCell c, int radius, 
+			boolean snapshot, ArrayList<NetworkInterface> list) {
+		int firstRow = Math.max(c.row - radius, 0);
+		int lastRow = Math.min(c.row + radius, rows + 1);
+		int firstCol = Math.max(c.col - radius, 0);
+		int lastCol = Math.min(c.col + radius, cols + 1);
+		
+		for (int i=firstRow; i<=lastRow; i++) {
+			for (int j=firstCol; j<=lastCol; j++) {
+				ArrayList<NetworkInterface> interfaces = snapshot ? 
+						cells[i][j].snapshotInterfaces : cells[i][j].interfaces;
+				if (interfaces == null) {
+					continue;
+				}
+				/* addAll would create a temporary array */
+				for (int k=0, n=interfaces.size(); k<n; k++) {
+					list.add(interfaces.get(k));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the (cleared) list for the results of near interfaces queries
+	 * @return The list
 	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+	private ArrayList<NetworkInterface> getNearInterfacesList() {
+		if (this.nearInterfaces == null) {
+			this.nearInterfaces = new ArrayList<NetworkInterface>();
+		}
+		this.nearInterfaces.clear();
+		return this.nearInterfaces;
 	}
 
 	/**
@@ -181,16 +283,41 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @return The cell
 	 */
 	private GridCell cellFromCoord(Coord c) {
+		return cellAt(c.getX(), c.getY());
+	}
+
+	/**
+	 * Get the cell having the specific coordinates
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return The cell
+	 */
+	private GridCell cellAt(double x, double y) {
 		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1; 
-		int col = (int)(c.getX()/cellSize) + 1;
+		int row = (int)(y/cellSize) + 1; 
+		int col = (int)(x/cellSize) + 1;
 
-		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
-		c + " is out of world's bounds";
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location (" + 
+		x + "," + y + ") is out of world's bounds";
 		
 		return this.cells[row][col];
 	}
 
+	/**
+	 * Get the cell of an interface's current location. The location is read
+	 * from the host position arrays if the host uses them.
+	 * @param ni The interface
+	 * @return The cell
+	 */
+	private GridCell cellOf(NetworkInterface ni) {
+		HostPositions positions = ni.getPositions();
+		if (positions == null) {
+			return cellFromCoord(ni.getHost().getLocation());
+		}
+		int index = ni.getPositionIndex();
+		return cellAt(positions.getX(index), positions.getY(index));
+	}
+
 	/**
 	 * Returns all interfaces that use the same technology and channel
 	 */
@@ -200,24 +327,218 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 
 	/**
 	 * Returns all interfaces using the same technology and channel that are in
-	 * neighboring cells
+	 * neighboring cells. If the interface's range is larger than the cell
+	 * size, also the cells further away that can be within its range are
+	 * included. The returned list is reused by the next query.
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
-		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
-		ni.clear();
+		ArrayList<NetworkInterface> ni = getNearInterfacesList();
+		updateLazyLocations();
 
 		GridCell loc = (GridCell)ginterfaces.get(netinterf);
 		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(netinterf.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				ni.addAll(neighbors[i].getInterfaces());
+			addNeighborInterfaces(cellOf(netinterf), 
+					cellRadius(netinterf.getTransmitRange()), false, ni);
+		}
+		return ni;
+	}
+
+
+	@Override
+	public boolean takeSnapshot() {
+		for (int i=0, n=snapshotCells.size(); i<n; i++) {
+			snapshotCells.get(i).snapshotInterfaces.clear();
+		}
+		snapshotCells.clear();
+		if (snapshotNear == null) {
+			snapshotNear = new ThreadLocal<ArrayList<NetworkInterface>>() {
+				@Override
+				protected ArrayList<NetworkInterface> initialValue() {
+					return new ArrayList<NetworkInterface>();
+				}
+			};
+		}
+		
+		for (NetworkInterface ni : ginterfaces.keySet()) {
+			GridCell c = cellOf(ni);
+			if (c.snapshotInterfaces == null) {
+				c.snapshotInterfaces = new ArrayList<NetworkInterface>(
+						GridCell.EXPECTED_INTERFACE_COUNT);
+			}
+			if (c.snapshotInterfaces.isEmpty()) {
+				snapshotCells.add(c);
 			}
+			c.snapshotInterfaces.add(ni);
 		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the interfaces that were in the neighboring cells when the 
+	 * latest snapshot was taken. Every thread has its own result list that
+	 * is reused by the thread's next query.
+	 */
+	@Override
+	public Collection<NetworkInterface> getSnapshotNearInterfaces(
+			NetworkInterface netinterf) {
+		ArrayList<NetworkInterface> ni = snapshotNear.get();
+		ni.clear();
+		addNeighborInterfaces(cellOf(netinterf), 
+				cellRadius(netinterf.getTransmitRange()), true, ni);
+		
+		return ni;
+	}
+	
+	/**
+	 * Returns those of the candidates that are in the cells neighboring the
+	 * interface's cell. The interfaces are returned in the same order as
+	 * {@link #getNearInterfaces(NetworkInterface)} returns them, i.e., 
+	 * ordered by the neighbor cell and then by the order in the cell.
+	 * The returned list is reused by the next query.
+	 */
+	@Override
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface netinterf, List<NetworkInterface> candidates) {
+		ArrayList<NetworkInterface> ni = getNearInterfacesList();
+		updateLazyLocations();
+		if (ginterfaces.get(netinterf) == null) {
+			return ni;
+		}
+		int radius = cellRadius(netinterf.getTransmitRange());
+		int width = 2 * radius + 1;
+		if (candidates.size() > MAX_SORTED_CANDIDATES || 
+				(long)width * width > MAX_SORTED_CELLS) {
+			return super.getNearInterfaces(netinterf, candidates);
+		}
+		
+		GridCell loc = cellOf(netinterf);
+		if (sortKeys == null || sortKeys.length < candidates.size()) {
+			sortKeys = new long[Math.max(candidates.size(), 16)];
+		}
+		long[] keys = sortKeys;
+		int nrofKeys = 0;
+		
+		for (int i=0, n=candidates.size(); i<n; i++) {
+			NetworkInterface other = candidates.get(i);
+			GridCell c = ginterfaces.get(other);
+			if (c == null || Math.abs(c.row - loc.row) > radius || 
+					Math.abs(c.col - loc.col) > radius) {
+				continue; /* not in a neighboring cell (yet) */
+			}
+			/* sort key: neighbor cell's index (in the same order as in 
+			 * addNeighborInterfaces), index in the cell, and index in 
+			 * candidates */
+			long cellIndex = (c.row - loc.row + radius) * width + 
+				(c.col - loc.col + radius);
+			long indexInCell = c.interfaces.indexOf(other);
+			keys[nrofKeys++] = (cellIndex << 48) | (indexInCell << 16) | i;
+		}
+		
+		Arrays.sort(keys, 0, nrofKeys);
+		for (int i=0; i<nrofKeys; i++) {
+			ni.add(candidates.get((int)(keys[i] & MAX_SORTED_CANDIDATES)));
+		}
+		
 		return ni;
 	}
 
+	/**
+	 * Visits every unordered pair of interfaces that are in the same or in
+	 * neighboring cells exactly once. Every occupied cell is paired with
+	 * itself and with its "forward" half of the neighbors: the next cell on
+	 * the same row and the three cells on the next row. If some interface's
+	 * range is larger than the cell size, the neighbors extend as many cells
+	 * further as the largest range requires. The cells are swept
+	 * in the order their first interfaces were added to the grid and the
+	 * interfaces in their order in the cells, so the order of the pairs is
+	 * deterministic.
+	 * @param visitor The visitor of the pairs
+	 */
+	public void visitNearPairs(PairVisitor visitor) {
+		updateLazyLocations();
+		List<GridCell> occupied = getOccupiedCells();
+		int radius = cellRadius(this.sweepRange);
+		
+		for (int k=0, m=occupied.size(); k<m; k++) {
+			GridCell c = occupied.get(k);
+			ArrayList<NetworkInterface> here = c.interfaces;
+			for (int i=0, n=here.size(); i<n; i++) {
+				NetworkInterface a = here.get(i);
+				for (int j=i+1; j<n; j++) {
+					visitor.visit(a, here.get(j));
+				}
+			}
+			int firstCol = Math.max(c.col - radius, 0);
+			int lastCol = Math.min(c.col + radius, cols + 1);
+			for (int j=c.col+1; j<=lastCol; j++) {
+				visitPairs(here, cells[c.row][j].interfaces, visitor);
+			}
+			for (int i=c.row+1, n=Math.min(c.row + radius, rows + 1); i<=n; 
+					i++) {
+				for (int j=firstCol; j<=lastCol; j++) {
+					visitPairs(here, cells[i][j].interfaces, visitor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits all pairs of interfaces where one interface is from the first
+	 * list and the other one from the second list
+	 */
+	private void visitPairs(ArrayList<NetworkInterface> first,
+			ArrayList<NetworkInterface> second, PairVisitor visitor) {
+		for (int i=0, n=first.size(); i<n; i++) {
+			NetworkInterface a = first.get(i);
+			for (int j=0, m=second.size(); j<m; j++) {
+				visitor.visit(a, second.get(j));
+			}
+		}
+	}
+
+	/**
+	 * Returns the cells that have interfaces, ordered by the first interface
+	 * (in the order the interfaces were added) in them. Also finds the
+	 * largest range of the interfaces (see {@link #sweepRange}).
+	 * @return The cells in a list that is reused by the next call
+	 */
+	private List<GridCell> getOccupiedCells() {
+		if (this.sweepCells == null) {
+			this.sweepCells = new ArrayList<GridCell>();
+		}
+		ArrayList<GridCell> occupied = this.sweepCells;
+		occupied.clear();
+		this.sweepRound++;
+		this.sweepRange = 0;
+		for (Map.Entry<NetworkInterface, GridCell> e : ginterfaces.entrySet()){
+			GridCell c = e.getValue();
+			if (c.sweepRound != this.sweepRound) {
+				c.sweepRound = this.sweepRound;
+				occupied.add(c);
+			}
+			double range = e.getKey().getTransmitRange();
+			if (range > this.sweepRange) {
+				this.sweepRange = range;
+			}
+		}
+		return occupied;
+	}
+
+	/**
+	 * Visitor of the pairs of interfaces that may be within range of each
+	 * other
+	 * @see ConnectivityGrid#visitNearPairs(PairVisitor)
+	 */
+	public interface PairVisitor {
+		/**
+		 * Visits a pair of interfaces
+		 * @param a The interface that comes first in the sweep
+		 * @param b The other interface
+		 */
+		public void visit(NetworkInterface a, NetworkInterface b);
+	}
 
 	/**
 	 * Returns a string representation of the ConnectivityCells object
@@ -232,12 +553,22 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * A single cell in the cell grid. Contains the interfaces that are 
 	 * currently in that part of the grid.
 	 */
-	public class GridCell {
+	public class GridCell implements Serializable {
+		private static final long serialVersionUID = -5160443679757181920L;
 		// how large array is initially chosen
 		private static final int EXPECTED_INTERFACE_COUNT = 5;
 		private ArrayList<NetworkInterface> interfaces;
+		/** location of the cell in the grid */
+		private int row;
+		private int col;
+		/** interfaces in this cell when the latest snapshot was taken */
+		private ArrayList<NetworkInterface> snapshotInterfaces;
+		/** the latest pair sweep that has found this cell */
+		private int sweepRound;
 
-		private GridCell() {
+		private GridCell(int row, int col) {
+			this.row = row;
+			this.col = col;
 			this.interfaces = new ArrayList<NetworkInterface>(
 					EXPECTED_INTERFACE_COUNT);
 		}
@@ -4,7 +4,10 @@
  */
 package interfaces;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import core.NetworkInterface;
 
@@ -12,7 +15,8 @@ import core.NetworkInterface;
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
-abstract public class ConnectivityOptimizer {
+abstract public class ConnectivityOptimizer implements Serializable {
+	private static final long serialVersionUID = -7250843562854579102L;
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -30,9 +34,21 @@ abstract public class ConnectivityOptimizer {
 	 */
 	abstract public void updateLocation(NetworkInterface ni);
 
+	/**
+	 * Tells that a network interface's location may have changed but the
+	 * location needs to be up to date only when some interface's near
+	 * interfaces are queried. Used by interfaces that are not scanning.
+	 * This implementation updates the location right away.
+	 * @param ni The interface whose location may have changed
+	 */
+	public void updateLocationLazily(NetworkInterface ni) {
+		updateLocation(ni);
+	}
+
 	/**
 	 * Finds all network interfaces that might be located so that they can be
-	 * connected with the network interface
+	 * connected with the network interface. The returned collection may be
+	 * reused by the next query so it must not be modified or kept.
 	 * 
 	 * @param ni network interface that needs to be connected
 	 * @return A collection of network interfaces within proximity
@@ -45,4 +61,47 @@ abstract public class ConnectivityOptimizer {
 	 * ConnectivityOptimizer
 	 */
 	abstract public Collection<NetworkInterface> getAllInterfaces();
+
+	/**
+	 * Takes a snapshot of the current locations of all the interfaces for
+	 * {@link #getSnapshotNearInterfaces(NetworkInterface)} queries. 
+	 * This implementation doesn't support snapshots.
+	 * @return True if snapshots are supported, false if not
+	 */
+	public boolean takeSnapshot() {
+		return false;
+	}
+
+	/**
+	 * Finds all network interfaces that might be located so that they can be
+	 * connected with the network interface based on the latest snapshot 
+	 * (see {@link #takeSnapshot()}). The snapshot is not modified by 
+	 * updating the interfaces' locations so this method can be called from 
+	 * multiple threads while no snapshot is being taken. The returned 
+	 * collection may be reused by the same thread's next query.
+	 * @param ni network interface that needs to be connected
+	 * @return A collection of network interfaces within proximity or null if
+	 * snapshots are not supported
+	 */
+	public Collection<NetworkInterface> getSnapshotNearInterfaces(
+			NetworkInterface ni) {
+		return null;
+	}
+
+	/**
+	 * Returns those of the given interfaces that
+	 * {@link #getNearInterfaces(NetworkInterface)} would return in the
+	 * order it would return them. The returned collection may be reused by
+	 * the next query.
+	 * @param ni network interface that needs to be connected
+	 * @param candidates The interfaces to filter and order
+	 * @return The near interfaces of the candidates
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> candidates) {
+		List<NetworkInterface> near = 
+			new ArrayList<NetworkInterface>(getNearInterfaces(ni));
+		near.retainAll(candidates);
+		return near;
+	}
 }
@@ -0,0 +1,123 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package interfaces;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import core.DTNHost;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.World;
+
+/**
+ * <P>Updates the connections of the interfaces that use grid sweeps (see
+ * {@link SimpleBroadcastInterface#GRID_SWEEP_S}) all at once, instead of
+ * every interface checking its own near interfaces.</P>
+ *
+ * <P>When every interface queries its near interfaces, every pair of
+ * interfaces in the same or neighboring cells is checked twice on every
+ * update. The sweep goes through the {@link ConnectivityGrid} and checks
+ * every such pair once (see
+ * {@link ConnectivityGrid#visitNearPairs(ConnectivityGrid.PairVisitor)}).
+ * The connections that are out of range are torn down first, each by the
+ * interface that initiated it (or by the other one if the initiator's host
+ * is not active). Out of a pair, the interface that comes first in the
+ * sweep initiates the connection, unless only the other one is scanning.
+ * </P>
+ *
+ * <P>The connections are created and torn down in the order of the sweep,
+ * before any host is updated. After the update the hosts have the same
+ * connections as when the interfaces are updated with their hosts, also
+ * with scan intervals and inactive hosts, but the routers see them come
+ * up in a different order (and the initiators may differ), so the
+ * results differ slightly.</P>
+ */
+public class ContactSweeper implements Serializable,
+		ConnectivityGrid.PairVisitor {
+	private static final long serialVersionUID = -1982213121516923345L;
+	/** sweepers by interface type */
+	private static HashMap<String, ContactSweeper> sweepers;
+
+	static {
+		DTNSim.registerForReset(ContactSweeper.class.getCanonicalName());
+		reset();
+	}
+
+	/** all the interfaces of this sweeper */
+	private List<SimpleBroadcastInterface> interfaces;
+	/** the grid of the interfaces (set when the first interface is added) */
+	private ConnectivityGrid grid;
+
+	private ContactSweeper() {
+		this.interfaces = new ArrayList<SimpleBroadcastInterface>();
+	}
+
+	public static void reset() {
+		sweepers = new HashMap<String, ContactSweeper>();
+	}
+
+	/**
+	 * Returns the sweeper for interfaces of a certain type
+	 * @param interfaceType The interface type
+	 * @return The sweeper shared by all interfaces of the type
+	 */
+	static ContactSweeper getSweeper(String interfaceType) {
+		ContactSweeper s = sweepers.get(interfaceType);
+		if (s == null) {
+			s = new ContactSweeper();
+			sweepers.put(interfaceType, s);
+		}
+		return s;
+	}
+
+	/**
+	 * Returns the sweepers used by the interfaces of the hosts
+	 * @param hosts The hosts
+	 * @return The sweepers (an empty list if no interface uses grid sweeps)
+	 */
+	public static List<ContactSweeper> getSweepers(List<DTNHost> hosts) {
+		List<ContactSweeper> list = new ArrayList<ContactSweeper>();
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (!(ni instanceof SimpleBroadcastInterface)) {
+					continue;
+				}
+				ContactSweeper s = ((SimpleBroadcastInterface)ni).getSweeper();
+				if (s != null && !list.contains(s)) {
+					list.add(s);
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Adds an interface to this sweeper
+	 * @param ni The interface
+	 */
+	void addInterface(SimpleBroadcastInterface ni) {
+		this.interfaces.add(ni);
+		this.grid = ni.getGrid();
+	}
+
+	/**
+	 * Updates the connections of all the interfaces. The {@link World} calls
+	 * this before it updates the hosts.
+	 */
+	public void update() {
+		for (int i=0, n=this.interfaces.size(); i<n; i++) {
+			this.interfaces.get(i).beginSweep();
+		}
+		this.grid.visitNearPairs(this);
+	}
+
+	public void visit(NetworkInterface a, NetworkInterface b) {
+		((SimpleBroadcastInterface)a).sweepConnect(
+				(SimpleBroadcastInterface)b);
+	}
+}
@@ -4,7 +4,9 @@
  */
 package interfaces;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import core.Connection;
 import core.DTNHost;
@@ -17,15 +19,28 @@ import core.VBRConnection;
  * the bit-rate depends on the number of other transmitting stations within
  * range The current transmit speed is updated only if there are ongoing
  * transmissions. The configured transmit speed is the maximum obtainable speed.
+ * The connections with an ongoing transfer and the number of transmitting
+ * neighbors are kept up to date when transfers start and end, so the speed
+ * is recalculated only when they (or the configured speed) change.
  */
 public class InterferenceLimitedInterface extends NetworkInterface {
+	private static final long serialVersionUID = 331117493909897886L;
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
+	/** the connections of this interface that are transferring a message */
+	private List<Connection> transferring;
+	/** number of connections whose other end {@link #isTransferring()} */
+	private int activeNeighbors;
+	/** values the current transmit speed was calculated from */
+	private int speedTransmissions;
+	private int speedActive;
+	private int speedBase;
 
 	public InterferenceLimitedInterface(Settings s) {
 		super(s);
 		this.currentTransmitSpeed = 0;
 		this.numberOfTransmissions = 0;
+		init();
 	}
 
 	/**
@@ -38,8 +53,17 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		this.transmitSpeed = ni.transmitSpeed;
 		this.currentTransmitSpeed = 0;
 		this.numberOfTransmissions = 0;
+		init();
 	}
 
+	/**
+	 * Initializes the transfer bookkeeping
+	 */
+	private void init() {
+		this.transferring = new ArrayList<Connection>();
+		this.activeNeighbors = 0;
+		this.speedTransmissions = -1; /* no speed calculated yet */
+	}
 	
 	public NetworkInterface replicate() {
 		return new InterferenceLimitedInterface(this);
@@ -102,31 +126,67 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
-		numberOfTransmissions = 0;
-		int numberOfActive = 1;
-		for (Connection con : this.connections) {
-			if (con.getMessage() != null) {
-				numberOfTransmissions++;
-			}
-			if (((InterferenceLimitedInterface)con.getOtherInterface(this)).
-					isTransferring() == true) {
-				numberOfActive++;
+		boolean wasTransferring = isTransferring();
+		numberOfTransmissions = transferring.size();
+		if (isTransferring() != wasTransferring) {
+			int change = (wasTransferring ? -1 : 1);
+			for (int i=0, n=connections.size(); i<n; i++) {
+				((InterferenceLimitedInterface)connections.get(i).
+						getOtherInterface(this)).activeNeighbors += change;
 			}
 		}
+		int numberOfActive = 1 + activeNeighbors;
 
 		int ntrans = numberOfTransmissions;
 		if ( numberOfTransmissions < 1) ntrans = 1;
 		if ( numberOfActive <2 ) numberOfActive = 2;
 
-		// Based on the equation of Gupta and Kumar - and the transmission speed
-		// is divided equally to all the ongoing transmissions 
-		currentTransmitSpeed = (int)Math.floor((double)transmitSpeed / 
-				(Math.sqrt((1.0*numberOfActive) *
-						Math.log(1.0*numberOfActive))) /
-							ntrans );
+		if (ntrans != speedTransmissions || numberOfActive != speedActive ||
+				transmitSpeed != speedBase) {
+			speedTransmissions = ntrans;
+			speedActive = numberOfActive;
+			speedBase = transmitSpeed;
+			// Based on the equation of Gupta and Kumar - and the transmission
+			// speed is divided equally to all the ongoing transmissions 
+			currentTransmitSpeed = (int)Math.floor((double)transmitSpeed / 
+					(Math.sqrt((1.0*numberOfActive) *
+							Math.log(1.0*numberOfActive))) /
+								ntrans );
+		}
 		
-		for (Connection con : getConnections()) {
-			con.update();
+		// only the transferring connections' speeds matter
+		for (int i=0, n=transferring.size(); i<n; i++) {
+			transferring.get(i).update();
+		}
+	}
+
+	@Override
+	protected void connectionAdded(Connection con) {
+		if (con.getMessage() != null && !transferring.contains(con)) {
+			transferring.add(con);
+		}
+		if (((InterferenceLimitedInterface)con.getOtherInterface(this)).
+				isTransferring()) {
+			activeNeighbors++;
+		}
+	}
+
+	@Override
+	protected void connectionRemoved(Connection con) {
+		transferring.remove(con);
+		if (((InterferenceLimitedInterface)con.getOtherInterface(this)).
+				isTransferring()) {
+			activeNeighbors--;
+		}
+	}
+
+	@Override
+	protected void transferChanged(Connection con) {
+		if (con.getMessage() == null) {
+			transferring.remove(con);
+		}
+		else if (!transferring.contains(con) && connections.contains(con)) {
+			transferring.add(con);
 		}
 	}
 
@@ -0,0 +1,388 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package interfaces;
+
+import input.ExternalEvent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.DTNSim;
+import core.NetworkInterface;
+import core.SettingsError;
+import core.SimClock;
+import core.World;
+
+/**
+ * <P>Predicts the times when the hosts of interfaces that use kinetic
+ * contacts (see {@link SimpleBroadcastInterface#KINETIC_S}) move into and
+ * out of each other's range, and connects and disconnects the interfaces
+ * exactly at those times.</P>
+ *
+ * <P>Between the changes of its destination or speed, a host moves linearly
+ * (see {@link DTNHost#getMovementVersion()}), so the time when the distance
+ * of two hosts crosses the range can be solved from a quadratic equation.
+ * After the hosts have been moved, the {@link World} calls
+ * {@link #update(World)} and the next crossing is solved for every pair of
+ * interfaces where the movement of either host has changed. The crossings
+ * are scheduled as events and a crossing that happens after an event
+ * connects two interfaces is scheduled when the event is processed. Pairs
+ * whose movement doesn't change are not checked at all until their
+ * crossing is due.</P>
+ *
+ * <P>Crossings are scheduled only as long as both hosts keep moving the same
+ * way. If a host turns at a waypoint in the middle of an update interval
+ * and a crossing happens before the end of the interval, the crossing is
+ * caught up (using the hosts' actual locations) at the end of the
+ * interval, like without kinetic contacts.</P>
+ */
+public class KineticContactPredictor implements Serializable {
+	private static final long serialVersionUID = 4734816251881348101L;
+	/** predictors by interface type */
+	private static HashMap<String, KineticContactPredictor> predictors;
+
+	static {
+		DTNSim.registerForReset(
+				KineticContactPredictor.class.getCanonicalName());
+		reset();
+	}
+
+	/** all the interfaces of this predictor */
+	private List<Node> nodes;
+	/** nodes by their interfaces */
+	private HashMap<NetworkInterface, Node> nodesByInterface;
+	/** the nodes whose movement changed since the last update (reused) */
+	private List<Node> changed;
+
+	private KineticContactPredictor() {
+		this.nodes = new ArrayList<Node>();
+		this.nodesByInterface = new HashMap<NetworkInterface, Node>();
+		this.changed = new ArrayList<Node>();
+	}
+
+	public static void reset() {
+		predictors = new HashMap<String, KineticContactPredictor>();
+	}
+
+	/**
+	 * Returns the predictor for interfaces of a certain type
+	 * @param interfaceType The interface type
+	 * @return The predictor shared by all interfaces of the type
+	 */
+	static KineticContactPredictor getPredictor(String interfaceType) {
+		KineticContactPredictor p = predictors.get(interfaceType);
+		if (p == null) {
+			p = new KineticContactPredictor();
+			predictors.put(interfaceType, p);
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the predictors used by the interfaces of the hosts
+	 * @param hosts The hosts
+	 * @return The predictors (an empty list if no interface uses kinetic
+	 * contacts)
+	 * @throws SettingsError if a host that uses kinetic contacts has active
+	 * times
+	 */
+	public static List<KineticContactPredictor> getPredictors(
+			List<DTNHost> hosts) {
+		List<KineticContactPredictor> list =
+			new ArrayList<KineticContactPredictor>();
+		for (DTNHost host : hosts) {
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (!(ni instanceof SimpleBroadcastInterface)) {
+					continue;
+				}
+				KineticContactPredictor p =
+					((SimpleBroadcastInterface)ni).getPredictor();
+				if (p == null) {
+					continue;
+				}
+				if (host.hasActiveTimes()) {
+					throw new SettingsError("Host " + host + " has active " +
+							"times; they can't be used with " +
+							ni.getInterfaceType() + "." +
+							SimpleBroadcastInterface.KINETIC_S);
+				}
+				if (!list.contains(p)) {
+					list.add(p);
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Adds an interface to this predictor
+	 * @param ni The interface
+	 */
+	void addInterface(NetworkInterface ni) {
+		Node n = new Node(ni, this.nodes.size());
+		this.nodes.add(n);
+		this.nodesByInterface.put(ni, n);
+	}
+
+	/**
+	 * Makes the predictions of an interface stale (e.g., when its range
+	 * changes) so they are made again in the next update
+	 * @param ni The interface
+	 */
+	void invalidate(NetworkInterface ni) {
+		Node n = this.nodesByInterface.get(ni);
+		if (n != null) {
+			n.version = -1;
+		}
+	}
+
+	/**
+	 * Predicts the crossings of all the interface pairs where the movement
+	 * of either host has changed since the last update. Must be called after
+	 * the hosts have been moved and the clock has been set to the end of the
+	 * update interval.
+	 * @param world The world where the crossing events are scheduled
+	 */
+	public void update(World world) {
+		double now = SimClock.getTime();
+
+		for (int i=0, n = this.nodes.size(); i < n; i++) {
+			Node node = this.nodes.get(i);
+			if (node.version != node.host.getMovementVersion()) {
+				node.snapshot(now);
+				node.changed = true;
+				this.changed.add(node);
+			}
+		}
+
+		for (int i=0, n = this.changed.size(); i < n; i++) {
+			Node node = this.changed.get(i);
+			for (int j=0, m = this.nodes.size(); j < m; j++) {
+				Node other = this.nodes.get(j);
+				/* pairs of two changed nodes are predicted only once */
+				if (other == node || (other.changed && j < node.index)) {
+					continue;
+				}
+				if (j < node.index) {
+					predict(other, node, now, world);
+				}
+				else {
+					predict(node, other, now, world);
+				}
+			}
+		}
+
+		for (int i=0, n = this.changed.size(); i < n; i++) {
+			this.changed.get(i).changed = false;
+		}
+		this.changed.clear();
+	}
+
+	/**
+	 * Catches up the connection state of a pair of interfaces and schedules
+	 * the next crossing of the pair
+	 * @param lo The node with smaller index
+	 * @param hi The node with larger index
+	 * @param now Current simulation time
+	 * @param world The world where the crossing is scheduled
+	 */
+	private void predict(Node lo, Node hi, double now, World world) {
+		Coord loLoc = lo.host.getLocation();
+		Coord hiLoc = hi.host.getLocation();
+		double range = Math.min(lo.ni.getTransmitRange(),
+				hi.ni.getTransmitRange());
+
+		boolean inRange = loLoc.distance(hiLoc) <= range;
+		if (inRange != isConnected(lo.ni, hi.ni)) {
+			if (inRange) {
+				lo.ni.connect(hi.ni);
+			}
+			else {
+				lo.ni.destroyConnection(hi.ni);
+			}
+		}
+
+		/* solve |p + w*t| = range for the relative location and velocity */
+		double px = hiLoc.getX() - loLoc.getX();
+		double py = hiLoc.getY() - loLoc.getY();
+		double wx = hi.vx - lo.vx;
+		double wy = hi.vy - lo.vy;
+		double a = wx * wx + wy * wy;
+		double b = px * wx + py * wy;
+		double c = px * px + py * py - range * range;
+		double disc = b * b - a * c;
+
+		double time = Double.NaN;
+		double leaveTime = Double.NaN;
+		if (a > 0 && disc >= 0) {
+			double sqrt = Math.sqrt(disc);
+			leaveTime = now + Math.max((-b + sqrt) / a, 0);
+			if (inRange) {
+				time = leaveTime;
+			}
+			else if (b < 0) { /* approaching */
+				time = now + (-b - sqrt) / a;
+			}
+		}
+
+		Crossing crossing = lo.crossings == null ? null : lo.crossings.get(hi);
+		if (!(time <= Math.min(lo.until, hi.until))) { /* NaN or too late */
+			if (crossing != null) {
+				world.cancelEvent(crossing);
+				lo.crossings.remove(hi);
+			}
+			return;
+		}
+
+		if (crossing == null) {
+			if (lo.crossings == null) {
+				lo.crossings = new HashMap<Node, Crossing>();
+			}
+			crossing = new Crossing(lo, hi);
+			lo.crossings.put(hi, crossing);
+		}
+		crossing.up = !inRange;
+		crossing.leaveTime = leaveTime;
+		world.rescheduleEvent(crossing, time);
+	}
+
+	/**
+	 * Connects or disconnects the interfaces of a crossing event and
+	 * schedules the time when the connected interfaces move out of range
+	 * @param crossing The crossing
+	 * @param world The world where the crossing happens
+	 */
+	private void crossed(Crossing crossing, World world) {
+		NetworkInterface from = crossing.lo.ni;
+		NetworkInterface to = crossing.hi.ni;
+
+		if (crossing.up) {
+			from.createConnection(to);
+		}
+		else {
+			from.destroyConnection(to);
+		}
+		world.markDirty(from.getHost());
+		world.markDirty(to.getHost());
+
+		if (crossing.up && crossing.leaveTime <=
+				Math.min(crossing.lo.until, crossing.hi.until)) {
+			crossing.up = false;
+			world.rescheduleEvent(crossing, crossing.leaveTime);
+		}
+		else {
+			crossing.lo.crossings.remove(crossing.hi);
+		}
+	}
+
+	/**
+	 * Returns true if two interfaces are connected
+	 */
+	private static boolean isConnected(NetworkInterface ni,
+			NetworkInterface other) {
+		List<Connection> cons = ni.getConnections();
+		for (int i=0, n = cons.size(); i < n; i++) {
+			if (cons.get(i).getOtherInterface(ni) == other) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * An interface and the linear movement of its host since the last
+	 * change
+	 */
+	private static class Node implements Serializable {
+		private static final long serialVersionUID = -768984763039622849L;
+		private NetworkInterface ni;
+		private DTNHost host;
+		private int index;
+		/** movement version of the host the velocity is valid for */
+		private int version;
+		private double vx;
+		private double vy;
+		/** time until the host moves with the velocity (at least) */
+		private double until;
+		/** has the movement changed since the last update */
+		private boolean changed;
+		/** scheduled crossings with nodes of larger index (or null) */
+		private HashMap<Node, Crossing> crossings;
+
+		private Node(NetworkInterface ni, int index) {
+			this.ni = ni;
+			this.host = ni.getHost();
+			this.index = index;
+			this.version = -1;
+		}
+
+		/**
+		 * Records the current movement of the host
+		 * @param now Current simulation time
+		 */
+		private void snapshot(double now) {
+			this.version = host.getMovementVersion();
+			this.vx = 0;
+			this.vy = 0;
+
+			Coord loc = host.getLocation();
+			Coord dest = host.getDestination();
+			if (dest == null) { /* waiting for the next path */
+				this.until = host.getNextTimeToMove();
+				return;
+			}
+
+			double dist = loc.distance(dest);
+			double speed = host.getSpeed();
+			if (dist == 0) { /* the next waypoint is taken in the next move */
+				this.until = now;
+			}
+			else if (speed == 0) {
+				this.until = Double.MAX_VALUE;
+			}
+			else {
+				this.vx = speed * (dest.getX() - loc.getX()) / dist;
+				this.vy = speed * (dest.getY() - loc.getY()) / dist;
+				this.until = now + dist / speed;
+			}
+		}
+	}
+
+	/**
+	 * Event of two interfaces moving into or out of range
+	 */
+	private class Crossing extends ExternalEvent {
+		private static final long serialVersionUID = -7735564411062077283L;
+		private Node lo;
+		private Node hi;
+		/** true for moving into range, false for moving out of range */
+		private boolean up;
+		/** the time when the interfaces move out of range after moving
+		 * into range */
+		private double leaveTime;
+
+		private Crossing(Node lo, Node hi) {
+			super(Double.MAX_VALUE);
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			crossed(this, world);
+		}
+
+		@Override
+		public String toString() {
+			return "CROSSING " + (up ? "up" : "down") + " @" + this.time +
+				" " + lo.host + "<->" + hi.host;
+		}
+	}
+}
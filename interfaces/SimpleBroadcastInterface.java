@@ -4,25 +4,77 @@
  */
 package interfaces;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
 import core.Settings;
+import core.SettingsError;
 
 /**
  * A simple Network Interface that provides a constant bit-rate service, where
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	private static final long serialVersionUID = 6248232556631837306L;
+	/**
+	 * Kinetic contacts -setting id ({@value}). Boolean. If true, the times
+	 * when hosts move into and out of range are predicted from their
+	 * movement and the interfaces are connected and disconnected exactly at
+	 * those times (see {@link KineticContactPredictor}) instead of checking
+	 * the ranges on every update. Can't be used with scan intervals or hosts
+	 * that have active times. Default = false.
+	 */
+	public static final String KINETIC_S = "kineticContacts";
+	/**
+	 * Grid sweep -setting id ({@value}). Boolean. If true, the connections
+	 * of all the interfaces of this type are updated at once by sweeping
+	 * through the connectivity grid, checking every nearby pair of
+	 * interfaces only once (see {@link ContactSweeper}). Can't be used with
+	 * kinetic contacts. Default = false.
+	 */
+	public static final String GRID_SWEEP_S = "gridSweep";
+
+	/** predictor of the contacts if kinetic contacts are used (or null) */
+	private KineticContactPredictor predictor;
+	private boolean kinetic;
+	/** sweeper of the connections if grid sweeps are used (or null) */
+	private ContactSweeper sweeper;
+	private boolean gridSweep;
+	/** is the host active in the current sweep */
+	private boolean sweepActive;
+	/** is the interface scanning in the current sweep */
+	private boolean sweepScanning;
+	/** interfaces within range found by {@link #prepareUpdate()} (or null)*/
+	private List<NetworkInterface> preparedInRange;
+	/** the round when the interfaces within range were found */
+	private int preparedRound;
+	/** list reused for the interfaces within range (created lazily) */
+	private List<NetworkInterface> inRangeList;
+	
 	/**
 	 * Reads the interface settings from the Settings file
 	 *  
 	 */
 	public SimpleBroadcastInterface(Settings s)	{
 		super(s);
+		this.kinetic = s.contains(KINETIC_S) && s.getBoolean(KINETIC_S);
+		if (this.kinetic && s.contains(SCAN_INTERVAL_S) && 
+				s.getDouble(SCAN_INTERVAL_S) > 0) {
+			throw new SettingsError(SCAN_INTERVAL_S + " can't be used with " +
+					s.getNameSpace() + "." + KINETIC_S);
+		}
+		this.gridSweep = s.contains(GRID_SWEEP_S) && 
+			s.getBoolean(GRID_SWEEP_S);
+		if (this.kinetic && this.gridSweep) {
+			throw new SettingsError(s.getNameSpace() + "." + GRID_SWEEP_S +
+					" can't be used with " + s.getNameSpace() + "." + 
+					KINETIC_S);
+		}
 	}
 		
 	/**
@@ -31,21 +83,71 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 	 */
 	public SimpleBroadcastInterface(SimpleBroadcastInterface ni) {
 		super(ni);
+		this.kinetic = ni.kinetic;
+		this.gridSweep = ni.gridSweep;
 	}
 
 	public NetworkInterface replicate()	{
 		return new SimpleBroadcastInterface(this);
 	}
 
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		if (this.kinetic) {
+			this.predictor = KineticContactPredictor.getPredictor(
+					this.interfacetype);
+			this.predictor.addInterface(this);
+		}
+		if (this.gridSweep) {
+			this.sweeper = ContactSweeper.getSweeper(this.interfacetype);
+			this.sweeper.addInterface(this);
+		}
+	}
+
+	/**
+	 * Returns the contact predictor of this interface
+	 * @return The predictor, or null if kinetic contacts are not used
+	 */
+	public KineticContactPredictor getPredictor() {
+		return this.predictor;
+	}
+
+	/**
+	 * Returns the contact sweeper of this interface
+	 * @return The sweeper, or null if grid sweeps are not used
+	 */
+	public ContactSweeper getSweeper() {
+		return this.sweeper;
+	}
+
+	/**
+	 * Returns the connectivity grid of this interface
+	 * @return The grid
+	 */
+	ConnectivityGrid getGrid() {
+		return (ConnectivityGrid)this.optimizer;
+	}
+
+	@Override
+	public void moduleValueChanged(String key, Object newValue) {
+		super.moduleValueChanged(key, newValue);
+		if (this.predictor != null && key.equals(RANGE_ID)) {
+			this.predictor.invalidate(this);
+		}
+	}
+
 	/**
 	 * Tries to connect this host to another host. The other host must be
 	 * active and within range of this host for the connection to succeed. 
 	 * @param anotherInterface The interface to connect to
 	 */
 	public void connect(NetworkInterface anotherInterface) {
+		/* the range is checked first: it is the cheapest check with the 
+		 * position arrays and rules out most of the near interfaces */
 		if (isScanning()  
-				&& anotherInterface.getHost().isActive() 
 				&& isWithinRange(anotherInterface) 
+				&& anotherInterface.getHost().isActive() 
 				&& !isConnected(anotherInterface)
 				&& (this != anotherInterface)) {
 			// new contact within range
@@ -63,9 +165,23 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 
 	/**
 	 * Updates the state of current connections (ie tears down connections
-	 * that are out of range).
+	 * that are out of range). Does nothing if kinetic contacts are used; the
+	 * predictor connects and disconnects the interface then. An interface
+	 * that is outside its scan round and has no connections only tells the
+	 * optimizer that it may have moved, and one that has connections only
+	 * checks them; neither can create new connections before the next scan.
+	 * Grid sweeps update the connections without calling this method.
 	 */
 	public void update() {
+		if (this.predictor != null || this.sweeper != null) {
+			return;
+		}
+		boolean scanning = isScanning();
+		if (!scanning && this.connections.isEmpty()) {
+			this.preparedInRange = null;
+			optimizer.updateLocationLazily(this);
+			return; /* sleeping until the next scan round */
+		}
 		// First break the old ones
 		optimizer.updateLocation(this);
 		for (int i=0; i<this.connections.size(); ) {
@@ -83,13 +199,110 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 				i++;
 			}
 		}
+		if (!scanning) {
+			this.preparedInRange = null;
+			return; /* connect() would reject all the near interfaces */
+		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
+		Collection<NetworkInterface> interfaces;
+		if (this.preparedInRange != null && isPreparedRound(preparedRound)) {
+			/* only the interfaces within range can be connected to */
+			interfaces = optimizer.getNearInterfaces(this, preparedInRange);
+		}
+		else {
+			interfaces = optimizer.getNearInterfaces(this);
+		}
+		this.preparedInRange = null;
+		
 		for (NetworkInterface i : interfaces) {
 			connect(i);
 		}
 	}
+	
+	/**
+	 * Finds the interfaces within range so that the update needs to try 
+	 * connecting only to those. This interface is included too so that the
+	 * scanning state is checked the same way as in the update.
+	 */
+	@Override
+	public void prepareUpdate() {
+		if (this.predictor != null || this.sweeper != null || 
+				!isScanning()) {
+			this.preparedInRange = null;
+			return; /* no range checks to prepare */
+		}
+		Collection<NetworkInterface> near = 
+			optimizer.getSnapshotNearInterfaces(this);
+		if (near == null) {
+			this.preparedInRange = null;
+			return; /* optimizer doesn't support snapshots */
+		}
+		
+		if (this.inRangeList == null) {
+			this.inRangeList = new ArrayList<NetworkInterface>();
+		}
+		List<NetworkInterface> inRange = this.inRangeList;
+		inRange.clear();
+		for (NetworkInterface i : near) {
+			if (i == this || isWithinRange(i)) {
+				inRange.add(i);
+			}
+		}
+		this.preparedInRange = inRange;
+		this.preparedRound = getPreparedRound();
+	}
+
+	/**
+	 * Starts a grid sweep for this interface: updates the interface's
+	 * location in the grid and tears down the connections that are out of
+	 * range. Every connection is checked by only one of its interfaces.
+	 * @see ContactSweeper#update()
+	 */
+	void beginSweep() {
+		this.sweepActive = this.host.isActive();
+		if (!this.sweepActive) {
+			this.sweepScanning = false;
+			return;
+		}
+		optimizer.updateLocation(this);
+		for (int i=0; i<this.connections.size(); ) {
+			Connection con = this.connections.get(i);
+			NetworkInterface anotherInterface = con.getOtherInterface(this);
+			boolean checker = con.isInitiator(this.host) || 
+				!anotherInterface.getHost().isActive();
+
+			if (checker && !isWithinRange(anotherInterface)) {
+				disconnect(con,anotherInterface);
+				connections.remove(i);
+			}
+			else {
+				i++;
+			}
+		}
+		this.sweepScanning = isScanning();
+	}
+
+	/**
+	 * Connects this interface and another interface found by a grid sweep
+	 * if both hosts are active, either interface is scanning, and they are
+	 * within range and not connected yet. The interface that is scanning
+	 * initiates the connection (this one if both are).
+	 * @param other The other interface
+	 */
+	void sweepConnect(SimpleBroadcastInterface other) {
+		if (!this.sweepActive || !other.sweepActive ||
+				!(this.sweepScanning || other.sweepScanning)) {
+			return;
+		}
+		if (isWithinRange(other) && !isConnected(other)) {
+			if (this.sweepScanning) {
+				createConnection(other);
+			}
+			else {
+				other.createConnection(this);
+			}
+		}
+	}
 
 	/** 
 	 * Creates a connection to another host. This method does not do any checks
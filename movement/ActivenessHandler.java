@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -15,7 +16,8 @@ import core.SimClock;
  * Object of this class tell the movement models when a node belonging
  * to a certain group is active and when not.
  */
-public class ActivenessHandler {
+public class ActivenessHandler implements Serializable {
+	private static final long serialVersionUID = -2106364770442431972L;
 	/** 
 	 * Active times -setting id ({@value}).<BR>
 	 * Syntax: <CODE>start, end</CODE><BR>
@@ -69,6 +71,15 @@ public class ActivenessHandler {
 		return timesList;
 	}
 	
+	/**
+	 * Returns true if there are times when the node is not active
+	 * @return true if active times are defined, false if the node is 
+	 * always active
+	 */
+	public boolean hasActiveTimes() {
+		return this.activeTimes != null;
+	}
+	
 	/**
 	 * Returns true if node should be active at the moment
 	 * @return true if node should be active at the moment
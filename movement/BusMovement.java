@@ -18,6 +18,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class BusMovement extends MapRouteMovement {
+	private static final long serialVersionUID = 7533293768361247522L;
 	
 	private BusControlSystem controlSystem;
 	private int id;
@@ -73,6 +74,15 @@ public class BusMovement extends MapRouteMovement {
 		return path;
 	}
 
+	/**
+	 * Returns false since the buses report their stops to a shared bus control system
+	 * @return false
+	 */
+	@Override
+	public boolean canMoveConcurrently() {
+		return false;
+	}
+	
 	@Override
 	public BusMovement replicate() {
 		return new BusMovement(this);
@@ -27,6 +27,7 @@ import core.Settings;
  */
 public class BusTravellerMovement extends MapBasedMovement implements 
 	SwitchableMovement, TransportMovement {
+	private static final long serialVersionUID = 7322010669409351599L;
 
 	public static final String PROBABILITIES_STRING = "probs";
 	public static final String PROBABILITY_TAKE_OTHER_BUS = "probTakeOtherBus";
@@ -162,6 +163,15 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		return 0;
 	}
 	
+	/**
+	 * Returns false since the travellers use a shared bus control system
+	 * @return false
+	 */
+	@Override
+	public boolean canMoveConcurrently() {
+		return false;
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new BusTravellerMovement(this);
@@ -18,6 +18,7 @@ import core.Settings;
  */
 public class CarMovement extends MapBasedMovement implements 
 	SwitchableMovement, TransportMovement {
+	private static final long serialVersionUID = 3519489362023914152L;
 
 	private Coord from;
 	private Coord to;
@@ -39,7 +40,8 @@ public class CarMovement extends MapBasedMovement implements
 	 */
 	public CarMovement(CarMovement proto) {
 		super(proto);
-		this.pathFinder = proto.pathFinder;
+		/* path finders keep the state of a search so they can't be shared */
+		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
 	}
 
 	/**
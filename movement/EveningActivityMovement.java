@@ -26,6 +26,7 @@ import core.Settings;
  */
 public class EveningActivityMovement extends MapBasedMovement 
 	implements SwitchableMovement {
+	private static final long serialVersionUID = -802000916249334740L;
 
 	private static final int WALKING_TO_MEETING_SPOT_MODE = 0;
 	private static final int EVENING_ACTIVITY_MODE = 1;
@@ -222,6 +223,15 @@ public class EveningActivityMovement extends MapBasedMovement
 		}
 	}
 	
+	/**
+	 * Returns false since the activity groups are formed using a shared control system
+	 * @return false
+	 */
+	@Override
+	public boolean canMoveConcurrently() {
+		return false;
+	}
+	
 	@Override
 	public MapBasedMovement replicate() {
 		return new EveningActivityMovement(this);
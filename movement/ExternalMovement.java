@@ -4,8 +4,10 @@
  */
 package movement;
 
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -19,9 +21,17 @@ import core.SimClock;
 import core.Tuple;
 
 /**
- * Movement model that uses external data of node locations.
+ * Movement model that uses external data of node locations. The data is
+ * read either from a text file (see {@link ExternalMovementReader}) or from
+ * a binary file (see {@link BinaryMovementReader}). Text files are read
+ * for all nodes at a time, a few time instances ahead of the simulation. 
+ * The samples of binary files are read separately for every node when the
+ * node needs a new path, but only up to the time instance the text file
+ * would have been read to. Thus the paths end at the same points and the
+ * nodes move exactly the same way as with the text file.
  */
 public class ExternalMovement extends MovementModel {
+	private static final long serialVersionUID = 7993031806593124140L;
 	/** Namespace for settings */
 	public static final String EXTERNAL_MOVEMENT_NS = "ExternalMovement";
 	/** external locations file's path -setting id ({@value})*/
@@ -32,6 +42,14 @@ public class ExternalMovement extends MovementModel {
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
 	private static ExternalMovementReader reader;
+	/** reader of a binary movement file (or null for a text file) */
+	private static BinaryMovementReader binReader;
+	/** index of the next binary file node to give to a new model */
+	private static int nextBinNode;
+	/** index of every binary file node's first sample that is not read */
+	private static int[] binCursors;
+	/** time of the last read time instance of the binary file */
+	private static double binReadTime;
 	private static String inputFileName;
 	
 	/** mapping of external id to movement model */
@@ -64,6 +82,11 @@ public class ExternalMovement extends MovementModel {
 	/** is this node active */
 	private boolean isActive;
 	
+	/** index of the node in the binary file */
+	private int binNode;
+	/** index of the node's next sample in the binary file */
+	private int nextSample;
+	
 	static {
 		DTNSim.registerForReset(ExternalMovement.class.getCanonicalName());
 		reset();
@@ -81,12 +104,36 @@ public class ExternalMovement extends MovementModel {
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
 			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
 			
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
-			samplingInterval = -1;
-			lastPreloadTime = -1;
+			if (BinaryMovementReader.isBinaryMovementFile(
+					new File(inputFileName))) {
+				binReader = new BinaryMovementReader(new File(inputFileName));
+				reader = null;
+				nextBinNode = 0;
+				/* nodes of the first time instance get the models */
+				initTime = Double.MAX_VALUE;
+				for (int i=0, n=binReader.getNrofNodes(); i<n; i++) {
+					initTime = Math.min(initTime, binReader.getTime(i, 0));
+				}
+				/* the first time instance is read */
+				binCursors = new int[binReader.getNrofNodes()];
+				for (int i=0; i<binCursors.length; i++) {
+					binCursors[i] = (binReader.getTime(i, 0) == initTime ? 
+							1 : 0);
+				}
+				binReadTime = initTime;
+				samplingInterval = -1;
+				lastPreloadTime = -1;
+			}
+			else {
+				binReader = null;
+				reader = new ExternalMovementReader(inputFileName);
+				
+				initLocations = reader.readNextMovements();
+				initTime = reader.getLastTimeStamp();
+				samplingInterval = -1;
+				lastPreloadTime = -1;
+			}
 			
 			s.setNameSpace(EXTERNAL_MOVEMENT_NS);
 			if (s.contains(NROF_PRELOAD_S)) {
@@ -109,7 +156,10 @@ public class ExternalMovement extends MovementModel {
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
 		
-		if (initLocations.size() > 0) { // we have location data left
+		if (binReader != null) {
+			initBinaryNode();
+		}
+		else if (initLocations.size() > 0) { // we have location data left
 			// gets a new location from the list
 			Tuple<String, Coord> initLoc = initLocations.remove(0); 
 			this.intialLocation = this.latestLocation = initLoc.getValue();
@@ -126,20 +176,61 @@ public class ExternalMovement extends MovementModel {
 		}		
 	}
 	
+	/**
+	 * Gives the next node of the binary file's first time instance to this 
+	 * model or sets this model inactive if there are no nodes left
+	 */
+	private void initBinaryNode() {
+		int nrofNodes = binReader.getNrofNodes();
+		while (nextBinNode < nrofNodes && 
+				binReader.getTime(nextBinNode, 0) != initTime) {
+			nextBinNode++;
+		}
+		
+		if (nextBinNode == nrofNodes) {
+			this.intialLocation = DEF_INIT_LOC;
+			isActive = false;
+			return;
+		}
+		
+		this.binNode = nextBinNode++;
+		this.intialLocation = this.latestLocation = 
+			binReader.getLocation(binNode, 0);
+		this.latestPathStartTime = initTime;
+		this.nextSample = 1;
+		isActive = true;
+	}
+	
+	/**
+	 * Adds the node's binary file samples of the time instances that have
+	 * been read to the node's paths
+	 */
+	private void readBinarySamples() {
+		int nrofSamples = binReader.getNrofSamples(binNode);
+		while (nextSample < nrofSamples) {
+			double time = binReader.getTime(binNode, nextSample);
+			if (time > binReadTime) {
+				break;
+			}
+			addLocation(binReader.getLocation(binNode, nextSample), time);
+			nextSample++;
+		}
+	}
+	
 	/**
 	 * Checks if more paths should be preloaded and preloads them if
 	 * needed.
 	 */
 	private static void checkPathNeed() {
 		if (samplingInterval == -1) { // first preload
-			lastPreloadTime = readMorePaths();
+			lastPreloadTime = readMore();
 		}
 		
 		if (lastPreloadTime != Double.NaN && SimClock.getTime() >= 
 				lastPreloadTime - (samplingInterval * MIN_AHEAD_INTERVALS) ) {
 			for (int i=0; i < nrofPreload && 
 					lastPreloadTime != Double.NaN; i++) {
-				lastPreloadTime = readMorePaths();
+				lastPreloadTime = readMore();
 			}
 		}
 	}
@@ -192,6 +283,9 @@ public class ExternalMovement extends MovementModel {
 	 */
 	@Override
 	public double nextPathAvailable() {
+		if (binReader != null && isActive) {
+			readBinarySamples();
+		}
 		if (pathQueue.size() == 0) {
 			return latestPathStartTime;
 		}
@@ -205,6 +299,9 @@ public class ExternalMovement extends MovementModel {
 		Path p;
 		
 		checkPathNeed(); // check if we should preload more paths		
+		if (binReader != null) {
+			readBinarySamples();
+		}
 		
 		if (SimClock.getTime() < this.nextPathAvailable()) {
 			return null;
@@ -223,11 +320,17 @@ public class ExternalMovement extends MovementModel {
 	
 	@Override
 	public int getMaxX() {
+		if (binReader != null) {
+			return (int)(binReader.getMaxX() - binReader.getMinX()) + 1;
+		}
 		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
 	}
 
 	@Override
 	public int getMaxY() {
+		if (binReader != null) {
+			return (int)(binReader.getMaxY() - binReader.getMinY()) + 1;
+		}
 		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
 	}
 
@@ -237,6 +340,49 @@ public class ExternalMovement extends MovementModel {
 		return new ExternalMovement(this);
 	}
 	
+	/**
+	 * Reads the next time instance from the text or the binary file
+	 * @return The time stamp of the instance or Double.NaN if there were no
+	 * more instances
+	 */
+	private static double readMore() {
+		if (binReader != null) {
+			return readMoreBinarySamples();
+		}
+		return readMorePaths();
+	}
+	
+	/**
+	 * Reads the next time instance of the binary file, i.e., the earliest 
+	 * time of the nodes' samples that are not read yet. The models add the
+	 * samples to their paths when they need the paths.
+	 * @return The time stamp of the instance or Double.NaN if there were no
+	 * more samples.
+	 */
+	private static double readMoreBinarySamples() {
+		double time = Double.MAX_VALUE;
+		for (int i=0; i<binCursors.length; i++) {
+			if (binCursors[i] < binReader.getNrofSamples(i)) {
+				time = Math.min(time, binReader.getTime(i, binCursors[i]));
+			}
+		}
+		if (time == Double.MAX_VALUE) {
+			return Double.NaN;
+		}
+		
+		for (int i=0; i<binCursors.length; i++) {
+			if (binCursors[i] < binReader.getNrofSamples(i) && 
+					binReader.getTime(i, binCursors[i]) == time) {
+				binCursors[i]++;
+			}
+		}
+		if (samplingInterval == -1) {
+			samplingInterval = time - initTime;
+		}
+		binReadTime = time;
+		return time;
+	}
+	
 	/**
 	 * Reads paths for the next time instance from the reader
 	 * @return The time stamp of the reading or Double.NaN if no movements
@@ -271,6 +417,8 @@ public class ExternalMovement extends MovementModel {
 	 */
 	public static void reset() {
 		idMapping = null;
+		binReader = null;
+		binCursors = null;
 	}
 
 }
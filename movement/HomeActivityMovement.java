@@ -26,6 +26,7 @@ import core.SimClock;
  */
 public class HomeActivityMovement extends MapBasedMovement 
 	implements SwitchableMovement {
+	private static final long serialVersionUID = -2643315165792078303L;
 
 	private static final int WALKING_HOME_MODE = 0;
 	private static final int AT_HOME_MODE = 1;
@@ -117,7 +118,8 @@ public class HomeActivityMovement extends MapBasedMovement
 	public HomeActivityMovement(HomeActivityMovement proto) {
 		super(proto);
 		this.distance = proto.distance;
-		this.pathFinder = proto.pathFinder;
+		/* path finders keep the state of a search so they can't be shared */
+		this.pathFinder = new DijkstraPathFinder(null);
 		this.mode = proto.mode;
 		
 		this.timeDiffSTD = proto.timeDiffSTD;
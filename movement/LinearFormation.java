@@ -14,6 +14,7 @@ import movement.Path;
  * formation (i.e., in a line). 
  */
 public class LinearFormation extends MovementModel {
+	private static final long serialVersionUID = -6576197989251551129L;
 	/** Name space of the settings (append to group name space) */
 	public static final String LINEAR_FORMATION_NS = "LinearFormation.";
 	/** Per node group setting for defining the start coordinates of 
@@ -108,6 +109,15 @@ public class LinearFormation extends MovementModel {
 		return Double.MAX_VALUE;	// no new paths available
 	}
 	
+	/**
+	 * Returns true; the location of a node is fixed when it is replicated
+	 * @return true
+	 */
+	@Override
+	public boolean canMoveConcurrently() {
+		return true;
+	}
+	
 	@Override
 	public LinearFormation replicate() {
 		return new LinearFormation(this);
@@ -4,6 +4,9 @@
  */
 package movement;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.Random;
 
 import core.Coord;
@@ -23,7 +26,8 @@ import core.SimError;
  * {@link #getInitialLocation()} and {@link #getPath()} are worthwhile to 
  * override.</P>
  */
-public abstract class MovementModel {
+public abstract class MovementModel implements Serializable {
+	private static final long serialVersionUID = 8209859944588787445L;
 	/** node's speed CSV (min, max) -setting id ({@value})*/
 	public static final String SPEED = "speed";
 	/** node's wait time CSV (min, max) -setting id ({@value})*/
@@ -41,9 +45,27 @@ public abstract class MovementModel {
 	public static final String WORLD_SIZE = "worldSize";
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
+	/** 
+	 * Should every host's movement model draw random numbers from its own 
+	 * stream -setting id ({@value}). Boolean (true/false) variable. If true,
+	 * the streams are derived from the {@link #RNG_SEED} and the host's 
+	 * address so the movement of a host doesn't depend on the order hosts 
+	 * are moved in (which allows moving hosts concurrently). The 
+	 * trajectories are different than with a common stream. 
+	 * Default is {@link #DEF_HOST_RNG}.
+	 * @see #createHostRng(int)
+	 */
+	public static final String HOST_RNG_S = "perHostRng";
+	/** should hosts have their own random streams -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_HOST_RNG = false;
 	
 	/** common rng for all movement models in the simulation */
 	protected static Random rng; 
+	/** the common rng if it delegates to per host streams (null if not) */
+	private static HostRngSelector hostRngSelector;
+	/** seed of the common rng */
+	private static int rngSeed;
 	
 	private ActivenessHandler ah;
 		
@@ -210,6 +232,15 @@ public abstract class MovementModel {
 	public boolean isActive() {
 		return ah.isActive();
 	}
+	
+	/**
+	 * Returns true if the host's activeness can change depending on the time
+	 * (i.e., active times are defined for the host)
+	 * @return true if the host is not always active
+	 */
+	public boolean hasActiveTimes() {
+		return ah.hasActiveTimes();
+	}
 		
 	/**
 	 * Returns a sim time when the next path is available. This implementation
@@ -236,6 +267,19 @@ public abstract class MovementModel {
 		return this.comBus;		
 	}
 	
+	/**
+	 * Returns true if this movement model can be moved concurrently with 
+	 * the other hosts' movement models, i.e., it doesn't modify any state 
+	 * it shares with other movement models when new paths are requested. 
+	 * Moving concurrently also requires that every host has its own random
+	 * stream (see {@link #HOST_RNG_S}). This implementation returns false;
+	 * models that are safe to move concurrently should override this.
+	 * @return true if this model can be moved concurrently with others
+	 */
+	public boolean canMoveConcurrently() {
+		return false;
+	}
+	
 	/**
 	 * Returns simply the name of the movement model class
 	 * @return the name of the movement model class
@@ -256,11 +300,126 @@ public abstract class MovementModel {
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
-			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			rngSeed = s.getInt(RNG_SEED);
+		}
+		else {
+			rngSeed = 0;
+		}
+		
+		boolean hostRng = DEF_HOST_RNG;
+		if (s.contains(HOST_RNG_S)) {
+			hostRng = s.getBoolean(HOST_RNG_S);
+		}
+		
+		if (hostRng) {
+			hostRngSelector = new HostRngSelector(rngSeed);
+			rng = hostRngSelector;
+		}
+		else {
+			hostRngSelector = null;
+			rng = new Random(rngSeed);
+		}
+	}
+	
+	/**
+	 * Returns the common random number generator of the movement models
+	 * @return the common random number generator
+	 * @see core.Checkpoint
+	 */
+	public static Random getRng() {
+		return rng;
+	}
+	
+	/**
+	 * Sets the common random number generator of the movement models
+	 * (e.g., when continuing a simulation from a checkpoint)
+	 * @param r The random number generator from {@link #getRng()}
+	 * @see core.Checkpoint
+	 */
+	public static void setRng(Random r) {
+		rng = r;
+		if (r instanceof HostRngSelector) {
+			hostRngSelector = (HostRngSelector)r;
 		}
 		else {
-			rng = new Random(0);
+			hostRngSelector = null;
+		}
+	}
+	
+	/**
+	 * Creates the random number stream for the movement model(s) of a host
+	 * if hosts have their own streams (see {@link #HOST_RNG_S}). The stream
+	 * is seeded using the {@link #RNG_SEED} and the host's address.
+	 * @param address Address of the host
+	 * @return The host's stream or null if all movement models share the 
+	 * same stream
+	 */
+	public static Random createHostRng(int address) {
+		if (hostRngSelector == null) {
+			return null;
+		}
+		
+		/* mix the seed bits so that streams of adjacent addresses 
+		 * aren't correlated (splitmix64 finalizer) */
+		long z = ((long)rngSeed << 32) + address + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return new Random(z ^ (z >>> 31));
+	}
+	
+	/**
+	 * Selects the random number stream that the movement models use in the
+	 * calling thread. Must be called with the host's stream before the 
+	 * methods of the host's movement model are called, and with null after 
+	 * that. Does nothing if hosts don't have their own streams.
+	 * @param hostRng The stream from {@link #createHostRng(int)} or null to 
+	 * use the common stream
+	 */
+	public static void useHostRng(Random hostRng) {
+		if (hostRngSelector != null) {
+			hostRngSelector.current.set(hostRng);
+		}
+	}
+	
+	/**
+	 * Random number generator that draws the numbers from the stream 
+	 * selected for the calling thread or, if no stream is selected, from 
+	 * its own sequence. Since all random values are built from 
+	 * {@link #next(int)}, the values are the same as if they were drawn 
+	 * directly from the selected stream.
+	 */
+	private static class HostRngSelector extends Random {
+		private static final long serialVersionUID = 1L;
+		/** the stream selected for each thread */
+		private transient ThreadLocal<Random> current = 
+			new ThreadLocal<Random>();
+
+		public HostRngSelector(long seed) {
+			super(seed);
+		}
+		
+		private void readObject(ObjectInputStream in) 
+				throws IOException, ClassNotFoundException {
+			in.defaultReadObject();
+			this.current = new ThreadLocal<Random>();
+		}
+
+		@Override
+		protected int next(int bits) {
+			Random r = current.get();
+			if (r == null) {
+				return super.next(bits);
+			}
+			return r.nextInt() >>> (32 - bits);
+		}
+
+		@Override
+		public double nextGaussian() {
+			Random r = current.get();
+			if (r == null) {
+				return super.nextGaussian();
+			}
+			return r.nextGaussian();
 		}
 	}
 	
@@ -29,6 +29,7 @@ import core.SimClock;
  */
 public class OfficeActivityMovement extends MapBasedMovement implements 
 	SwitchableMovement {
+	private static final long serialVersionUID = -4886571483373058559L;
 
 	private static final int WALKING_TO_OFFICE_MODE = 0;
 	private static final int AT_OFFICE_MODE = 1;
@@ -139,7 +140,8 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 		this.workDayLength = proto.workDayLength;
 		startedWorkingTime = -1;
 		this.distance = proto.distance;
-		this.pathFinder = proto.pathFinder;
+		/* path finders keep the state of a search so they can't be shared */
+		this.pathFinder = new DijkstraPathFinder(null);
 		this.mode = proto.mode;
 		
 		if (proto.allOffices == null) {
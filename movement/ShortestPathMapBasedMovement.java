@@ -17,6 +17,7 @@ import core.Settings;
  */
 public class ShortestPathMapBasedMovement extends MapBasedMovement implements 
 	SwitchableMovement {
+	private static final long serialVersionUID = -1044535118383953359L;
 	/** the Dijkstra shortest path finder */
 	private DijkstraPathFinder pathFinder;
 
@@ -41,7 +42,8 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	protected ShortestPathMapBasedMovement(ShortestPathMapBasedMovement mbm) {
 		super(mbm);
-		this.pathFinder = mbm.pathFinder;
+		/* path finders keep the state of a search so they can't be shared */
+		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
 		this.pois = mbm.pois;
 	}
 	
@@ -17,6 +17,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class WorkingDayMovement extends ExtendedMovementModel {
+	private static final long serialVersionUID = -7561602562992370462L;
 
 	public static final String PROBABILITY_TO_OWN_CAR_SETTING = "ownCarProb";
 	public static final String PROBABILITY_TO_GO_SHOPPING_SETTING = 
@@ -159,6 +160,22 @@ public class WorkingDayMovement extends ExtendedMovementModel {
 		return homeLoc;
 	}
 
+	/**
+	 * Returns true if all the movement models this node uses can be moved 
+	 * concurrently, i.e., if the node doesn't travel by bus or do evening 
+	 * activities
+	 * @return true if the node can be moved concurrently with other nodes
+	 */
+	@Override
+	public boolean canMoveConcurrently() {
+		MovementModel transfers = (movementUsedForTransfers == carMM) ? 
+				carMM : busTravellerMM;
+		return transfers.canMoveConcurrently() && 
+			workerMM.canMoveConcurrently() && homeMM.canMoveConcurrently() &&
+			(doEveningActivityProb <= 0 || 
+					eveningActivityMovement.canMoveConcurrently());
+	}
+
 	@Override
 	public MovementModel replicate() {
 		return new WorkingDayMovement(this);
@@ -4,6 +4,9 @@
  */
 package movement.map;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.List;
 import java.util.Vector;
 
@@ -14,7 +17,8 @@ import core.SettingsError;
  * A node in a SimMap. Node has a location, 0-n neighbors that it is
  * connected to and possibly a type identifier.
  */
-public class MapNode implements Comparable<MapNode> {
+public class MapNode implements Comparable<MapNode>, Serializable {
+	private static final long serialVersionUID = 7098736929157751396L;
 	/** Smallest valid type of a node: {@value}*/
 	public static final int MIN_TYPE = 1;
 	/** Biggest valid type of a node: {@value} */
@@ -22,7 +26,8 @@ public class MapNode implements Comparable<MapNode> {
 	
 	
 	private Coord location;
-	private Vector<MapNode> neighbors;
+	/** neighbors are serialized by the SimMap to avoid deep recursion */
+	private transient Vector<MapNode> neighbors;
 	// bit mask of map node's types or 0 if no type's are defined
 	private int type;
 	
@@ -111,6 +116,21 @@ public class MapNode implements Comparable<MapNode> {
 		}		
 	}
 	
+	/**
+	 * Adds a neighbor to the end of the neighbor list without any checks.
+	 * Used when a map is read from a checkpoint.
+	 * @param node The neighbor to add
+	 */
+	void restoreNeighbor(MapNode node) {
+		this.neighbors.add(node);
+	}
+	
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.neighbors = new Vector<MapNode>();
+	}
+	
 	/**
 	 * Returns the location of the node
 	 * @return the location of the node
@@ -4,8 +4,12 @@
  */
 package movement.map;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -27,7 +31,7 @@ public class SimMap implements Serializable {
 	private boolean isMirrored;
 	
 	/** is re-hash needed before using hash mode (some coordinates changed) */
-	private boolean needsRehash = false;
+	private volatile boolean needsRehash = false;
 	
 	public SimMap(Map<Coord, MapNode> nodes) {
 		this.offset = new Coord(0,0);
@@ -53,15 +57,57 @@ public class SimMap implements Serializable {
 	 */
 	public MapNode getNodeByCoord(Coord c) {
 		if (needsRehash) { // some coordinates have changed after creating hash
-			nodesMap.clear();
-			for (MapNode node : getNodes()) {
-				nodesMap.put(node.getLocation(), node); // re-hash
-			}
+			rehash();
 		}
 	
 		return nodesMap.get(c);
 	}
 	
+	/**
+	 * Re-hashes the nodes by their current coordinates. Synchronized because
+	 * nodes of a shared map can be looked up concurrently.
+	 */
+	private synchronized void rehash() {
+		if (!needsRehash) {
+			return; // some other thread did it already
+		}
+		nodesMap.clear();
+		for (MapNode node : getNodes()) {
+			nodesMap.put(node.getLocation(), node); // re-hash
+		}
+		needsRehash = false;
+	}
+	
+	/**
+	 * Writes the map and the neighbors of its nodes as indices to the node
+	 * list. Writing the nodes' neighbor lists directly would recurse
+	 * through the whole graph and overflow the stack with big maps.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		Map<MapNode, Integer> indices = new IdentityHashMap<MapNode, Integer>();
+		for (int i=0, n=nodes.size(); i<n; i++) {
+			indices.put(nodes.get(i), i);
+		}
+		for (MapNode node : nodes) {
+			List<MapNode> neighbors = node.getNeighbors();
+			out.writeInt(neighbors.size());
+			for (MapNode neighbor : neighbors) {
+				out.writeInt(indices.get(neighbor));
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		for (MapNode node : nodes) {
+			for (int i=0, n=in.readInt(); i<n; i++) {
+				node.restoreNeighbor(nodes.get(in.readInt()));
+			}
+		}
+	}
+
 	/**
 	 * Returns the upper left corner coordinate of the map
 	 * @return the upper left corner coordinate of the map
@@ -12,6 +12,7 @@ import routing.MessageRouter;
 
 
 public class CLPerNodePerTimeReport extends Report {
+	private static final long serialVersionUID = 6196222581087379135L;
 	public CLPerNodePerTimeReport() {
 		init();
 	}
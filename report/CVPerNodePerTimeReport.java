@@ -10,6 +10,7 @@ import routing.MessageRouter;
 import routing.CVDetectionEngine;
 
 public class CVPerNodePerTimeReport extends Report {
+	private static final long serialVersionUID = -3824071399933563596L;
 	public CVPerNodePerTimeReport() {
 		init();
 	}
@@ -24,6 +24,7 @@ import routing.community.CentralityDetectionEngine;
  */
 public class CentralityDetectionReport extends Report
 {
+	private static final long serialVersionUID = 553690602840058415L;
 	public CentralityDetectionReport()
 	{
 		init();
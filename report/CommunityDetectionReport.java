@@ -24,6 +24,7 @@ import routing.community.CommunityDetectionEngine;
  * @author PJ Dillon, University of Pittsburgh
  */
 public class CommunityDetectionReport extends Report {
+    private static final long serialVersionUID = -8946171716778690809L;
 
     public CommunityDetectionReport() {
         init();
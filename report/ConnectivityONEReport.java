@@ -13,6 +13,7 @@ import core.DTNHost;
  */
 public class ConnectivityONEReport extends Report 
 	implements ConnectionListener {	
+	private static final long serialVersionUID = 7011673519018404931L;
 	
 	/**
 	 * Constructor.
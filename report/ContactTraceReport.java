@@ -0,0 +1,134 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package report;
+
+import input.ContactTraceReader;
+import input.ContactTraceWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import core.Connection;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimError;
+
+/**
+ * Records every connection up and down event of the simulation, with the
+ * exact time, the hosts and the interface type, to a binary contact trace.
+ * Runs that differ only in their routing can replay the trace as external
+ * events (see {@link ContactTraceReader}) with
+ * <CODE>Scenario.simulateConnections = false</CODE> instead of simulating
+ * the movement and connectivity again. All events are recorded, also the
+ * ones during the warm up period. If no output file is set, the trace is
+ * written to the report directory with the {@link ContactTraceReader#TRACE_EXT}
+ * extension. A run restored from a checkpoint writes a new trace that starts
+ * from the checkpoint.
+ */
+public class ContactTraceReport extends Report implements ConnectionListener {
+	private static final long serialVersionUID = 6755650548018390326L;
+	private transient ContactTraceWriter writer;
+	/** the connections that are up, as "address address interfaceType" */
+	private Set<String> upConnections;
+
+	/**
+	 * Constructor.
+	 */
+	public ContactTraceReport() {
+		this.upConnections = new HashSet<String>();
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		String type = null;
+		for (NetworkInterface ni : host1.getInterfaces()) {
+			if (findConnection(ni, host2, true) != null &&
+					upConnections.add(key(host1, host2, ni))) {
+				type = ni.getInterfaceType();
+				break;
+			}
+		}
+		writeConnection(host1, host2, type, true);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		String type = null;
+		for (NetworkInterface ni : host1.getInterfaces()) {
+			if (findConnection(ni, host2, false) != null) {
+				upConnections.remove(key(host1, host2, ni));
+				type = ni.getInterfaceType();
+				break;
+			}
+		}
+		writeConnection(host1, host2, type, false);
+	}
+
+	/**
+	 * Returns a connection of an interface to a host
+	 * @param ni The interface
+	 * @param other The host
+	 * @param up Should the connection be up or (being torn) down
+	 * @return The connection or null if there was no such connection
+	 */
+	private Connection findConnection(NetworkInterface ni, DTNHost other,
+			boolean up) {
+		List<Connection> cons = ni.getConnections();
+		for (int i = cons.size() - 1; i >= 0; i--) {
+			Connection con = cons.get(i);
+			if (con.isUp() == up && con.getOtherNode(ni.getHost()) == other) {
+				return con;
+			}
+		}
+		return null;
+	}
+
+	private String key(DTNHost h1, DTNHost h2, NetworkInterface ni) {
+		int a1 = Math.min(h1.getAddress(), h2.getAddress());
+		int a2 = Math.max(h1.getAddress(), h2.getAddress());
+		return a1 + " " + a2 + " " + ni.getInterfaceType();
+	}
+
+	private void writeConnection(DTNHost from, DTNHost to, String type,
+			boolean up) {
+		try {
+			if (this.writer == null) {
+				this.writer = new ContactTraceWriter(new File(traceFileName()));
+			}
+			this.writer.writeConnection(getSimTime(), from.getAddress(),
+					to.getAddress(), type, up);
+		} catch (IOException e) {
+			throw new SimError("Can't write contact trace: " + e, e);
+		}
+	}
+
+	/**
+	 * Returns the name of the trace file: the output file name, but with the
+	 * trace extension instead of the default suffix
+	 */
+	private String traceFileName() {
+		String name = getOutFileName();
+		if (name.endsWith(OUT_SUFFIX)) {
+			name = name.substring(0, name.length() - OUT_SUFFIX.length()) +
+				ContactTraceReader.TRACE_EXT;
+		}
+		return name;
+	}
+
+	@Override
+	public void done() {
+		try {
+			if (this.writer == null) { /* no contacts; write an empty trace */
+				this.writer = new ContactTraceWriter(new File(traceFileName()));
+			}
+			this.writer.close();
+		} catch (IOException e) {
+			throw new SimError("Can't write contact trace: " + e, e);
+		}
+		super.done();
+	}
+}
@@ -17,6 +17,7 @@ import core.SimClock;
  * @author Frans Ekman
  */
 public class ContactsPerHourReport extends Report implements ConnectionListener {
+	private static final long serialVersionUID = 5135608072330298936L;
 
 	private LinkedList<Integer> contactCounts;
 	private int currentHourCount;
@@ -20,6 +20,7 @@ import routing.community.FrequencyDecisionEngine;
  * @author jarkom
  */
 public class EncounterFrequencyReport extends Report{
+    private static final long serialVersionUID = 3390977817513735469L;
     public EncounterFrequencyReport(){
         init();
     }
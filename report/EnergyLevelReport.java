@@ -18,6 +18,7 @@ import core.UpdateListener;
  * the warmup period.
  */
 public class EnergyLevelReport extends Report implements UpdateListener {
+	private static final long serialVersionUID = 6056762784900588486L;
 	/** Reporting granularity -setting id ({@value}). 
 	 * Defines the interval how often (seconds) a new snapshot of energy levels
 	 * is created */
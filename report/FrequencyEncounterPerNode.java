@@ -20,6 +20,7 @@ import routing.community.FrequencyDecisionEngine;
  * @author jarkom
  */
 public class FrequencyEncounterPerNode extends Report{
+    private static final long serialVersionUID = -4575326027812862514L;
     public FrequencyEncounterPerNode(){
         init();
     }
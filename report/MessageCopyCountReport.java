@@ -18,6 +18,7 @@ import java.util.Map;
  * @author Afra Rian
  */
 public class MessageCopyCountReport extends Report implements ConnectionListener, MessageListener {
+    private static final long serialVersionUID = -8130665051909091909L;
 
     public static final String totalContact_Interval = "perTotalContact";
     public static final int DEFAULT_CONTACT_COUNT = 500;
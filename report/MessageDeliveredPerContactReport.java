@@ -22,6 +22,7 @@ import core.Settings;
  * @author by Gregorius Bima, Sanata Dharma University
  */
 public class MessageDeliveredPerContactReport extends Report implements MessageListener, ConnectionListener {
+    private static final long serialVersionUID = -315709996250328817L;
 
     public static final String totalContact_INTERVAL = "perTotalContact";
     public static final int DEFAULT_CONTACT_COUNT = 500;
@@ -22,6 +22,7 @@ import core.MessageListener;
  * double values and zero for integer median(s).
  */
 public class MessageStatsReport extends Report implements MessageListener {
+	private static final long serialVersionUID = 5760661100616476991L;
 	private Map<String, Double> creationTimes;
 	private List<Double> latencies;
 	private List<Integer> hopCounts;
@@ -99,7 +100,11 @@ public class MessageStatsReport extends Report implements MessageListener {
 
         this.nrofRelayed++;
         if (finalTarget) {
-            this.latencies.add(getSimTime() - this.creationTimes.get(m.getId()));
+            Double created = this.creationTimes.get(m.getId());
+            if (created == null) { /* created before this report existed */
+                created = m.getCreationTime();
+            }
+            this.latencies.add(getSimTime() - created);
             this.nrofDelivered++;
             this.hopCounts.add(m.getHops().size() - 1);
 
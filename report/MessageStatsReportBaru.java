@@ -23,6 +23,7 @@ import core.MessageListener;
  * zero for integer median(s).
  */
 public class MessageStatsReportBaru extends Report implements MessageListener {
+    private static final long serialVersionUID = -770595086781668158L;
 
     private Map<String, Double> creationTimes;
     private List<Double> latencies;
@@ -20,6 +20,7 @@ import java.util.Map;
  * @author Afra Rian
  */
 public class NumberOfHopsPerMsgPerTimeReport extends Report implements MessageListener, UpdateListener {
+    private static final long serialVersionUID = 7686933079596331192L;
 
     public static final String totalContact_Interval = "perTotalContact";
     public static final int DEFAULT_CONTACT_COUNT = 3600;
@@ -0,0 +1,72 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package report;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.List;
+
+import core.Profiler;
+
+/**
+ * Report that turns the {@link Profiler} on and, when the simulation is
+ * done, writes a table of where the wall clock time of the run went.
+ * Every row of the table is one phase of the simulation (e.g., movement,
+ * connectivity, updates of routers of a certain class, processing of
+ * external events of a certain class, or callbacks of a certain report
+ * class) with the number of calls, the total time in seconds, average
+ * time per call in microseconds, and the share of the total time. The time
+ * of nested phases (e.g., report callbacks during router updates) is
+ * excluded from the enclosing phase. The rows are sorted by time.
+ * <P>Profiling starts when this report is created so the time of creating
+ * the scenario is not included. All reports are profiled, also the ones
+ * that are before this report in the settings.</P>
+ */
+public class PhaseProfileReport extends Report {
+	private static final long serialVersionUID = -3479386711143009262L;
+	private static final String ROW_FORMAT = "%-40s %10s %12s %12s %8s";
+
+	/**
+	 * Constructor.
+	 */
+	public PhaseProfileReport() {
+		init();
+		Profiler.enable();
+	}
+
+	/**
+	 * Turns profiling on in a run restored from a checkpoint. Only the
+	 * time of the restored run is profiled.
+	 */
+	private void readObject(ObjectInputStream s)
+			throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		Profiler.enable();
+	}
+
+	@Override
+	public void done() {
+		Profiler profiler = Profiler.getInstance();
+		List<Profiler.Phase> phases = profiler.getPhases();
+		double total = profiler.getTotalNanos() / 1e9;
+
+		write("Phase profile for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()) +
+				"\nwall_time: " + format(total));
+		write(String.format(ROW_FORMAT, "phase", "calls", "time_s",
+				"avg_us", "share"));
+		for (Profiler.Phase p : phases) {
+			double time = p.getNanos() / 1e9;
+			String avg = p.getCalls() > 0 ?
+					format(p.getNanos() / 1e3 / p.getCalls()) : NAN;
+			String share = total > 0 ?
+					String.format("%.2f%%", 100 * time / total) : NAN;
+			write(String.format(ROW_FORMAT, p.getName(), p.getCalls(),
+					format(time), avg, share));
+		}
+
+		super.done();
+	}
+}
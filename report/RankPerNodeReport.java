@@ -20,6 +20,7 @@ import routing.RoutingDecisionEngine;
  * @author Afra Rian
  */
 public class RankPerNodeReport extends Report {
+    private static final long serialVersionUID = -6481691374754189583L;
 
     private List<Integer> nodeListSelfish;
     private Map<String, Integer> nodeRank;
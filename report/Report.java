@@ -7,7 +7,10 @@ package report;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -25,8 +28,12 @@ import core.SimScenario;
  * reports ({@link #INTERVAL_SETTING}) and will ignore that setting. Most of 
  * the reports implement warm up feature ({@link #WARMUP_S}) but the
  * implementations are always report specific.
+ * <P>Reports are saved in simulation checkpoints (see core.Checkpoint).
+ * A restored report continues with its old state but writes its output
+ * to the output file defined by the settings of the restoring run.</P>
  */
-public abstract class Report {
+public abstract class Report implements Serializable {
+	private static final long serialVersionUID = -151477378020020573L;
 	/** Name space of the settings that are common to all reports ({@value}). */ 
 	public static final String REPORT_NS = "Report";
 	/** The interval (simulated seconds) of creating new settings files 
@@ -54,7 +61,7 @@ public abstract class Report {
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX; 
 	/** The print writer used to write output. See {@link #write(String)} */
-	protected PrintWriter out;
+	protected transient PrintWriter out;
 	/** String value for values that could not be calculated */
 	public static final String NAN = "NaN";
 	private String prefix = "";
@@ -81,11 +88,7 @@ public abstract class Report {
 		
 		this.warmupIDs = null;
 
-		Settings settings = new Settings();
-		scenarioName = settings.valueFillString(settings.getSetting(
-				SimScenario.SCENARIO_NS + "." +	SimScenario.NAME_S));
-		
-		settings = getSettings();
+		Settings settings = getSettings();
 		
 		if (settings.contains(INTERVAL_SETTING)) {
 			outputInterval = settings.getDouble(INTERVAL_SETTING);
@@ -109,6 +112,19 @@ public abstract class Report {
 			precision = DEF_PRECISION;
 		}
 		
+		setOutFileName();
+	}
+
+	/**
+	 * Sets the scenario name and the output file name using the current
+	 * settings and makes sure the output directory exists
+	 */
+	private void setOutFileName() {
+		Settings settings = new Settings();
+		scenarioName = settings.valueFillString(settings.getSetting(
+				SimScenario.SCENARIO_NS + "." +	SimScenario.NAME_S));
+		
+		settings = getSettings();
 		if (settings.contains(OUTPUT_SETTING)) {
 			outFileName = settings.getSetting(OUTPUT_SETTING);
 			// fill value place holders in the name
@@ -132,6 +148,35 @@ public abstract class Report {
 		checkDirExistence(outFileName);
 	}
 
+	/**
+	 * Writes the report and whether its output has been initialized
+	 */
+	private void writeObject(ObjectOutputStream s) throws IOException {
+		s.defaultWriteObject();
+		s.writeBoolean(this.out != null);
+	}
+
+	/**
+	 * Reads a report and opens its current output file again using the
+	 * output settings of the restoring run. Output written before the
+	 * checkpoint is not copied to the new file.
+	 */
+	private void readObject(ObjectInputStream s)
+			throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		setOutFileName();
+		if (!s.readBoolean()) {
+			return; /* output is initialized on the first write */
+		}
+		if (outputInterval > 0) {
+			createOutput(outFileName + String.format(INTERVALLED_FORMAT,
+					this.lastOutputSuffix - 1));
+		}
+		else {
+			createOutput(outFileName);
+		}
+	}
+
 	/**
 	 * Checks that a directory for a file exists or creates the directory
 	 * if it didn't exist.
@@ -266,6 +311,15 @@ public abstract class Report {
 		return this.scenarioName;
 	}
 	
+	/**
+	 * Returns the name of the report's output file (without the suffix of
+	 * intervalled reports)
+	 * @return the name of the output file
+	 */
+	protected String getOutFileName() {
+		return this.outFileName;
+	}
+	
 	/**
 	 * Returns the current simulation time from the SimClock
 	 * @return the current simulation time from the SimClock
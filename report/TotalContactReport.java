@@ -19,6 +19,7 @@ import java.util.Map;
  * @author Afra Rian
  */
 public class TotalContactReport extends Report implements ConnectionListener {
+    private static final long serialVersionUID = 3732459718775958633L;
 
     private double lastRecord;
     private int interval = 3600;
@@ -16,6 +16,7 @@ import java.util.Map;
  * @author Afra Rian
  */
 public class TransmiteRecieveCountReport extends Report implements MessageListener {
+    private static final long serialVersionUID = -5267098312374217291L;
     
     private Map<DTNHost, Integer> receiveTime;
     private Map<DTNHost, Integer> transmitTime;
@@ -5,11 +5,15 @@
  */
 package routing;
 
+import java.io.Serializable;
+
 /**
  *
  * @author ASUS TUF
  */
-public class ACKTTL {
+public class ACKTTL implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	public double TTL;
 	public double beginTime;
 
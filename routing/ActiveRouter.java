@@ -8,15 +8,20 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 
+import input.ExternalEvent;
+import input.TimerEvent;
+import input.TimerListener;
+import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
 import core.Settings;
 import core.SimClock;
+import core.SimScenario;
 import core.Tuple;
+import core.World;
 
 /**
  * Superclass of active routers. Contains convenience methods (e.g. 
@@ -24,6 +29,7 @@ import core.Tuple;
  * {@link #update()}).
  */
 public abstract class ActiveRouter extends MessageRouter {
+	private static final long serialVersionUID = 994114967791998367L;
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
@@ -40,6 +46,20 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ArrayList<Connection> sendingConnections;
 	/** sim time when the last TTL check was done */
 	private double lastTtlCheck;
+	/** are CBR transfers finalized by scheduled events instead of polling */
+	private boolean scheduledTransfers;
+	/** is periodic work triggered by timers instead of polling */
+	private boolean routerTimers;
+	/** timer for the next TTL check (null before the first update) */
+	private TimerEvent ttlTimer;
+	/** has the TTL check timer expired while the router was sending */
+	private boolean ttlCheckDue;
+	/** sim time when a transfer of this router was last finalized or 
+	 * aborted */
+	private double lastTransferEnd;
+	/** reused list of the messages to try in 
+	 * {@link #tryAllMessagesToAllConnections()} (created lazily) */
+	private transient ArrayList<Message> sendQueue;
 	
 
 	/**
@@ -49,7 +69,29 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	public ActiveRouter(Settings s) {
 		super(s);
+		readDeleteDelivered(s);
 		
+		Settings optSettings = new Settings(World.SETTINGS_NS);
+		if (optSettings.contains(World.SCHEDULED_TRANSFERS_S)) {
+			this.scheduledTransfers = 
+				optSettings.getBoolean(World.SCHEDULED_TRANSFERS_S);
+		}
+		else {
+			this.scheduledTransfers = World.DEF_SCHEDULED_TRANSFERS;
+		}
+		if (optSettings.contains(World.ROUTER_TIMERS_S)) {
+			this.routerTimers = optSettings.getBoolean(World.ROUTER_TIMERS_S);
+		}
+		else {
+			this.routerTimers = World.DEF_ROUTER_TIMERS;
+		}
+	}
+
+	/**
+	 * Reads the delete delivered messages -setting
+	 * @param s The settings object
+	 */
+	private void readDeleteDelivered(Settings s) {
 		if (s.contains(DELETE_DELIVERED_S)) {
 			this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S);
 		}
@@ -58,6 +100,12 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 	
+	@Override
+	public void restoreSettings(Settings s) {
+		super.restoreSettings(s);
+		readDeleteDelivered(s);
+	}
+	
 	/**
 	 * Copy constructor.
 	 * @param r The router prototype where setting values are copied from
@@ -65,6 +113,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.scheduledTransfers = r.scheduledTransfers;
+		this.routerTimers = r.routerTimers;
 	}
 	
 	@Override
@@ -72,6 +122,9 @@ public abstract class ActiveRouter extends MessageRouter {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		this.ttlTimer = null;
+		this.ttlCheckDue = false;
+		this.lastTransferEnd = -Double.MAX_VALUE;
 	}
 	
 	/**
@@ -89,6 +142,9 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 		
 		DTNHost other = con.getOtherNode(getHost());
+		if (!hasMessageFor(other)) {
+			return false; /* the usual case; no need to copy the messages */
+		}
 		/* do a copy to avoid concurrent modification exceptions 
 		 * (startTransfer may remove messages) */
 		ArrayList<Message> temp = 
@@ -103,6 +159,21 @@ public abstract class ActiveRouter extends MessageRouter {
 		return false;
 	}
 	
+	/**
+	 * Returns true if this router has a message whose final recipient is the
+	 * given host
+	 * @param to The host
+	 * @return true if some message is destined to the host
+	 */
+	private boolean hasMessageFor(DTNHost to) {
+		for (Message m : this.getMessageCollection()) {
+			if (m.getTo() == to) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	@Override 
 	public boolean createNewMessage(Message m) {
 		makeRoomForNewMessage(m.getSize());
@@ -317,22 +388,29 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
-		if (getNrofMessages() == 0 || getConnections().size() == 0) {
+		List<Connection> connections = getConnections();
+		if (getNrofMessages() == 0 || connections.size() == 0) {
 			/* no messages -> empty list */
-			return new ArrayList<Tuple<Message, Connection>>(0); 
+			return Collections.emptyList(); 
 		}
 
-		List<Tuple<Message, Connection>> forTuples = 
-			new ArrayList<Tuple<Message, Connection>>();
+		List<Tuple<Message, Connection>> forTuples = null;
 		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
+			for (int i=0, n=connections.size(); i<n; i++) {
+				Connection con = connections.get(i);
 				DTNHost to = con.getOtherNode(getHost());
 				if (m.getTo() == to) {
+					if (forTuples == null) {
+						forTuples = new ArrayList<Tuple<Message, Connection>>();
+					}
 					forTuples.add(new Tuple<Message, Connection>(m,con));
 				}
 			}
 		}
 		
+		if (forTuples == null) {
+			return Collections.emptyList();
+		}
 		return forTuples;
 	}
 	
@@ -423,11 +501,20 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
-		List<Message> messages = 
-			new ArrayList<Message>(this.getMessageCollection());
+		/* reuse the same list on every call; copying with addAll would 
+		 * create a temporary array */
+		if (this.sendQueue == null) {
+			this.sendQueue = new ArrayList<Message>(this.getNrofMessages());
+		}
+		List<Message> messages = this.sendQueue;
+		for (Message m : this.getMessageCollection()) {
+			messages.add(m);
+		}
 		this.sortByQueueMode(messages);
 
-		return tryMessagesToConnections(messages, connections);
+		Connection con = tryMessagesToConnections(messages, connections);
+		messages.clear(); /* don't keep references to the messages */
+		return con;
 	}
 		
 	/**
@@ -474,18 +561,48 @@ public abstract class ActiveRouter extends MessageRouter {
 			return; // nothing to shuffle
 		}
 		
-		Random rng = new Random(SimClock.getIntTime());
-		Collections.shuffle(messages, rng);	
+		Collections.shuffle(messages, getQueueModeRng());
 	}
 	
 	/**
 	 * Adds a connections to sending connections which are monitored in
-	 * the update.
+	 * the update. If transfers are finalized by scheduled events (see 
+	 * {@link World#SCHEDULED_TRANSFERS_S}), the finalizing event of a 
+	 * constant bit-rate transfer is scheduled here.
 	 * @see #update()
 	 * @param con The connection to add
 	 */
 	protected void addToSendingConnections(Connection con) {
 		this.sendingConnections.add(con);
+		if (isScheduledTransfer(con) && con.getMessage() != null) {
+			World world = SimScenario.getInstance().getWorld();
+			world.scheduleEvent(new TransferReadyEvent(con, con.getMessage(),
+					((CBRConnection)con).getTransferDoneTime()));
+		}
+	}
+	
+	/**
+	 * Returns true if the transfer on the connection is finalized by a 
+	 * scheduled event (and not by polling in {@link #update()})
+	 * @param con The connection to check
+	 * @return True if the connection's transfers are scheduled
+	 */
+	private boolean isScheduledTransfer(Connection con) {
+		return this.scheduledTransfers && con instanceof CBRConnection;
+	}
+	
+	/**
+	 * Removes a connection from the sending connections and frees the excess
+	 * buffer space the message being sent may have been holding.
+	 * @param index Index of the connection in the sending connections
+	 */
+	private void removeFromSendingConnections(int index) {
+		// if the message being sent was holding excess buffer, free it
+		if (this.getFreeBufferSize() < 0) {
+			this.makeRoomForMessage(0);
+		}
+		sendingConnections.remove(index);
+		this.lastTransferEnd = SimClock.getTime();
 	}
 		
 	/**
@@ -548,8 +665,11 @@ public abstract class ActiveRouter extends MessageRouter {
 			boolean removeCurrent = false;
 			Connection con = sendingConnections.get(i);
 			
-			/* finalize ready transfers */
-			if (con.isMessageTransferred()) {
+			/* finalize ready transfers (scheduled transfers are finalized by 
+			   an event, so here only check if someone else aborted them) */
+			boolean ready = isScheduledTransfer(con) ? 
+					con.getMessage() == null : con.isMessageTransferred();
+			if (ready) {
 				if (con.getMessage() != null) {
 					transferDone(con);
 					con.finalizeTransfer();
@@ -566,11 +686,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			} 
 			
 			if (removeCurrent) {
-				// if the message being sent was holding excess buffer, free it
-				if (this.getFreeBufferSize() < 0) {
-					this.makeRoomForMessage(0);
-				}
-				sendingConnections.remove(i);
+				removeFromSendingConnections(i);
 			}
 			else {
 				/* index increase needed only if nothing was removed */
@@ -578,14 +694,109 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
+		if (this.routerTimers) {
+			if (this.ttlTimer == null) { /* first update; world exists now */
+				this.ttlTimer = scheduleTimer(lastTtlCheck + TTL_CHECK_INTERVAL,
+						new TtlTimerListener());
+			}
+			/* timer expired while sending; check once sending is done */
+			if (this.ttlCheckDue && sendingConnections.size() == 0) {
+				doTtlCheck();
+			}
+		}
 		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL && 
+		else if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL && 
 				sendingConnections.size() == 0) {
-			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
+			doTtlCheck();
+		}
+	}
+	
+	/**
+	 * Drops messages whose TTL has expired and, if timers are used, 
+	 * schedules the next TTL check
+	 */
+	private void doTtlCheck() {
+		dropExpiredMessages();
+		lastTtlCheck = SimClock.getTime();
+		
+		if (this.routerTimers) {
+			this.ttlCheckDue = false;
+			rescheduleTimer(this.ttlTimer, lastTtlCheck + TTL_CHECK_INTERVAL);
 		}
 	}
 	
+	/**
+	 * Returns true if this router does its periodic work when a timer 
+	 * expires instead of checking the time on every update
+	 * @return True if timers should be used
+	 * @see World#ROUTER_TIMERS_S
+	 */
+	protected boolean usesTimers() {
+		return this.routerTimers;
+	}
+	
+	/**
+	 * Schedules a timer that notifies the listener at the given time. 
+	 * Can't be called before the world is created (e.g., from 
+	 * {@link #init(DTNHost, List)}).
+	 * @param time The time when the timer should expire
+	 * @param listener The listener to notify
+	 * @return The scheduled timer
+	 */
+	protected TimerEvent scheduleTimer(double time, TimerListener listener) {
+		return SimScenario.getInstance().getWorld().scheduleTimer(time, 
+				listener);
+	}
+	
+	/**
+	 * Schedules an expired timer again, or moves a scheduled timer to 
+	 * a new time
+	 * @param timer The timer to reschedule
+	 * @param time The new time for the timer
+	 */
+	protected void rescheduleTimer(TimerEvent timer, double time) {
+		SimScenario.getInstance().getWorld().rescheduleEvent(timer, time);
+	}
+	
+	/**
+	 * Returns the time when the next ongoing transfer is ready or when the
+	 * next TTL check is due (unless TTL checks are triggered by a timer). 
+	 * Transfers whose finishing time isn't known in advance (i.e., 
+	 * non-constant bit-rate connections) request an update on every interval.
+	 * After a transfer has ended, an update is requested for the next 
+	 * interval so that the hosts that were refused while this host or its 
+	 * peer was busy can try again.
+	 */
+	@Override
+	public double getNextWakeupTime() {
+		double next = super.getNextWakeupTime();
+		if (this.lastTransferEnd == SimClock.getTime()) {
+			return this.lastTransferEnd;
+		}
+
+		for (int i=0, n=this.sendingConnections.size(); i<n; i++) {
+			Connection con = this.sendingConnections.get(i);
+			if (isScheduledTransfer(con)) {
+				continue; /* the ready event wakes up the world */
+			}
+			if (!(con instanceof CBRConnection)) {
+				return SimClock.getTime();
+			}
+			/* transfer is ready when there's less than one byte remaining */
+			double doneTime = ((CBRConnection)con).getTransferDoneTime() - 
+				1.0 / con.getSpeed();
+			if (doneTime < next) {
+				next = doneTime;
+			}
+		}
+
+		if (!this.routerTimers && lastTtlCheck + TTL_CHECK_INTERVAL < next) {
+			next = lastTtlCheck + TTL_CHECK_INTERVAL;
+		}
+
+		return next;
+	}
+
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()} 
 	 * due connection going down. This happens on the sending host. 
@@ -602,4 +813,62 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	protected void transferDone(Connection con) { }
 	
+	/**
+	 * Event that finalizes a constant bit-rate transfer at the time the 
+	 * transfer is ready. If the transfer was aborted before that, the event 
+	 * does nothing.
+	 */
+	private class TransferReadyEvent extends ExternalEvent {
+		private static final long serialVersionUID = -7530812401907762086L;
+		private Connection con;
+		private Message msg;
+		
+		/**
+		 * Creates a new transfer ready event
+		 * @param con The connection that transfers the message
+		 * @param msg The message being transferred
+		 * @param time Time when the transfer is ready
+		 */
+		public TransferReadyEvent(Connection con, Message msg, double time) {
+			super(time);
+			this.con = con;
+			this.msg = msg;
+		}
+		
+		@Override
+		public void processEvent(World world) {
+			int index = sendingConnections.indexOf(con);
+			if (index < 0 || con.getMessage() != msg) {
+				return; /* transfer was aborted already */
+			}
+			
+			DTNHost other = con.getOtherNode(getHost());
+			transferDone(con);
+			con.finalizeTransfer();
+			removeFromSendingConnections(index);
+			
+			world.markDirty(getHost());
+			world.markDirty(other);
+		}
+		
+		@Override
+		public String toString() {
+			return "TRANSFER READY @" + this.time + " " + msg + " " + con;
+		}
+	}
+	
+	/**
+	 * Listener of the TTL check timer. The check is done right away if 
+	 * nothing is being sent, otherwise after sending is done.
+	 */
+	private class TtlTimerListener implements TimerListener {
+		private static final long serialVersionUID = 1L;
+		
+		public void timerExpired(TimerEvent timer) {
+			ttlCheckDue = true;
+			if (sendingConnections.size() == 0) {
+				doTtlCheck();
+			}
+		}
+	}
 }
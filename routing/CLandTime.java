@@ -5,11 +5,15 @@
  */
 package routing;
 
+import java.io.Serializable;
+
 /**
  *
  * @author ASUS TUF
  */
-public class CLandTime {
+public class CLandTime implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     public double CL;
 
     public double getCL() {
@@ -80,6 +80,7 @@ import core.*;
  * @author PJ Dillon, University of Pittsburgh
  */
 public class DecisionEngineRouter extends ActiveRouter {
+    private static final long serialVersionUID = -7250223429953574895L;
 
     public static final String PUBSUB_NS = "DecisionEngineRouter";
     public static final String ENGINE_SETTING = "decisionEngine";
@@ -424,6 +425,15 @@ public class DecisionEngineRouter extends ActiveRouter {
         }
     }
 
+    /**
+     * Requests an update on every interval since the decision engine may do
+     * time based work in its update.
+     */
+    @Override
+    public double getNextWakeupTime() {
+        return SimClock.getTime();
+    }
+
     @Override
     public void update() {
         super.update();
@@ -18,6 +18,7 @@ import static routing.MessageRouter.TRY_LATER_BUSY;
  * @author Jarkom
  */
 public class DecisionEngineRouterImproved extends ActiveRouter {
+    private static final long serialVersionUID = -7832586707435037948L;
 
     public static final String PUBSUB_NS = "DecisionEngineRouterImproved";
     public static final String ENGINE_SETTING = "decisionEngineImproved";
@@ -238,6 +239,15 @@ public class DecisionEngineRouterImproved extends ActiveRouter {
         }
     }
 
+    /**
+     * Requests an update on every interval since the decision engine may do
+     * time based work in its update.
+     */
+    @Override
+    public double getNextWakeupTime() {
+        return SimClock.getTime();
+    }
+
     @Override
     public void update() {
         super.update();
@@ -12,6 +12,7 @@ import core.*;
  */
 public class EnergyAwareRouter extends ActiveRouter 
 		implements ModuleCommunicationListener{
+	private static final long serialVersionUID = 8709193808786524886L;
 	/** Initial units of energy -setting id ({@value}). Can be either a 
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -169,6 +170,24 @@ public class EnergyAwareRouter extends ActiveRouter
 		}
 	}
 	
+	/**
+	 * Returns the time of the next scanning if it is due before the other
+	 * wake-ups and the host has energy left. Sending energy is reduced on 
+	 * every update, so an update is requested on every interval while 
+	 * sending.
+	 */
+	@Override
+	public double getNextWakeupTime() {
+		double next = super.getNextWakeupTime();
+		if (this.currentEnergy <= 0) {
+			return next;
+		}
+		if (sendingConnections.size() > 0) {
+			return SimClock.getTime();
+		}
+		return Math.min(next, this.lastScanUpdate + this.scanInterval);
+	}
+	
 	@Override
 	public void update() {
 		super.update();
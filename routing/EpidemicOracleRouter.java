@@ -18,6 +18,7 @@ import core.*;
  * <B>Note:</B> This router module also bypasses ActiveRouter.update()
  */
 public class EpidemicOracleRouter extends ActiveRouter {
+	private static final long serialVersionUID = 618449119703885541L;
 	
 	/** List of all routers in this node group */
 	private static List<EpidemicOracleRouter> allRouters;
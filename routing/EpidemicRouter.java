@@ -11,6 +11,7 @@ import core.Settings;
  * connections at a time.
  */
 public class EpidemicRouter extends ActiveRouter {
+	private static final long serialVersionUID = 2363597812441147188L;
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -4,6 +4,10 @@
  */
 package routing;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -13,6 +17,7 @@ import java.util.List;
 import java.util.Random;
 
 import core.Application;
+import core.ApplicationListener;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
@@ -26,7 +31,8 @@ import core.Tuple;
 /**
  * Superclass for message routers.
  */
-public abstract class MessageRouter {
+public abstract class MessageRouter implements Serializable {
+    private static final long serialVersionUID = 3033505146204471756L;
 
     /**
      * Message buffer size -setting id ({@value}). Integer value in bytes.
@@ -90,15 +96,19 @@ public abstract class MessageRouter {
      */
     public static final int DENIED_UNSPECIFIED = -999;
     public static final int DENIED_DELIVERED = -4;
-    protected List<MessageListener> mListeners;
+    protected transient List<MessageListener> mListeners;
     /**
      * The messages being transferred with msgID_hostName keys
      */
     private HashMap<String, Message> incomingMessages;
     /**
-     * The messages this router is carrying
+     * The messages this router is carrying. Serialized by
+     * {@link #writeObject(ObjectOutputStream)} so that the iteration order
+     * stays the same in a restored router.
      */
-    private HashMap<String, Message> messages;
+    private transient HashMap<String, Message> messages;
+    /** Largest number of messages the buffer has had */
+    private int maxNrofMessages;
     /**
      * The messages this router has received as the final recipient
      */
@@ -119,11 +129,20 @@ public abstract class MessageRouter {
      * Queue mode for sending messages
      */
     private int sendQueueMode;
+    /**
+     * Simulation time when the message buffers of this router last changed
+     */
+    private double lastBufferChange;
 
     /**
      * applications attached to the host
      */
     private HashMap<String, Collection<Application>> applications = null;
+    /**
+     * random generator for the random queue mode (see
+     * {@link #getQueueModeRng()})
+     */
+    private Random queueModeRng;
 
     private int nodeSelfish;
 
@@ -137,13 +156,22 @@ public abstract class MessageRouter {
      * @param s The settings object
      */
     public MessageRouter(Settings s) {
-        this.bufferSize = Integer.MAX_VALUE; // defaults to rather large buffer	
-        this.msgTtl = Message.INFINITE_TTL;
         this.applications = new HashMap<String, Collection<Application>>();
 
         if (s.contains(NODE_RANDOM)) {
             this.nodeSelfish = s.getInt(NODE_RANDOM);
         }
+        readSettings(s);
+    }
+
+    /**
+     * Reads the buffer size, message TTL and send queue mode settings
+     *
+     * @param s The settings object
+     */
+    private void readSettings(Settings s) {
+        this.bufferSize = Integer.MAX_VALUE; // defaults to rather large buffer	
+        this.msgTtl = Message.INFINITE_TTL;
         if (s.contains(B_SIZE_S)) {
             this.bufferSize = s.getInt(B_SIZE_S);
         }
@@ -159,7 +187,19 @@ public abstract class MessageRouter {
         } else {
             sendQueueMode = Q_MODE_RANDOM;
         }
+    }
 
+    /**
+     * Reads again the settings that may be different in the runs that
+     * continue from a checkpoint than in the run that wrote the checkpoint
+     * (see core.Checkpoint). This implementation reads the buffer size,
+     * message TTL and send queue mode. Subclasses with such settings should
+     * override this and call this method too.
+     *
+     * @param s The settings of the host group of this router
+     */
+    public void restoreSettings(Settings s) {
+        readSettings(s);
     }
 
     /**
@@ -175,6 +215,7 @@ public abstract class MessageRouter {
         this.deliveredMessages = new HashMap<String, Message>();
         this.mListeners = mListeners;
         this.host = host;
+        this.lastBufferChange = -Double.MAX_VALUE;
 //        Random rnd = new Random();
 //        for (int i = 0; i < 5; i++) {
 //            if (i > 0 && nodeList.contains(nodeList.get(i - 1))) {
@@ -186,6 +227,23 @@ public abstract class MessageRouter {
         System.setProperty("java.util.Arrays.useLegacyMergeSort", "true");
     }
 
+    /**
+     * Sets the listeners of this router and its applications, e.g., when
+     * the router is restored from a checkpoint (see core.Checkpoint).
+     *
+     * @param mListeners The message listeners
+     * @param appListeners The application listeners
+     */
+    public void setListeners(List<MessageListener> mListeners,
+            List<ApplicationListener> appListeners) {
+        this.mListeners = mListeners;
+        for (Collection<Application> apps : this.applications.values()) {
+            for (Application app : apps) {
+                app.setAppListeners(appListeners);
+            }
+        }
+    }
+
     /**
      * Copy-constructor.
      *
@@ -210,6 +268,9 @@ public abstract class MessageRouter {
      * simulation interval to update the status of transfer(s).
      */
     public void update() {
+        if (this.applications.isEmpty()) {
+            return; // no need to create an iterator
+        }
         for (Collection<Application> apps : this.applications.values()) {
             for (Application app : apps) {
                 app.update(this.host);
@@ -217,6 +278,28 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Returns the simulation time when this router needs its next
+     * {@link #update()} call even if no events happen before that. Routers
+     * that do time based work in their update method should override this so
+     * that idle update intervals can be skipped safely (see
+     * {@link core.World#EVENT_DRIVEN_S}). If the message buffers changed
+     * during the current update interval, an update is requested for the
+     * next interval so that all hosts can react to the change. Applications
+     * may do anything in their update, so routers with applications request
+     * an update on every interval.
+     *
+     * @return The time of the next requested update or Double.MAX_VALUE if no
+     * update is needed
+     */
+    public double getNextWakeupTime() {
+        if (!this.applications.isEmpty()
+                || this.lastBufferChange == SimClock.getTime()) {
+            return SimClock.getTime();
+        }
+        return Double.MAX_VALUE;
+    }
+
     /**
      * Informs the router about change in connections state.
      *
@@ -434,6 +517,7 @@ public abstract class MessageRouter {
      */
     protected void putToIncomingBuffer(Message m, DTNHost from) {
         this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+        this.lastBufferChange = SimClock.getTime();
     }
 
     /**
@@ -445,6 +529,7 @@ public abstract class MessageRouter {
      * @return The found message or null if such message wasn't found
      */
     protected Message removeFromIncomingBuffer(String id, DTNHost from) {
+        this.lastBufferChange = SimClock.getTime();
         return this.incomingMessages.remove(id + "_" + from.toString());
     }
 
@@ -469,6 +554,10 @@ public abstract class MessageRouter {
      */
     protected void addToMessages(Message m, boolean newMessage) {
         this.messages.put(m.getId(), m);
+        this.lastBufferChange = SimClock.getTime();
+        if (this.messages.size() > this.maxNrofMessages) {
+            this.maxNrofMessages = this.messages.size();
+        }
 
         if (newMessage) {
             for (MessageListener ml : this.mListeners) {
@@ -477,6 +566,36 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Writes the router and its messages in their iteration order
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(this.messages.size());
+        for (Message m : this.messages.values()) {
+            out.writeObject(m);
+        }
+    }
+
+    /**
+     * Reads the router. The message buffer gets the same capacity it had
+     * when it was written so its iteration order (and hence e.g. the random
+     * send queue order) is the same as in the original router.
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int capacity = 16; /* grown like HashMap grows its table */
+        while (this.maxNrofMessages > capacity * 0.75) {
+            capacity *= 2;
+        }
+        this.messages = new HashMap<String, Message>(capacity);
+        for (int i=0, n=in.readInt(); i<n; i++) {
+            Message m = (Message)in.readObject();
+            this.messages.put(m.getId(), m);
+        }
+    }
+
     /**
      * Removes and returns a message from the message buffer.
      *
@@ -485,6 +604,7 @@ public abstract class MessageRouter {
      */
     protected Message removeFromMessages(String id) {
         Message m = this.messages.remove(id);
+        this.lastBufferChange = SimClock.getTime();
         return m;
     }
 
@@ -556,7 +676,7 @@ public abstract class MessageRouter {
     protected List sortByQueueMode(List list) {
         switch (sendQueueMode) {
             case Q_MODE_RANDOM:
-                Collections.shuffle(list, new Random(SimClock.getIntTime()));
+                Collections.shuffle(list, getQueueModeRng());
                 break;
             case Q_MODE_FIFO:
                 Collections.sort(list,
@@ -595,6 +715,24 @@ public abstract class MessageRouter {
         return list;
     }
 
+    /**
+     * Returns the random generator for shuffling messages in the random queue
+     * mode. The generator is seeded with the current simulation time (in
+     * whole seconds) so the shuffling doesn't depend on the earlier calls.
+     * The same object is re-seeded on every call to avoid creating one for
+     * every shuffle.
+     *
+     * @return The seeded random generator
+     */
+    protected Random getQueueModeRng() {
+        if (this.queueModeRng == null) {
+            this.queueModeRng = new Random(SimClock.getIntTime());
+        } else {
+            this.queueModeRng.setSeed(SimClock.getIntTime());
+        }
+        return this.queueModeRng;
+    }
+
     /**
      * Gives the order of the two given messages as defined by the current queue
      * mode
@@ -676,19 +814,26 @@ public abstract class MessageRouter {
      * @return	A list of all applications that want to receive the message.
      */
     public Collection<Application> getApplications(String ID) {
-        LinkedList<Application> apps = new LinkedList<Application>();
         // Applications that match
-        Collection<Application> tmp = this.applications.get(ID);
-        if (tmp != null) {
-            apps.addAll(tmp);
-        }
+        Collection<Application> matching = this.applications.get(ID);
         // Applications that want to look at all messages
+        Collection<Application> all = null;
         if (ID != null) {
-            tmp = this.applications.get(null);
-            if (tmp != null) {
-                apps.addAll(tmp);
+            all = this.applications.get(null);
+        }
+
+        if (all == null || all.isEmpty()) {
+            if (matching == null) {
+                return Collections.emptyList(); // the usual case: no apps
             }
+            return Collections.unmodifiableCollection(matching);
+        }
+        if (matching == null || matching.isEmpty()) {
+            return Collections.unmodifiableCollection(all);
         }
+
+        LinkedList<Application> apps = new LinkedList<Application>(matching);
+        apps.addAll(all);
         return apps;
     }
 
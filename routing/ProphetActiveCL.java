@@ -26,6 +26,7 @@ import report.MessageStatsReport;
  * Lindgren et al.
  */
 public class ProphetActiveCL extends ActiveRouter  {
+    private static final long serialVersionUID = 5585922043764564965L;
 
     /**
      * delivery predictability initialization constant
@@ -25,6 +25,7 @@ import core.Tuple;
  * Anders Lindgren et al.
  */
 public class ProphetRouter extends ActiveRouter {
+	private static final long serialVersionUID = -4236910734178568665L;
 	/** delivery predictability initialization constant*/
 	public static final double P_INIT = 0.75;
 	/** delivery predictability transitivity scaling constant default value */
@@ -63,6 +64,14 @@ public class ProphetRouter extends ActiveRouter {
 	 */
 	public ProphetRouter(Settings s) {
 		super(s);
+		readProphetSettings();
+		initPreds();
+	}
+	
+	/**
+	 * Reads the seconds in time unit and beta settings
+	 */
+	private void readProphetSettings() {
 		Settings prophetSettings = new Settings(PROPHET_NS);
 		secondsInTimeUnit = prophetSettings.getInt(SECONDS_IN_UNIT_S);
 		if (prophetSettings.contains(BETA_S)) {
@@ -71,8 +80,12 @@ public class ProphetRouter extends ActiveRouter {
 		else {
 			beta = DEFAULT_BETA;
 		}
-
-		initPreds();
+	}
+	
+	@Override
+	public void restoreSettings(Settings s) {
+		super.restoreSettings(s);
+		readProphetSettings();
 	}
 
 	/**
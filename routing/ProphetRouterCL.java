@@ -18,6 +18,8 @@ import core.Message;
 import core.Settings;
 import core.SimClock;
 import core.Tuple;
+import input.TimerEvent;
+import input.TimerListener;
 
 /**
  * Implementation of PRoPHET router as described in
@@ -25,6 +27,7 @@ import core.Tuple;
  * Lindgren et al.
  */
 public class ProphetRouterCL extends ActiveRouter implements CLDetectionEngine {
+    private static final long serialVersionUID = -3020849057153787945L;
 
     /**
      * delivery predictability initialization constant
@@ -155,6 +158,10 @@ public class ProphetRouterCL extends ActiveRouter implements CLDetectionEngine {
      * value of stateUpdateInterval setting
      */
     private double stateUpdateInterval;
+    /**
+     * timer for the next state update (if timers are used)
+     */
+    private TimerEvent stateTimer;
     /**
      * needed for CL report
      */
@@ -366,18 +373,14 @@ public class ProphetRouterCL extends ActiveRouter implements CLDetectionEngine {
     @Override
     public void update() {
         super.update();
-        if ((SimClock.getTime() - LastUpdateTimeofState) >= stateUpdateInterval) {
-
-            newCL = countCL();
-            CLandTime nilaicl = new CLandTime(newCL, SimClock.getTime());
-            clandtime.add(nilaicl);
-            this.CL = newCL;
-//            System.out.println("======================================================");
-//            System.out.println("NILAI CL new CL : " + newCL);
-//            System.out.println("NILAI CL this cl :  " + this.CL);
-//            System.out.println("================================================");
-            LastUpdateTimeofState = SimClock.getTime();
-
+        if (usesTimers()) {
+            if (this.stateTimer == null) { // first update
+                this.stateTimer = scheduleTimer(
+                        LastUpdateTimeofState + stateUpdateInterval,
+                        new StateTimerListener());
+            }
+        } else if ((SimClock.getTime() - LastUpdateTimeofState) >= stateUpdateInterval) {
+            updateState();
         }
         if (!canStartTransfer() || isTransferring()) {
             return; // nothing to transfer or is currently transferring 
@@ -391,6 +394,21 @@ public class ProphetRouterCL extends ActiveRouter implements CLDetectionEngine {
         tryOtherMessages();
     }
 
+    /**
+     * Counts the new congestion level and stores it to the CL history
+     */
+    private void updateState() {
+        newCL = countCL();
+        CLandTime nilaicl = new CLandTime(newCL, SimClock.getTime());
+        clandtime.add(nilaicl);
+        this.CL = newCL;
+//        System.out.println("======================================================");
+//        System.out.println("NILAI CL new CL : " + newCL);
+//        System.out.println("NILAI CL this cl :  " + this.CL);
+//        System.out.println("================================================");
+        LastUpdateTimeofState = SimClock.getTime();
+    }
+
     protected boolean makeRoomForMessage(int size) {
         if (size > this.getBufferSize()) {
             return false; // message too big for the buffer
@@ -650,9 +668,36 @@ public class ProphetRouterCL extends ActiveRouter implements CLDetectionEngine {
      * one.
      */
 //  
+    /**
+     * Returns the time of the next state update if the state is updated by
+     * polling in {@link #update()} and the update is due before the other
+     * wake-ups
+     */
+    @Override
+    public double getNextWakeupTime() {
+        double next = super.getNextWakeupTime();
+        if (!usesTimers()) {
+            next = Math.min(next, LastUpdateTimeofState + stateUpdateInterval);
+        }
+        return next;
+    }
+
     @Override
     public MessageRouter replicate() {
         ProphetRouterCL r = new ProphetRouterCL(this);
         return r;
     }
+
+    /**
+     * Listener of the state update timer. Updates the state and schedules
+     * the next update.
+     */
+    private class StateTimerListener implements TimerListener {
+        private static final long serialVersionUID = 1L;
+
+        public void timerExpired(TimerEvent timer) {
+            updateState();
+            rescheduleTimer(timer, LastUpdateTimeofState + stateUpdateInterval);
+        }
+    }
 }
@@ -25,6 +25,7 @@ import core.Tuple;
  * Lindgren et al.
  */
 public class ProphetRouterCL0 extends ActiveRouter implements CLDetectionEngine {
+    private static final long serialVersionUID = -351897615132522776L;
 
     /**
      * delivery predictability initialization constant
@@ -663,6 +664,16 @@ public class ProphetRouterCL0 extends ActiveRouter implements CLDetectionEngine
      * one.
      */
 //  
+    /**
+     * Returns the time of the next state update if it is due before the
+     * other wake-ups
+     */
+    @Override
+    public double getNextWakeupTime() {
+        return Math.min(super.getNextWakeupTime(),
+                LastUpdateTimeofState + stateUpdateInterval);
+    }
+
     @Override
     public MessageRouter replicate() {
         ProphetRouterCL0 r = new ProphetRouterCL0(this);
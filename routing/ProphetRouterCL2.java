@@ -26,6 +26,7 @@ import report.MessageStatsReport;
  * Lindgren et al.
  */
 public class ProphetRouterCL2 extends ActiveRouter implements Runnable{
+    private static final long serialVersionUID = -4309940652822502156L;
 
     /**
      * delivery predictability initialization constant
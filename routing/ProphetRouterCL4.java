@@ -27,6 +27,7 @@ import java.util.Set;
  * Lindgren et al.
  */
 public class ProphetRouterCL4 extends ActiveRouter {
+    private static final long serialVersionUID = -6815487080955914346L;
 
     /**
      * delivery predictability initialization constant
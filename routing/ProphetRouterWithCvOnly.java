@@ -25,6 +25,7 @@ import core.Tuple;
  * Lindgren et al.
  */
 public class ProphetRouterWithCvOnly extends ActiveRouter implements CVDetectionEngine {
+    private static final long serialVersionUID = 4887788096441120551L;
 
     /**
      * delivery predictability initialization constant
@@ -711,6 +712,16 @@ public class ProphetRouterWithCvOnly extends ActiveRouter implements CVDetection
         return list;
     }
 
+    /**
+     * Returns the time of the next state update if it is due before the
+     * other wake-ups
+     */
+    @Override
+    public double getNextWakeupTime() {
+        return Math.min(super.getNextWakeupTime(),
+                LastUpdateTimeofState + stateUpdateInterval);
+    }
+
     @Override
     public MessageRouter replicate() {
         ProphetRouterWithCvOnly r = new ProphetRouterWithCvOnly(this);
@@ -19,6 +19,7 @@ import core.Settings;
  *
  */
 public class SprayAndWaitRouter extends ActiveRouter {
+	private static final long serialVersionUID = -1885720824121410137L;
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "nrofCopies";
 	/** identifier for the binary-mode setting ({@value})*/ 
@@ -34,12 +35,25 @@ public class SprayAndWaitRouter extends ActiveRouter {
 
 	public SprayAndWaitRouter(Settings s) {
 		super(s);
+		readSnwSettings();
+	}
+	
+	/**
+	 * Reads the number of copies and binary mode settings
+	 */
+	private void readSnwSettings() {
 		Settings snwSettings = new Settings(SPRAYANDWAIT_NS);
 		
 		initialNrofCopies = snwSettings.getInt(NROF_COPIES);
 		isBinary = snwSettings.getBoolean( BINARY_MODE);
 	}
 	
+	@Override
+	public void restoreSettings(Settings s) {
+		super.restoreSettings(s);
+		readSnwSettings();
+	}
+	
 	/**
 	 * Copy constructor.
 	 * @param r The router prototype where setting values are copied from
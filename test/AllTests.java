@@ -47,8 +47,16 @@ public class AllTests {
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(EventQueueHeapTest.class);
+		suite.addTestSuite(ConnectivityGridTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(ProfilerTest.class);
+		suite.addTestSuite(KineticContactPredictorTest.class);
+		suite.addTestSuite(PeerConnectionListTest.class);
+		suite.addTestSuite(InterferenceLimitedInterfaceTest.class);
+		suite.addTestSuite(SimpleBroadcastInterfaceTest.class);
+		suite.addTestSuite(SimContextTest.class);
 		//$JUnit-END$
 		return suite;
 	}
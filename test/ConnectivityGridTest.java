@@ -0,0 +1,215 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Tests for the snapshot, lazy location, pair, and large range queries of
+ * the ConnectivityGrid
+ */
+public class ConnectivityGridTest extends TestCase {
+	private static final double RANGE = 10;
+	private static final int WORLD_SIZE = 200;
+	private ConnectivityGrid grid;
+	private List<NetworkInterface> interfaces;
+	private Random rng;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ConnectivityGrid.reset();
+		this.grid = ConnectivityGrid.ConnectivityGridFactory(1, RANGE * 2);
+		this.rng = new Random(7);
+		this.interfaces = new ArrayList<NetworkInterface>();
+		
+		TestUtils utils = new TestUtils(null, null, ts);
+		for (int i=0; i<200; i++) {
+			DTNHost h = utils.createHost(randomCoord());
+			NetworkInterface ni = h.getInterfaces().get(0);
+			this.interfaces.add(ni);
+			this.grid.addInterface(ni);
+		}
+	}
+	
+	public void testSnapshotNearInterfaces() {
+		moveSome();
+		this.grid.takeSnapshot();
+		
+		for (NetworkInterface ni : interfaces) {
+			Collection<NetworkInterface> near = 
+				this.grid.getSnapshotNearInterfaces(ni);
+			for (NetworkInterface other : inRange(ni)) {
+				assertTrue(other + " not near " + ni, near.contains(other));
+			}
+		}
+	}
+	
+	public void testNearInterfacesOrder() {
+		moveSome();
+		this.grid.takeSnapshot();
+		List<NetworkInterface> updateOrder = 
+			new ArrayList<NetworkInterface>(interfaces);
+		Collections.shuffle(updateOrder, rng);
+		
+		/* half of the interfaces haven't updated their location when the 
+		 * other half is queried */
+		for (NetworkInterface ni : updateOrder) {
+			this.grid.updateLocation(ni);
+			List<NetworkInterface> candidates = inRange(ni);
+			Collections.shuffle(candidates, rng);
+			
+			List<NetworkInterface> expected = new ArrayList<NetworkInterface>(
+					this.grid.getNearInterfaces(ni));
+			expected.retainAll(candidates);
+			
+			assertEquals(expected, new ArrayList<NetworkInterface>(
+					this.grid.getNearInterfaces(ni, candidates)));
+		}
+	}
+	
+	public void testNearInterfacesOrderManyCells() {
+		/* small cells and long range: more neighbor cells than fit in the
+		 * sort keys */
+		ConnectivityGrid small = ConnectivityGrid.ConnectivityGridFactory(2,
+				2);
+		double range = WORLD_SIZE; /* 201 x 201 neighbor cells */
+		for (NetworkInterface ni : interfaces) {
+			ni.moduleValueChanged(NetworkInterface.RANGE_ID, range);
+			small.addInterface(ni);
+		}
+		for (NetworkInterface ni : interfaces) {
+			List<NetworkInterface> candidates = inRange(ni, range);
+			Collections.shuffle(candidates, rng);
+
+			List<NetworkInterface> expected = new ArrayList<NetworkInterface>(
+					small.getNearInterfaces(ni));
+			expected.retainAll(candidates);
+
+			assertEquals(expected, new ArrayList<NetworkInterface>(
+					small.getNearInterfaces(ni, candidates)));
+		}
+	}
+
+	public void testLazyLocations() {
+		moveSome();
+		for (NetworkInterface ni : interfaces) {
+			this.grid.updateLocationLazily(ni);
+		}
+
+		/* the deferred locations must be updated before the first query */
+		for (NetworkInterface ni : interfaces) {
+			Collection<NetworkInterface> near = this.grid.getNearInterfaces(ni);
+			for (NetworkInterface other : inRange(ni)) {
+				assertTrue(other + " not near " + ni, near.contains(other));
+			}
+		}
+	}
+
+	public void testNearPairs() {
+		moveSome();
+		for (NetworkInterface ni : interfaces) {
+			this.grid.updateLocation(ni);
+		}
+		final List<String> pairs = new ArrayList<String>();
+		this.grid.visitNearPairs(new ConnectivityGrid.PairVisitor() {
+			public void visit(NetworkInterface a, NetworkInterface b) {
+				int a1 = Math.min(a.getAddress(), b.getAddress());
+				int a2 = Math.max(a.getAddress(), b.getAddress());
+				pairs.add(a1 + "-" + a2);
+			}
+		});
+
+		/* every pair within range is visited exactly once */
+		for (NetworkInterface ni : interfaces) {
+			for (NetworkInterface other : inRange(ni)) {
+				if (other.getAddress() <= ni.getAddress()) {
+					continue;
+				}
+				String pair = ni.getAddress() + "-" + other.getAddress();
+				assertEquals(pair, 1, Collections.frequency(pairs, pair));
+			}
+		}
+		assertEquals(pairs.size(), new HashSet<String>(pairs).size());
+	}
+
+	public void testRangeLargerThanCells() {
+		double range = RANGE * 4.5; /* more than two cells */
+		for (NetworkInterface ni : interfaces) {
+			ni.moduleValueChanged(NetworkInterface.RANGE_ID, range);
+		}
+		moveSome();
+		for (NetworkInterface ni : interfaces) {
+			this.grid.updateLocation(ni);
+		}
+		final List<String> pairs = new ArrayList<String>();
+		this.grid.visitNearPairs(new ConnectivityGrid.PairVisitor() {
+			public void visit(NetworkInterface a, NetworkInterface b) {
+				int a1 = Math.min(a.getAddress(), b.getAddress());
+				int a2 = Math.max(a.getAddress(), b.getAddress());
+				pairs.add(a1 + "-" + a2);
+			}
+		});
+
+		for (NetworkInterface ni : interfaces) {
+			Collection<NetworkInterface> near = this.grid.getNearInterfaces(ni);
+			for (NetworkInterface other : inRange(ni, range)) {
+				assertTrue(other + " not near " + ni, near.contains(other));
+				if (other.getAddress() > ni.getAddress()) {
+					assertTrue(pairs.contains(ni.getAddress() + "-" + 
+							other.getAddress()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves half of the hosts to random locations
+	 */
+	private void moveSome() {
+		for (int i=0; i<interfaces.size(); i += 2) {
+			interfaces.get(i).getHost().setLocation(randomCoord());
+		}
+	}
+	
+	/**
+	 * Returns the interface itself and all interfaces within range of it
+	 */
+	private List<NetworkInterface> inRange(NetworkInterface ni) {
+		return inRange(ni, RANGE);
+	}
+
+	/**
+	 * Returns the interface itself and all interfaces within the given
+	 * range of it
+	 */
+	private List<NetworkInterface> inRange(NetworkInterface ni, double range) {
+		List<NetworkInterface> list = new ArrayList<NetworkInterface>();
+		Coord loc = ni.getLocation();
+		for (NetworkInterface other : interfaces) {
+			if (loc.distance(other.getLocation()) <= range) {
+				list.add(other);
+			}
+		}
+		return list;
+	}
+	
+	private Coord randomCoord() {
+		return new Coord(rng.nextDouble() * WORLD_SIZE, 
+				rng.nextDouble() * WORLD_SIZE);
+	}
+}
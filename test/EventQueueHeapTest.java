@@ -0,0 +1,123 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import input.EventQueueHeap;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the EventQueueHeap
+ */
+public class EventQueueHeapTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+	
+	protected void setUp() throws Exception {
+		java.util.Locale.setDefault(java.util.Locale.US);
+		super.setUp();
+	}
+	
+	public void testMerge() throws Exception {
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		ListQueue polled = new ListQueue();
+		
+		queues.add(createQueue("A", 1, 3, 5));
+		queues.add(polled);
+		queues.add(createQueue("B", 2, 3, 6));
+		polled.add(new TestEvent("P", 3));
+		
+		EventQueueHeap heap = new EventQueueHeap(queues);
+		assertEquals(1.0, heap.nextEventsTime());
+		assertEvent("A", 1, heap.nextEvent());
+		assertEvent("B", 2, heap.nextEvent());
+		
+		/* same time -> order of the queues in the list */
+		assertEvent("A", 3, heap.nextEvent());
+		assertEvent("P", 3, heap.nextEvent());
+		assertEvent("B", 3, heap.nextEvent());
+		
+		/* polled queues may get new events any time */
+		polled.add(new TestEvent("P", 4));
+		assertEquals(4.0, heap.nextEventsTime());
+		assertEvent("P", 4, heap.nextEvent());
+		assertEvent("A", 5, heap.nextEvent());
+		assertEvent("B", 6, heap.nextEvent());
+		
+		assertEquals(MAX, heap.nextEventsTime());
+		assertEquals(MAX, heap.nextEvent().getTime());
+	}
+	
+	public void testNoQueues() {
+		EventQueueHeap heap = new EventQueueHeap(new ArrayList<EventQueue>());
+		assertEquals(MAX, heap.nextEventsTime());
+		assertEquals(MAX, heap.nextEvent().getTime());
+	}
+	
+	private void assertEvent(String id, double time, ExternalEvent ee) {
+		assertEquals(time, ee.getTime());
+		assertTrue(ee + " is not from " + id, 
+				(ee + " ").contains(" " + id + (int)time + " "));
+	}
+	
+	/**
+	 * Creates an external events queue with message creation events at the 
+	 * given times. The message IDs are the id prefix plus the time.
+	 */
+	private ExternalEventsQueue createQueue(String id, int... times) 
+			throws Exception {
+		File tempFile = File.createTempFile("eqhTest", ".tmp");
+		tempFile.deleteOnExit();
+		PrintWriter out = new PrintWriter(tempFile);
+		for (int time : times) {
+			out.println(time + "\tC\t" + id + time + "\tp1\tp2\t100");
+		}
+		out.close();
+		
+		return new ExternalEventsQueue(tempFile.getAbsolutePath(), 10);
+	}
+	
+	/** Event queue whose events can be added at any time */
+	private static class ListQueue implements EventQueue {
+		private LinkedList<ExternalEvent> events = 
+			new LinkedList<ExternalEvent>();
+		
+		public void add(ExternalEvent ee) {
+			events.add(ee);
+		}
+		
+		public ExternalEvent nextEvent() {
+			if (events.isEmpty()) {
+				return new ExternalEvent(MAX);
+			}
+			return events.removeFirst();
+		}
+		
+		public double nextEventsTime() {
+			return events.isEmpty() ? MAX : events.getFirst().getTime();
+		}
+	}
+	
+	private static class TestEvent extends ExternalEvent {
+		private String id;
+		
+		public TestEvent(String id, double time) {
+			super(time);
+			this.id = id + (int)time;
+		}
+		
+		public String toString() {
+			return "TEST @" + time + " " + id;
+		}
+	}
+}
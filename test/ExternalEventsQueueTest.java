@@ -5,17 +5,29 @@
 package test;
 
 import input.BinaryEventsReader;
+import input.ConnectionEvent;
+import input.ContactTraceReader;
+import input.ContactTraceWriter;
+import input.EventsTimeIndex;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
+import input.BinaryEventsWriter;
 import input.MessageCreateEvent;
+import input.MessageDeleteEvent;
+import input.MessageRelayEvent;
 import input.StandardEventsReader;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import junit.framework.TestCase;
+import core.SimError;
 
 public class ExternalEventsQueueTest extends TestCase {
 	private final String[] stdinput = {
@@ -66,6 +78,156 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 	
+	public void testPrefetchEEQ() throws Exception {
+		int preload = 3;
+		eeq = new ExternalEventsQueue(prefetchSettings(tempFile, preload));
+		checkEeq(eeq, preload);
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, eeq.nextEvent().getTime());
+		
+		File f = File.createTempFile("eeqPrefetchTest", ".tmp");
+		PrintWriter out = new PrintWriter(f);
+		for (int i=0; i<2000; i++) {
+			out.println(i + " CONN " + (i % 7) + " " + (10 + i % 11) + 
+					(i % 3 == 0 ? " up" : " down"));
+		}
+		out.println("2000 X");
+		out.close();
+		
+		ExternalEventsQueue sync = new ExternalEventsQueue(
+				f.getAbsolutePath(), 7);
+		eeq = new ExternalEventsQueue(prefetchSettings(f, 7));
+		int syncErrorAt = -1;
+		int prefetchErrorAt = -1;
+		for (int i=0; syncErrorAt < 0 || prefetchErrorAt < 0; i++) {
+			assertEquals(sync.eventsLeftInBuffer(), eeq.eventsLeftInBuffer());
+			assertEquals(sync.nextEventsTime(), eeq.nextEventsTime());
+			try {
+				if (syncErrorAt < 0) {
+					sync.nextEvent();
+				}
+			} catch (SimError e) {
+				syncErrorAt = i;
+			}
+			try {
+				if (prefetchErrorAt < 0) {
+					eeq.nextEvent();
+				}
+			} catch (SimError e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("line 2001"));
+				prefetchErrorAt = i;
+			}
+		}
+		assertEquals(syncErrorAt, prefetchErrorAt);
+		assertTrue(f.delete());
+	}
+	
+	private TestSettings prefetchSettings(File eventsFile, int preload) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting("Events1." + ExternalEventsQueue.PATH_SETTING, 
+				eventsFile.getAbsolutePath());
+		ts.putSetting("Events1." + ExternalEventsQueue.PRELOAD_SETTING, 
+				"" + preload);
+		ts.putSetting("Events1." + ExternalEventsQueue.PREFETCH_SETTING, "2");
+		ts.setNameSpace("Events1");
+		return ts;
+	}
+	
+	public void testStartTime() throws Exception {
+		int nrof = 25000;
+		double startTime = 10001.25;
+		File f = File.createTempFile("eeqStartTimeTest", ".tmp");
+		File binFile = File.createTempFile("eeqStartTimeTest", 
+				BinaryEventsReader.BINARY_EXT);
+		File traceFile = File.createTempFile("eeqStartTimeTest", 
+				ContactTraceReader.TRACE_EXT);
+		PrintWriter out = new PrintWriter(f);
+		BinaryEventsWriter bin = new BinaryEventsWriter(binFile);
+		ContactTraceWriter trace = new ContactTraceWriter(traceFile);
+		
+		/* the connections up at the start time and the events after it */
+		LinkedHashMap<String, String> open = 
+			new LinkedHashMap<String, String>();
+		List<String> expected = new ArrayList<String>();
+		for (int i=0; i<nrof; i++) {
+			double time = i * 0.5;
+			int from = i % 7;
+			int to = 10 + i % 11;
+			boolean up = (i / 7) % 2 == 0;
+			out.println(time + " CONN " + from + " " + to + 
+					(up ? " up" : " down"));
+			bin.write(new ConnectionEvent(from, to, null, up, time));
+			trace.writeConnection(time, from, to, null, up);
+			
+			if (time >= startTime) {
+				expected.add(new ConnectionEvent(from, to, null, up, 
+						time - startTime).toString());
+			}
+			else if (!up) {
+				open.remove(from + "-" + to);
+			}
+			else if (!open.containsKey(from + "-" + to)) {
+				open.put(from + "-" + to, new ConnectionEvent(from, to, 
+						null, true, 0).toString());
+			}
+		}
+		out.close();
+		bin.close();
+		trace.close();
+		assertFalse(open.isEmpty());
+		expected.addAll(0, open.values());
+		
+		File indexFile = new File(f.getPath() + EventsTimeIndex.INDEX_EXT);
+		assertFalse(indexFile.exists());
+		checkStartTime(f, startTime, expected);
+		assertTrue(indexFile.exists());
+		long indexLength = indexFile.length();
+		checkStartTime(f, startTime, expected); /* index is reused */
+		assertEquals(indexLength, indexFile.length());
+		
+		/* an outdated index is replaced and no temporary files are left */
+		PrintWriter stale = new PrintWriter(indexFile);
+		stale.println("stale");
+		stale.close();
+		checkStartTime(f, startTime, expected);
+		assertEquals(indexLength, indexFile.length());
+		for (String name : indexFile.getAbsoluteFile().getParentFile().list()) {
+			assertFalse(name, name.startsWith(indexFile.getName() + "."));
+		}
+		
+		File binIndexFile = new File(binFile.getPath() + 
+				EventsTimeIndex.INDEX_EXT);
+		checkStartTime(binFile, startTime, expected);
+		assertTrue(binIndexFile.exists());
+		
+		/* contact traces are not indexed but read from the beginning */
+		checkStartTime(traceFile, startTime, expected);
+		assertFalse(new File(traceFile.getPath() + 
+				EventsTimeIndex.INDEX_EXT).exists());
+		
+		assertTrue(indexFile.delete());
+		assertTrue(binIndexFile.delete());
+		assertTrue(f.delete());
+		assertTrue(binFile.delete());
+		assertTrue(traceFile.delete());
+	}
+	
+	private void checkStartTime(File eventsFile, double startTime, 
+			List<String> expected) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting("Events1." + ExternalEventsQueue.PATH_SETTING, 
+				eventsFile.getAbsolutePath());
+		ts.putSetting("Events1." + ExternalEventsQueue.START_TIME_SETTING, 
+				"" + startTime);
+		ts.setNameSpace("Events1");
+		
+		eeq = new ExternalEventsQueue(ts);
+		for (String e : expected) {
+			assertEquals(e, eeq.nextEvent().toString());
+		}
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+	}
+	
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest", 
@@ -82,6 +244,169 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 	
 	
+	public void testBinaryFormat() throws Exception {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		events.add(new ConnectionEvent(1, 2, "bt", true, 0.5));
+		events.add(new MessageCreateEvent(1, 2, "M\u00e4", 100, 10, 1.0/3));
+		events.add(new MessageRelayEvent(1, 2, "M\u00e4", 2, 
+				MessageRelayEvent.SENDING));
+		events.add(new MessageRelayEvent(1, 2, "M\u00e4", 3, 
+				MessageRelayEvent.TRANSFERRED));
+		events.add(new MessageRelayEvent(2, 3, "M\u00e4", 3, 
+				MessageRelayEvent.ABORTED));
+		events.add(new MessageDeleteEvent(2, "*", 4, true));
+		events.add(new MessageDeleteEvent(2, "M\u00e4", 5, false));
+		events.add(new ConnectionEvent(1, 70000, null, false, 6));
+		
+		File binFile = File.createTempFile("TempBinFormat", 
+				BinaryEventsReader.BINARY_EXT);
+		BinaryEventsWriter w = new BinaryEventsWriter(binFile);
+		for (ExternalEvent ee : events) {
+			w.write(ee);
+		}
+		w.close();
+		assertEquals(BinaryEventsReader.HEADER_SIZE + events.size() * 
+				BinaryEventsReader.RECORD_SIZE + 4 + 3 * 4 + 2 + 3 + 1,
+				binFile.length());
+		assertTrue(BinaryEventsReader.isBinaryEeFile(binFile));
+		
+		BinaryEventsReader r = new BinaryEventsReader(binFile);
+		List<ExternalEvent> read = r.readEvents(5);
+		read.addAll(r.readEvents(5));
+		assertEquals(0, r.readEvents(5).size());
+		r.close();
+		assertEquals(events.size(), read.size());
+		for (int i=0; i<events.size(); i++) {
+			assertEquals(events.get(i).getClass(), read.get(i).getClass());
+			assertEquals(events.get(i).toString(), read.get(i).toString());
+		}
+		assertEquals(10, ((MessageCreateEvent)read.get(1)).getResponseSize());
+		assertTrue(((MessageDeleteEvent)read.get(5)).isDrop());
+		assertFalse(((MessageDeleteEvent)read.get(6)).isDrop());
+		assertTrue(binFile.delete());
+	}
+	
+	public void testSerializedBinaryEEQ() throws Exception {
+		List<ExternalEvent> events = 
+			new StandardEventsReader(tempFile).readEvents(100);
+		File binFile = File.createTempFile("TempSerializedTest", 
+				BinaryEventsReader.BINARY_EXT);
+		ObjectOutputStream out = new ObjectOutputStream(
+				new FileOutputStream(binFile));
+		out.writeObject(new Integer(events.size()));
+		for (ExternalEvent ee : events) {
+			out.writeObject(ee);
+		}
+		out.close();
+		
+		assertTrue(BinaryEventsReader.isBinaryEeFile(binFile));
+		eeq = new ExternalEventsQueue(binFile.getAbsolutePath(), 4);
+		checkEeq(eeq, 4);
+		assertTrue(binFile.delete());
+	}
+	
+	/**
+	 * Reads a file that was serialized by a version that had no binary
+	 * events format (test/legacyEvents.binee)
+	 */
+	public void testLegacySerializedFile() throws Exception {
+		File legacy = new File("test" + File.separator + 
+				"legacyEvents.binee");
+		assertTrue(BinaryEventsReader.isBinaryEeFile(legacy));
+		String[] expected = {"CONN up @0.5 1<->2", 
+				"MSG @1.25 M1 [1->2] size:1000 CREATE", 
+				"MSG @2.0 M1 [1->2] SENDING", 
+				"MSG @3.0 M1 [1->2] TRANSFERRED", 
+				"MSG @4.0 M1 [2->3] ABORTED", 
+				"MSG @5.0 M1 [1] DELETE", "MSG @6.0 M1 [2] DELETE", 
+				"CONN down @7.5 1<->2"};
+		
+		BinaryEventsReader r = new BinaryEventsReader(legacy);
+		List<ExternalEvent> events = r.readEvents(100);
+		r.close();
+		assertEquals(expected.length, events.size());
+		for (int i=0; i<expected.length; i++) {
+			assertEquals(expected[i], events.get(i).toString());
+		}
+		MessageCreateEvent create = (MessageCreateEvent)events.get(1);
+		assertEquals(1000, create.getSize());
+		assertEquals(50, create.getResponseSize());
+		assertEquals(MessageRelayEvent.ABORTED, 
+				((MessageRelayEvent)events.get(4)).getStage());
+		assertTrue(((MessageDeleteEvent)events.get(5)).isDrop());
+		assertFalse(((MessageDeleteEvent)events.get(6)).isDrop());
+	}
+	
+	public void testContactTrace() throws Exception {
+		File traceFile = File.createTempFile("TempTraceTest", 
+				ContactTraceReader.TRACE_EXT);
+		ContactTraceWriter w = new ContactTraceWriter(traceFile);
+		w.writeConnection(0.5, 1, 2, "btInterface", true);
+		w.writeConnection(1.0 / 3, 300, 70000, null, true);
+		w.writeConnection(2.25, 2, 1, "wlanInterface", true);
+		w.writeConnection(10, 1, 2, "btInterface", false);
+		w.close();
+		
+		eeq = new ExternalEventsQueue(traceFile.getAbsolutePath(), 3);
+		String[] expected = {"CONN up @0.5 1<->2", 
+				"CONN up @" + (1.0 / 3) + " 300<->70000", 
+				"CONN up @2.25 2<->1", "CONN down @10.0 1<->2"};
+		for (String e : expected) {
+			ExternalEvent ee = eeq.nextEvent();
+			assertTrue(ee instanceof ConnectionEvent);
+			assertEquals(e, ee.toString());
+		}
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		
+		assertFalse(ContactTraceReader.isContactTraceFile(tempFile));
+		assertTrue(traceFile.delete());
+	}
+	
+	public void testStandardReaderFormats() throws Exception {
+		File f = File.createTempFile("eeqFormatTest", ".tmp");
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(("#comment\r\n\t\r\n" +
+				"1.5 CONN h1 h22 UP bt\r\n" +
+				" 2 C  M1 3 c4 100 20 extra\n" +
+				"3e1\tCONN 1 2 down").getBytes());
+		out.close();
+		
+		ExternalEventsReader r = new StandardEventsReader(f);
+		List<ExternalEvent> events = r.readEvents(10);
+		r.close();
+		assertEquals(3, events.size());
+		assertEquals("CONN up @1.5 1<->22", events.get(0).toString());
+		assertEquals("MSG @2.0 M1 [3->4] size:100 CREATE", 
+				events.get(1).toString());
+		assertEquals("CONN down @30.0 1<->2", events.get(2).toString());
+		assertTrue(f.delete());
+	}
+	
+	public void testStandardReaderErrors() throws Exception {
+		String[] invalid = {"1 C M1 p1 p2", "1 X M1 p1 p2", "1 DR M1 p1p2",
+				"1 CONN 1 2 sideways", "1.2.3 R M1 p1", "x S M1 p1 p2"};
+		for (String line : invalid) {
+			File f = File.createTempFile("eeqErrorTest", ".tmp");
+			PrintWriter out = new PrintWriter(f);
+			out.println("# comment");
+			out.println("0.5 S M1 p1 p2");
+			out.println(line);
+			out.close();
+			
+			ExternalEventsReader r = new StandardEventsReader(f);
+			assertEquals(1, r.readEvents(1).size());
+			try {
+				r.readEvents(1);
+				fail("No error from '" + line + "'");
+			} catch (SimError e) {
+				assertTrue(e.getMessage(), 
+						e.getMessage().contains("line 3 "));
+			}
+			r.close();
+			assertTrue(f.delete());
+		}
+	}
+	
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
 		assertEquals(msgTimes[0],eeq.nextEventsTime());
@@ -4,6 +4,8 @@
  */
 package test;
 
+import input.BinaryMovementReader;
+import input.BinaryMovementWriter;
 import input.ExternalMovementReader;
 
 import java.io.File;
@@ -12,10 +14,12 @@ import java.util.List;
 
 import junit.framework.TestCase;
 import core.Coord;
+import core.SettingsError;
 import core.Tuple;
 
 public class ExternalMovementReaderTest extends TestCase {
 	private ExternalMovementReader r;
+	private File inputFile;
 	private static final String INPUT = 
 		"0 0 0 0 0 0\n"+
 		"10 1 10 10\n"+ 
@@ -39,14 +43,14 @@ public class ExternalMovementReaderTest extends TestCase {
 	protected void setUp() throws Exception {
 		super.setUp();
 		
-		File tmpFile = File.createTempFile("EMRTest","tmp");
-		tmpFile.deleteOnExit();
+		inputFile = File.createTempFile("EMRTest","tmp");
+		inputFile.deleteOnExit();
 		
-		PrintWriter pw = new PrintWriter(tmpFile);
+		PrintWriter pw = new PrintWriter(inputFile);
 		pw.println(INPUT);
 		pw.close();
 
-		r = new ExternalMovementReader(tmpFile.getAbsolutePath());
+		r = new ExternalMovementReader(inputFile.getAbsolutePath());
 	}
 	
 	public void testReader() {
@@ -62,6 +66,36 @@ public class ExternalMovementReaderTest extends TestCase {
 		assertEquals(0, list.size());
 	}
 
+	public void testBinaryReader() throws Exception {
+		File binFile = File.createTempFile("EMRTest", 
+				BinaryMovementReader.BINARY_EXT);
+		binFile.deleteOnExit();
+		assertEquals(9, BinaryMovementWriter.convert(inputFile, binFile));
+		assertTrue(BinaryMovementReader.isBinaryMovementFile(binFile));
+		
+		BinaryMovementReader br = new BinaryMovementReader(binFile);
+		assertEquals(10.0, br.getSamplingInterval());
+		assertEquals(ids.length, br.getNrofNodes());
+		for (int n=0; n<ids.length; n++) {
+			assertEquals(ids[n], br.getNodeId(n));
+			assertEquals(times.length, br.getNrofSamples(n));
+			for (int i=0; i<times.length; i++) {
+				assertEquals(times[i], br.getTime(n, i));
+				assertEquals(coords[i][n], br.getLocation(n, i));
+			}
+		}
+		
+		File invalid = File.createTempFile("EMRTest", 
+				BinaryMovementReader.BINARY_EXT);
+		invalid.deleteOnExit();
+		try {
+			new BinaryMovementReader(invalid);
+			fail("Empty file accepted as a binary movement file");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
 	private void checkTuples(List<Tuple<String, Coord>> list, String[] ids,
 			Coord[] coords) {
 		
@@ -4,8 +4,14 @@
  */
 package test;
 
+import input.BinaryMovementReader;
+import input.BinaryMovementWriter;
+
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
 import movement.ExternalMovement;
@@ -49,6 +55,11 @@ public class ExternalMovementTest extends TestCase {
 	private SimClock clock;
 	
 	protected void setUpUsing(String[] input) throws Exception {
+		setUpUsing(input, false);
+	}
+	
+	protected void setUpUsing(String[] input, boolean binary) 
+			throws Exception {
 		super.setUp();
 		ExternalMovement.reset();
 		TestSettings ts = new TestSettings();
@@ -64,6 +75,14 @@ public class ExternalMovementTest extends TestCase {
 		
 		pw.close();
 		
+		if (binary) {
+			File binFile = File.createTempFile("eMovementTest", 
+					BinaryMovementReader.BINARY_EXT);
+			binFile.deleteOnExit();
+			BinaryMovementWriter.convert(outFile, binFile);
+			outFile = binFile;
+		}
+		
 		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
 				ExternalMovement.MOVEMENT_FILE_S, outFile.getAbsolutePath());
 		
@@ -80,6 +99,15 @@ public class ExternalMovementTest extends TestCase {
 	
 	public void testMovement() throws Exception {
 		setUpUsing(INPUT);
+		checkMovement();
+	}
+	
+	public void testBinaryMovement() throws Exception {
+		setUpUsing(INPUT, true);
+		checkMovement();
+	}
+	
+	private void checkMovement() {
 
 		// h3 should not get any fancy coordinates
 		assertEquals(c0, h3.getLocation());
@@ -99,7 +127,15 @@ public class ExternalMovementTest extends TestCase {
 
 	public void testStationary() throws Exception {
 		setUpUsing(STATIONARY_INPUT);
-		
+		checkStationary();
+	}
+	
+	public void testBinaryStationary() throws Exception {
+		setUpUsing(STATIONARY_INPUT, true);
+		checkStationary();
+	}
+	
+	private void checkStationary() {
 		for (int i=0; i<3; i++) {
 			// hosts h1 & h2 should stay in the same place all the time
 			assertEquals((i+1) + ". coord of h1",
@@ -114,6 +150,82 @@ public class ExternalMovementTest extends TestCase {
 
 	}
 	
+	/**
+	 * Checks that the hosts move exactly the same way with a text file and
+	 * a binary file of random moves and stops (that are longer than the 
+	 * preloaded intervals, so the moves are split to several paths)
+	 */
+	public void testBinarySameAsText() throws Exception {
+		Random rng = new Random(42);
+		List<String> input = new ArrayList<String>();
+		input.add("0 100 0 1000 0 1000 0 0");
+		double[][] locs = {{10, 10}, {500, 500}};
+		Coord[][] stops = new Coord[101][locs.length];
+		for (int t=0; t<=100; t++) {
+			for (int n=0; n<locs.length; n++) {
+				if (t > 0 && (t / 14) % 2 == n) { /* moves and stops */
+					locs[n][0] = Math.max(0, locs[n][0] + rng.nextInt(21) - 10);
+					locs[n][1] = Math.max(0, locs[n][1] + rng.nextInt(21) - 10);
+				}
+				else if (t % 14 >= 4 && t % 14 <= 12) { /* mid-stop */
+					stops[t][n] = new Coord(locs[n][0], locs[n][1]);
+				}
+				input.add(t + " " + (n + 1) + " " + locs[n][0] + " " + 
+						locs[n][1]);
+			}
+		}
+		String[] lines = input.toArray(new String[0]);
+		
+		/* update intervals that do and don't divide the sampling interval */
+		for (double step : new double[] {1, 0.75, 2.5}) {
+			List<Coord> text = moveAndGetLocations(lines, false, step);
+			List<Coord> binary = moveAndGetLocations(lines, true, step);
+			assertEquals(text.size(), binary.size());
+			for (int i=0; i<text.size(); i++) {
+				/* exactly the same, not only close */
+				assertEquals(step + "@" + i, text.get(i), binary.get(i));
+			}
+		}
+		
+		/* and the hosts are where the file says when they are stopped */
+		List<Coord> text = moveAndGetLocations(lines, false, 1);
+		for (int t=0; t<=100; t++) {
+			for (int n=0; n<locs.length; n++) {
+				if (stops[t][n] != null) {
+					assertCoord(t + ": h" + (n+1), stops[t][n], 
+							text.get(t * locs.length + n));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Moves the hosts using the input and returns the locations of the 
+	 * moving hosts (h1 and h2) after every update
+	 * @param input Lines of the movement file
+	 * @param binary Should the input be given as a binary file
+	 * @param step Update interval
+	 * @return The locations
+	 */
+	private List<Coord> moveAndGetLocations(String[] input, boolean binary,
+			double step) throws Exception {
+		setUpUsing(input, binary);
+		List<Coord> locations = new ArrayList<Coord>();
+		for (double time = 0; time <= 100; time += step) {
+			locations.add(h1.getLocation().clone());
+			locations.add(h2.getLocation().clone());
+			clock.advance(step);
+			moveAllHosts(step);
+		}
+		assertFalse(h3.isActive());
+		return locations;
+	}
+	
+	private void assertCoord(String msg, Coord expected, Coord actual) {
+		assertEquals(msg, expected.getX(), actual.getX(), 0.00001);
+		assertEquals(msg, expected.getY(), actual.getY(), 0.00001);
+	}
+	
 	public void moveAllHosts(double time) {
 		h1.move(time);
 		h2.move(time);
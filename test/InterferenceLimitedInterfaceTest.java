@@ -0,0 +1,195 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.InterferenceLimitedInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.MovementListener;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests that the incrementally kept transfer counts of the
+ * InterferenceLimitedInterface match the counts calculated from all the
+ * connections
+ */
+public class InterferenceLimitedInterfaceTest extends TestCase {
+	private static final String NS = "iliInterface";
+	private static final int NROF_HOSTS = 4;
+	private TestSettings ts;
+	private List<DTNHost> hosts;
+	private World world;
+	private int nrofChecks;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.ts = new TestSettings();
+		ts.putSetting(NS + "." + NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NS + "." + NetworkInterface.TRANSMIT_SPEED_S, "1000");
+		DTNHost.reset();
+		SimClock.reset();
+		ConnectivityGrid.reset();
+
+		this.hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(new CheckedInterface(new TestSettings(NS)));
+			hosts.add(new DTNHost(new ArrayList<MessageListener>(),
+					new ArrayList<MovementListener>(), "h", li,
+					new ModuleCommunicationBus(),
+					new StationaryMovement(new Coord(i, 0)),
+					new PassiveRouter(ts)));
+		}
+		this.world = new World(hosts, 100, 100, 1,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+		update(); /* all hosts are within range of each other */
+		assertEquals(NROF_HOSTS - 1, hosts.get(0).getConnections().size());
+	}
+
+	public void testTransfers() {
+		Connection c01 = getConnection(0, 1);
+		Connection c23 = getConnection(2, 3);
+		Connection c12 = getConnection(1, 2);
+
+		startTransfer(c01, 0, 1);
+		update();
+		assertTrue(getInterface(0).isTransferring());
+		assertTrue(getInterface(1).isTransferring());
+		assertFalse(getInterface(2).isTransferring());
+
+		startTransfer(c23, 2, 3);
+		update();
+		startTransfer(c12, 1, 2);
+		update();
+		assertTrue(getInterface(2).isTransferring());
+
+		c01.abortTransfer();
+		update();
+		assertFalse(getInterface(0).isTransferring());
+
+		c23.finalizeTransfer();
+		update();
+		assertFalse(getInterface(3).isTransferring());
+		assertTrue(getInterface(2).isTransferring());
+
+		/* connection goes down during the transfer */
+		getInterface(1).destroyConnection(getInterface(2));
+		assertFalse(c12.isUp());
+		update();
+		assertFalse(getInterface(1).isTransferring());
+		assertFalse(getInterface(2).isTransferring());
+		c12.abortTransfer();
+		update();
+
+		startTransfer(getConnection(1, 2), 2, 1);
+		update();
+		assertTrue(getInterface(1).isTransferring());
+		assertTrue(nrofChecks > 0);
+	}
+
+	public void testSpeedChange() {
+		startTransfer(getConnection(0, 1), 0, 1);
+		update();
+		int speed = getInterface(0).getTransmitSpeed();
+
+		hosts.get(0).getComBus().updateProperty(NetworkInterface.SPEED_ID,
+				2000);
+		update();
+		assertTrue(getInterface(0).getTransmitSpeed() > speed);
+	}
+
+	/**
+	 * Updates all hosts. The interfaces check their counts on every update.
+	 */
+	private void update() {
+		int checks = nrofChecks;
+		world.update();
+		assertEquals(checks + NROF_HOSTS, nrofChecks);
+	}
+
+	private void startTransfer(Connection con, int from, int to) {
+		Message m = new Message(hosts.get(from), hosts.get(to),
+				"M" + from + "-" + to, 100000);
+		assertEquals(0, con.startTransfer(hosts.get(from), m));
+	}
+
+	private Connection getConnection(int from, int to) {
+		for (Connection con : hosts.get(from).getConnections()) {
+			if (con.getOtherNode(hosts.get(from)) == hosts.get(to)) {
+				return con;
+			}
+		}
+		fail("No connection from " + from + " to " + to);
+		return null;
+	}
+
+	private CheckedInterface getInterface(int host) {
+		return (CheckedInterface)hosts.get(host).getInterfaces().get(0);
+	}
+
+	/**
+	 * Interface that compares its counts to the counts calculated from all
+	 * the connections after every update
+	 */
+	private class CheckedInterface extends InterferenceLimitedInterface {
+		private static final long serialVersionUID = 1L;
+
+		public CheckedInterface(Settings s) {
+			super(s);
+		}
+
+		public CheckedInterface(CheckedInterface ni) {
+			super(ni);
+		}
+
+		@Override
+		public NetworkInterface replicate() {
+			return new CheckedInterface(this);
+		}
+
+		@Override
+		public void update() {
+			super.update();
+
+			int transmissions = 0;
+			int active = 1;
+			for (Connection con : getConnections()) {
+				if (con.getMessage() != null) {
+					transmissions++;
+				}
+				if (((InterferenceLimitedInterface)con.getOtherInterface(this)).
+						isTransferring()) {
+					active++;
+				}
+			}
+			assertEquals(transmissions, this.numberOfTransmissions);
+
+			int ntrans = Math.max(transmissions, 1);
+			active = Math.max(active, 2);
+			int speed = (int)Math.floor((double)transmitSpeed /
+					(Math.sqrt((1.0*active) * Math.log(1.0*active))) /
+					ntrans);
+			assertEquals(speed, this.currentTransmitSpeed);
+			nrofChecks++;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.KineticContactPredictor;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SettingsError;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests for the kinetic contacts of the SimpleBroadcastInterface
+ */
+public class KineticContactPredictorTest extends TestCase {
+	private static final String NS = "kineticInterface";
+	private static final double RANGE = 10;
+	private static final double DELTA = 0.000001;
+	private TestSettings ts;
+	private List<Double> upTimes;
+	private List<Double> downTimes;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.ts = new TestSettings();
+		ts.putSetting(NS + "." + NetworkInterface.TRANSMIT_RANGE_S,
+				"" + RANGE);
+		ts.putSetting(NS + "." + NetworkInterface.TRANSMIT_SPEED_S, "1000");
+		ts.putSetting(NS + "." + SimpleBroadcastInterface.KINETIC_S, "true");
+		DTNHost.reset();
+		SimClock.reset();
+		ConnectivityGrid.reset();
+		KineticContactPredictor.reset();
+
+		this.upTimes = new ArrayList<Double>();
+		this.downTimes = new ArrayList<Double>();
+		this.hosts = new ArrayList<DTNHost>();
+	}
+
+	public void testExactContactTimes() {
+		createHost(new Coord(50, 5), new Coord(50, 5), 0);
+		createHost(new Coord(0, 0), new Coord(100, 0), 1);
+		World world = createWorld(1);
+		for (int i=0; i<100; i++) {
+			world.update();
+		}
+
+		double half = Math.sqrt(RANGE * RANGE - 5 * 5);
+		assertEquals(1, upTimes.size());
+		assertEquals(1, downTimes.size());
+		assertEquals(50 - half, upTimes.get(0), DELTA);
+		assertEquals(50 + half, downTimes.get(0), DELTA);
+	}
+
+	public void testMovingHosts() {
+		/* hosts approach each other and the other one passes the first one
+		 * after it has stopped */
+		createHost(new Coord(0, 0), new Coord(70, 0), 2);
+		createHost(new Coord(100, 0), new Coord(45, 0), 1);
+		World world = createWorld(5);
+		for (int i=0; i<12; i++) {
+			world.update();
+		}
+
+		/* distance is |100 - 3t| until the first host stops at t=35 and 
+		 * t - 30 after that */
+		assertEquals(1, upTimes.size());
+		assertEquals(1, downTimes.size());
+		assertEquals((100 - RANGE) / 3, upTimes.get(0), DELTA);
+		assertEquals(30 + RANGE, downTimes.get(0), DELTA);
+		assertEquals(0, hosts.get(0).getConnections().size());
+	}
+
+	public void testScanIntervalNotAllowed() {
+		ts.putSetting(NS + "." + NetworkInterface.SCAN_INTERVAL_S, "1");
+		try {
+			new SimpleBroadcastInterface(new TestSettings(NS));
+			fail("Scan interval should not be allowed with kinetic contacts");
+		} catch (SettingsError e) {
+			/* expected */
+		}
+	}
+
+	private DTNHost createHost(Coord from, Coord to, double speed) {
+		NetworkInterface ni = new SimpleBroadcastInterface(
+				new TestSettings(NS));
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				upTimes.add(SimClock.getTime());
+			}
+
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				downTimes.add(SimClock.getTime());
+			}
+		});
+		ni.setClisteners(cl);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+
+		DTNHost host = new DTNHost(null, null, "h", li,
+				new ModuleCommunicationBus(),
+				new LinearMovement(from, to, speed), new PassiveRouter(ts));
+		hosts.add(host);
+		return host;
+	}
+
+	private World createWorld(double updateInterval) {
+		return new World(hosts, 1000, 1000, updateInterval,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+	}
+
+	/**
+	 * Movement model that moves once from one location to another
+	 */
+	private static class LinearMovement extends MovementModel {
+		private Coord from;
+		private Coord to;
+		private double speed;
+		private boolean moved;
+
+		public LinearMovement(Coord from, Coord to, double speed) {
+			this.from = from;
+			this.to = to;
+			this.speed = speed;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return from.clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public boolean hasActiveTimes() {
+			return false;
+		}
+
+		@Override
+		public Path getPath() {
+			this.moved = true;
+			Path p = new Path(speed);
+			p.addWaypoint(from.clone());
+			p.addWaypoint(to.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return this.moved ? Double.MAX_VALUE : 0;
+		}
+
+		@Override
+		public LinearMovement replicate() {
+			return new LinearMovement(from, to, speed);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.CBRConnection;
+import core.Connection;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.PeerConnectionList;
+
+/**
+ * Tests for the peer index of the PeerConnectionList
+ */
+public class PeerConnectionListTest extends TestCase {
+	private NetworkInterface owner;
+	private List<NetworkInterface> peers;
+	private PeerConnectionList list;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.owner = createInterface();
+		this.peers = new ArrayList<NetworkInterface>();
+		for (int i=0; i<40; i++) {
+			this.peers.add(createInterface());
+		}
+		this.list = new PeerConnectionList(owner);
+	}
+
+	public void testRandomChanges() {
+		Random rng = new Random(3);
+		for (int round=0; round<2000; round++) {
+			if (list.isEmpty() || rng.nextInt(3) > 0) {
+				NetworkInterface peer = peers.get(rng.nextInt(peers.size()));
+				list.add(connection(peer, rng.nextBoolean()));
+			}
+			else if (rng.nextInt(4) == 0) {
+				NetworkInterface peer = peers.get(rng.nextInt(peers.size()));
+				list.set(rng.nextInt(list.size()), connection(peer, true));
+			}
+			else if (rng.nextBoolean()) {
+				list.remove(rng.nextInt(list.size()));
+			}
+			else {
+				assertTrue(list.remove(list.get(rng.nextInt(list.size()))));
+			}
+
+			for (NetworkInterface peer : peers) {
+				Connection con = findConnection(peer);
+				assertSame(con, list.getConnection(peer));
+				assertEquals(position(con), list.indexOfPeer(peer));
+			}
+			for (Connection con : list) {
+				assertEquals(position(con), list.indexOf(con));
+				assertTrue(list.contains(con));
+			}
+			Connection other = connection(peers.get(0), true);
+			assertEquals(-1, list.indexOf(other));
+			assertFalse(list.remove(other));
+		}
+	}
+
+	public void testAppendOnly() {
+		Connection first = connection(peers.get(0), true);
+		Connection second = connection(peers.get(0), false);
+		list.add(first);
+		try {
+			list.add(0, second);
+			fail("Connection inserted before an existing one");
+		} catch (UnsupportedOperationException e) {
+			/* only appends are allowed */
+		}
+		assertEquals(1, list.size());
+		list.add(1, second);
+		assertSame(first, list.getConnection(peers.get(0)));
+		list.remove(0);
+		assertSame(second, list.getConnection(peers.get(0)));
+		assertEquals(0, list.indexOfPeer(peers.get(0)));
+	}
+
+	public void testClear() {
+		for (NetworkInterface peer : peers) {
+			list.add(connection(peer, true));
+		}
+		assertNotNull(list.getConnection(peers.get(7)));
+		list.clear();
+		assertTrue(list.isEmpty());
+		for (NetworkInterface peer : peers) {
+			assertNull(list.getConnection(peer));
+		}
+	}
+
+	/**
+	 * Returns the first connection to the peer by going through the list
+	 */
+	private Connection findConnection(NetworkInterface peer) {
+		for (Connection con : list) {
+			if (con.getOtherInterface(owner) == peer) {
+				return con;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the position of the connection in the list by going through
+	 * the list (or -1 if the connection is null or not in the list)
+	 */
+	private int position(Connection con) {
+		for (int i=0; i<list.size(); i++) {
+			if (list.get(i) == con) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private Connection connection(NetworkInterface peer, boolean initiator) {
+		if (initiator) {
+			return new CBRConnection(owner.getHost(), owner, peer.getHost(),
+					peer, 1);
+		}
+		return new CBRConnection(peer.getHost(), peer, owner.getHost(),
+				owner, 1);
+	}
+
+	private NetworkInterface createInterface() {
+		NetworkInterface ni = new TestInterface(1.0, 1);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+		ModuleCommunicationBus comBus = new ModuleCommunicationBus();
+		comBus.addProperty(NetworkInterface.RANGE_ID, 1.0);
+		comBus.addProperty(NetworkInterface.SPEED_ID, 1);
+		return new TestDTNHost(li, comBus).getInterfaces().get(0);
+	}
+}
@@ -0,0 +1,118 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.EpidemicRouter;
+import core.DTNHost;
+import core.Profiler;
+import core.SimError;
+import core.UpdateListener;
+
+/**
+ * Tests for the Profiler class
+ */
+public class ProfilerTest extends TestCase {
+	private static final long WAIT_NANOS = 2000000;
+	private Profiler profiler;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Profiler.reset();
+		this.profiler = Profiler.enable();
+	}
+
+	protected void tearDown() throws Exception {
+		Profiler.reset();
+		super.tearDown();
+	}
+
+	public void testEnable() {
+		assertSame(profiler, Profiler.getInstance());
+		assertSame(profiler, Profiler.enable());
+		Profiler.reset();
+		assertNull(Profiler.getInstance());
+	}
+
+	public void testNestedPhases() {
+		for (int i=0; i<2; i++) {
+			profiler.enter(Profiler.MOVEMENT);
+			busyWait();
+			profiler.enter(Profiler.ROUTER, EpidemicRouter.class);
+			busyWait();
+			profiler.exit();
+			profiler.exit();
+		}
+
+		Profiler.Phase movement = getPhase(Profiler.MOVEMENT);
+		Profiler.Phase router = getPhase(Profiler.ROUTER + ": " +
+				EpidemicRouter.class.getSimpleName());
+		assertEquals(2, movement.getCalls());
+		assertEquals(2, router.getCalls());
+		assertEquals(0, getPhase(Profiler.OTHER).getCalls());
+		/* router time is not included in the movement time */
+		assertTrue(movement.getNanos() >= 2 * WAIT_NANOS);
+		assertTrue(router.getNanos() >= 2 * WAIT_NANOS);
+		assertTrue(movement.getNanos() <= profiler.getTotalNanos() -
+				router.getNanos());
+
+		long sum = 0;
+		for (Profiler.Phase p : profiler.getPhases()) {
+			sum += p.getNanos();
+		}
+		assertTrue(sum <= profiler.getTotalNanos());
+		assertTrue(sum >= 4 * WAIT_NANOS);
+	}
+
+	public void testExitWithoutEnter() {
+		try {
+			profiler.exit();
+			fail("Exit without enter should fail");
+		} catch (SimError e) {
+			/* expected */
+		}
+	}
+
+	public void testWrappedListener() {
+		CountingListener ul = new CountingListener();
+
+		Object wrapped = profiler.wrap(ul);
+		((UpdateListener)wrapped).updated(null);
+		((UpdateListener)wrapped).updated(null);
+
+		assertEquals(2, ul.updates);
+		assertSame(ul, Profiler.unwrap(wrapped));
+		assertSame(ul, Profiler.unwrap(ul));
+		assertEquals(2, getPhase(Profiler.REPORT + ": " +
+				"CountingListener").getCalls());
+	}
+
+	private Profiler.Phase getPhase(String name) {
+		for (Profiler.Phase p : profiler.getPhases()) {
+			if (p.getName().equals(name)) {
+				return p;
+			}
+		}
+		fail("No phase " + name);
+		return null;
+	}
+
+	private static class CountingListener implements UpdateListener {
+		private int updates = 0;
+
+		public void updated(List<DTNHost> hosts) {
+			updates++;
+		}
+	}
+
+	private void busyWait() {
+		long end = System.nanoTime() + WAIT_NANOS;
+		while (System.nanoTime() < end) {
+			/* wait */
+		}
+	}
+}
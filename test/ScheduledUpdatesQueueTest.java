@@ -4,7 +4,16 @@
  */
 package test;
 
+import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
+import input.TimerEvent;
+import input.TimerListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
 import junit.framework.TestCase;
 import core.SimClock;
 
@@ -107,4 +116,92 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		assertEquals(5.0, suq.nextEvent().getTime());
 		assertEquals(8.0, suq.nextEvent().getTime());
 	}
+	
+	public void testScheduledEvents() {
+		ExternalEvent e1 = new TestEvent(2.0);
+		ExternalEvent e2 = new TestEvent(2.0);
+		ExternalEvent e3 = new TestEvent(1.0);
+		
+		suq.addUpdate(2.0);
+		suq.addEvent(e1);
+		suq.addEvent(e2); // events with same time are not merged
+		suq.addUpdate(2.0); // but updates are
+		suq.addEvent(e3);
+		
+		assertSame(e3, suq.nextEvent());
+		assertEquals(2.0, suq.nextEvent().getTime()); // the update
+		assertSame(e1, suq.nextEvent());
+		assertSame(e2, suq.nextEvent());
+		assertEquals(MAX, suq.nextEventsTime());
+	}
+	
+	public void testTimers() {
+		final List<TimerEvent> expired = new ArrayList<TimerEvent>();
+		TimerListener tl = new TimerListener() {
+			public void timerExpired(TimerEvent timer) {
+				expired.add(timer);
+			}
+		};
+		
+		TimerEvent t1 = suq.schedule(5.0, tl);
+		TimerEvent t2 = suq.schedule(3.0, tl);
+		TimerEvent t3 = suq.schedule(4.0, tl);
+		suq.addUpdate(4.5);
+		assertTrue(t1.isScheduled());
+		
+		assertTrue(suq.cancel(t3));
+		assertFalse(t3.isScheduled());
+		assertFalse(suq.cancel(t3)); // can't cancel twice
+		
+		suq.reschedule(t2, 6.0); // moved after t1
+		suq.reschedule(t3, 1.0); // cancelled timer can be rescheduled
+		assertEquals(4, suq.size());
+		
+		ExternalEvent ee = suq.nextEvent();
+		assertSame(t3, ee);
+		ee.processEvent(null);
+		assertEquals(4.5, suq.nextEvent().getTime());
+		assertSame(t1, suq.nextEvent());
+		assertFalse(t1.isScheduled());
+		assertSame(t2, suq.nextEvent());
+		assertEquals(MAX, suq.nextEventsTime());
+		
+		assertEquals(1, expired.size());
+		assertSame(t3, expired.get(0));
+	}
+	
+	public void testRandomOrder() {
+		Random rng = new Random(42);
+		List<Double> times = new ArrayList<Double>();
+		List<ExternalEvent> cancelled = new ArrayList<ExternalEvent>();
+		
+		for (int i=0; i<1000; i++) {
+			double time = rng.nextInt(500);
+			ExternalEvent ee = new TestEvent(time);
+			suq.addEvent(ee);
+			if (i % 3 == 0) {
+				cancelled.add(ee);
+			}
+			else {
+				times.add(time);
+			}
+		}
+		for (ExternalEvent ee : cancelled) {
+			assertTrue(suq.cancel(ee));
+		}
+		Collections.sort(times);
+		
+		assertEquals(times.size(), suq.size());
+		for (double time : times) {
+			assertEquals(time, suq.nextEvent().getTime());
+		}
+		assertEquals(MAX, suq.nextEventsTime());
+	}
+	
+	/** Event class for telling scheduled events apart from updates */
+	private static class TestEvent extends ExternalEvent {
+		public TestEvent(double time) {
+			super(time);
+		}
+	}
 }
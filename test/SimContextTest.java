@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.DTNSim;
+import core.SimContext;
+
+/**
+ * Tests that batch runs executed concurrently in their own SimContexts
+ * produce the same reports as the same runs executed one after another
+ */
+public class SimContextTest extends TestCase {
+	private static final int NROF_RUNS = 2;
+	private static final String[] REPORTS = {"MessageStatsReport",
+		"EventLogReport"};
+
+	private File dir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.dir = File.createTempFile("simctxtest", "");
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+	}
+
+	protected void tearDown() throws Exception {
+		delete(dir);
+		super.tearDown();
+	}
+
+	public void testConcurrentRuns() throws Exception {
+		File settings = new File(dir, "settings.txt");
+		PrintWriter out = new PrintWriter(settings);
+		out.println("Scenario.name = [ctx1; ctx2]");
+		out.println("Scenario.simulateConnections = true");
+		out.println("Scenario.updateInterval = 1");
+		out.println("Scenario.endTime = 2000");
+		out.println("Scenario.nrofHostGroups = 1");
+		out.println("ctxInterface.type = SimpleBroadcastInterface");
+		out.println("ctxInterface.transmitSpeed = 250k");
+		out.println("ctxInterface.transmitRange = 30");
+		out.println("Group.groupID = p");
+		out.println("Group.nrofHosts = 30");
+		out.println("Group.movementModel = RandomWaypoint");
+		out.println("Group.router = EpidemicRouter");
+		out.println("Group.bufferSize = 5M");
+		out.println("Group.waitTime = 0, 60");
+		out.println("Group.speed = 0.5, 1.5");
+		out.println("Group.nrofInterfaces = 1");
+		out.println("Group.interface1 = ctxInterface");
+		out.println("Events.nrof = 1");
+		out.println("Events1.class = MessageEventGenerator");
+		out.println("Events1.interval = 25,35");
+		out.println("Events1.size = 50k,100k");
+		out.println("Events1.hosts = 0,30");
+		out.println("Events1.prefix = M");
+		out.println("MovementModel.rngSeed = [1; 2]");
+		out.println("MovementModel.worldSize = 400, 400");
+		out.println("MovementModel.warmup = 0");
+		out.println("Report.nrofReports = " + REPORTS.length);
+		for (int i=0; i<REPORTS.length; i++) {
+			out.println("Report.report" + (i+1) + " = " + REPORTS[i]);
+		}
+		out.println("Report.warmup = 0");
+		out.println("Optimization.randomizeUpdateOrder = false");
+		out.close();
+
+		File concurrentDir = new File(dir, "concurrent");
+		File sequentialDir = new File(dir, "sequential");
+
+		/* all runs at the same time, each in a thread of its own */
+		final String[] concurrentArgs = args(settings, concurrentDir);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i=0; i<NROF_RUNS; i++) {
+			final int runIndex = i;
+			Thread t = new Thread() {
+				public void run() {
+					try {
+						new SimContext(concurrentArgs, 0, runIndex).run();
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			};
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals(errors.toString(), 0, errors.size());
+
+		String[] sequentialArgs = args(settings, sequentialDir);
+		for (int i=0; i<NROF_RUNS; i++) {
+			new SimContext(sequentialArgs, 0, i).run();
+		}
+
+		for (int i=0; i<NROF_RUNS; i++) {
+			for (String report : REPORTS) {
+				String name = "ctx" + (i+1) + "_" + report + ".txt";
+				List<String> expected = readLines(new File(sequentialDir,
+						name));
+				assertTrue(name + " is empty", expected.size() > 1);
+				assertEquals(name, expected, readLines(new File(concurrentDir,
+						name)));
+			}
+		}
+		/* the runs used different settings */
+		assertFalse(readLines(new File(sequentialDir,
+				"ctx1_EventLogReport.txt")).equals(readLines(new File(
+						sequentialDir, "ctx2_EventLogReport.txt"))));
+	}
+
+	public void testMissingBatchThreads() throws Exception {
+		ProcessBuilder pb = new ProcessBuilder(System.getProperty("java.home") +
+				File.separator + "bin" + File.separator + "java", "-cp",
+				System.getProperty("java.class.path"), DTNSim.class.getName(),
+				DTNSim.BATCH_MODE_FLAG, "3", DTNSim.BATCH_THREADS_FLAG);
+		pb.directory(dir); /* no settings files to find here */
+		pb.redirectErrorStream(true);
+		Process p = pb.start();
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				p.getInputStream()));
+		StringBuilder output = new StringBuilder();
+		for (String line; (line = in.readLine()) != null; ) {
+			output.append(line).append('\n');
+		}
+		in.close();
+
+		assertTrue(p.waitFor() != 0);
+		assertTrue(output.toString(), output.toString().contains(
+				"Missing number of concurrent runs"));
+	}
+
+	/**
+	 * Returns the command line arguments for runs with the given settings
+	 * file that store their reports to the given directory
+	 */
+	private String[] args(File settings, File reportDir) throws IOException {
+		assertTrue(reportDir.mkdir());
+		File dirSettings = new File(dir, reportDir.getName() + ".txt");
+		PrintWriter out = new PrintWriter(dirSettings);
+		out.println("Report.reportDir = " + reportDir.getPath());
+		out.close();
+		return new String[] {settings.getPath(), dirSettings.getPath()};
+	}
+
+	private List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			for (String line; (line = in.readLine()) != null; ) {
+				lines.add(line);
+			}
+		} finally {
+			in.close();
+		}
+		return lines;
+	}
+
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.ModuleCommunicationBus;
+import core.MovementListener;
+import core.NetworkInterface;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests that SimpleBroadcastInterfaces that sleep between their scan
+ * rounds still find the interfaces that come within range
+ */
+public class SimpleBroadcastInterfaceTest extends TestCase {
+	private static final String NS = "sbInterface";
+	private static final int SCAN_INTERVAL = 10;
+	private TestSettings ts;
+	private DTNHost sleeper;
+	private DTNHost other;
+	private World world;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.ts = new TestSettings();
+		ts.putSetting(NS + "." + NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NS + "." + NetworkInterface.TRANSMIT_SPEED_S, "1000");
+		ts.putSetting(NS + "." + NetworkInterface.SCAN_INTERVAL_S,
+				"" + SCAN_INTERVAL);
+		DTNHost.reset();
+		SimClock.reset();
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+
+		this.sleeper = createHost(new Coord(500, 500));
+		this.other = createHost(new Coord(10, 10));
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(sleeper);
+		hosts.add(other);
+		this.world = new World(hosts, 1000, 1000, 1,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+	}
+
+	public void testConnectAtNextScanRound() {
+		NetworkInterface ni = sleeper.getInterfaces().get(0);
+		NetworkInterface otherNi = other.getInterfaces().get(0);
+
+		/* both interfaces have scanned at least once while out of range */
+		for (int i=0; i<2 * SCAN_INTERVAL; i++) {
+			world.update();
+		}
+		assertEquals(0, ni.getConnections().size());
+
+		/* move the sleeper within range when neither interface scans */
+		while (true) {
+			world.update();
+			if (!ni.isScanning() && !otherNi.isScanning()) {
+				break;
+			}
+		}
+		sleeper.setLocation(new Coord(15, 10));
+
+		boolean scanned = false;
+		int ticks = 0;
+		do {
+			world.update();
+			ticks++;
+			assertEquals(new Coord(15, 10), sleeper.getLocation());
+			/* the interfaces connect at the first scan round of either */
+			scanned = ni.isScanning() || otherNi.isScanning();
+			assertEquals("Connected at " + SimClock.getTime(), scanned,
+					isConnected(ni, otherNi));
+		} while (!scanned);
+
+		assertTrue(ticks <= SCAN_INTERVAL + 1);
+		assertTrue(isConnected(otherNi, ni));
+	}
+
+	public void testConnectWhenSleeperScans() {
+		NetworkInterface ni = sleeper.getInterfaces().get(0);
+		NetworkInterface otherNi = other.getInterfaces().get(0);
+
+		/* only the sleeper scans after the first round of the other */
+		for (int i=0; i<SCAN_INTERVAL + 1; i++) {
+			world.update();
+		}
+		other.getComBus().updateProperty(NetworkInterface.SCAN_INTERVAL_ID,
+				1000.0);
+		while (true) {
+			world.update();
+			if (!ni.isScanning()) {
+				break;
+			}
+		}
+		sleeper.setLocation(new Coord(15, 10));
+
+		int ticks = 0;
+		do {
+			world.update();
+			ticks++;
+			assertFalse(otherNi.isScanning());
+			assertEquals("Connected at " + SimClock.getTime(),
+					ni.isScanning(), isConnected(ni, otherNi));
+		} while (!ni.isScanning());
+
+		assertTrue(ticks > 1); /* the sleeper didn't scan right away */
+		assertTrue(ticks <= SCAN_INTERVAL + 1);
+	}
+
+	private boolean isConnected(NetworkInterface ni, NetworkInterface to) {
+		for (Connection con : ni.getConnections()) {
+			if (con.getOtherInterface(ni) == to) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private DTNHost createHost(Coord location) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new SimpleBroadcastInterface(new TestSettings(NS)));
+		return new DTNHost(new ArrayList<MessageListener>(),
+				new ArrayList<MovementListener>(), "h", li,
+				new ModuleCommunicationBus(),
+				new StationaryMovement(location), new PassiveRouter(ts));
+	}
+}
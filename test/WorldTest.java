@@ -5,16 +5,47 @@
 package test;
 
 import input.EventQueue;
+import input.EventQueueHandler;
+import input.ExternalEvent;
+import input.MessageRelayEvent;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
 import junit.framework.TestCase;
+import movement.ActivenessHandler;
+import movement.MovementModel;
+import movement.RandomWaypoint;
+import routing.CLDetectionEngine;
+import routing.CLandTime;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import routing.ProphetRouterCL;
+import core.ApplicationListener;
+import core.Checkpoint;
+import core.Connection;
+import core.ConnectionListener;
+import core.Coord;
 import core.DTNHost;
+import core.HostPositions;
+import core.Message;
+import core.MessageListener;
 import core.ModuleCommunicationBus;
+import core.MovementListener;
 import core.NetworkInterface;
 import core.SimClock;
+import core.SimScenario;
 import core.UpdateListener;
+import core.WarmupCache;
 import core.World;
 
 /**
@@ -24,6 +55,14 @@ import core.World;
 public class WorldTest extends TestCase {
 	/* for rounding errors with SimClock */
 	private static final double TIME_DELTA = 0.00001;
+	/* allowed average allocation per host and update when nothing changes
+	 * (some bytes for bookkeeping that doesn't depend on the hosts) */
+	private static final int ALLOCATION_BUDGET_PER_HOST = 16;
+	/* updates before measuring allocations */
+	private static final int ALLOCATION_WARMUP_ROUNDS = 100;
+	/* how many windows of how many updates allocations are measured in */
+	private static final int ALLOCATION_WINDOWS = 3;
+	private static final int ALLOCATION_WINDOW_ROUNDS = 500;
 	private World world;
 	private boolean simulateConnections = true;
 	private int worldSizeX = 100;
@@ -99,6 +138,775 @@ public class WorldTest extends TestCase {
 	}
 	
 
+	public void testEventDrivenUpdates() {
+		List<DTNHost> hosts = new TestScenario().getHosts();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.EVENT_DRIVEN_S, "true");
+		final double[] times = {5.05, 20.0};
+		this.eQueues.add(new EventQueue() {
+			private int next = 0;
+			public ExternalEvent nextEvent() {
+				return new ExternalEvent(times[next++]);
+			}
+			public double nextEventsTime() {
+				return next < times.length ? times[next] : Double.MAX_VALUE;
+			}
+		});
+		
+		try {
+			this.world = new World(hosts, worldSizeX, 
+					worldSizeY, upInterval, new ArrayList<UpdateListener>(), 
+					false, eQueues);
+		} finally {
+			ts.putSetting(World.SETTINGS_NS + "." + World.EVENT_DRIVEN_S, 
+					"false");
+		}
+		
+		world.update(); /* jumps to the interval of the first event */
+		assertEquals(5.1, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(2);
+		
+		world.update();
+		assertEquals(20.0, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(4);
+		
+		world.update(); /* no more events -> jump to the end time (100) */
+		assertEquals(100.0, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(5);
+		
+		world.update(); /* nothing to skip to, so normal update */
+		assertEquals(100.1, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(6);
+	}
+
+	public void testEventDrivenTransfers() throws IOException {
+		/* three hosts get a message for host 0 at the same time, so two of 
+		 * them are refused while the receiver is busy. The first sender is
+		 * updated last, so the others retry only after its transfer. */
+		File events = File.createTempFile("events", ".txt");
+		events.deleteOnExit();
+		PrintWriter out = new PrintWriter(events);
+		out.println("1 CONN 1 0 up");
+		out.println("1 CONN 2 0 up");
+		out.println("1 CONN 3 0 up");
+		out.println("2 C M1 3 0 1000");
+		out.println("2 C M2 2 0 1000");
+		out.println("2 C M3 1 0 1000");
+		out.close();
+		
+		try {
+			List<String> ticks = runTransferScenario(events, 
+					"EpidemicRouter", false);
+			assertEquals(6, ticks.size());
+			assertEquals(ticks, runTransferScenario(events, 
+					"EpidemicRouter", true));
+			
+			/* the router updates its state on the first update after the 
+			 * state update interval */
+			ticks = runTransferScenario(events, "ProphetRouterCL", false);
+			assertEquals(ticks, runTransferScenario(events, 
+					"ProphetRouterCL", true));
+		} finally {
+			SimScenario.reset();
+			events.delete();
+		}
+	}
+	
+	/**
+	 * Runs a scenario of stationary hosts whose connections and messages
+	 * come from an events file
+	 * @return The transfer starts and ends with their times (and the state
+	 * update times of the routers that keep track of them)
+	 */
+	private List<String> runTransferScenario(File events, String router,
+			boolean eventDriven) {
+		TestSettings ts = new TestSettings();
+		String gns = SimScenario.GROUP_NS + ".";
+		String ens = EventQueueHandler.SETTINGS_NAMESPACE;
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + 
+				SimScenario.SIM_CON_S, "false");
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + 
+				SimScenario.UP_INT_S, "1");
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "p");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "4");
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, 
+				"StationaryMovement");
+		ts.putSetting(gns + movement.StationaryMovement.LOCATION_S, "0,0");
+		ts.putSetting(gns + SimScenario.ROUTER_S, router);
+		ts.putSetting(gns + MessageRouter.B_SIZE_S, "5M");
+		ts.putSetting(ProphetRouterCL.PROPHET_NS + "." + 
+				ProphetRouterCL.SECONDS_IN_UNIT_S, "30");
+		ts.putSetting(ProphetRouterCL.PROPHET_NS + "." + 
+				ProphetRouterCL.STATE_UPDATE_INTERVAL_S, "7");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "bt");
+		ts.putSetting("bt.type", "SimpleBroadcastInterface");
+		ts.putSetting("bt." + NetworkInterface.TRANSMIT_SPEED_S, "100");
+		ts.putSetting("bt." + NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(ens + "." + EventQueueHandler.NROF_SETTING, "1");
+		ts.putSetting(ens + "1." + EventQueueHandler.CLASS_SETTING, 
+				"ExternalEventsQueue");
+		ts.putSetting(ens + "1." + EventQueueHandler.PATH_SETTING, 
+				events.getPath());
+		ts.putSetting(World.SETTINGS_NS + "." + World.RANDOMIZE_UPDATES_S, 
+				"false");
+		ts.putSetting(World.SETTINGS_NS + "." + World.EVENT_DRIVEN_S, 
+				"" + eventDriven);
+		
+		final List<String> transfers = new ArrayList<String>();
+		SimScenario scen = newScenario();
+		scen.addMessageListener(new MessageListener() {
+			public void newMessage(Message m) { }
+			public void messageTransferStarted(Message m, DTNHost from,
+					DTNHost to) {
+				transfers.add(SimClock.getTime() + " start " + m);
+			}
+			public void messageTransferred(Message m, DTNHost from, 
+					DTNHost to, boolean firstDelivery) {
+				transfers.add(SimClock.getTime() + " done " + m);
+			}
+			public void messageDeleted(Message m, DTNHost where, 
+					boolean dropped) { }
+			public void messageTransferAborted(Message m, DTNHost from, 
+					DTNHost to) { }
+		});
+		runScenario(scen);
+		
+		for (DTNHost host : scen.getHosts()) {
+			if (host.getRouter() instanceof CLDetectionEngine) {
+				for (CLandTime cl : ((CLDetectionEngine)host.getRouter()).
+						getCLandTime()) {
+					transfers.add(host + " state " + cl.getTime());
+				}
+			}
+		}
+		return transfers;
+	}
+
+	public void testDirtyHostUpdates() {
+		DTNHost.reset();
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		List<TestDTNHost> tHosts = new ArrayList<TestDTNHost>();
+		for (int i=0; i<5; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(new TestInterface(1.0,1));
+			TestDTNHost h = new TestDTNHost(li, new ModuleCommunicationBus());
+			hosts.add(h);
+			tHosts.add(h);
+		}
+		this.eQueues.add(new EventQueue() {
+			private boolean done = false;
+			public ExternalEvent nextEvent() {
+				done = true;
+				return new MessageRelayEvent(1, 3, "M1", 0.05, 
+						MessageRelayEvent.ABORTED);
+			}
+			public double nextEventsTime() {
+				return done ? Double.MAX_VALUE : 0.05;
+			}
+		});
+		
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.DIRTY_UPDATES_S, "true");
+		try {
+			this.world = new World(hosts, worldSizeX, worldSizeY, upInterval, 
+					new ArrayList<UpdateListener>(), false, eQueues);
+		} finally {
+			ts.putSetting(World.SETTINGS_NS + "." + World.DIRTY_UPDATES_S, 
+					"false");
+		}
+		
+		world.update();
+		assertEquals("M1", tHosts.get(3).abortedId);
+		for (int i=0; i<tHosts.size(); i++) {
+			/* only the hosts of the event were updated after it */
+			int expected = (i == 1 || i == 3 ? 2 : 1);
+			assertEquals(expected, tHosts.get(i).nrofUpdate);
+		}
+	}
+
+	public void testConcurrentMovement() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				MovementModel.HOST_RNG_S, "true");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				MovementModel.WORLD_SIZE, worldSizeX + "," + worldSizeY);
+		try {
+			List<Coord> sequential = moveRandomWaypointHosts(1);
+			List<Coord> concurrent = moveRandomWaypointHosts(4);
+			assertEquals(sequential, concurrent);
+			assertFalse(sequential.get(0).equals(sequential.get(1)));
+		} finally {
+			ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+					MovementModel.HOST_RNG_S, "false");
+			ts.putSetting(World.SETTINGS_NS + "." + World.UPDATE_THREADS_S, 
+					"1");
+			MovementModel.reset();
+		}
+	}
+	
+	public void testConcurrentUpdates() {
+		try {
+			List<String> sequential = runConnectionScenario(1, false);
+			List<String> concurrent = runConnectionScenario(4, false);
+			assertEquals(sequential, concurrent);
+			assertTrue(sequential.size() > 40); /* 20 locations + events */
+		} finally {
+			SimScenario.reset();
+			MovementModel.reset();
+		}
+	}
+	
+	/**
+	 * Runs a scenario of moving hosts whose connections are simulated
+	 * @param threads Number of update threads to use
+	 * @param positionArrays Should the host position arrays be used
+	 * @return The connection events with their times and the locations of
+	 * the hosts at the end
+	 */
+	private List<String> runConnectionScenario(int threads, 
+			boolean positionArrays) {
+		connectionScenarioSettings(threads, positionArrays);
+		
+		final List<String> result = new ArrayList<String>();
+		SimScenario scen = newScenario();
+		scen.addConnectionListener(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				result.add(SimClock.getTime() + " up " + host1 + " " + host2);
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				result.add(SimClock.getTime() + " down " + host1 + " " + 
+						host2);
+			}
+		});
+		runScenario(scen);
+		
+		for (DTNHost host : scen.getHosts()) {
+			result.add(host + " " + host.getLocation());
+		}
+		return result;
+	}
+	
+	/**
+	 * Creates the settings of a scenario of 20 randomly moving hosts with
+	 * one Bluetooth interface ("bt") each
+	 * @param threads Number of update threads to use
+	 * @param positionArrays Should the host position arrays be used
+	 * @return The settings
+	 */
+	private TestSettings connectionScenarioSettings(int threads, 
+			boolean positionArrays) {
+		TestSettings ts = new TestSettings();
+		String gns = SimScenario.GROUP_NS + ".";
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + 
+				SimScenario.END_TIME_S, "500");
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + 
+				SimScenario.UP_INT_S, "1");
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "p");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "20");
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, 
+				"RandomWaypoint");
+		ts.putSetting(gns + SimScenario.ROUTER_S, "PassiveRouter");
+		ts.putSetting(gns + MessageRouter.B_SIZE_S, "5M");
+		ts.putSetting(gns + MovementModel.SPEED, "0.5,1.5");
+		ts.putSetting(gns + MovementModel.WAIT_TIME, "0,10");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "bt");
+		ts.putSetting("bt.type", "SimpleBroadcastInterface");
+		ts.putSetting("bt." + NetworkInterface.TRANSMIT_SPEED_S, "50k");
+		ts.putSetting("bt." + NetworkInterface.TRANSMIT_RANGE_S, "20");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				MovementModel.WORLD_SIZE, "300,300");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				MovementModel.HOST_RNG_S, "true");
+		ts.putSetting(World.SETTINGS_NS + "." + World.RANDOMIZE_UPDATES_S, 
+				"false");
+		ts.putSetting(World.SETTINGS_NS + "." + World.UPDATE_THREADS_S, 
+				"" + threads);
+		ts.putSetting(World.SETTINGS_NS + "." + World.POSITION_ARRAYS_S, 
+				"" + positionArrays);
+		return ts;
+	}
+	
+	public void testGridSweep() {
+		try {
+			List<String> expected = runSweepScenario(false);
+			assertEquals(expected, runSweepScenario(true));
+		} finally {
+			SimScenario.reset();
+			MovementModel.reset();
+		}
+	}
+	
+	/**
+	 * Runs a scenario where the interfaces scan only every few seconds and
+	 * some hosts are active only part of the time
+	 * @param gridSweep Should the connections be updated by grid sweeps
+	 * @return The connections after every update, with their times
+	 */
+	private List<String> runSweepScenario(boolean gridSweep) {
+		TestSettings ts = connectionScenarioSettings(1, false);
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + 
+				SimScenario.NROF_GROUPS_S, "2");
+		ts.putSetting(SimScenario.GROUP_NS + "2." + 
+				SimScenario.GROUP_ID_S, "q");
+		ts.putSetting(SimScenario.GROUP_NS + "2." + 
+				ActivenessHandler.ACTIVE_TIMES_S, "50,150,200,350,420,500");
+		ts.putSetting("bt." + NetworkInterface.SCAN_INTERVAL_S, "4");
+		ts.putSetting("bt." + SimpleBroadcastInterface.GRID_SWEEP_S, 
+				"" + gridSweep);
+		
+		List<String> result = new ArrayList<String>();
+		int nrofInactive = 0; /* connections with an inactive host */
+		int nrofOneScanning = 0; /* connections when one end scans */
+		SimScenario scen = newScenario();
+		World w = scen.getWorld();
+		while (SimClock.getTime() < scen.getEndTime()) {
+			w.update();
+			List<String> cons = new ArrayList<String>();
+			for (DTNHost host : w.getHosts()) {
+				NetworkInterface ni = host.getInterfaces().get(0);
+				for (Connection con : ni.getConnections()) {
+					NetworkInterface other = con.getOtherInterface(ni);
+					/* both ends must have the connection */
+					cons.add(SimClock.getTime() + " " + ni.getAddress() + 
+							"-" + other.getAddress());
+					if (!host.isActive()) {
+						nrofInactive++;
+					}
+					/* isScanning() was already called for the active 
+					 * hosts at this time, so calling it doesn't change 
+					 * the scan rounds */
+					if (host.isActive() && other.getHost().isActive() &&
+							ni.isScanning() != other.isScanning()) {
+						nrofOneScanning++;
+					}
+				}
+			}
+			Collections.sort(cons);
+			result.addAll(cons);
+		}
+		assertTrue(result.size() > 100);
+		assertTrue(nrofInactive > 0);
+		assertTrue(nrofOneScanning > 0);
+		return result;
+	}
+	
+	public void testPositionArrays() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, worldSizeX + "," + worldSizeY);
+		ts.putSetting(World.SETTINGS_NS + "." + World.POSITION_ARRAYS_S,
+				"true");
+		MovementModel.reset();
+		DTNHost.reset();
+		SimClock.reset();
+
+		try {
+			TestUtils utils = new TestUtils(null, null, ts);
+			MovementModel proto = new RandomWaypoint(ts);
+			for (int i=0; i<20; i++) {
+				utils.createHost(proto, null);
+			}
+			World w = new World(utils.getAllHosts(), worldSizeX, worldSizeY,
+					1, new ArrayList<UpdateListener>(), false, eQueues);
+			moveAndGetLocations(w, 100);
+			w.getHosts().get(0).setLocation(new Coord(1, 2));
+
+			/* one pair of arrays in the order of the world's hosts; the 
+			 * interfaces know their hosts' indexes so the range checks 
+			 * don't need to go through the hosts */
+			HostPositions p = w.getHosts().get(0).getPositions();
+			for (int i=0; i<w.getHosts().size(); i++) {
+				DTNHost h = w.getHosts().get(i);
+				assertSame(p, h.getPositions());
+				assertEquals(i, h.getPositionIndex());
+				for (NetworkInterface ni : h.getInterfaces()) {
+					assertSame(p, ni.getPositions());
+					assertEquals(i, ni.getPositionIndex());
+				}
+				Coord c = h.getLocation();
+				assertEquals(c.getX(), p.getX(i), 0);
+				assertEquals(c.getY(), p.getY(i), 0);
+			}
+		} finally {
+			ts.putSetting(World.SETTINGS_NS + "." + World.POSITION_ARRAYS_S,
+					"false");
+		}
+		
+		/* the range checks of the arrays give the same connections */
+		List<String> expected = runConnectionScenario(1, false);
+		assertEquals(expected, runConnectionScenario(1, true));
+		assertEquals(expected, runConnectionScenario(4, true));
+	}
+
+	public void testCheckpointRestore() throws IOException {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				MovementModel.WORLD_SIZE, worldSizeX + "," + worldSizeY);
+		MovementModel.reset();
+		DTNHost.reset();
+		SimClock.reset();
+		
+		TestUtils utils = new TestUtils(null, null, ts);
+		MovementModel proto = new RandomWaypoint(ts);
+		for (int i=0; i<20; i++) {
+			utils.createHost(proto, null);
+		}
+		World w = new World(utils.getAllHosts(), worldSizeX, worldSizeY, 1, 
+				new ArrayList<UpdateListener>(), false, eQueues);
+		for (int i=0; i<200; i++) {
+			w.update();
+		}
+		
+		File file = File.createTempFile("checkpoint", ".ser");
+		file.deleteOnExit();
+		new Checkpoint(w, new ArrayList<Object>()).write(file);
+		List<Coord> straight = moveAndGetLocations(w, 300);
+		
+		World restored = Checkpoint.read(file).restore(
+				new ArrayList<MessageListener>(), 
+				new ArrayList<MovementListener>(),
+				new ArrayList<ConnectionListener>(), 
+				new ArrayList<ApplicationListener>(), 
+				new ArrayList<UpdateListener>());
+		assertEquals(200, SimClock.getTime(), TIME_DELTA);
+		assertEquals(straight, moveAndGetLocations(restored, 300));
+		file.delete();
+	}
+	
+	public void testCheckpointRouterTimers() throws IOException {
+		File file = File.createTempFile("checkpoint", ".ser");
+		file.deleteOnExit();
+		String sns = SimScenario.SCENARIO_NS + ".";
+		try {
+			List<String> straight = runTimerScenario(
+					timerScenarioSettings());
+			
+			TestSettings ts = timerScenarioSettings();
+			ts.putSetting(sns + SimScenario.CHECKPOINT_TIME_S, "100");
+			ts.putSetting(sns + SimScenario.CHECKPOINT_FILE_S, 
+					file.getPath());
+			assertEquals(straight, runTimerScenario(ts));
+			assertTrue(file.length() > 0);
+			
+			ts = timerScenarioSettings();
+			ts.putSetting(sns + SimScenario.RESTORE_FILE_S, 
+					file.getPath());
+			assertEquals(straight, runTimerScenario(ts));
+		} finally {
+			SimScenario.reset();
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Returns settings of a scenario where routers drop expired messages 
+	 * when their timers expire
+	 */
+	private TestSettings timerScenarioSettings() {
+		TestSettings ts = new TestSettings();
+		String gns = SimScenario.GROUP_NS + ".";
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + 
+				SimScenario.END_TIME_S, "200");
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + 
+				SimScenario.UP_INT_S, "1");
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "p");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "20");
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, 
+				"RandomWaypoint");
+		ts.putSetting(gns + SimScenario.ROUTER_S, "EpidemicRouter");
+		ts.putSetting(gns + MessageRouter.B_SIZE_S, "5M");
+		ts.putSetting(gns + MessageRouter.MSG_TTL_S, "1");
+		ts.putSetting(gns + MovementModel.SPEED, "0.5,1.5");
+		ts.putSetting(gns + MovementModel.WAIT_TIME, "0,10");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "bt");
+		ts.putSetting("bt.type", "SimpleBroadcastInterface");
+		ts.putSetting("bt." + NetworkInterface.TRANSMIT_SPEED_S, "50k");
+		ts.putSetting("bt." + NetworkInterface.TRANSMIT_RANGE_S, "100");
+		ts.putSetting(EventQueueHandler.SETTINGS_NAMESPACE + "." + 
+				EventQueueHandler.NROF_SETTING, "1");
+		ts.putSetting("Events1.class", "MessageEventGenerator");
+		ts.putSetting("Events1.interval", "5,10");
+		ts.putSetting("Events1.size", "100k,500k");
+		ts.putSetting("Events1.hosts", "0,20");
+		ts.putSetting("Events1.prefix", "M");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				MovementModel.WORLD_SIZE, "500,500");
+		ts.putSetting(World.SETTINGS_NS + "." + World.ROUTER_TIMERS_S, 
+				"true");
+		return ts;
+	}
+	
+	/**
+	 * Runs a scenario to its end time
+	 * @return The locations and the buffered messages of all hosts at the
+	 * end
+	 */
+	private List<String> runTimerScenario(TestSettings ts) {
+		SimScenario scen = newScenario();
+		World w = scen.getWorld();
+		runScenario(scen);
+		
+		List<String> state = new ArrayList<String>();
+		for (DTNHost host : w.getHosts()) {
+			List<String> ids = new ArrayList<String>();
+			for (Message m : host.getMessageCollection()) {
+				ids.add(m.getId());
+			}
+			Collections.sort(ids);
+			state.add(host + " " + host.getLocation() + " " + ids);
+		}
+		return state;
+	}
+	
+	/**
+	 * Creates a new scenario from the current settings. The static state
+	 * of the earlier scenarios is reset first.
+	 */
+	private SimScenario newScenario() {
+		SimScenario.reset();
+		SimClock.reset();
+		DTNHost.reset();
+		Message.reset();
+		NetworkInterface.reset();
+		MovementModel.reset();
+		ConnectivityGrid.reset();
+		return SimScenario.getInstance();
+	}
+	
+	/**
+	 * Runs a scenario to its end time
+	 */
+	private void runScenario(SimScenario scen) {
+		World w = scen.getWorld();
+		while (SimClock.getTime() < scen.getEndTime()) {
+			w.update();
+		}
+	}
+	
+	public void testWarmupCache() throws IOException {
+		File dir = File.createTempFile("warmup", "");
+		dir.delete();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				MovementModel.WORLD_SIZE, worldSizeX + "," + worldSizeY);
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				WarmupCache.WARMUP_CACHE_S, dir.getPath());
+		try {
+			List<Coord> computed = warmupRandomWaypointHosts(ts);
+			File[] files = dir.listFiles();
+			assertEquals(1, files.length);
+			List<Coord> loaded = warmupRandomWaypointHosts(ts);
+			assertEquals(computed, loaded);
+			assertEquals(files[0].lastModified(), 
+					dir.listFiles()[0].lastModified());
+			files[0].delete();
+		} finally {
+			ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+					WarmupCache.WARMUP_CACHE_S, "");
+			dir.delete();
+		}
+	}
+	
+	public void testConcurrentWarmupCacheStores() throws Exception {
+		File dir = File.createTempFile("warmup", "");
+		dir.delete();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				MovementModel.WORLD_SIZE, worldSizeX + "," + worldSizeY);
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+				WarmupCache.WARMUP_CACHE_S, dir.getPath());
+		try {
+			List<Coord> computed = warmupRandomWaypointHosts(ts);
+			File file = dir.listFiles()[0];
+			
+			/* an unreadable cache file is replaced */
+			PrintWriter stale = new PrintWriter(file);
+			stale.println("stale");
+			stale.close();
+			World w = createRandomWaypointWorld(ts);
+			w.warmupMovementModel(100);
+			
+			/* runs storing the same state at the same time */
+			final List<DTNHost> hosts = w.getHosts();
+			final WarmupCache cache = WarmupCache.getCache(hosts, 100);
+			final List<Throwable> errors = new ArrayList<Throwable>();
+			List<Thread> threads = new ArrayList<Thread>();
+			for (int i=0; i<4; i++) {
+				Thread t = new Thread() {
+					public void run() {
+						try {
+							for (int j=0; j<10; j++) {
+								cache.store(hosts);
+							}
+						} catch (Throwable e) {
+							synchronized (errors) {
+								errors.add(e);
+							}
+						}
+					}
+				};
+				threads.add(t);
+				t.start();
+			}
+			for (Thread t : threads) {
+				t.join();
+			}
+			assertEquals(errors.toString(), 0, errors.size());
+			
+			/* no temporary files are left */
+			assertEquals(Arrays.asList(file), Arrays.asList(dir.listFiles()));
+			assertEquals(computed, warmupRandomWaypointHosts(ts));
+			file.delete();
+		} finally {
+			ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." + 
+					WarmupCache.WARMUP_CACHE_S, "");
+			dir.delete();
+		}
+	}
+	
+	public void testSteadyStateAllocation() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return; /* allocations can't be measured in this JVM */
+		}
+		com.sun.management.ThreadMXBean mxBean = 
+			(com.sun.management.ThreadMXBean)bean;
+		if (!mxBean.isThreadAllocatedMemorySupported() || 
+				!mxBean.isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+		
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MessageRouter.B_SIZE_S, "100");
+		DTNHost.reset();
+		SimClock.reset();
+		
+		/* stationary hosts that are all connected to each other */
+		int nrofHosts = 20;
+		TestUtils utils = new TestUtils(null, null, ts);
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		List<DTNHost> hosts = utils.getAllHosts();
+		for (int i=0; i<nrofHosts; i++) {
+			DTNHost host = utils.createHost(new Coord(0,0));
+			for (int j=0; j<i; j++) {
+				host.forceConnection(hosts.get(j), null, true);
+			}
+		}
+		World w = new World(hosts, worldSizeX, worldSizeY, 1, 
+				new ArrayList<UpdateListener>(), true, eQueues);
+		
+		/* the first updates size the hosts' lists and load classes */
+		for (int i=0; i<ALLOCATION_WARMUP_ROUNDS; i++) {
+			w.update();
+		}
+		
+		/* the update path must not allocate even when interpreted (e.g., 
+		 * with -Xint), so no JIT warmup is needed. The smallest window is 
+		 * used so that one-off allocations (e.g., lazy initialization on a 
+		 * slow machine) don't fail the test. */
+		long threadId = Thread.currentThread().getId();
+		long bytesPerRound = Long.MAX_VALUE;
+		for (int window=0; window<ALLOCATION_WINDOWS; window++) {
+			long before = mxBean.getThreadAllocatedBytes(threadId);
+			for (int i=0; i<ALLOCATION_WINDOW_ROUNDS; i++) {
+				w.update();
+			}
+			bytesPerRound = Math.min(bytesPerRound, 
+					(mxBean.getThreadAllocatedBytes(threadId) - before) / 
+					ALLOCATION_WINDOW_ROUNDS);
+		}
+		
+		assertEquals(nrofHosts - 1, hosts.get(0).getConnections().size());
+		assertTrue("Allocated " + bytesPerRound + " bytes per update", 
+				bytesPerRound < ALLOCATION_BUDGET_PER_HOST * nrofHosts);
+	}
+	
+	/**
+	 * Creates hosts that move using random waypoint model, warms up the 
+	 * movement model and returns the locations of the hosts after warmup
+	 * @param ts The settings to use
+	 * @return The locations of the hosts
+	 */
+	private List<Coord> warmupRandomWaypointHosts(TestSettings ts) {
+		World w = createRandomWaypointWorld(ts);
+		w.warmupMovementModel(100);
+		assertEquals(0, SimClock.getTime(), TIME_DELTA);
+		return moveAndGetLocations(w, 10);
+	}
+	
+	/**
+	 * Creates a world of hosts that move using random waypoint model. The
+	 * clock is set to the start of a 100 second warmup.
+	 * @param ts The settings to use
+	 * @return The world
+	 */
+	private World createRandomWaypointWorld(TestSettings ts) {
+		MovementModel.reset();
+		DTNHost.reset();
+		SimClock.reset();
+		SimClock.getInstance().setTime(-100);
+		
+		TestUtils utils = new TestUtils(null, null, ts);
+		MovementModel proto = new RandomWaypoint(ts);
+		for (int i=0; i<20; i++) {
+			utils.createHost(proto, null);
+		}
+		return new World(utils.getAllHosts(), worldSizeX, worldSizeY, 1, 
+				new ArrayList<UpdateListener>(), false, eQueues);
+	}
+	
+	/**
+	 * Updates a world and returns the final locations of its hosts
+	 * @param w The world to update
+	 * @param rounds Number of updates
+	 * @return The locations of the hosts
+	 */
+	private List<Coord> moveAndGetLocations(World w, int rounds) {
+		for (int i=0; i<rounds; i++) {
+			w.update();
+		}
+		List<Coord> locations = new ArrayList<Coord>();
+		for (DTNHost h : w.getHosts()) {
+			locations.add(h.getLocation().clone());
+		}
+		return locations;
+	}
+	
+	/**
+	 * Creates hosts that move using random waypoint model, updates a world
+	 * with them for a while and returns the final locations of the hosts
+	 * @param threads Number of update threads to use
+	 * @return The locations of the hosts
+	 */
+	private List<Coord> moveRandomWaypointHosts(int threads) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.SETTINGS_NS + "." + World.UPDATE_THREADS_S, 
+				"" + threads);
+		MovementModel.reset();
+		DTNHost.reset();
+		SimClock.reset();
+		
+		TestUtils utils = new TestUtils(null, null, ts);
+		MovementModel proto = new RandomWaypoint(ts);
+		for (int i=0; i<20; i++) {
+			utils.createHost(proto, null);
+		}
+		World w = new World(utils.getAllHosts(), worldSizeX, worldSizeY, 1, 
+				new ArrayList<UpdateListener>(), false, eQueues);
+		for (int i=0; i<500; i++) {
+			w.update();
+		}
+		
+		List<Coord> locations = new ArrayList<Coord>();
+		for (DTNHost h : utils.getAllHosts()) {
+			locations.add(h.getLocation().clone());
+		}
+		return locations;
+	}
+
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
 		public TestScenario() {	}
@@ -4,6 +4,8 @@
  */
 package ui;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 import report.Report;
@@ -11,6 +13,7 @@ import core.ApplicationListener;
 import core.ConnectionListener;
 import core.MessageListener;
 import core.MovementListener;
+import core.Profiler;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
@@ -92,15 +95,28 @@ public abstract class DTNSimUI {
 			settings = new Settings();
 			this.scen = SimScenario.getInstance();
 
-			// add reports
+			// create reports
+			List<Report> created = new ArrayList<Report>();
 			for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
 				String reportClass = settings.getSetting(REPORT_S + i);
-				addReport((Report)settings.createObject(REPORT_PAC + 
-						reportClass));	
+				/* reports of a restored simulation continue where they were */
+				Report r = (Report)scen.getRestoredListener(REPORT_PAC + 
+						reportClass);
+				if (r == null) {
+					r = (Report)settings.createObject(REPORT_PAC + 
+							reportClass);
+				}
+				created.add(r);
+			}
+			/* added only after all are created since some report may have
+			 * turned profiling on */
+			for (Report r : created) {
+				addReport(r);
 			}
 
 			double warmupTime = 0;
-			if (settings.contains(MM_WARMUP_S)) {
+			/* a restored world has already been warmed up */
+			if (settings.contains(MM_WARMUP_S) && !scen.isRestored()) {
 				warmupTime = settings.getDouble(MM_WARMUP_S);
 				if (warmupTime > 0) {
 					SimClock c = SimClock.getInstance();
@@ -137,20 +153,27 @@ public abstract class DTNSimUI {
 	 * @param r Report to add
 	 */
 	protected void addReport(Report r) {
+		/* if profiling is on, the report's callbacks go through a profiler */
+		Object l = r;
+		Profiler profiler = Profiler.getInstance();
+		if (profiler != null) {
+			l = profiler.wrap(r);
+		}
+		
 		if (r instanceof MessageListener) {
-			scen.addMessageListener((MessageListener)r);
+			scen.addMessageListener((MessageListener)l);
 		}
 		if (r instanceof ConnectionListener) {
-			scen.addConnectionListener((ConnectionListener)r);
+			scen.addConnectionListener((ConnectionListener)l);
 		}
 		if (r instanceof MovementListener) {
-			scen.addMovementListener((MovementListener)r);
+			scen.addMovementListener((MovementListener)l);
 		}
 		if (r instanceof UpdateListener) {
-			scen.addUpdateListener((UpdateListener)r);
+			scen.addUpdateListener((UpdateListener)l);
 		}
 		if (r instanceof ApplicationListener) {
-			scen.addApplicationListener((ApplicationListener)r);
+			scen.addApplicationListener((ApplicationListener)l);
 		}
 
 		this.reports.add(r);